@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.PetClinicApplication;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.Vet;
+import org.springframework.samples.petclinic.model.Visit;
+import org.springframework.samples.petclinic.service.ClinicService;
+import org.springframework.samples.petclinic.util.DataGenerator;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the main {@link ClinicService} reads and writes with each repository profile, against an in-memory
+ * HSQLDB filled by the {@link DataGenerator}. The ClinicService cache is disabled so that the repositories are measured.
+ * The visits saved by {@link #saveVisit()} are deleted after each iteration, so that the data read by the following
+ * iterations does not grow.
+ * <p/>
+ * Run with <code>./mvnw -P benchmark test-compile exec:exec</code>; the data size is chosen with
+ * <code>-Djmh.args="-p owners=100000"</code>. The default arguments add the <code>gc</code> profiler, which reports
+ * the bytes allocated per operation (<code>gc.alloc.rate.norm</code>).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClinicServiceBenchmark {
+
+    private static final long SEED = 42;
+
+    @Param({"jdbc", "jpa", "spring-data-jpa"})
+    public String repository;
+
+    @Param({"1000", "10000"})
+    public int owners;
+
+    private ConfigurableApplicationContext context;
+
+    private ClinicService clinicService;
+
+    private int lastOwnerId;
+
+    private int lastPetId;
+
+    private int lastVisitId;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private String[] lastNames;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.context = new SpringApplicationBuilder(PetClinicApplication.class)
+            .run("--spring.profiles.active=hsqldb," + this.repository,
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:hsqldb:mem:petclinic-benchmark",
+                "--petclinic.cache.enabled=false",
+                "--spring.jmx.enabled=false",
+                "--logging.level.root=WARN",
+                "--logging.level.org.springframework=WARN");
+        new DataGenerator(this.context.getBean(DataSource.class), SEED, 1000).generate(this.owners);
+        JdbcTemplate jdbcTemplate = this.context.getBean(JdbcTemplate.class);
+        // the ids of the generated rows follow those of populateDB.sql, without gaps
+        this.lastOwnerId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM owners", Integer.class);
+        this.lastPetId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM pets", Integer.class);
+        this.lastVisitId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM visits", Integer.class);
+        this.jdbcTemplate = jdbcTemplate;
+        this.lastNames = jdbcTemplate.queryForList("SELECT DISTINCT last_name FROM owners", String.class)
+            .toArray(new String[0]);
+        this.clinicService = this.context.getBean(ClinicService.class);
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteSavedVisits() {
+        this.jdbcTemplate.update("DELETE FROM visits WHERE id > ?", this.lastVisitId);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.context.close();
+    }
+
+    @Benchmark
+    public Owner findOwnerById() {
+        return this.clinicService.findOwnerById(ThreadLocalRandom.current().nextInt(1, this.lastOwnerId + 1));
+    }
+
+    @Benchmark
+    public Collection<Owner> findOwnerByLastName() {
+        return this.clinicService.findOwnerByLastName(
+            this.lastNames[ThreadLocalRandom.current().nextInt(this.lastNames.length)]);
+    }
+
+    @Benchmark
+    public Collection<Visit> findAllVisits() {
+        return this.clinicService.findAllVisits();
+    }
+
+    @Benchmark
+    public Visit saveVisit() {
+        Pet pet = new Pet();
+        pet.setId(ThreadLocalRandom.current().nextInt(1, this.lastPetId + 1));
+        Visit visit = new Visit();
+        visit.setPet(pet);
+        visit.setDate(LocalDate.now());
+        visit.setDescription("benchmark");
+        this.clinicService.saveVisit(visit);
+        return visit;
+    }
+
+    @Benchmark
+    public Collection<Vet> findVets() {
+        return this.clinicService.findVets();
+    }
+}
@@ -0,0 +1,90 @@
+package org.springframework.samples.petclinic.config;
+
+import java.util.Arrays;
+
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+/**
+ * Bounded in-process cache backing the {@code @Cacheable} reads of the
+ * {@link org.springframework.samples.petclinic.service.ClinicService}.
+ * <p/>
+ * Size, TTL and statistics are driven by the standard {@code spring.cache.caffeine.spec} property.
+ * <p/>
+ * The cache advisor is ordered before the transaction advisor, so that it wraps the transaction of the service
+ * methods: the entries of a write are evicted once it has committed. Inside an enclosing transaction, they are evicted
+ * at once, so that the transaction reads its own writes, and again when it commits, in case a concurrent read put
+ * the previous state back meanwhile; the entries read inside a transaction are only put once it commits. A read that
+ * started before the commit of a write may still put the previous state back after the last eviction, until the entry
+ * expires.
+ * <p/>
+ * The cached entities are shared by all the requests: they must not be changed, but read again with the
+ * <code>find...ForUpdate</code> methods of the service.
+ * <p/>
+ * The cache is disabled with <code>petclinic.cache.enabled=false</code>, e.g. to measure the repositories.
+ */
+@Configuration
+@ConditionalOnProperty(name = "petclinic.cache.enabled", havingValue = "true", matchIfMissing = true)
+@EnableTransactionManagement(proxyTargetClass = true, order = Ordered.LOWEST_PRECEDENCE)
+@EnableCaching(proxyTargetClass = true, order = Ordered.LOWEST_PRECEDENCE - 1)
+@EnableConfigurationProperties(CacheProperties.class)
+public class CacheConfig {
+
+    private static final String DEFAULT_SPEC = "maximumSize=10000,expireAfterWrite=10m,recordStats";
+
+    @Bean
+    public CacheManager cacheManager(CacheProperties cacheProperties) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager() {
+            @Override
+            protected Cache adaptCaffeineCache(String name,
+                                               com.github.benmanes.caffeine.cache.Cache<Object, Object> cache) {
+                return new CommitEvictingCache(super.adaptCaffeineCache(name, cache));
+            }
+        };
+        String spec = cacheProperties.getCaffeine().getSpec();
+        cacheManager.setCacheSpecification(StringUtils.hasText(spec) ? spec : DEFAULT_SPEC);
+        // fixed set of caches so that they are all bound to the actuator cache metrics at startup
+        cacheManager.setCacheNames(Arrays.asList("owners", "pets", "vets", "petTypes", "specialties", "users"));
+        cacheManager.setAllowNullValues(false);
+        return cacheManager;
+    }
+
+    /**
+     * Evicts the entries both at once and after the commit of the current transaction, if any.
+     */
+    static class CommitEvictingCache extends TransactionAwareCacheDecorator {
+
+        CommitEvictingCache(Cache targetCache) {
+            super(targetCache);
+        }
+
+        @Override
+        public void evict(Object key) {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                getTargetCache().evict(key);
+            }
+            super.evict(key);
+        }
+
+        @Override
+        public void clear() {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                getTargetCache().clear();
+            }
+            super.clear();
+        }
+    }
+
+}
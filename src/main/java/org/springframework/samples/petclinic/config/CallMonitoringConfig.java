@@ -0,0 +1,26 @@
+package org.springframework.samples.petclinic.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.samples.petclinic.util.CallMonitorEndpoint;
+import org.springframework.samples.petclinic.util.CallMonitoringAspect;
+
+/**
+ * Registers the {@link CallMonitoringAspect} timing the calls to the repositories, and publishes its statistics as the
+ * <code>callmonitor</code> actuator endpoint. They are also exported as the <code>petclinic:type=CallMonitor</code>
+ * MBean when JMX is enabled (<code>spring.jmx.enabled</code>).
+ */
+@Configuration
+public class CallMonitoringConfig {
+
+    @Bean
+    public CallMonitoringAspect callMonitor() {
+        return new CallMonitoringAspect();
+    }
+
+    @Bean
+    public CallMonitorEndpoint callMonitorEndpoint(CallMonitoringAspect callMonitor) {
+        return new CallMonitorEndpoint(callMonitor);
+    }
+
+}
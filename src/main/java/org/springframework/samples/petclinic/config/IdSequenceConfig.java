@@ -0,0 +1,43 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.config;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.samples.petclinic.util.IdSequences;
+
+/**
+ * The {@link IdSequences} of the database repository profiles, checked at startup: the application fails fast on a
+ * database created by an earlier version of the schema scripts, whose sequences are missing or behind the ids of
+ * their tables, instead of failing on duplicate keys at the first inserts.
+ */
+@Configuration
+@Profile({"jdbc", "jpa", "spring-data-jpa"})
+public class IdSequenceConfig {
+
+    @Bean
+    @DependsOnDatabaseInitialization
+    public IdSequences idSequences(DataSource dataSource) {
+        IdSequences sequences = new IdSequences(dataSource);
+        sequences.verify();
+        return sequences;
+    }
+
+}
@@ -0,0 +1,39 @@
+package org.springframework.samples.petclinic.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.samples.petclinic.service.ClinicService;
+import org.springframework.samples.petclinic.util.NamePrefixIndex;
+
+/**
+ * Enables the in-memory index of the owner last names serving the type-ahead (<code>GET /api/owners/lastnames</code>)
+ * with <code>petclinic.owner-name-index.enabled=true</code>. The index is loaded once the application is ready, after
+ * the data set generated at startup, and kept up to date by the owner writes of the {@link ClinicService}; it is
+ * queried instead of the database as soon as it is loaded.
+ */
+@Configuration
+@ConditionalOnProperty(name = "petclinic.owner-name-index.enabled", havingValue = "true")
+public class OwnerNameIndexConfig {
+
+    @Bean
+    public NamePrefixIndex ownerNameIndex(MeterRegistry meterRegistry) {
+        NamePrefixIndex index = new NamePrefixIndex();
+        Gauge.builder("petclinic.owner.name.index.size", index, NamePrefixIndex::size)
+            .description("Distinct owner last names in the type-ahead index")
+            .register(meterRegistry);
+        return index;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOwnerNameIndex(ApplicationReadyEvent event) {
+        NamePrefixIndex index = event.getApplicationContext().getBean("ownerNameIndex", NamePrefixIndex.class);
+        ClinicService clinicService = event.getApplicationContext().getBean(ClinicService.class);
+        index.load(clinicService::streamOwnerLastNames);
+    }
+
+}
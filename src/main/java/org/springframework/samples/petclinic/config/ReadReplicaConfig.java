@@ -0,0 +1,75 @@
+package org.springframework.samples.petclinic.config;
+
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.samples.petclinic.util.CachedReadsRoutingAspect;
+import org.springframework.samples.petclinic.util.ReadWriteRoutingDataSource;
+import org.springframework.samples.petclinic.util.ReadYourWritesFilter;
+
+/**
+ * Sends the read-only transactions to a replica of the database, configured as a Hikari pool with the
+ * <code>petclinic.datasource.replica.*</code> properties (<code>jdbc-url</code>, <code>username</code>,
+ * <code>password</code>, <code>maximum-pool-size</code>, ...), and all the others to the primary database configured
+ * with <code>spring.datasource.*</code>. With <code>petclinic.datasource.read-your-writes</code>, the reads of a
+ * client session stay on the primary database for that long after each of its writes.
+ * <p/>
+ * The reads filling the cache of the {@link org.springframework.samples.petclinic.service.ClinicService} always go to
+ * the primary database, so that a lagging replica never puts back the entries evicted by a write. The Hibernate
+ * second-level cache is disabled (see {@link SecondLevelCacheConfig}).
+ */
+@Configuration
+@ConditionalOnProperty(name = "petclinic.datasource.replica.jdbc-url")
+public class ReadReplicaConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("petclinic.datasource.replica")
+    public HikariDataSource replicaDataSource() {
+        HikariDataSource dataSource = DataSourceBuilder.create().type(HikariDataSource.class).build();
+        dataSource.setPoolName("replica");
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource) {
+        return new LazyConnectionDataSourceProxy(
+            new ReadWriteRoutingDataSource(primaryDataSource, replicaDataSource));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "petclinic.cache.enabled", havingValue = "true", matchIfMissing = true)
+    public CachedReadsRoutingAspect cachedReadsRouting() {
+        return new CachedReadsRoutingAspect();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "petclinic.datasource.read-your-writes")
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(
+        @Value("${petclinic.datasource.read-your-writes}") Duration window) {
+        return new FilterRegistrationBean<>(new ReadYourWritesFilter(window));
+    }
+
+}
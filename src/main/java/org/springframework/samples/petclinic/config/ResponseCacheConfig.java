@@ -0,0 +1,24 @@
+package org.springframework.samples.petclinic.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.samples.petclinic.util.ResponseCache;
+
+/**
+ * Enables the {@link ResponseCache} of the hot read endpoints with <code>petclinic.response-cache.enabled=true</code>,
+ * bounded by <code>petclinic.response-cache.max-bytes</code>.
+ */
+@Configuration
+public class ResponseCacheConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "petclinic.response-cache.enabled", havingValue = "true")
+    public ResponseCache responseCache(@Value("${petclinic.response-cache.max-bytes:33554432}") long maxBytes,
+                                       MeterRegistry meterRegistry) {
+        return new ResponseCache(maxBytes, meterRegistry);
+    }
+
+}
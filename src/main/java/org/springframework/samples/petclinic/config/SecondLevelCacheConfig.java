@@ -0,0 +1,66 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.config;
+
+import java.net.URI;
+import java.util.UUID;
+
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.util.StringUtils;
+
+/**
+ * Hibernate second-level cache of the JPA repository profiles, backed by Caffeine through JCache. It holds the
+ * entities annotated with {@link org.hibernate.annotations.Cache} (the pet types and the specialties) and the
+ * specialties of the vets, in one region each, and is kept up to date by the writes of the persistence unit.
+ * <p/>
+ * It is disabled along with a read replica (<code>petclinic.datasource.replica.jdbc-url</code>, see
+ * {@link ReadReplicaConfig}), since the read-only transactions would fill it from a replica lagging behind the writes
+ * evicting it.
+ * <p/>
+ * The Hibernate statistics are enabled, so that the actuator publishes the hits, misses and puts of each region as
+ * the <code>hibernate.second.level.cache.*</code> metrics.
+ */
+@Configuration
+@Profile({"jpa", "spring-data-jpa"})
+public class SecondLevelCacheConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(
+        @Value("${petclinic.datasource.replica.jdbc-url:}") String replicaUrl) {
+        return properties -> {
+            CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+            // a cache manager of its own, closed with the persistence unit: the JCache default one is shared by all
+            // the persistence units of the JVM, such as those of the application contexts of the tests
+            URI uri = URI.create("petclinic:second-level-cache:" + UUID.randomUUID());
+            properties.put(ConfigSettings.CACHE_MANAGER, provider.getCacheManager(uri, provider.getDefaultClassLoader()));
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, ConfigSettings.SIMPLE_FACTORY_NAME);
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, !StringUtils.hasText(replicaUrl));
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "create");
+            properties.put(AvailableSettings.GENERATE_STATISTICS, true);
+        };
+    }
+
+}
@@ -27,6 +27,9 @@ import java.util.*;
 
 /**
  * Simple JavaBean domain object representing an owner.
+ * <p/>
+ * Pets are loaded lazily: JPA readers pick the part of the owner graph they need with {@link #WITH_PETS} or
+ * {@link #WITH_PETS_AND_VISITS}.
  *
  * @author Ken Krebs
  * @author Juergen Hoeller
@@ -35,7 +38,33 @@ import java.util.*;
  */
 @Entity
 @Table(name = "owners")
+@SequenceGenerator(name = BaseEntity.ID_GENERATOR, sequenceName = "owners_seq",
+    allocationSize = BaseEntity.ID_ALLOCATION_SIZE)
+@NamedEntityGraphs({
+    @NamedEntityGraph(name = Owner.WITH_PETS, attributeNodes = @NamedAttributeNode(value = "pets", subgraph = "pet"),
+        subgraphs = @NamedSubgraph(name = "pet", attributeNodes = @NamedAttributeNode("type"))),
+    @NamedEntityGraph(name = Owner.WITH_PETS_AND_VISITS, attributeNodes = @NamedAttributeNode(value = "pets", subgraph = "pet"),
+        subgraphs = @NamedSubgraph(name = "pet", attributeNodes = {@NamedAttributeNode("type"), @NamedAttributeNode("visits")}))
+})
 public class Owner extends Person {
+
+    /**
+     * Entity graph loading the pets of the owner, but not their visits.
+     */
+    public static final String WITH_PETS = "Owner.pets";
+
+    /**
+     * Entity graph loading the pets of the owner and their visits.
+     */
+    public static final String WITH_PETS_AND_VISITS = "Owner.petsAndVisits";
+
+    /**
+     * Properties that can be updated in place, without reading the owner (see
+     * {@link org.springframework.samples.petclinic.repository.OwnerRepository#update}).
+     */
+    public static final List<String> UPDATABLE_PROPERTIES =
+        Collections.unmodifiableList(Arrays.asList("firstName", "lastName", "address", "city", "telephone"));
+
     @Column(name = "address")
     @NotEmpty
     private String address;
@@ -49,7 +78,11 @@ public class Owner extends Person {
     @Digits(fraction = 0, integer = 10)
     private String telephone;
 
-    @OneToMany(cascade = CascadeType.ALL, mappedBy = "owner", fetch = FetchType.EAGER)
+    @Version
+    @Column(name = "version")
+    private Integer version;
+
+    @OneToMany(cascade = CascadeType.ALL, mappedBy = "owner")
     private Set<Pet> pets;
 
 
@@ -77,6 +110,18 @@ public class Owner extends Person {
         this.telephone = telephone;
     }
 
+    /**
+     * @return the number of times this owner has been updated, checked by the conditional updates; <code>null</code> until
+     * it is saved
+     */
+    public Integer getVersion() {
+        return this.version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
     protected Set<Pet> getPetsInternal() {
         if (this.pets == null) {
             this.pets = new HashSet<>();
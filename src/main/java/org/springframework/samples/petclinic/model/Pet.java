@@ -33,8 +33,24 @@ import java.util.*;
  */
 @Entity
 @Table(name = "pets")
+@SequenceGenerator(name = BaseEntity.ID_GENERATOR, sequenceName = "pets_seq",
+    allocationSize = BaseEntity.ID_ALLOCATION_SIZE)
+@NamedEntityGraph(name = Pet.WITH_VISITS,
+    attributeNodes = {@NamedAttributeNode("type"), @NamedAttributeNode("owner"), @NamedAttributeNode("visits")})
 public class Pet extends NamedEntity {
 
+    /**
+     * Entity graph loading the pet with its type, its owner and its visits.
+     */
+    public static final String WITH_VISITS = "Pet.visits";
+
+    /**
+     * Properties that can be updated in place, without reading the pet (see
+     * {@link org.springframework.samples.petclinic.repository.PetRepository#update}).
+     */
+    public static final List<String> UPDATABLE_PROPERTIES =
+        Collections.unmodifiableList(Arrays.asList("name", "birthDate", "type"));
+
     @Column(name = "birth_date", columnDefinition = "DATE")
     private LocalDate birthDate;
 
@@ -46,9 +62,13 @@ public class Pet extends NamedEntity {
     @JoinColumn(name = "owner_id")
     private Owner owner;
 
-    @OneToMany(cascade = CascadeType.ALL, mappedBy = "pet", fetch = FetchType.EAGER)
+    @OneToMany(cascade = CascadeType.ALL, mappedBy = "pet")
     private Set<Visit> visits;
 
+    @Version
+    @Column(name = "version")
+    private Integer version;
+
     public LocalDate getBirthDate() {
         return this.birthDate;
     }
@@ -57,6 +77,18 @@ public class Pet extends NamedEntity {
         this.birthDate = birthDate;
     }
 
+    /**
+     * @return the number of times this pet has been updated, checked by the conditional updates; <code>null</code> until
+     * it is saved
+     */
+    public Integer getVersion() {
+        return this.version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
     public PetType getType() {
         return this.type;
     }
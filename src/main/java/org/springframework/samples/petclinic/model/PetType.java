@@ -15,15 +15,24 @@
  */
 package org.springframework.samples.petclinic.model;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 /**
  * @author Juergen Hoeller
  *         Can be Cat, Dog, Hamster...
  */
 @Entity
 @Table(name = "types")
+@SequenceGenerator(name = BaseEntity.ID_GENERATOR, sequenceName = "types_seq",
+    allocationSize = BaseEntity.ID_ALLOCATION_SIZE)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class PetType extends NamedEntity {
 
 }
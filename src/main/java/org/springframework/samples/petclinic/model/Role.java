@@ -4,6 +4,7 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
 
@@ -11,6 +12,8 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Entity
 @Table(name = "roles" ,uniqueConstraints = @UniqueConstraint(columnNames = {"username", "role"}))
+@SequenceGenerator(name = BaseEntity.ID_GENERATOR, sequenceName = "roles_seq",
+    allocationSize = BaseEntity.ID_ALLOCATION_SIZE)
 public class Role extends BaseEntity {
 
     @ManyToOne
@@ -15,9 +15,14 @@
  */
 package org.springframework.samples.petclinic.model;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 /**
  * Models a {@link Vet Vet's} specialty (for example, dentistry).
  *
@@ -25,6 +30,10 @@ import javax.persistence.Table;
  */
 @Entity
 @Table(name = "specialties")
+@SequenceGenerator(name = BaseEntity.ID_GENERATOR, sequenceName = "specialties_seq",
+    allocationSize = BaseEntity.ID_ALLOCATION_SIZE)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Specialty extends NamedEntity {
 
 }
@@ -16,6 +16,8 @@
 package org.springframework.samples.petclinic.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.beans.support.MutableSortDefinition;
 import org.springframework.beans.support.PropertyComparator;
 
@@ -33,13 +35,44 @@ import java.util.*;
  */
 @Entity
 @Table(name = "vets")
+@SequenceGenerator(name = BaseEntity.ID_GENERATOR, sequenceName = "vets_seq",
+    allocationSize = BaseEntity.ID_ALLOCATION_SIZE)
 public class Vet extends Person {
 
+    /**
+     * Properties that can be updated in place, without reading the vet (see
+     * {@link org.springframework.samples.petclinic.repository.VetRepository#update}). The specialties can only be
+     * replaced with the whole vet.
+     */
+    public static final List<String> UPDATABLE_PROPERTIES =
+        Collections.unmodifiableList(Arrays.asList("firstName", "lastName"));
+
+    /**
+     * The ids of the specialties of each vet are kept in the second-level cache, so that the vets loaded without
+     * joining their specialties read neither <code>vet_specialties</code> nor <code>specialties</code>.
+     */
     @ManyToMany(fetch = FetchType.EAGER)
     @JoinTable(name = "vet_specialties", joinColumns = @JoinColumn(name = "vet_id"),
         inverseJoinColumns = @JoinColumn(name = "specialty_id"))
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private Set<Specialty> specialties;
 
+    @Version
+    @Column(name = "version")
+    private Integer version;
+
+    /**
+     * @return the number of times this vet has been updated, checked by the conditional updates; <code>null</code> until
+     * it is saved
+     */
+    public Integer getVersion() {
+        return this.version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
     @JsonIgnore
     protected Set<Specialty> getSpecialtiesInternal() {
         if (this.specialties == null) {
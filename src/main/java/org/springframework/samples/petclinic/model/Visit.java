@@ -28,6 +28,8 @@ import java.time.LocalDate;
  */
 @Entity
 @Table(name = "visits")
+@SequenceGenerator(name = BaseEntity.ID_GENERATOR, sequenceName = "visits_seq",
+    allocationSize = BaseEntity.ID_ALLOCATION_SIZE)
 public class Visit extends BaseEntity {
 
     /**
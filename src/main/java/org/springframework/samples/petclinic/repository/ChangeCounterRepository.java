@@ -0,0 +1,37 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository;
+
+import java.util.Collection;
+
+import org.springframework.dao.DataAccessException;
+
+/**
+ * Storage of the change counters of the resources served by the REST API, see
+ * {@link org.springframework.samples.petclinic.service.ChangeCounters}.
+ */
+public interface ChangeCounterRepository {
+
+    /**
+     * @return a tag of the current count of the writes of the given resource
+     */
+    String tag(String resource) throws DataAccessException;
+
+    /**
+     * Count a write of each of the given resources, as part of the current transaction if there is one.
+     */
+    void increment(Collection<String> resources) throws DataAccessException;
+}
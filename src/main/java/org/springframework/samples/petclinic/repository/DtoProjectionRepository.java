@@ -0,0 +1,80 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository;
+
+import java.util.List;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.samples.petclinic.rest.dto.OwnerDto;
+import org.springframework.samples.petclinic.rest.dto.PetDto;
+import org.springframework.samples.petclinic.rest.dto.VetDto;
+import org.springframework.samples.petclinic.rest.dto.VisitDto;
+
+/**
+ * Read-only queries of the list endpoints, building their DTOs straight from the selected columns: no entity is
+ * instantiated, managed or mapped, and the collections are read in the order of the responses. A page of owners,
+ * pets or vets costs one query for the page and one per nested collection and {@link #ID_CHUNK_SIZE} rows of the page.
+ * <p/>
+ * The implementations open their own read-only transactions. They are only registered when
+ * <code>petclinic.dto-projections.enabled</code> is <code>true</code>, the list endpoints falling back to the
+ * {@link org.springframework.samples.petclinic.service.ClinicService} otherwise.
+ */
+public interface DtoProjectionRepository {
+
+    /**
+     * Maximum number of parent ids bound to the <code>IN</code> clause of a single query of a nested collection: the
+     * unpaged list endpoints read whole tables.
+     */
+    int ID_CHUNK_SIZE = 500;
+
+    /**
+     * Retrieve a page of owners with their pets (ordered by name) and the visits of the pets (latest first).
+     *
+     * @param lastName the prefix of the last names of the owners, or <code>null</code> for all the owners
+     * @param afterId  only the owners with a greater id are returned (0 for the first page)
+     * @param limit    the maximum number of owners to return
+     * @return at most <code>limit</code> owners, ordered by id
+     */
+    List<OwnerDto> findOwners(String lastName, int afterId, int limit) throws DataAccessException;
+
+    /**
+     * Retrieve a page of pets with their type and visits (latest first).
+     *
+     * @param afterId only the pets with a greater id are returned (0 for the first page)
+     * @param limit   the maximum number of pets to return
+     * @return at most <code>limit</code> pets, ordered by id
+     */
+    List<PetDto> findPets(int afterId, int limit) throws DataAccessException;
+
+    /**
+     * Retrieve a page of visits.
+     *
+     * @param afterId only the visits with a greater id are returned (0 for the first page)
+     * @param limit   the maximum number of visits to return
+     * @return at most <code>limit</code> visits, ordered by id
+     */
+    List<VisitDto> findVisits(int afterId, int limit) throws DataAccessException;
+
+    /**
+     * Retrieve a page of vets with their specialties (ordered by name).
+     *
+     * @param afterId only the vets with a greater id are returned (0 for the first page)
+     * @param limit   the maximum number of vets to return
+     * @return at most <code>limit</code> vets, ordered by id
+     */
+    List<VetDto> findVets(int afterId, int limit) throws DataAccessException;
+
+}
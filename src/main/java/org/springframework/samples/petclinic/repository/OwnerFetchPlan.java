@@ -0,0 +1,53 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository;
+
+import org.springframework.samples.petclinic.model.Owner;
+
+/**
+ * Parts of the <code>Owner</code> graph loaded by the {@link OwnerRepository} reads, so that a screen only pays for
+ * the associations it shows.
+ */
+public enum OwnerFetchPlan {
+
+    /**
+     * The owner only: its pets are not loaded (left uninitialized by JPA, empty with JDBC) and must not be accessed.
+     */
+    HEADER(null),
+
+    /**
+     * The owner with its pets and their types, but not their visits.
+     */
+    PETS(Owner.WITH_PETS),
+
+    /**
+     * The owner with its pets and all their visits.
+     */
+    PETS_AND_VISITS(Owner.WITH_PETS_AND_VISITS);
+
+    private final String entityGraph;
+
+    OwnerFetchPlan(String entityGraph) {
+        this.entityGraph = entityGraph;
+    }
+
+    /**
+     * @return the name of the JPA entity graph implementing this plan, <code>null</code> for {@link #HEADER}
+     */
+    public String getEntityGraph() {
+        return this.entityGraph;
+    }
+}
@@ -16,6 +16,9 @@
 package org.springframework.samples.petclinic.repository;
 
 import java.util.Collection;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 import org.springframework.dao.DataAccessException;
 import org.springframework.samples.petclinic.model.BaseEntity;
@@ -35,7 +38,7 @@ public interface OwnerRepository {
 
     /**
      * Retrieve <code>Owner</code>s from the data store by last name, returning all owners whose last name <i>starts</i>
-     * with the given name.
+     * with the given name, with their <code>Pet</code>s and <code>Visit</code>s.
      *
      * @param lastName Value to search for
      * @return a <code>Collection</code> of matching <code>Owner</code>s (or an empty <code>Collection</code> if none
@@ -44,7 +47,19 @@ public interface OwnerRepository {
     Collection<Owner> findByLastName(String lastName) throws DataAccessException;
 
     /**
-     * Retrieve an <code>Owner</code> from the data store by id.
+     * Retrieve <code>Owner</code>s from the data store by last name, loading the part of their graph selected by the
+     * given plan.
+     *
+     * @param lastName Value to search for
+     * @param plan     the associations to load
+     * @return a <code>Collection</code> of matching <code>Owner</code>s (or an empty <code>Collection</code> if none
+     * found)
+     */
+    Collection<Owner> findByLastName(String lastName, OwnerFetchPlan plan) throws DataAccessException;
+
+    /**
+     * Retrieve an <code>Owner</code> from the data store by id, with its <code>Pet</code>s and their
+     * <code>Visit</code>s.
      *
      * @param id the id to search for
      * @return the <code>Owner</code> if found
@@ -52,6 +67,17 @@ public interface OwnerRepository {
      */
     Owner findById(int id) throws DataAccessException;
 
+    /**
+     * Retrieve an <code>Owner</code> from the data store by id, loading the part of its graph selected by the given
+     * plan.
+     *
+     * @param id   the id to search for
+     * @param plan the associations to load
+     * @return the <code>Owner</code> if found
+     * @throws org.springframework.dao.DataRetrievalFailureException if not found
+     */
+    Owner findById(int id, OwnerFetchPlan plan) throws DataAccessException;
+
 
     /**
      * Save an <code>Owner</code> to the data store, either inserting or updating it.
@@ -77,5 +103,79 @@ public interface OwnerRepository {
      */
 	void delete(Owner owner) throws DataAccessException;
 
+    /**
+     * Retrieve a page of <code>Owner</code>s from the data store, ordered by id.
+     *
+     * @param afterId only the owners with a greater id are returned (0 for the first page)
+     * @param limit   the maximum number of owners to return
+     * @return a <code>Collection</code> of at most <code>limit</code> <code>Owner</code>s
+     */
+    Collection<Owner> findAll(int afterId, int limit) throws DataAccessException;
+
+    /**
+     * Retrieve a page of the <code>Owner</code>s whose last name <i>starts</i> with the given name, ordered by id.
+     *
+     * @param lastName Value to search for
+     * @param afterId  only the owners with a greater id are returned (0 for the first page)
+     * @param limit    the maximum number of owners to return
+     * @return a <code>Collection</code> of at most <code>limit</code> matching <code>Owner</code>s
+     */
+    Collection<Owner> findByLastName(String lastName, int afterId, int limit) throws DataAccessException;
+
+    /**
+     * Read all the <code>Owner</code>s with their <code>Pet</code>s and <code>Visit</code>s through a forward-only
+     * cursor, handing each owner to the given action as soon as it is read instead of materializing the whole
+     * collection. Must be called within a read-only transaction.
+     *
+     * @param action the callback receiving the owners, ordered by id
+     */
+    void streamAll(Consumer<Owner> action) throws DataAccessException;
+
+    /**
+     * Insert new <code>Owner</code>s with their new <code>Pet</code>s and <code>Visit</code>s, using as few round
+     * trips to the data store as possible, and assign them their generated ids. The pet types must already exist.
+     *
+     * @param owners the new <code>Owner</code>s to insert
+     */
+    void saveAll(Collection<Owner> owners) throws DataAccessException;
+
+    /**
+     * Retrieve the version of a <code>Owner</code>, without loading it.
+     *
+     * @param id the id to search for
+     * @return the version of the <code>Owner</code>, <code>null</code> if not found
+     */
+    Integer findVersionById(int id) throws DataAccessException;
+
+    /**
+     * Update some properties of an <code>Owner</code> with a single statement, on condition that the owner was not
+     * updated since the given version was read.
+     *
+     * @param id      the id of the <code>Owner</code>
+     * @param version the version of the <code>Owner</code> the changes were made on
+     * @param changes the new values by property name, among {@link Owner#UPDATABLE_PROPERTIES}
+     * @return the new version of the <code>Owner</code>
+     * @throws org.springframework.orm.ObjectRetrievalFailureException if not found
+     * @throws org.springframework.orm.ObjectOptimisticLockingFailureException if updated since the given version
+     */
+    int update(int id, int version, Map<String, Object> changes) throws DataAccessException;
+
+    /**
+     * Retrieve the distinct last names of the <code>Owner</code>s <i>starting</i> with the given prefix, in
+     * alphabetical order, without loading the owners.
+     *
+     * @param prefix Value to search for
+     * @param limit  the maximum number of last names to return
+     * @return a <code>Collection</code> of at most <code>limit</code> last names
+     */
+    Collection<String> findLastNames(String prefix, int limit) throws DataAccessException;
+
+    /**
+     * Read the last names of all the <code>Owner</code>s through a forward-only cursor, without loading the owners.
+     * Must be called within a read-only transaction.
+     *
+     * @param action the callback receiving each last name with the id of its owner
+     */
+    void streamLastNames(ObjIntConsumer<String> action) throws DataAccessException;
 
 }
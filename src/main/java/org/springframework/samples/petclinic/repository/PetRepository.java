@@ -17,6 +17,8 @@ package org.springframework.samples.petclinic.repository;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import org.springframework.dao.DataAccessException;
 import org.springframework.samples.petclinic.model.BaseEntity;
@@ -75,4 +77,42 @@ public interface PetRepository {
      */
 	void delete(Pet pet) throws DataAccessException;
 
+    /**
+     * Retrieve a page of <code>Pet</code>s from the data store, ordered by id.
+     *
+     * @param afterId only the pets with a greater id are returned (0 for the first page)
+     * @param limit   the maximum number of pets to return
+     * @return a <code>Collection</code> of at most <code>limit</code> <code>Pet</code>s
+     */
+    Collection<Pet> findAll(int afterId, int limit) throws DataAccessException;
+
+    /**
+     * Read all the <code>Pet</code>s with their type, owner and <code>Visit</code>s through a forward-only cursor,
+     * handing each pet to the given action as soon as it is read. Must be called within a read-only transaction.
+     *
+     * @param action the callback receiving the pets, ordered by id
+     */
+    void streamAll(Consumer<Pet> action) throws DataAccessException;
+
+    /**
+     * Retrieve the version of a <code>Pet</code>, without loading it.
+     *
+     * @param id the id to search for
+     * @return the version of the <code>Pet</code>, <code>null</code> if not found
+     */
+    Integer findVersionById(int id) throws DataAccessException;
+
+    /**
+     * Update some properties of a <code>Pet</code> with a single statement, on condition that the pet was not
+     * updated since the given version was read.
+     *
+     * @param id      the id of the <code>Pet</code>
+     * @param version the version of the <code>Pet</code> the changes were made on
+     * @param changes the new values by property name, among {@link Pet#UPDATABLE_PROPERTIES}
+     * @return the new version of the <code>Pet</code>
+     * @throws org.springframework.orm.ObjectRetrievalFailureException if not found
+     * @throws org.springframework.orm.ObjectOptimisticLockingFailureException if updated since the given version
+     */
+    int update(int id, int version, Map<String, Object> changes) throws DataAccessException;
+
 }
@@ -16,6 +16,7 @@
 package org.springframework.samples.petclinic.repository;
 
 import java.util.Collection;
+import java.util.Map;
 
 import org.springframework.dao.DataAccessException;
 import org.springframework.samples.petclinic.model.Vet;
@@ -45,5 +46,34 @@ public interface VetRepository {
 	
 	void delete(Vet vet) throws DataAccessException;
 
+    /**
+     * Retrieve a page of <code>Vet</code>s from the data store, ordered by id.
+     *
+     * @param afterId only the vets with a greater id are returned (0 for the first page)
+     * @param limit   the maximum number of vets to return
+     * @return a <code>Collection</code> of at most <code>limit</code> <code>Vet</code>s
+     */
+    Collection<Vet> findAll(int afterId, int limit) throws DataAccessException;
+
+    /**
+     * Retrieve the version of a <code>Vet</code>, without loading it.
+     *
+     * @param id the id to search for
+     * @return the version of the <code>Vet</code>, <code>null</code> if not found
+     */
+    Integer findVersionById(int id) throws DataAccessException;
+
+    /**
+     * Update some properties of a <code>Vet</code> with a single statement, on condition that the vet was not
+     * updated since the given version was read.
+     *
+     * @param id      the id of the <code>Vet</code>
+     * @param version the version of the <code>Vet</code> the changes were made on
+     * @param changes the new values by property name, among {@link Vet#UPDATABLE_PROPERTIES}
+     * @return the new version of the <code>Vet</code>
+     * @throws org.springframework.orm.ObjectRetrievalFailureException if not found
+     * @throws org.springframework.orm.ObjectOptimisticLockingFailureException if updated since the given version
+     */
+    int update(int id, int version, Map<String, Object> changes) throws DataAccessException;
 
 }
@@ -17,6 +17,7 @@ package org.springframework.samples.petclinic.repository;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.springframework.dao.DataAccessException;
 import org.springframework.samples.petclinic.model.BaseEntity;
@@ -50,4 +51,21 @@ public interface VisitRepository {
 
 	void delete(Visit visit) throws DataAccessException;
 
+    /**
+     * Retrieve a page of <code>Visit</code>s from the data store, ordered by id.
+     *
+     * @param afterId only the visits with a greater id are returned (0 for the first page)
+     * @param limit   the maximum number of visits to return
+     * @return a <code>Collection</code> of at most <code>limit</code> <code>Visit</code>s
+     */
+    Collection<Visit> findAll(int afterId, int limit) throws DataAccessException;
+
+    /**
+     * Read all the <code>Visit</code>s with their <code>Pet</code> through a forward-only cursor, handing each visit
+     * to the given action as soon as it is read. Must be called within a read-only transaction.
+     *
+     * @param action the callback receiving the visits, ordered by id
+     */
+    void streamAll(Consumer<Visit> action) throws DataAccessException;
+
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jdbc;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.samples.petclinic.model.BaseEntity;
+
+import java.util.List;
+
+/**
+ * Inserts new entities with a single JDBC batch. Their ids are allocated by the {@link JdbcIdAllocator} before the
+ * batch is bound, so that the rows referencing them can be bound in the next batch without reading generated keys back,
+ * which {@link org.springframework.jdbc.core.simple.SimpleJdbcInsert#executeAndReturnKey} can only do one row at a time.
+ */
+final class JdbcBatchInsert {
+
+    private JdbcBatchInsert() {
+    }
+
+    /**
+     * @param sql    the <code>INSERT</code> statement, whose parameters include the id of the entity
+     * @param setter binds an entity, its id already set
+     */
+    static <T extends BaseEntity> void insert(JdbcTemplate jdbcTemplate, JdbcIdAllocator ids, String table, String sql,
+                                              List<T> entities, ParameterizedPreparedStatementSetter<T> setter) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        for (T entity : entities) {
+            entity.setId(ids.nextId(table));
+        }
+        jdbcTemplate.batchUpdate(sql, entities, entities.size(), setter);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jdbc;
+
+import java.sql.DatabaseMetaData;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import javax.sql.DataSource;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.samples.petclinic.repository.ChangeCounterRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Implementation of the {@link ChangeCounterRepository} interface over the <code>change_counters</code> table, shared
+ * by the database repository profiles: the counters are incremented in the transactions of the writes they count
+ * (the JPA transactions expose their JDBC connection), so that every instance of a cluster reads the same tags and
+ * a reader never sees the new count of a write before its data.
+ * <p/>
+ * The resources written by a transaction are gathered and their rows updated just before the commit, in the order of
+ * their names: the row locks are only held for the commit, and always taken in the same order. A counter starts from
+ * the creation of its row, in milliseconds, so that a recreated database never reuses the tags of a previous one; a
+ * row missing from the table, such as the counter of an owner never written before, is created by the first increment
+ * of its resource, with the upsert statement of the database so that two concurrent first increments do not collide.
+ * <p/>
+ * The tags are read in a read-only transaction, routed like the reads of the data they tag (to a read replica, see
+ * {@link org.springframework.samples.petclinic.config.ReadReplicaConfig}): read first, a tag is never newer than the
+ * data.
+ */
+@Repository
+@Profile({"jdbc", "jpa", "spring-data-jpa"})
+public class JdbcChangeCounterRepositoryImpl implements ChangeCounterRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String upsert;
+
+    public JdbcChangeCounterRepositoryImpl(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        String database;
+        try {
+            database = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        } catch (MetaDataAccessException ex) {
+            throw new IllegalStateException("Cannot read the database product name", ex);
+        }
+        if (database.contains("HSQL")) {
+            this.upsert = "MERGE INTO change_counters USING (VALUES (CAST(? AS VARCHAR(30)), CAST(? AS BIGINT))) " +
+                "AS written (resource, counter) ON change_counters.resource = written.resource " +
+                "WHEN MATCHED THEN UPDATE SET counter = change_counters.counter + 1 " +
+                "WHEN NOT MATCHED THEN INSERT VALUES (written.resource, written.counter)";
+        } else if (database.contains("PostgreSQL")) {
+            this.upsert = "INSERT INTO change_counters (resource, counter) VALUES (?, ?) " +
+                "ON CONFLICT (resource) DO UPDATE SET counter = change_counters.counter + 1";
+        } else {
+            this.upsert = "INSERT INTO change_counters (resource, counter) VALUES (?, ?) " +
+                "ON DUPLICATE KEY UPDATE counter = counter + 1";
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public String tag(String resource) throws DataAccessException {
+        List<Long> counters = this.jdbcTemplate.queryForList(
+            "SELECT counter FROM change_counters WHERE resource = ?", Long.class, resource);
+        return Long.toString(counters.isEmpty() ? 0 : counters.get(0), Character.MAX_RADIX);
+    }
+
+    @Override
+    public void increment(Collection<String> resources) throws DataAccessException {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update(new TreeSet<>(resources));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        SortedSet<String> written = (SortedSet<String>) TransactionSynchronizationManager.getResource(this);
+        if (written == null) {
+            written = bindWrittenResources();
+        }
+        written.addAll(resources);
+    }
+
+    private SortedSet<String> bindWrittenResources() {
+        SortedSet<String> written = new TreeSet<>();
+        TransactionSynchronizationManager.bindResource(this, written);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                update(written);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(JdbcChangeCounterRepositoryImpl.this);
+            }
+        });
+        return written;
+    }
+
+    private void update(SortedSet<String> resources) {
+        for (String resource : resources) {
+            this.jdbcTemplate.update(this.upsert, resource, System.currentTimeMillis());
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jdbc;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.samples.petclinic.repository.DtoProjectionRepository;
+import org.springframework.samples.petclinic.rest.dto.OwnerDto;
+import org.springframework.samples.petclinic.rest.dto.PetDto;
+import org.springframework.samples.petclinic.rest.dto.PetTypeDto;
+import org.springframework.samples.petclinic.rest.dto.SpecialtyDto;
+import org.springframework.samples.petclinic.rest.dto.VetDto;
+import org.springframework.samples.petclinic.rest.dto.VisitDto;
+import org.springframework.samples.petclinic.util.EntityUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Implementation of the {@link DtoProjectionRepository} interface with plain SQL, reading the columns by position.
+ * The nested collections of a page are selected by the ids of its rows, {@link #ID_CHUNK_SIZE} ids per query, so that a
+ * child inserted concurrently, between the queries, is never read without its parent.
+ */
+@Repository
+@Profile("jdbc")
+@ConditionalOnProperty(name = "petclinic.dto-projections.enabled", havingValue = "true")
+@Transactional(readOnly = true)
+public class JdbcDtoProjectionRepositoryImpl implements DtoProjectionRepository {
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public JdbcDtoProjectionRepositoryImpl(DataSource dataSource) {
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    }
+
+    @Override
+    public List<OwnerDto> findOwners(String lastName, int afterId, int limit) throws DataAccessException {
+        String lastNameFilter = lastName != null ? " AND owners.last_name LIKE :lastName" : "";
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("lastName", lastName + "%")
+            .addValue("afterId", afterId)
+            .addValue("limit", limit);
+        List<OwnerDto> owners = this.namedParameterJdbcTemplate.query(
+            "SELECT id, first_name, last_name, address, city, telephone FROM owners " +
+                "WHERE id > :afterId" + lastNameFilter + " ORDER BY id LIMIT :limit",
+            params,
+            (rs, row) -> new OwnerDto()
+                .id(rs.getInt(1))
+                .firstName(rs.getString(2))
+                .lastName(rs.getString(3))
+                .address(rs.getString(4))
+                .city(rs.getString(5))
+                .telephone(rs.getString(6)));
+        if (owners.isEmpty()) {
+            return owners;
+        }
+
+        Map<Integer, OwnerDto> ownersById = new HashMap<>();
+        for (OwnerDto owner : owners) {
+            ownersById.put(owner.getId(), owner);
+        }
+        Map<Integer, PetDto> petsById = new HashMap<>();
+        for (List<Integer> ownerIds : EntityUtils.chunk(ownersById.keySet(), ID_CHUNK_SIZE)) {
+            this.namedParameterJdbcTemplate.query(
+                "SELECT pets.id, pets.name, pets.birth_date, pets.owner_id, types.id, types.name FROM pets " +
+                    "JOIN types ON types.id = pets.type_id " +
+                    "WHERE pets.owner_id IN (:ownerIds) ORDER BY LOWER(pets.name), pets.id",
+                new MapSqlParameterSource("ownerIds", ownerIds),
+                rs -> {
+                    PetDto pet = mapPet(rs.getInt(1), rs.getString(2), rs.getObject(3, LocalDate.class), rs.getInt(4),
+                        rs.getInt(5), rs.getString(6));
+                    petsById.put(pet.getId(), pet);
+                    ownersById.get(pet.getOwnerId()).addPetsItem(pet);
+                });
+        }
+        addVisits(petsById);
+        return owners;
+    }
+
+    @Override
+    public List<PetDto> findPets(int afterId, int limit) throws DataAccessException {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("afterId", afterId)
+            .addValue("limit", limit);
+        List<PetDto> pets = this.namedParameterJdbcTemplate.query(
+            "SELECT pets.id, pets.name, pets.birth_date, pets.owner_id, types.id, types.name FROM pets " +
+                "JOIN types ON types.id = pets.type_id WHERE pets.id > :afterId ORDER BY pets.id LIMIT :limit",
+            params,
+            (rs, row) -> mapPet(rs.getInt(1), rs.getString(2), rs.getObject(3, LocalDate.class), rs.getInt(4),
+                rs.getInt(5), rs.getString(6)));
+        if (pets.isEmpty()) {
+            return pets;
+        }
+
+        Map<Integer, PetDto> petsById = new HashMap<>();
+        for (PetDto pet : pets) {
+            petsById.put(pet.getId(), pet);
+        }
+        addVisits(petsById);
+        return pets;
+    }
+
+    @Override
+    public List<VisitDto> findVisits(int afterId, int limit) throws DataAccessException {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("afterId", afterId)
+            .addValue("limit", limit);
+        return this.namedParameterJdbcTemplate.query(
+            "SELECT id, visit_date, description, pet_id FROM visits WHERE id > :afterId ORDER BY id LIMIT :limit",
+            params,
+            (rs, row) -> mapVisit(rs.getInt(1), rs.getObject(2, LocalDate.class), rs.getString(3), rs.getInt(4)));
+    }
+
+    @Override
+    public List<VetDto> findVets(int afterId, int limit) throws DataAccessException {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("afterId", afterId)
+            .addValue("limit", limit);
+        List<VetDto> vets = this.namedParameterJdbcTemplate.query(
+            "SELECT id, first_name, last_name FROM vets WHERE id > :afterId ORDER BY id LIMIT :limit",
+            params,
+            (rs, row) -> new VetDto()
+                .id(rs.getInt(1))
+                .firstName(rs.getString(2))
+                .lastName(rs.getString(3)));
+        if (vets.isEmpty()) {
+            return vets;
+        }
+
+        Map<Integer, VetDto> vetsById = new HashMap<>();
+        for (VetDto vet : vets) {
+            vetsById.put(vet.getId(), vet);
+        }
+        for (List<Integer> vetIds : EntityUtils.chunk(vetsById.keySet(), ID_CHUNK_SIZE)) {
+            this.namedParameterJdbcTemplate.query(
+                "SELECT vet_specialties.vet_id, specialties.id, specialties.name FROM vet_specialties " +
+                    "JOIN specialties ON specialties.id = vet_specialties.specialty_id " +
+                    "WHERE vet_specialties.vet_id IN (:vetIds) ORDER BY LOWER(specialties.name), specialties.id",
+                new MapSqlParameterSource("vetIds", vetIds),
+                rs -> {
+                    vetsById.get(rs.getInt(1)).addSpecialtiesItem(new SpecialtyDto()
+                        .id(rs.getInt(2))
+                        .name(rs.getString(3)));
+                });
+        }
+        return vets;
+    }
+
+    /**
+     * Adds their visits, latest first, to the given pets.
+     */
+    private void addVisits(Map<Integer, PetDto> petsById) {
+        for (List<Integer> petIds : EntityUtils.chunk(petsById.keySet(), ID_CHUNK_SIZE)) {
+            this.namedParameterJdbcTemplate.query(
+                "SELECT id, visit_date, description, pet_id FROM visits " +
+                    "WHERE pet_id IN (:petIds) ORDER BY visit_date DESC, id",
+                new MapSqlParameterSource("petIds", petIds),
+                rs -> {
+                    VisitDto visit = mapVisit(rs.getInt(1), rs.getObject(2, LocalDate.class), rs.getString(3),
+                        rs.getInt(4));
+                    petsById.get(visit.getPetId()).addVisitsItem(visit);
+                });
+        }
+    }
+
+    private static PetDto mapPet(int id, String name, LocalDate birthDate, int ownerId, int typeId, String typeName) {
+        return new PetDto()
+            .id(id)
+            .name(name)
+            .birthDate(birthDate)
+            .ownerId(ownerId)
+            .type(new PetTypeDto().id(typeId).name(typeName));
+    }
+
+    private static VisitDto mapVisit(int id, LocalDate date, String description, int petId) {
+        return new VisitDto()
+            .id(id)
+            .date(date)
+            .description(description)
+            .petId(petId);
+    }
+}
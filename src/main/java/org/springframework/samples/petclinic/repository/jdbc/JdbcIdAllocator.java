@@ -0,0 +1,71 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jdbc;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.samples.petclinic.model.BaseEntity;
+import org.springframework.samples.petclinic.util.IdSequences;
+import org.springframework.stereotype.Component;
+
+/**
+ * Allocates the ids of the rows inserted by the JDBC repositories from the blocks reserved in the {@link IdSequences},
+ * as Hibernate does for the JPA profiles: one sequence call per {@link BaseEntity#ID_ALLOCATION_SIZE} new rows of a
+ * table, and the ids known before the inserts, so that they can be batched. Relying on the default of the id columns
+ * instead would reserve a whole block per row.
+ */
+@Component
+@Profile("jdbc")
+class JdbcIdAllocator {
+
+    private final IdSequences sequences;
+
+    private final ConcurrentMap<String, Block> blocks = new ConcurrentHashMap<>();
+
+    JdbcIdAllocator(IdSequences sequences) {
+        this.sequences = sequences;
+    }
+
+    /**
+     * @return a new id of the given table
+     */
+    int nextId(String table) {
+        return this.blocks.computeIfAbsent(table, Block::new).nextId();
+    }
+
+    private class Block {
+
+        private final String table;
+
+        private int next;
+
+        private int limit;
+
+        Block(String table) {
+            this.table = table;
+        }
+
+        synchronized int nextId() {
+            if (this.next == this.limit) {
+                this.next = JdbcIdAllocator.this.sequences.reserve(this.table);
+                this.limit = this.next + BaseEntity.ID_ALLOCATION_SIZE;
+            }
+            return this.next++;
+        }
+    }
+}
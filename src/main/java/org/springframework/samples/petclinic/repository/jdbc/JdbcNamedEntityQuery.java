@@ -0,0 +1,58 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.SqlParameter;
+import org.springframework.jdbc.object.MappingSqlQuery;
+import org.springframework.samples.petclinic.model.NamedEntity;
+
+/**
+ * Reusable query object reading the <code>id</code> and <code>name</code> columns of a table of
+ * {@link NamedEntity named entities}, such as the pet types and the specialties, by position.
+ *
+ * @param <T> the type of the entities, created by the given factory
+ */
+class JdbcNamedEntityQuery<T extends NamedEntity> extends MappingSqlQuery<T> {
+
+    private final Supplier<T> factory;
+
+    /**
+     * @param table      the table holding the entities
+     * @param clause     the <code>WHERE</code> and <code>ORDER BY</code> clauses following the <code>FROM</code>
+     * @param parameters the named parameters of the clauses
+     */
+    JdbcNamedEntityQuery(DataSource dataSource, String table, Supplier<T> factory, String clause,
+                         SqlParameter... parameters) {
+        super(dataSource, "SELECT id, name FROM " + table + " " + clause);
+        this.factory = factory;
+        setParameters(parameters);
+        compile();
+    }
+
+    @Override
+    protected T mapRow(ResultSet rs, int rowNum) throws SQLException {
+        T entity = this.factory.get();
+        entity.setId(rs.getInt(1));
+        entity.setName(rs.getString(2));
+        return entity;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.SqlParameter;
+import org.springframework.jdbc.object.MappingSqlQuery;
+import org.springframework.samples.petclinic.model.Owner;
+
+/**
+ * Reusable query object reading {@link Owner Owners} without their pets. The SQL is parsed and the parameters declared
+ * once, when the repository is created; the columns are read by position rather than introspected per call like a
+ * <code>BeanPropertyRowMapper</code> does.
+ */
+class JdbcOwnerQuery extends MappingSqlQuery<Owner> {
+
+    private static final String SELECT =
+        "SELECT id, first_name, last_name, address, city, telephone, version FROM owners ";
+
+    /**
+     * @param clause     the <code>WHERE</code> and <code>ORDER BY</code> clauses following the <code>FROM</code>
+     * @param parameters the named parameters of the clauses
+     */
+    JdbcOwnerQuery(DataSource dataSource, String clause, SqlParameter... parameters) {
+        super(dataSource, SELECT + clause);
+        setParameters(parameters);
+        compile();
+    }
+
+    @Override
+    protected Owner mapRow(ResultSet rs, int rowNum) throws SQLException {
+        Owner owner = new Owner();
+        owner.setId(rs.getInt(1));
+        owner.setFirstName(rs.getString(2));
+        owner.setLastName(rs.getString(3));
+        owner.setAddress(rs.getString(4));
+        owner.setCity(rs.getString(5));
+        owner.setTelephone(rs.getString(6));
+        owner.setVersion(rs.getInt(7));
+        return owner;
+    }
+}
@@ -16,10 +16,13 @@
 package org.springframework.samples.petclinic.repository.jdbc;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
-import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.dao.support.DataAccessUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.SqlParameter;
 import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
@@ -28,16 +31,24 @@ import org.springframework.samples.petclinic.model.Owner;
 import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.model.PetType;
 import org.springframework.samples.petclinic.model.Visit;
+import org.springframework.samples.petclinic.repository.OwnerFetchPlan;
 import org.springframework.samples.petclinic.repository.OwnerRepository;
+import org.springframework.samples.petclinic.util.EntityIndex;
 import org.springframework.samples.petclinic.util.EntityUtils;
 import org.springframework.stereotype.Repository;
 
 import javax.sql.DataSource;
 import javax.transaction.Transactional;
+import java.sql.Date;
+import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 /**
  * A simple JDBC-based implementation of the {@link OwnerRepository} interface.
@@ -55,19 +66,64 @@ import java.util.Map;
 @Profile("jdbc")
 public class JdbcOwnerRepositoryImpl implements OwnerRepository {
 
+    /**
+     * Maximum number of owner ids bound to the <code>IN</code> clause of a single pets query.
+     */
+    static final int OWNER_ID_CHUNK_SIZE = 500;
+
     private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 
     private SimpleJdbcInsert insertOwner;
 
+    private JdbcIdAllocator ids;
+
+    private JdbcVersionedUpdate updateOwner;
+
+    private JdbcTemplate streamingJdbcTemplate;
+
+    private JdbcOwnerQuery ownerById;
+
+    private JdbcOwnerQuery ownersByLastName;
+
+    private JdbcOwnerQuery allOwners;
+
+    private JdbcOwnerQuery ownersPage;
+
+    private JdbcOwnerQuery ownersByLastNamePage;
+
+    private JdbcNamedEntityQuery<PetType> petTypes;
+
     @Autowired
-    public JdbcOwnerRepositoryImpl(DataSource dataSource) {
+    public JdbcOwnerRepositoryImpl(DataSource dataSource, JdbcIdAllocator ids,
+                                   @Value("${petclinic.streaming.fetch-size:500}") int streamingFetchSize) {
 
         this.insertOwner = new SimpleJdbcInsert(dataSource)
-            .withTableName("owners")
-            .usingGeneratedKeyColumns("id");
+            .withTableName("owners");
+        this.ids = ids;
 
         this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
 
+        this.updateOwner = new JdbcVersionedUpdate(this.namedParameterJdbcTemplate, Owner.class, "owners")
+            .column("firstName", "first_name")
+            .column("lastName", "last_name")
+            .column("address", "address")
+            .column("city", "city")
+            .column("telephone", "telephone");
+
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(streamingFetchSize);
+
+        SqlParameter lastName = new SqlParameter("lastName", Types.VARCHAR);
+        SqlParameter afterId = new SqlParameter("afterId", Types.INTEGER);
+        SqlParameter limit = new SqlParameter("limit", Types.INTEGER);
+        this.ownerById = new JdbcOwnerQuery(dataSource, "WHERE id= :id", new SqlParameter("id", Types.INTEGER));
+        this.ownersByLastName = new JdbcOwnerQuery(dataSource, "WHERE last_name like :lastName", lastName);
+        this.allOwners = new JdbcOwnerQuery(dataSource, "");
+        this.ownersPage = new JdbcOwnerQuery(dataSource, "WHERE id > :afterId ORDER BY id LIMIT :limit",
+            afterId, limit);
+        this.ownersByLastNamePage = new JdbcOwnerQuery(dataSource,
+            "WHERE last_name like :lastName AND id > :afterId ORDER BY id LIMIT :limit", lastName, afterId, limit);
+        this.petTypes = new JdbcNamedEntityQuery<>(dataSource, "types", PetType::new, "ORDER BY name");
     }
 
 
@@ -78,14 +134,15 @@ public class JdbcOwnerRepositoryImpl implements OwnerRepository {
      */
     @Override
     public Collection<Owner> findByLastName(String lastName) throws DataAccessException {
+        return findByLastName(lastName, OwnerFetchPlan.PETS_AND_VISITS);
+    }
+
+    @Override
+    public Collection<Owner> findByLastName(String lastName, OwnerFetchPlan plan) throws DataAccessException {
         Map<String, Object> params = new HashMap<>();
         params.put("lastName", lastName + "%");
-        List<Owner> owners = this.namedParameterJdbcTemplate.query(
-            "SELECT id, first_name, last_name, address, city, telephone FROM owners WHERE last_name like :lastName",
-            params,
-            BeanPropertyRowMapper.newInstance(Owner.class)
-        );
-        loadOwnersPetsAndVisits(owners);
+        List<Owner> owners = this.ownersByLastName.executeByNamedParam(params);
+        loadPets(owners, plan);
         return owners;
     }
 
@@ -95,101 +152,207 @@ public class JdbcOwnerRepositoryImpl implements OwnerRepository {
      */
     @Override
     public Owner findById(int id) throws DataAccessException {
-        Owner owner;
-        try {
-            Map<String, Object> params = new HashMap<>();
-            params.put("id", id);
-            owner = this.namedParameterJdbcTemplate.queryForObject(
-                "SELECT id, first_name, last_name, address, city, telephone FROM owners WHERE id= :id",
-                params,
-                BeanPropertyRowMapper.newInstance(Owner.class)
-            );
-        } catch (EmptyResultDataAccessException ex) {
+        return findById(id, OwnerFetchPlan.PETS_AND_VISITS);
+    }
+
+    @Override
+    public Owner findById(int id, OwnerFetchPlan plan) throws DataAccessException {
+        Map<String, Object> params = new HashMap<>();
+        params.put("id", id);
+        Owner owner = this.ownerById.findObjectByNamedParam(params);
+        if (owner == null) {
             throw new ObjectRetrievalFailureException(Owner.class, id);
         }
-        loadPetsAndVisits(owner);
+        loadPets(Collections.singletonList(owner), plan);
         return owner;
     }
 
-    public void loadPetsAndVisits(final Owner owner) {
-        Map<String, Object> params = new HashMap<>();
-        params.put("id", owner.getId());
-        final List<JdbcPet> pets = this.namedParameterJdbcTemplate.query(
-            "SELECT pets.id as pets_id, name, birth_date, type_id, owner_id, visits.id as visit_id, visit_date, description, visits.pet_id as visits_pet_id FROM pets LEFT OUTER JOIN visits ON pets.id = visits.pet_id WHERE owner_id=:id ORDER BY pets.id",
-            params,
-            new JdbcPetVisitExtractor()
-        );
-        Collection<PetType> petTypes = getPetTypes();
-        for (JdbcPet pet : pets) {
-            pet.setType(EntityUtils.getById(petTypes, PetType.class, pet.getTypeId()));
-            owner.addPet(pet);
+    /**
+     * Loads the {@link Pet Pets} of the given owners, and their {@link Visit Visits} when the plan asks for them, with
+     * one query per {@link #OWNER_ID_CHUNK_SIZE} owners; the pet types are read once for all the owners.
+     */
+    private void loadPets(List<Owner> owners, OwnerFetchPlan plan) {
+        if (plan == OwnerFetchPlan.HEADER || owners.isEmpty()) {
+            return;
+        }
+        EntityIndex<Owner> ownersById = EntityUtils.index(owners, Owner.class);
+        EntityIndex<PetType> petTypes = EntityUtils.index(getPetTypes(), PetType.class);
+        for (int from = 0; from < owners.size(); from += OWNER_ID_CHUNK_SIZE) {
+            List<Integer> ownerIds = new ArrayList<>();
+            for (Owner owner : owners.subList(from, Math.min(from + OWNER_ID_CHUNK_SIZE, owners.size()))) {
+                ownerIds.add(owner.getId());
+            }
+            Map<String, Object> params = new HashMap<>();
+            params.put("ownerIds", ownerIds);
+            List<JdbcPet> pets;
+            if (plan == OwnerFetchPlan.PETS_AND_VISITS) {
+                pets = this.namedParameterJdbcTemplate.query(
+                    "SELECT pets.id as pets_id, name, birth_date, type_id, owner_id, pets.version as pet_version, visits.id as visit_id, visit_date, description, visits.pet_id as visits_pet_id FROM pets LEFT OUTER JOIN visits ON pets.id = visits.pet_id WHERE owner_id IN (:ownerIds) ORDER BY pets.id",
+                    params,
+                    new JdbcPetVisitExtractor()
+                );
+            } else {
+                pets = this.namedParameterJdbcTemplate.query(
+                    "SELECT pets.id as pets_id, name, birth_date, type_id, owner_id, version as pet_version FROM pets WHERE owner_id IN (:ownerIds) ORDER BY pets.id",
+                    params,
+                    new JdbcPetRowMapper()
+                );
+            }
+            for (JdbcPet pet : pets) {
+                pet.setType(petTypes.getById(pet.getTypeId()));
+                ownersById.getById(pet.getOwnerId()).addPet(pet);
+            }
         }
     }
 
+    public void loadPetsAndVisits(final Owner owner) {
+        loadPets(Collections.singletonList(owner), OwnerFetchPlan.PETS_AND_VISITS);
+    }
+
     @Override
     public void save(Owner owner) throws DataAccessException {
-        BeanPropertySqlParameterSource parameterSource = new BeanPropertySqlParameterSource(owner);
         if (owner.isNew()) {
-            Number newKey = this.insertOwner.executeAndReturnKey(parameterSource);
-            owner.setId(newKey.intValue());
+            owner.setVersion(0);
+            owner.setId(this.ids.nextId("owners"));
+            this.insertOwner.execute(new BeanPropertySqlParameterSource(owner));
         } else {
+            BeanPropertySqlParameterSource parameterSource = new BeanPropertySqlParameterSource(owner);
             this.namedParameterJdbcTemplate.update(
                 "UPDATE owners SET first_name=:firstName, last_name=:lastName, address=:address, " +
-                    "city=:city, telephone=:telephone WHERE id=:id",
+                    "city=:city, telephone=:telephone, version=version+1 WHERE id=:id",
                 parameterSource);
         }
     }
 
-    public Collection<PetType> getPetTypes() throws DataAccessException {
-        return this.namedParameterJdbcTemplate.query(
-            "SELECT id, name FROM types ORDER BY name", new HashMap<String, Object>(),
-            BeanPropertyRowMapper.newInstance(PetType.class));
+    @Override
+    public int update(int id, int version, Map<String, Object> changes) throws DataAccessException {
+        return this.updateOwner.update(id, version, changes);
+    }
+
+    @Override
+    public Integer findVersionById(int id) throws DataAccessException {
+        Map<String, Object> params = new HashMap<>();
+        params.put("id", id);
+        return DataAccessUtils.singleResult(
+            this.namedParameterJdbcTemplate.queryForList("SELECT version FROM owners WHERE id=:id", params, Integer.class));
+    }
+
+    @Override
+    public Collection<String> findLastNames(String prefix, int limit) throws DataAccessException {
+        Map<String, Object> params = new HashMap<>();
+        params.put("prefix", prefix + "%");
+        params.put("limit", limit);
+        return this.namedParameterJdbcTemplate.queryForList(
+            "SELECT DISTINCT last_name FROM owners WHERE last_name like :prefix ORDER BY last_name LIMIT :limit",
+            params, String.class);
+    }
+
+    @Override
+    public void streamLastNames(ObjIntConsumer<String> action) throws DataAccessException {
+        this.streamingJdbcTemplate.query("SELECT id, last_name FROM owners",
+            (RowCallbackHandler) rs -> action.accept(rs.getString("last_name"), rs.getInt("id")));
     }
 
     /**
-     * Loads the {@link Pet} and {@link Visit} data for the supplied {@link List} of {@link Owner Owners}.
-     *
-     * @param owners the list of owners for whom the pet and visit data should be loaded
-     * @see #loadPetsAndVisits(Owner)
+     * Inserts the owners, then their pets, then the pets' visits, each with a single JDBC batch: the owner and pet ids
+     * allocated up front are known before the rows referencing them are bound.
      */
-    private void loadOwnersPetsAndVisits(List<Owner> owners) {
-        for (Owner owner : owners) {
-            loadPetsAndVisits(owner);
+    @Override
+    public void saveAll(Collection<Owner> owners) throws DataAccessException {
+        JdbcTemplate jdbcTemplate = this.namedParameterJdbcTemplate.getJdbcTemplate();
+        List<Owner> newOwners = new ArrayList<>(owners);
+        JdbcBatchInsert.insert(jdbcTemplate, this.ids, "owners",
+            "INSERT INTO owners (id, first_name, last_name, address, city, telephone) VALUES (?, ?, ?, ?, ?, ?)",
+            newOwners, (ps, owner) -> {
+                ps.setInt(1, owner.getId());
+                ps.setString(2, owner.getFirstName());
+                ps.setString(3, owner.getLastName());
+                ps.setString(4, owner.getAddress());
+                ps.setString(5, owner.getCity());
+                ps.setString(6, owner.getTelephone());
+            });
+        List<Pet> newPets = new ArrayList<>();
+        for (Owner owner : newOwners) {
+            newPets.addAll(owner.getPets());
+        }
+        JdbcBatchInsert.insert(jdbcTemplate, this.ids, "pets",
+            "INSERT INTO pets (id, name, birth_date, type_id, owner_id) VALUES (?, ?, ?, ?, ?)",
+            newPets, (ps, pet) -> {
+                ps.setInt(1, pet.getId());
+                ps.setString(2, pet.getName());
+                ps.setDate(3, pet.getBirthDate() != null ? Date.valueOf(pet.getBirthDate()) : null);
+                ps.setInt(4, pet.getType().getId());
+                ps.setInt(5, pet.getOwner().getId());
+            });
+        List<Visit> newVisits = new ArrayList<>();
+        for (Pet pet : newPets) {
+            newVisits.addAll(pet.getVisits());
         }
+        JdbcBatchInsert.insert(jdbcTemplate, this.ids, "visits",
+            "INSERT INTO visits (id, pet_id, visit_date, description) VALUES (?, ?, ?, ?)",
+            newVisits, (ps, visit) -> {
+                ps.setInt(1, visit.getId());
+                ps.setInt(2, visit.getPet().getId());
+                ps.setDate(3, visit.getDate() != null ? Date.valueOf(visit.getDate()) : null);
+                ps.setString(4, visit.getDescription());
+            });
     }
-    
+
+    public Collection<PetType> getPetTypes() throws DataAccessException {
+        return this.petTypes.execute();
+    }
+
 	@Override
 	public Collection<Owner> findAll() throws DataAccessException {
-		List<Owner> owners = this.namedParameterJdbcTemplate.query(
-	            "SELECT id, first_name, last_name, address, city, telephone FROM owners",
-	            new HashMap<String, Object>(),
-	            BeanPropertyRowMapper.newInstance(Owner.class));
-		for (Owner owner : owners) {
-            loadPetsAndVisits(owner);
-        }
+		List<Owner> owners = this.allOwners.execute();
+		loadPets(owners, OwnerFetchPlan.PETS_AND_VISITS);
 	    return owners;
 	}
 
+	@Override
+	public Collection<Owner> findAll(int afterId, int limit) throws DataAccessException {
+		Map<String, Object> params = new HashMap<>();
+		params.put("afterId", afterId);
+		params.put("limit", limit);
+		List<Owner> owners = this.ownersPage.executeByNamedParam(params);
+		loadPets(owners, OwnerFetchPlan.PETS_AND_VISITS);
+		return owners;
+	}
+
+	@Override
+	public Collection<Owner> findByLastName(String lastName, int afterId, int limit) throws DataAccessException {
+		Map<String, Object> params = new HashMap<>();
+		params.put("lastName", lastName + "%");
+		params.put("afterId", afterId);
+		params.put("limit", limit);
+		List<Owner> owners = this.ownersByLastNamePage.executeByNamedParam(params);
+		loadPets(owners, OwnerFetchPlan.PETS_AND_VISITS);
+		return owners;
+	}
+
+	/**
+	 * Owners, pets and visits are read with a single joined query; pet types are read once beforehand.
+	 */
+	@Override
+	public void streamAll(Consumer<Owner> action) throws DataAccessException {
+		EntityIndex<PetType> petTypes = EntityUtils.index(getPetTypes(), PetType.class);
+		JdbcOwnerStreamCallbackHandler handler = new JdbcOwnerStreamCallbackHandler(petTypes, action);
+		this.streamingJdbcTemplate.query(JdbcOwnerStreamCallbackHandler.SELECT, handler);
+		handler.finish();
+	}
+
+	/**
+	 * Deletes the owner with its pets and their visits with three set-based statements, whatever their number.
+	 */
 	@Override
 	@Transactional
 	public void delete(Owner owner) throws DataAccessException {
-		Map<String, Object> owner_params = new HashMap<>();
-		owner_params.put("id", owner.getId());
-        List<Pet> pets = owner.getPets();
-        // cascade delete pets
-        for (Pet pet : pets){
-        	Map<String, Object> pet_params = new HashMap<>();
-        	pet_params.put("id", pet.getId());
-        	// cascade delete visits
-        	List<Visit> visits = pet.getVisits();
-            for (Visit visit : visits){
-            	Map<String, Object> visit_params = new HashMap<>();
-            	visit_params.put("id", visit.getId());
-            	this.namedParameterJdbcTemplate.update("DELETE FROM visits WHERE id=:id", visit_params);
-            }
-            this.namedParameterJdbcTemplate.update("DELETE FROM pets WHERE id=:id", pet_params);
-        }
-        this.namedParameterJdbcTemplate.update("DELETE FROM owners WHERE id=:id", owner_params);
+		Map<String, Object> params = new HashMap<>();
+		params.put("id", owner.getId());
+		this.namedParameterJdbcTemplate.update(
+			"DELETE FROM visits WHERE pet_id IN (SELECT id FROM pets WHERE owner_id=:id)", params);
+		this.namedParameterJdbcTemplate.update("DELETE FROM pets WHERE owner_id=:id", params);
+		this.namedParameterJdbcTemplate.update("DELETE FROM owners WHERE id=:id", params);
 	}
 
 
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jdbc;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.model.Visit;
+import org.springframework.samples.petclinic.util.EntityIndex;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * {@link RowCallbackHandler} assembling {@link Owner Owners} with their {@link Pet Pets} and {@link Visit Visits} from
+ * the rows of an <code>owners LEFT JOIN pets LEFT JOIN visits</code> query ordered by owner and pet id. Every owner is
+ * handed over as soon as its last row has been read, so only the owner being assembled is held in memory.
+ * <p/>
+ * {@link #finish()} must be called once the query has completed to hand over the last owner.
+ */
+class JdbcOwnerStreamCallbackHandler implements RowCallbackHandler {
+
+    static final String SELECT =
+        "SELECT owners.id as owners_id, owners.first_name, owners.last_name, owners.address, owners.city, " +
+            "owners.telephone, owners.version as owner_version, pets.id as pets_id, pets.name, pets.birth_date, " +
+            "pets.type_id, pets.owner_id, pets.version as pet_version, " +
+            "visits.id as visit_id, visits.visit_date, visits.description " +
+            "FROM owners LEFT OUTER JOIN pets ON owners.id = pets.owner_id " +
+            "LEFT OUTER JOIN visits ON pets.id = visits.pet_id " +
+            "ORDER BY owners.id, pets.id, visits.id";
+
+    private final JdbcPetRowMapper petRowMapper = new JdbcPetRowMapper();
+
+    private final JdbcVisitRowMapper visitRowMapper = new JdbcVisitRowMapper();
+
+    private final EntityIndex<PetType> petTypes;
+
+    private final Consumer<Owner> action;
+
+    private Owner owner;
+
+    private JdbcPet pet;
+
+    JdbcOwnerStreamCallbackHandler(EntityIndex<PetType> petTypes, Consumer<Owner> action) {
+        this.petTypes = petTypes;
+        this.action = action;
+    }
+
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+        int ownerId = rs.getInt("owners_id");
+        if (this.owner == null || this.owner.getId() != ownerId) {
+            finish();
+            this.owner = mapOwner(rs, ownerId);
+        }
+        int petId = rs.getInt("pets_id");
+        if (rs.wasNull()) {
+            return;
+        }
+        if (this.pet == null || this.pet.getId() != petId) {
+            this.pet = this.petRowMapper.mapRow(rs, 0);
+            this.pet.setType(this.petTypes.get(this.pet.getTypeId()));
+            this.owner.addPet(this.pet);
+        }
+        rs.getInt("visit_id");
+        if (!rs.wasNull()) {
+            this.pet.addVisit(this.visitRowMapper.mapRow(rs, 0));
+        }
+    }
+
+    /**
+     * Hands over the owner being assembled, if any.
+     */
+    void finish() {
+        if (this.owner != null) {
+            this.action.accept(this.owner);
+            this.owner = null;
+            this.pet = null;
+        }
+    }
+
+    private Owner mapOwner(ResultSet rs, int ownerId) throws SQLException {
+        Owner owner = new Owner();
+        owner.setId(ownerId);
+        owner.setFirstName(rs.getString("first_name"));
+        owner.setLastName(rs.getString("last_name"));
+        owner.setAddress(rs.getString("address"));
+        owner.setCity(rs.getString("city"));
+        owner.setTelephone(rs.getString("telephone"));
+        owner.setVersion(rs.getInt("owner_version"));
+        return owner;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jdbc;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.PetType;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link RowMapper} implementation mapping the rows of a <code>pets JOIN types JOIN owners</code> query (see
+ * {@link #COLUMNS} and {@link #TYPE_AND_OWNER_JOIN}) to {@link JdbcPet JdbcPets} with their {@link PetType} and
+ * {@link Owner}.
+ * <p/>
+ * A new instance must be used for every query: pets, types and owners are instantiated once per id and shared between
+ * all the rows referencing them. Streaming reads only share the types, so that the memory used does not grow with the
+ * number of rows.
+ */
+public class JdbcPetGraphRowMapper implements RowMapper<JdbcPet> {
+
+    static final String COLUMNS =
+        "pets.id as pets_id, pets.name, pets.birth_date, pets.type_id, pets.owner_id, pets.version as pet_version, " +
+            "types.name as type_name, owners.first_name, owners.last_name, owners.address, owners.city, " +
+            "owners.telephone, owners.version as owner_version";
+
+    static final String TYPE_AND_OWNER_JOIN =
+        "JOIN types ON pets.type_id = types.id JOIN owners ON pets.owner_id = owners.id";
+
+    private final JdbcPetRowMapper petRowMapper = new JdbcPetRowMapper();
+
+    private final Map<Integer, JdbcPet> pets = new HashMap<>();
+
+    private final Map<Integer, PetType> petTypes = new HashMap<>();
+
+    private final Map<Integer, Owner> owners = new HashMap<>();
+
+    private final boolean retainInstances;
+
+    public JdbcPetGraphRowMapper() {
+        this(true);
+    }
+
+    /**
+     * @param retainInstances <code>false</code> to create new pets and owners for every row
+     */
+    public JdbcPetGraphRowMapper(boolean retainInstances) {
+        this.retainInstances = retainInstances;
+    }
+
+    @Override
+    public JdbcPet mapRow(ResultSet rs, int rowNum) throws SQLException {
+        JdbcPet pet = this.pets.get(rs.getInt("pets_id"));
+        if (pet == null) {
+            pet = this.petRowMapper.mapRow(rs, rowNum);
+            pet.setType(mapPetType(rs, pet.getTypeId()));
+            pet.setOwner(mapOwner(rs, pet.getOwnerId()));
+            if (this.retainInstances) {
+                this.pets.put(pet.getId(), pet);
+            }
+        }
+        return pet;
+    }
+
+    private PetType mapPetType(ResultSet rs, int typeId) throws SQLException {
+        PetType petType = this.petTypes.get(typeId);
+        if (petType == null) {
+            petType = new PetType();
+            petType.setId(typeId);
+            petType.setName(rs.getString("type_name"));
+            this.petTypes.put(typeId, petType);
+        }
+        return petType;
+    }
+
+    private Owner mapOwner(ResultSet rs, int ownerId) throws SQLException {
+        Owner owner = this.owners.get(ownerId);
+        if (owner == null) {
+            owner = new Owner();
+            owner.setId(ownerId);
+            owner.setFirstName(rs.getString("first_name"));
+            owner.setLastName(rs.getString("last_name"));
+            owner.setAddress(rs.getString("address"));
+            owner.setCity(rs.getString("city"));
+            owner.setTelephone(rs.getString("telephone"));
+            owner.setVersion(rs.getInt("owner_version"));
+            if (this.retainInstances) {
+                this.owners.put(ownerId, owner);
+            }
+        }
+        return owner;
+    }
+}
@@ -20,14 +20,17 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import javax.sql.DataSource;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.dao.support.DataAccessUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
@@ -36,9 +39,8 @@ import org.springframework.samples.petclinic.model.Owner;
 import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.model.PetType;
 import org.springframework.samples.petclinic.model.Visit;
-import org.springframework.samples.petclinic.repository.OwnerRepository;
 import org.springframework.samples.petclinic.repository.PetRepository;
-import org.springframework.samples.petclinic.repository.VisitRepository;
+import org.springframework.samples.petclinic.util.EntityIndex;
 import org.springframework.samples.petclinic.util.EntityUtils;
 import org.springframework.stereotype.Repository;
 
@@ -59,62 +61,96 @@ public class JdbcPetRepositoryImpl implements PetRepository {
 
     private SimpleJdbcInsert insertPet;
 
-    private OwnerRepository ownerRepository;
+    private JdbcIdAllocator ids;
 
-    private VisitRepository visitRepository;
+    private JdbcVersionedUpdate updatePet;
 
+    private JdbcTemplate streamingJdbcTemplate;
+
+    private JdbcNamedEntityQuery<PetType> petTypes;
+
+    private JdbcOwnerQuery ownersByLastName;
 
     @Autowired
-    public JdbcPetRepositoryImpl(DataSource dataSource,
-    		OwnerRepository ownerRepository,
-    		VisitRepository visitRepository) {
+    public JdbcPetRepositoryImpl(DataSource dataSource, JdbcIdAllocator ids,
+    		@Value("${petclinic.streaming.fetch-size:500}") int streamingFetchSize) {
         this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
 
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(streamingFetchSize);
+
         this.insertPet = new SimpleJdbcInsert(dataSource)
-            .withTableName("pets")
-            .usingGeneratedKeyColumns("id");
+            .withTableName("pets");
+        this.ids = ids;
+
+        this.updatePet = new JdbcVersionedUpdate(this.namedParameterJdbcTemplate, Pet.class, "pets")
+            .column("name", "name")
+            .column("birthDate", "birth_date")
+            .column("type", "type_id");
 
-        this.ownerRepository = ownerRepository;
-        this.visitRepository = visitRepository;
+        this.petTypes = new JdbcNamedEntityQuery<>(dataSource, "types", PetType::new, "ORDER BY name");
+        this.ownersByLastName = new JdbcOwnerQuery(dataSource, "ORDER BY last_name");
     }
 
     @Override
     public List<PetType> findPetTypes() throws DataAccessException {
-        Map<String, Object> params = new HashMap<>();
-        return this.namedParameterJdbcTemplate.query(
-            "SELECT id, name FROM types ORDER BY name",
-            params,
-            BeanPropertyRowMapper.newInstance(PetType.class));
+        return this.petTypes.execute();
     }
 
+    /**
+     * Loads the pet with its type and the header of its owner in one query, then its visits: neither the other pets of
+     * the owner nor the other pet types are read.
+     */
     @Override
     public Pet findById(int id) throws DataAccessException {
-        Integer ownerId;
+        Map<String, Object> params = new HashMap<>();
+        params.put("id", id);
+        JdbcPet pet;
         try {
-            Map<String, Object> params = new HashMap<>();
-            params.put("id", id);
-            ownerId = this.namedParameterJdbcTemplate.queryForObject("SELECT owner_id FROM pets WHERE id=:id", params, Integer.class);
+            pet = this.namedParameterJdbcTemplate.queryForObject(
+                "SELECT " + JdbcPetGraphRowMapper.COLUMNS + " FROM pets " + JdbcPetGraphRowMapper.TYPE_AND_OWNER_JOIN +
+                    " WHERE pets.id=:id",
+                params,
+                new JdbcPetGraphRowMapper());
         } catch (EmptyResultDataAccessException ex) {
             throw new ObjectRetrievalFailureException(Pet.class, id);
         }
-        Owner owner = this.ownerRepository.findById(ownerId);
-        return EntityUtils.getById(owner.getPets(), Pet.class, id);
+        List<Visit> visits = this.namedParameterJdbcTemplate.query(
+            "SELECT id as visit_id, visit_date, description FROM visits WHERE pet_id=:id",
+            params, new JdbcVisitRowMapper());
+        for (Visit visit : visits) {
+            pet.addVisit(visit);
+        }
+        return pet;
     }
 
     @Override
     public void save(Pet pet) throws DataAccessException {
         if (pet.isNew()) {
-            Number newKey = this.insertPet.executeAndReturnKey(
-                createPetParameterSource(pet));
-            pet.setId(newKey.intValue());
+            pet.setVersion(0);
+            pet.setId(this.ids.nextId("pets"));
+            this.insertPet.execute(createPetParameterSource(pet));
         } else {
             this.namedParameterJdbcTemplate.update(
                 "UPDATE pets SET name=:name, birth_date=:birth_date, type_id=:type_id, " +
-                    "owner_id=:owner_id WHERE id=:id",
+                    "owner_id=:owner_id, version=version+1 WHERE id=:id",
                 createPetParameterSource(pet));
         }
     }
 
+    @Override
+    public int update(int id, int version, Map<String, Object> changes) throws DataAccessException {
+        return this.updatePet.update(id, version, changes);
+    }
+
+    @Override
+    public Integer findVersionById(int id) throws DataAccessException {
+        Map<String, Object> params = new HashMap<>();
+        params.put("id", id);
+        return DataAccessUtils.singleResult(
+            this.namedParameterJdbcTemplate.queryForList("SELECT version FROM pets WHERE id=:id", params, Integer.class));
+    }
+
     /**
      * Creates a {@link MapSqlParameterSource} based on data values from the supplied {@link Pet} instance.
      */
@@ -124,7 +160,8 @@ public class JdbcPetRepositoryImpl implements PetRepository {
             .addValue("name", pet.getName())
             .addValue("birth_date", pet.getBirthDate())
             .addValue("type_id", pet.getType().getId())
-            .addValue("owner_id", pet.getOwner().getId());
+            .addValue("owner_id", pet.getOwner().getId())
+            .addValue("version", pet.getVersion());
     }
     
 	@Override
@@ -133,37 +170,48 @@ public class JdbcPetRepositoryImpl implements PetRepository {
 		Collection<Pet> pets = new ArrayList<Pet>();
 		Collection<JdbcPet> jdbcPets = new ArrayList<JdbcPet>();
 		jdbcPets = this.namedParameterJdbcTemplate
-				.query("SELECT pets.id as pets_id, name, birth_date, type_id, owner_id FROM pets",
+				.query("SELECT pets.id as pets_id, name, birth_date, type_id, owner_id, version as pet_version FROM pets",
 				params,
 				new JdbcPetRowMapper());
-		Collection<PetType> petTypes = this.namedParameterJdbcTemplate.query("SELECT id, name FROM types ORDER BY name",
-				new HashMap<String,
-				Object>(), BeanPropertyRowMapper.newInstance(PetType.class));
-		Collection<Owner> owners = this.namedParameterJdbcTemplate.query(
-				"SELECT id, first_name, last_name, address, city, telephone FROM owners ORDER BY last_name",
-				new HashMap<String, Object>(),
-				BeanPropertyRowMapper.newInstance(Owner.class));
+		Collection<PetType> petTypes = this.petTypes.execute();
+		Collection<Owner> owners = this.ownersByLastName.execute();
+		EntityIndex<PetType> petTypesById = EntityUtils.index(petTypes, PetType.class);
+		EntityIndex<Owner> ownersById = EntityUtils.index(owners, Owner.class);
 		for (JdbcPet jdbcPet : jdbcPets) {
-			jdbcPet.setType(EntityUtils.getById(petTypes, PetType.class, jdbcPet.getTypeId()));
-			jdbcPet.setOwner(EntityUtils.getById(owners, Owner.class, jdbcPet.getOwnerId()));
+			jdbcPet.setType(petTypesById.getById(jdbcPet.getTypeId()));
+			jdbcPet.setOwner(ownersById.getById(jdbcPet.getOwnerId()));
 			// TODO add visits
 			pets.add(jdbcPet);
 		}
 		return pets;
 	}
 
+	@Override
+	public Collection<Pet> findAll(int afterId, int limit) throws DataAccessException {
+		Map<String, Object> params = new HashMap<>();
+		params.put("afterId", afterId);
+		params.put("limit", limit);
+		return new ArrayList<>(this.namedParameterJdbcTemplate.query(
+			"SELECT " + JdbcPetGraphRowMapper.COLUMNS + " FROM pets " + JdbcPetGraphRowMapper.TYPE_AND_OWNER_JOIN +
+				" WHERE pets.id > :afterId ORDER BY pets.id LIMIT :limit",
+			params,
+			new JdbcPetGraphRowMapper()));
+	}
+
+	@Override
+	public void streamAll(Consumer<Pet> action) throws DataAccessException {
+		JdbcPetStreamCallbackHandler handler = new JdbcPetStreamCallbackHandler(action);
+		this.streamingJdbcTemplate.query(JdbcPetStreamCallbackHandler.SELECT, handler);
+		handler.finish();
+	}
+
 	@Override
 	public void delete(Pet pet) throws DataAccessException {
-		Map<String, Object> pet_params = new HashMap<>();
-		pet_params.put("id", pet.getId());
-		List<Visit> visits = pet.getVisits();
+		Map<String, Object> params = new HashMap<>();
+		params.put("id", pet.getId());
 		// cascade delete visits
-		for (Visit visit : visits) {
-			Map<String, Object> visit_params = new HashMap<>();
-			visit_params.put("id", visit.getId());
-			this.namedParameterJdbcTemplate.update("DELETE FROM visits WHERE id=:id", visit_params);
-		}
-		this.namedParameterJdbcTemplate.update("DELETE FROM pets WHERE id=:id", pet_params);
+		this.namedParameterJdbcTemplate.update("DELETE FROM visits WHERE pet_id=:id", params);
+		this.namedParameterJdbcTemplate.update("DELETE FROM pets WHERE id=:id", params);
 	}
 
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jdbc;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.Visit;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * {@link RowCallbackHandler} assembling {@link Pet Pets} with their type, owner and {@link Visit Visits} from the rows
+ * of a <code>pets JOIN types JOIN owners LEFT JOIN visits</code> query ordered by pet id. Every pet is handed over as
+ * soon as its last row has been read, so only the pet being assembled is held in memory.
+ * <p/>
+ * {@link #finish()} must be called once the query has completed to hand over the last pet.
+ */
+class JdbcPetStreamCallbackHandler implements RowCallbackHandler {
+
+    static final String SELECT =
+        "SELECT " + JdbcPetGraphRowMapper.COLUMNS + ", visits.id as visit_id, visits.visit_date, visits.description " +
+            "FROM pets " + JdbcPetGraphRowMapper.TYPE_AND_OWNER_JOIN +
+            " LEFT OUTER JOIN visits ON pets.id = visits.pet_id ORDER BY pets.id, visits.id";
+
+    private final JdbcPetGraphRowMapper petRowMapper = new JdbcPetGraphRowMapper(false);
+
+    private final JdbcVisitRowMapper visitRowMapper = new JdbcVisitRowMapper();
+
+    private final Consumer<Pet> action;
+
+    private JdbcPet pet;
+
+    JdbcPetStreamCallbackHandler(Consumer<Pet> action) {
+        this.action = action;
+    }
+
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+        int petId = rs.getInt("pets_id");
+        if (this.pet == null || this.pet.getId() != petId) {
+            finish();
+            this.pet = this.petRowMapper.mapRow(rs, 0);
+        }
+        rs.getInt("visit_id");
+        if (!rs.wasNull()) {
+            this.pet.addVisit(this.visitRowMapper.mapRow(rs, 0));
+        }
+    }
+
+    /**
+     * Hands over the pet being assembled, if any.
+     */
+    void finish() {
+        if (this.pet != null) {
+            this.action.accept(this.pet);
+            this.pet = null;
+        }
+    }
+}
@@ -16,10 +16,9 @@
 
 package org.springframework.samples.petclinic.repository.jdbc;
 
-import java.util.ArrayList;
+import java.sql.Types;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import javax.sql.DataSource;
@@ -27,15 +26,12 @@ import javax.sql.DataSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
-import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.SqlParameter;
 import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.orm.ObjectRetrievalFailureException;
-import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.model.PetType;
-import org.springframework.samples.petclinic.model.Visit;
 import org.springframework.samples.petclinic.repository.PetTypeRepository;
 import org.springframework.stereotype.Repository;
 
@@ -51,46 +47,46 @@ public class JdbcPetTypeRepositoryImpl implements PetTypeRepository {
 	private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 	
 	private SimpleJdbcInsert insertPetType;
+
+	private JdbcIdAllocator ids;
+
+	private JdbcNamedEntityQuery<PetType> petTypeById;
+
+	private JdbcNamedEntityQuery<PetType> allPetType;
 	
 	@Autowired
-	public JdbcPetTypeRepositoryImpl(DataSource dataSource) {
+	public JdbcPetTypeRepositoryImpl(DataSource dataSource, JdbcIdAllocator ids) {
 		this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
 		this.insertPetType = new SimpleJdbcInsert(dataSource)
-	            .withTableName("types")
-	            .usingGeneratedKeyColumns("id");
+	            .withTableName("types");
+		this.ids = ids;
+		this.petTypeById = new JdbcNamedEntityQuery<>(dataSource, "types", PetType::new, "WHERE id= :id",
+			new SqlParameter("id", Types.INTEGER));
+		this.allPetType = new JdbcNamedEntityQuery<>(dataSource, "types", PetType::new, "");
 	}
 
 	@Override
 	public PetType findById(int id) {
-		PetType petType;
-        try {
-            Map<String, Object> params = new HashMap<>();
-            params.put("id", id);
-            petType = this.namedParameterJdbcTemplate.queryForObject(
-                "SELECT id, name FROM types WHERE id= :id",
-                params,
-                BeanPropertyRowMapper.newInstance(PetType.class));
-        } catch (EmptyResultDataAccessException ex) {
-            throw new ObjectRetrievalFailureException(PetType.class, id);
-        }
-        return petType;
+		Map<String, Object> params = new HashMap<>();
+		params.put("id", id);
+		PetType petType = this.petTypeById.findObjectByNamedParam(params);
+		if (petType == null) {
+			throw new ObjectRetrievalFailureException(PetType.class, id);
+		}
+		return petType;
 	}
 
 	@Override
 	public Collection<PetType> findAll() throws DataAccessException {
-		Map<String, Object> params = new HashMap<>();
-        return this.namedParameterJdbcTemplate.query(
-            "SELECT id, name FROM types",
-            params,
-            BeanPropertyRowMapper.newInstance(PetType.class));
+		return this.allPetType.execute();
 	}
 
 	@Override
 	public void save(PetType petType) throws DataAccessException {
 		BeanPropertySqlParameterSource parameterSource = new BeanPropertySqlParameterSource(petType);
 		if (petType.isNew()) {
-            Number newKey = this.insertPetType.executeAndReturnKey(parameterSource);
-            petType.setId(newKey.intValue());
+            petType.setId(this.ids.nextId("types"));
+            this.insertPetType.execute(parameterSource);
         } else {
             this.namedParameterJdbcTemplate.update("UPDATE types SET name=:name WHERE id=:id",
                 parameterSource);
@@ -99,31 +95,13 @@ public class JdbcPetTypeRepositoryImpl implements PetTypeRepository {
 
 	@Override
 	public void delete(PetType petType) throws DataAccessException {
-		Map<String, Object> pettype_params = new HashMap<>();
-		pettype_params.put("id", petType.getId());
-		List<Pet> pets = new ArrayList<Pet>();
-		pets = this.namedParameterJdbcTemplate.
-    			query("SELECT pets.id, name, birth_date, type_id, owner_id FROM pets WHERE type_id=:id",
-    			pettype_params,
-    			BeanPropertyRowMapper.newInstance(Pet.class));
-		// cascade delete pets
-		for (Pet pet : pets){
-			Map<String, Object> pet_params = new HashMap<>();
-			pet_params.put("id", pet.getId());
-			List<Visit> visits = new ArrayList<Visit>();
-			visits = this.namedParameterJdbcTemplate.query(
-		            "SELECT id, pet_id, visit_date, description FROM visits WHERE pet_id = :id",
-		            pet_params,
-		            BeanPropertyRowMapper.newInstance(Visit.class));
-	        // cascade delete visits
-	        for (Visit visit : visits){
-	        	Map<String, Object> visit_params = new HashMap<>();
-	        	visit_params.put("id", visit.getId());
-	        	this.namedParameterJdbcTemplate.update("DELETE FROM visits WHERE id=:id", visit_params);
-	        }
-	        this.namedParameterJdbcTemplate.update("DELETE FROM pets WHERE id=:id", pet_params);
-        }
-        this.namedParameterJdbcTemplate.update("DELETE FROM types WHERE id=:id", pettype_params);
+		Map<String, Object> params = new HashMap<>();
+		params.put("id", petType.getId());
+		// cascade delete the pets of this type and their visits
+		this.namedParameterJdbcTemplate.update(
+			"DELETE FROM visits WHERE pet_id IN (SELECT id FROM pets WHERE type_id=:id)", params);
+		this.namedParameterJdbcTemplate.update("DELETE FROM pets WHERE type_id=:id", params);
+		this.namedParameterJdbcTemplate.update("DELETE FROM types WHERE id=:id", params);
 	}
 
 }
@@ -16,6 +16,7 @@
 
 package org.springframework.samples.petclinic.repository.jdbc;
 
+import java.sql.Types;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -25,8 +26,7 @@ import javax.sql.DataSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
-import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.SqlParameter;
 import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
@@ -48,45 +48,45 @@ public class JdbcSpecialtyRepositoryImpl implements SpecialtyRepository {
 	
 	private SimpleJdbcInsert insertSpecialty;
 
+	private JdbcIdAllocator ids;
+
+	private JdbcNamedEntityQuery<Specialty> specialtyById;
+
+	private JdbcNamedEntityQuery<Specialty> allSpecialties;
+
 	@Autowired
-	public JdbcSpecialtyRepositoryImpl(DataSource dataSource) {
+	public JdbcSpecialtyRepositoryImpl(DataSource dataSource, JdbcIdAllocator ids) {
 		this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
 		this.insertSpecialty = new SimpleJdbcInsert(dataSource)
-	            .withTableName("specialties")
-	            .usingGeneratedKeyColumns("id");
+	            .withTableName("specialties");
+		this.ids = ids;
+		this.specialtyById = new JdbcNamedEntityQuery<>(dataSource, "specialties", Specialty::new, "WHERE id= :id",
+			new SqlParameter("id", Types.INTEGER));
+		this.allSpecialties = new JdbcNamedEntityQuery<>(dataSource, "specialties", Specialty::new, "");
 	}
 
 	@Override
 	public Specialty findById(int id) {
-		Specialty specialty;
-        try {
-            Map<String, Object> params = new HashMap<>();
-            params.put("id", id);
-            specialty = this.namedParameterJdbcTemplate.queryForObject(
-                "SELECT id, name FROM specialties WHERE id= :id",
-                params,
-                BeanPropertyRowMapper.newInstance(Specialty.class));
-        } catch (EmptyResultDataAccessException ex) {
-            throw new ObjectRetrievalFailureException(Specialty.class, id);
-        }
-        return specialty;
+		Map<String, Object> params = new HashMap<>();
+		params.put("id", id);
+		Specialty specialty = this.specialtyById.findObjectByNamedParam(params);
+		if (specialty == null) {
+			throw new ObjectRetrievalFailureException(Specialty.class, id);
+		}
+		return specialty;
 	}
 
 	@Override
 	public Collection<Specialty> findAll() throws DataAccessException {
-		Map<String, Object> params = new HashMap<>();
-        return this.namedParameterJdbcTemplate.query(
-            "SELECT id, name FROM specialties",
-            params,
-            BeanPropertyRowMapper.newInstance(Specialty.class));
+		return this.allSpecialties.execute();
 	}
 
 	@Override
 	public void save(Specialty specialty) throws DataAccessException {
 		BeanPropertySqlParameterSource parameterSource = new BeanPropertySqlParameterSource(specialty);
 		if (specialty.isNew()) {
-            Number newKey = this.insertSpecialty.executeAndReturnKey(parameterSource);
-            specialty.setId(newKey.intValue());
+            specialty.setId(this.ids.nextId("specialties"));
+            this.insertSpecialty.execute(parameterSource);
         } else {
             this.namedParameterJdbcTemplate.update("UPDATE specialties SET name=:name WHERE id=:id",
                 parameterSource);
@@ -1,5 +1,8 @@
 package org.springframework.samples.petclinic.repository.jdbc;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -8,11 +11,11 @@ import javax.sql.DataSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
-import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.SqlParameter;
 import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.jdbc.object.MappingSqlQuery;
 import org.springframework.samples.petclinic.model.Role;
 import org.springframework.samples.petclinic.model.User;
 import org.springframework.samples.petclinic.repository.UserRepository;
@@ -24,11 +27,15 @@ public class JdbcUserRepositoryImpl implements UserRepository {
 
     private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
     private SimpleJdbcInsert insertUser;
+    private UserByUsernameQuery userByUsername;
+    private JdbcIdAllocator ids;
 
     @Autowired
-    public JdbcUserRepositoryImpl(DataSource dataSource) {
+    public JdbcUserRepositoryImpl(DataSource dataSource, JdbcIdAllocator ids) {
         this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
         this.insertUser = new SimpleJdbcInsert(dataSource).withTableName("users");
+        this.userByUsername = new UserByUsernameQuery(dataSource);
+        this.ids = ids;
     }
 
     @Override
@@ -36,22 +43,19 @@ public class JdbcUserRepositoryImpl implements UserRepository {
 
         BeanPropertySqlParameterSource parameterSource = new BeanPropertySqlParameterSource(user);
 
-        try {
-            getByUsername(user.getUsername());
+        if (getByUsername(user.getUsername()) != null) {
             this.namedParameterJdbcTemplate.update("UPDATE users SET password=:password, enabled=:enabled WHERE username=:username", parameterSource);
-        } catch (EmptyResultDataAccessException e) {
+        } else {
             this.insertUser.execute(parameterSource);
-        } finally {
-            updateUserRoles(user);
         }
+        updateUserRoles(user);
     }
 
     private User getByUsername(String username) {
 
         Map<String, Object> params = new HashMap<>();
         params.put("username", username);
-        return this.namedParameterJdbcTemplate.queryForObject("SELECT * FROM users WHERE username=:username",
-            params, BeanPropertyRowMapper.newInstance(User.class));
+        return this.userByUsername.findObjectByNamedParam(params);
     }
 
     private void updateUserRoles(User user) {
@@ -61,8 +65,31 @@ public class JdbcUserRepositoryImpl implements UserRepository {
         for (Role role : user.getRoles()) {
             params.put("role", role.getName());
             if (role.getName() != null) {
-                this.namedParameterJdbcTemplate.update("INSERT INTO roles(username, role) VALUES (:username, :role)", params);
+                params.put("id", this.ids.nextId("roles"));
+                this.namedParameterJdbcTemplate.update("INSERT INTO roles(id, username, role) VALUES (:id, :username, :role)", params);
             }
         }
     }
+
+    /**
+     * Reads a user without its roles, the columns by position.
+     */
+    private static class UserByUsernameQuery extends MappingSqlQuery<User> {
+
+        UserByUsernameQuery(DataSource dataSource) {
+            super(dataSource, "SELECT username, password, enabled FROM users WHERE username=:username");
+            declareParameter(new SqlParameter("username", Types.VARCHAR));
+            compile();
+        }
+
+        @Override
+        protected User mapRow(ResultSet rs, int rowNum) throws SQLException {
+            User user = new User();
+            user.setUsername(rs.getString(1));
+            user.setPassword(rs.getString(2));
+            boolean enabled = rs.getBoolean(3);
+            user.setEnabled(rs.wasNull() ? null : enabled);
+            return user;
+        }
+    }
 }
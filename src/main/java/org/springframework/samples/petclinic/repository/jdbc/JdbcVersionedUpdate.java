@@ -0,0 +1,86 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jdbc;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.samples.petclinic.model.BaseEntity;
+
+/**
+ * Conditional update of some columns of a versioned table: <code>UPDATE table SET column=:column, ...,
+ * version=version+1 WHERE id=:id AND version=:version</code>. Only the properties mapped to a column with
+ * {@link #column} can be updated; entity values are bound by id.
+ */
+final class JdbcVersionedUpdate {
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final Class<?> entityClass;
+
+    private final String tableName;
+
+    private final Map<String, String> columns = new HashMap<>();
+
+    JdbcVersionedUpdate(NamedParameterJdbcTemplate namedParameterJdbcTemplate, Class<?> entityClass,
+                        String tableName) {
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.entityClass = entityClass;
+        this.tableName = tableName;
+    }
+
+    JdbcVersionedUpdate column(String property, String column) {
+        this.columns.put(property, column);
+        return this;
+    }
+
+    /**
+     * @return the new version of the row
+     * @throws ObjectRetrievalFailureException         if there is no row with the given id
+     * @throws ObjectOptimisticLockingFailureException if the row is not at the given version anymore
+     */
+    int update(int id, int version, Map<String, Object> changes) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("id", id)
+            .addValue("version", version);
+        StringBuilder sql = new StringBuilder("UPDATE ").append(this.tableName).append(" SET ");
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            String column = this.columns.get(change.getKey());
+            if (column == null) {
+                throw new InvalidDataAccessApiUsageException(
+                    "Property " + change.getKey() + " of " + this.entityClass.getSimpleName() + " cannot be updated");
+            }
+            Object value = change.getValue();
+            params.addValue(column, value instanceof BaseEntity ? ((BaseEntity) value).getId() : value);
+            sql.append(column).append("=:").append(column).append(", ");
+        }
+        sql.append("version=version+1 WHERE id=:id AND version=:version");
+        if (this.namedParameterJdbcTemplate.update(sql.toString(), params) == 0) {
+            Integer count = this.namedParameterJdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM " + this.tableName + " WHERE id=:id", params, Integer.class);
+            if (count == null || count == 0) {
+                throw new ObjectRetrievalFailureException(this.entityClass, id);
+            }
+            throw new ObjectOptimisticLockingFailureException(this.entityClass, id);
+        }
+        return version + 1;
+    }
+}
@@ -15,8 +15,6 @@
  */
 package org.springframework.samples.petclinic.repository.jdbc;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -28,8 +26,7 @@ import javax.sql.DataSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
-import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.dao.support.DataAccessUtils;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
@@ -38,7 +35,6 @@ import org.springframework.orm.ObjectRetrievalFailureException;
 import org.springframework.samples.petclinic.model.Specialty;
 import org.springframework.samples.petclinic.model.Vet;
 import org.springframework.samples.petclinic.repository.VetRepository;
-import org.springframework.samples.petclinic.util.EntityUtils;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -60,97 +56,101 @@ public class JdbcVetRepositoryImpl implements VetRepository {
     private JdbcTemplate jdbcTemplate;
 	private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 	private SimpleJdbcInsert insertVet;
+	private JdbcIdAllocator ids;
+	private JdbcVersionedUpdate updateVet;
+
+    private static final String VET_SPECIALTY_COLUMNS =
+        "vets.id as vets_id, vets.first_name, vets.last_name, vets.version, specialties.id as specialty_id, specialties.name as specialty_name";
+
+    private static final String VET_SPECIALTY_JOIN =
+        "vets LEFT OUTER JOIN vet_specialties ON vets.id = vet_specialties.vet_id " +
+            "LEFT OUTER JOIN specialties ON vet_specialties.specialty_id = specialties.id";
 
     @Autowired
-    public JdbcVetRepositoryImpl(DataSource dataSource, JdbcTemplate jdbcTemplate) {
+    public JdbcVetRepositoryImpl(DataSource dataSource, JdbcTemplate jdbcTemplate, JdbcIdAllocator ids) {
         this.jdbcTemplate = jdbcTemplate;
-		this.insertVet = new SimpleJdbcInsert(dataSource).withTableName("vets").usingGeneratedKeyColumns("id");
+		this.insertVet = new SimpleJdbcInsert(dataSource).withTableName("vets");
+		this.ids = ids;
 		this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+		this.updateVet = new JdbcVersionedUpdate(this.namedParameterJdbcTemplate, Vet.class, "vets")
+			.column("firstName", "first_name")
+			.column("lastName", "last_name");
     }
 
     /**
-     * Refresh the cache of Vets that the ClinicService is holding.
+     * Refresh the cache of Vets that the ClinicService is holding. Vets and their specialties are read with a single
+     * joined query instead of one <code>vet_specialties</code> query per vet.
      */
     @Override
     public Collection<Vet> findAll() throws DataAccessException {
-        List<Vet> vets = new ArrayList<>();
-        // Retrieve the list of all vets.
-        vets.addAll(this.jdbcTemplate.query(
-            "SELECT id, first_name, last_name FROM vets ORDER BY last_name,first_name",
-            BeanPropertyRowMapper.newInstance(Vet.class)));
-
-        // Retrieve the list of all possible specialties.
-        final List<Specialty> specialties = this.jdbcTemplate.query(
-            "SELECT id, name FROM specialties",
-            BeanPropertyRowMapper.newInstance(Specialty.class));
-
-        // Build each vet's list of specialties.
-        for (Vet vet : vets) {
-            final List<Integer> vetSpecialtiesIds = this.jdbcTemplate.query(
-                "SELECT specialty_id FROM vet_specialties WHERE vet_id=?",
-                new BeanPropertyRowMapper<Integer>() {
-                    @Override
-                    public Integer mapRow(ResultSet rs, int row) throws SQLException {
-                        return rs.getInt(1);
-                    }
-                },
-                vet.getId());
-            for (int specialtyId : vetSpecialtiesIds) {
-                Specialty specialty = EntityUtils.getById(specialties, Specialty.class, specialtyId);
-                vet.addSpecialty(specialty);
-            }
-        }
-        return vets;
+        return this.jdbcTemplate.query(
+            "SELECT " + VET_SPECIALTY_COLUMNS + " FROM " + VET_SPECIALTY_JOIN +
+                " ORDER BY vets.last_name, vets.first_name, vets.id",
+            new JdbcVetSpecialtyExtractor());
     }
-    
+
 	@Override
 	public Vet findById(int id) throws DataAccessException {
-		Vet vet;
-		try {
-			Map<String, Object> vet_params = new HashMap<>();
-			vet_params.put("id", id);
-			vet = this.namedParameterJdbcTemplate.queryForObject(
-					"SELECT id, first_name, last_name FROM vets WHERE id= :id",
-					vet_params,
-					BeanPropertyRowMapper.newInstance(Vet.class));
-
-			final List<Specialty> specialties = this.namedParameterJdbcTemplate.query(
-					"SELECT id, name FROM specialties", vet_params, BeanPropertyRowMapper.newInstance(Specialty.class));
-
-			final List<Integer> vetSpecialtiesIds = this.namedParameterJdbcTemplate.query(
-					"SELECT specialty_id FROM vet_specialties WHERE vet_id=:id",
-					vet_params,
-					new BeanPropertyRowMapper<Integer>() {
-						@Override
-						public Integer mapRow(ResultSet rs, int row) throws SQLException {
-							return rs.getInt(1);
-						}
-					});
-			for (int specialtyId : vetSpecialtiesIds) {
-				Specialty specialty = EntityUtils.getById(specialties, Specialty.class, specialtyId);
-				vet.addSpecialty(specialty);
-			}
-
-		} catch (EmptyResultDataAccessException ex) {
+		Map<String, Object> vet_params = new HashMap<>();
+		vet_params.put("id", id);
+		List<Vet> vets = this.namedParameterJdbcTemplate.query(
+				"SELECT " + VET_SPECIALTY_COLUMNS + " FROM " + VET_SPECIALTY_JOIN + " WHERE vets.id = :id",
+				vet_params,
+				new JdbcVetSpecialtyExtractor());
+		if (vets.isEmpty()) {
 			throw new ObjectRetrievalFailureException(Vet.class, id);
 		}
-		return vet;
+		return vets.get(0);
+	}
+
+	/**
+	 * The page is bounded on the vets first, so that the rows of the specialties join do not count against the limit.
+	 */
+	@Override
+	public Collection<Vet> findAll(int afterId, int limit) throws DataAccessException {
+		Map<String, Object> params = new HashMap<>();
+		params.put("afterId", afterId);
+		params.put("limit", limit);
+		List<Integer> ids = this.namedParameterJdbcTemplate.queryForList(
+				"SELECT id FROM vets WHERE id > :afterId ORDER BY id LIMIT :limit", params, Integer.class);
+		if (ids.isEmpty()) {
+			return new ArrayList<>();
+		}
+		params.put("ids", ids);
+		return this.namedParameterJdbcTemplate.query(
+				"SELECT " + VET_SPECIALTY_COLUMNS + " FROM " + VET_SPECIALTY_JOIN + " WHERE vets.id IN (:ids) ORDER BY vets.id",
+				params,
+				new JdbcVetSpecialtyExtractor());
 	}
 
 	@Override
 	public void save(Vet vet) throws DataAccessException {
-		BeanPropertySqlParameterSource parameterSource = new BeanPropertySqlParameterSource(vet);
 		if (vet.isNew()) {
-			Number newKey = this.insertVet.executeAndReturnKey(parameterSource);
-			vet.setId(newKey.intValue());
+			vet.setVersion(0);
+			vet.setId(this.ids.nextId("vets"));
+			this.insertVet.execute(new BeanPropertySqlParameterSource(vet));
 			updateVetSpecialties(vet);
 		} else {
+			BeanPropertySqlParameterSource parameterSource = new BeanPropertySqlParameterSource(vet);
 			this.namedParameterJdbcTemplate
-					.update("UPDATE vets SET first_name=:firstName, last_name=:lastName WHERE id=:id", parameterSource);
+					.update("UPDATE vets SET first_name=:firstName, last_name=:lastName, version=version+1 WHERE id=:id", parameterSource);
 			updateVetSpecialties(vet);
 		}
 	}
 
+	@Override
+	public int update(int id, int version, Map<String, Object> changes) throws DataAccessException {
+		return this.updateVet.update(id, version, changes);
+	}
+
+	@Override
+	public Integer findVersionById(int id) throws DataAccessException {
+		Map<String, Object> params = new HashMap<>();
+		params.put("id", id);
+		return DataAccessUtils.singleResult(
+			this.namedParameterJdbcTemplate.queryForList("SELECT version FROM vets WHERE id=:id", params, Integer.class));
+	}
+
 	@Override
 	public void delete(Vet vet) throws DataAccessException {
 		Map<String, Object> params = new HashMap<>();
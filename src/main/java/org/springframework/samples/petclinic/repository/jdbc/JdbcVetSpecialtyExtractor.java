@@ -0,0 +1,90 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jdbc;
+
+import org.springframework.data.jdbc.core.OneToManyResultSetExtractor;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.samples.petclinic.model.Specialty;
+import org.springframework.samples.petclinic.model.Vet;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link ResultSetExtractor} implementation assembling {@link Vet Vets} and their {@link Specialty Specialties}
+ * from a single <code>vets LEFT JOIN vet_specialties LEFT JOIN specialties</code> query. The rows of a vet must be
+ * contiguous. Every specialty is instantiated once per query and shared between the vets having it.
+ */
+public class JdbcVetSpecialtyExtractor extends
+    OneToManyResultSetExtractor<Vet, Specialty, Integer> {
+
+    public JdbcVetSpecialtyExtractor() {
+        super(new VetRowMapper(), new SharedSpecialtyRowMapper());
+    }
+
+    @Override
+    protected Integer mapPrimaryKey(ResultSet rs) throws SQLException {
+        return rs.getInt("vets_id");
+    }
+
+    @Override
+    protected Integer mapForeignKey(ResultSet rs) throws SQLException {
+        if (rs.getObject("specialty_id") == null) {
+            return null;
+        } else {
+            return rs.getInt("vets_id");
+        }
+    }
+
+    @Override
+    protected void addChild(Vet root, Specialty child) {
+        root.addSpecialty(child);
+    }
+
+    private static class VetRowMapper implements RowMapper<Vet> {
+
+        @Override
+        public Vet mapRow(ResultSet rs, int rowNum) throws SQLException {
+            Vet vet = new Vet();
+            vet.setId(rs.getInt("vets_id"));
+            vet.setFirstName(rs.getString("first_name"));
+            vet.setLastName(rs.getString("last_name"));
+            vet.setVersion(rs.getInt("version"));
+            return vet;
+        }
+    }
+
+    private static class SharedSpecialtyRowMapper implements RowMapper<Specialty> {
+
+        private final Map<Integer, Specialty> specialties = new HashMap<>();
+
+        @Override
+        public Specialty mapRow(ResultSet rs, int rowNum) throws SQLException {
+            int specialtyId = rs.getInt("specialty_id");
+            Specialty specialty = this.specialties.get(specialtyId);
+            if (specialty == null) {
+                specialty = new Specialty();
+                specialty.setId(specialtyId);
+                specialty.setName(rs.getString("specialty_name"));
+                this.specialties.put(specialtyId, specialty);
+            }
+            return specialty;
+        }
+    }
+}
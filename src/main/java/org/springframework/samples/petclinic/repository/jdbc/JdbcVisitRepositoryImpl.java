@@ -16,17 +16,17 @@
 package org.springframework.samples.petclinic.repository.jdbc;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.orm.ObjectRetrievalFailureException;
-import org.springframework.samples.petclinic.model.Owner;
-import org.springframework.samples.petclinic.model.PetType;
 import org.springframework.samples.petclinic.model.Visit;
 import org.springframework.samples.petclinic.repository.VisitRepository;
 import org.springframework.stereotype.Repository;
@@ -35,6 +35,7 @@ import javax.sql.DataSource;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * A simple JDBC-based implementation of the {@link VisitRepository} interface.
@@ -53,15 +54,28 @@ import java.util.*;
 public class JdbcVisitRepositoryImpl implements VisitRepository {
 
     protected SimpleJdbcInsert insertVisit;
+    private JdbcIdAllocator ids;
     private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 
+    private static final String VISIT_GRAPH_COLUMNS =
+        "visits.id as visit_id, visits.visit_date, visits.description, " + JdbcPetGraphRowMapper.COLUMNS;
+
+    private static final String VISIT_GRAPH_JOIN =
+        "visits JOIN pets ON visits.pet_id = pets.id " + JdbcPetGraphRowMapper.TYPE_AND_OWNER_JOIN;
+
+    private JdbcTemplate streamingJdbcTemplate;
+
     @Autowired
-    public JdbcVisitRepositoryImpl(DataSource dataSource) {
+    public JdbcVisitRepositoryImpl(DataSource dataSource, JdbcIdAllocator ids,
+                                   @Value("${petclinic.streaming.fetch-size:500}") int streamingFetchSize) {
         this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
 
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(streamingFetchSize);
+
         this.insertVisit = new SimpleJdbcInsert(dataSource)
-            .withTableName("visits")
-            .usingGeneratedKeyColumns("id");
+            .withTableName("visits");
+        this.ids = ids;
     }
 
 
@@ -81,7 +95,7 @@ public class JdbcVisitRepositoryImpl implements VisitRepository {
         Map<String, Object> params = new HashMap<>();
         params.put("id", petId);
         JdbcPet pet = this.namedParameterJdbcTemplate.queryForObject(
-            "SELECT id as pets_id, name, birth_date, type_id, owner_id FROM pets WHERE id=:id",
+            "SELECT id as pets_id, name, birth_date, type_id, owner_id, version as pet_version FROM pets WHERE id=:id",
             params,
             new JdbcPetRowMapper());
 
@@ -103,7 +117,7 @@ public class JdbcVisitRepositoryImpl implements VisitRepository {
             Map<String, Object> params = new HashMap<>();
             params.put("id", id);
             visit = this.namedParameterJdbcTemplate.queryForObject(
-                "SELECT id as visit_id, visits.pet_id as pets_id, visit_date, description FROM visits WHERE id= :id",
+                "SELECT " + VISIT_GRAPH_COLUMNS + " FROM " + VISIT_GRAPH_JOIN + " WHERE visits.id = :id",
                 params,
                 new JdbcVisitRowMapperExt());
         } catch (EmptyResultDataAccessException ex) {
@@ -116,15 +130,34 @@ public class JdbcVisitRepositoryImpl implements VisitRepository {
     public Collection<Visit> findAll() throws DataAccessException {
         Map<String, Object> params = new HashMap<>();
         return this.namedParameterJdbcTemplate.query(
-            "SELECT id as visit_id, pets.id as pets_id, visit_date, description FROM visits LEFT JOIN pets ON visits.pet_id = pets.id",
+            "SELECT " + VISIT_GRAPH_COLUMNS + " FROM " + VISIT_GRAPH_JOIN,
             params, new JdbcVisitRowMapperExt());
     }
 
+    @Override
+    public Collection<Visit> findAll(int afterId, int limit) throws DataAccessException {
+        Map<String, Object> params = new HashMap<>();
+        params.put("afterId", afterId);
+        params.put("limit", limit);
+        return this.namedParameterJdbcTemplate.query(
+            "SELECT " + VISIT_GRAPH_COLUMNS + " FROM " + VISIT_GRAPH_JOIN +
+                " WHERE visits.id > :afterId ORDER BY visits.id LIMIT :limit",
+            params, new JdbcVisitRowMapperExt());
+    }
+
+    @Override
+    public void streamAll(Consumer<Visit> action) throws DataAccessException {
+        JdbcVisitRowMapperExt rowMapper = new JdbcVisitRowMapperExt(false);
+        this.streamingJdbcTemplate.query(
+            "SELECT " + VISIT_GRAPH_COLUMNS + " FROM " + VISIT_GRAPH_JOIN + " ORDER BY visits.id",
+            (RowCallbackHandler) rs -> action.accept(rowMapper.mapRow(rs, 0)));
+    }
+
     @Override
     public void save(Visit visit) throws DataAccessException {
         if (visit.isNew()) {
-            Number newKey = this.insertVisit.executeAndReturnKey(createVisitParameterSource(visit));
-            visit.setId(newKey.intValue());
+            visit.setId(this.ids.nextId("visits"));
+            this.insertVisit.execute(createVisitParameterSource(visit));
         } else {
             this.namedParameterJdbcTemplate.update(
                 "UPDATE visits SET visit_date=:visit_date, description=:description, pet_id=:pet_id WHERE id=:id ",
@@ -139,37 +172,31 @@ public class JdbcVisitRepositoryImpl implements VisitRepository {
         this.namedParameterJdbcTemplate.update("DELETE FROM visits WHERE id=:id", params);
     }
 
-    protected class JdbcVisitRowMapperExt implements RowMapper<Visit> {
+    /**
+     * {@link RowMapper} mapping the rows of the visit/pet/type/owner join. A new instance must be used for every query:
+     * pets, types and owners are instantiated once per id and shared between all the visits referencing them.
+     */
+    protected static class JdbcVisitRowMapperExt implements RowMapper<Visit> {
+
+        private final JdbcVisitRowMapper visitRowMapper = new JdbcVisitRowMapper();
+
+        private final JdbcPetGraphRowMapper petRowMapper;
+
+        JdbcVisitRowMapperExt() {
+            this(true);
+        }
+
+        /**
+         * @param retainInstances <code>false</code> to create new pets and owners for every row, as streaming reads do
+         */
+        JdbcVisitRowMapperExt(boolean retainInstances) {
+            this.petRowMapper = new JdbcPetGraphRowMapper(retainInstances);
+        }
 
         @Override
         public Visit mapRow(ResultSet rs, int rowNum) throws SQLException {
-            Visit visit = new Visit();
-            JdbcPet pet = new JdbcPet();
-            PetType petType = new PetType();
-            Owner owner = new Owner();
-            visit.setId(rs.getInt("visit_id"));
-            Date visitDate = rs.getDate("visit_date");
-            visit.setDate(new java.sql.Date(visitDate.getTime()).toLocalDate());
-            visit.setDescription(rs.getString("description"));
-            Map<String, Object> params = new HashMap<>();
-            params.put("id", rs.getInt("pets_id"));
-            pet = JdbcVisitRepositoryImpl.this.namedParameterJdbcTemplate.queryForObject(
-                "SELECT pets.id as pets_id, name, birth_date, type_id, owner_id FROM pets WHERE pets.id=:id",
-                params,
-                new JdbcPetRowMapper());
-            params.put("type_id", pet.getTypeId());
-            petType = JdbcVisitRepositoryImpl.this.namedParameterJdbcTemplate.queryForObject(
-                "SELECT id, name FROM types WHERE id= :type_id",
-                params,
-                BeanPropertyRowMapper.newInstance(PetType.class));
-            pet.setType(petType);
-            params.put("owner_id", pet.getOwnerId());
-            owner = JdbcVisitRepositoryImpl.this.namedParameterJdbcTemplate.queryForObject(
-                "SELECT id, first_name, last_name, address, city, telephone FROM owners WHERE id= :owner_id",
-                params,
-                BeanPropertyRowMapper.newInstance(Owner.class));
-            pet.setOwner(owner);
-            visit.setPet(pet);
+            Visit visit = this.visitRowMapper.mapRow(rs, rowNum);
+            visit.setPet(this.petRowMapper.mapRow(rs, rowNum));
             return visit;
         }
     }
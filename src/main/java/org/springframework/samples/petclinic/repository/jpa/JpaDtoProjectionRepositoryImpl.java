@@ -0,0 +1,207 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jpa;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.samples.petclinic.repository.DtoProjectionRepository;
+import org.springframework.samples.petclinic.rest.dto.OwnerDto;
+import org.springframework.samples.petclinic.rest.dto.PetDto;
+import org.springframework.samples.petclinic.rest.dto.PetTypeDto;
+import org.springframework.samples.petclinic.rest.dto.SpecialtyDto;
+import org.springframework.samples.petclinic.rest.dto.VetDto;
+import org.springframework.samples.petclinic.rest.dto.VisitDto;
+import org.springframework.samples.petclinic.util.EntityUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * JPA implementation of the {@link DtoProjectionRepository} interface, shared by the <code>jpa</code> and
+ * <code>spring-data-jpa</code> profiles. The JPQL queries select scalar columns only, so that the persistence context
+ * holds no entity and takes no snapshot for dirty checking; the generated DTOs having no constructor with arguments,
+ * they are built from the rows rather than by constructor expressions. The nested collections of a page are selected by
+ * the ids of its rows, {@link #ID_CHUNK_SIZE} ids per query, so that a child inserted concurrently, between the
+ * queries, is never read without its parent.
+ */
+@Repository
+@Profile({"jpa", "spring-data-jpa"})
+@ConditionalOnProperty(name = "petclinic.dto-projections.enabled", havingValue = "true")
+@Transactional(readOnly = true)
+public class JpaDtoProjectionRepositoryImpl implements DtoProjectionRepository {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public List<OwnerDto> findOwners(String lastName, int afterId, int limit) throws DataAccessException {
+        String lastNameFilter = lastName != null ? " AND owner.lastName LIKE :lastName" : "";
+        TypedQuery<Object[]> ownerQuery = this.em.createQuery(
+                "SELECT owner.id, owner.firstName, owner.lastName, owner.address, owner.city, owner.telephone " +
+                    "FROM Owner owner WHERE owner.id > :afterId" + lastNameFilter + " ORDER BY owner.id",
+                Object[].class)
+            .setParameter("afterId", afterId)
+            .setMaxResults(limit);
+        if (lastName != null) {
+            ownerQuery.setParameter("lastName", lastName + "%");
+        }
+        List<OwnerDto> owners = new ArrayList<>();
+        Map<Integer, OwnerDto> ownersById = new HashMap<>();
+        for (Object[] row : ownerQuery.getResultList()) {
+            OwnerDto owner = new OwnerDto()
+                .id((Integer) row[0])
+                .firstName((String) row[1])
+                .lastName((String) row[2])
+                .address((String) row[3])
+                .city((String) row[4])
+                .telephone((String) row[5]);
+            owners.add(owner);
+            ownersById.put(owner.getId(), owner);
+        }
+        if (owners.isEmpty()) {
+            return owners;
+        }
+        Map<Integer, PetDto> petsById = new HashMap<>();
+        for (List<Integer> ownerIds : EntityUtils.chunk(ownersById.keySet(), ID_CHUNK_SIZE)) {
+            for (Object[] row : this.em.createQuery(
+                    "SELECT pet.id, pet.name, pet.birthDate, pet.owner.id, petType.id, petType.name " +
+                        "FROM Pet pet JOIN pet.type petType " +
+                        "WHERE pet.owner.id IN (:ownerIds) ORDER BY LOWER(pet.name), pet.id",
+                    Object[].class)
+                .setParameter("ownerIds", ownerIds)
+                .getResultList()) {
+                PetDto pet = mapPet(row);
+                petsById.put(pet.getId(), pet);
+                ownersById.get(pet.getOwnerId()).addPetsItem(pet);
+            }
+        }
+        addVisits(petsById);
+        return owners;
+    }
+
+    @Override
+    public List<PetDto> findPets(int afterId, int limit) throws DataAccessException {
+        List<PetDto> pets = new ArrayList<>();
+        Map<Integer, PetDto> petsById = new HashMap<>();
+        for (Object[] row : this.em.createQuery(
+                "SELECT pet.id, pet.name, pet.birthDate, pet.owner.id, petType.id, petType.name " +
+                    "FROM Pet pet JOIN pet.type petType WHERE pet.id > :afterId ORDER BY pet.id",
+                Object[].class)
+            .setParameter("afterId", afterId)
+            .setMaxResults(limit)
+            .getResultList()) {
+            PetDto pet = mapPet(row);
+            pets.add(pet);
+            petsById.put(pet.getId(), pet);
+        }
+        addVisits(petsById);
+        return pets;
+    }
+
+    @Override
+    public List<VisitDto> findVisits(int afterId, int limit) throws DataAccessException {
+        List<VisitDto> visits = new ArrayList<>();
+        for (Object[] row : this.em.createQuery(
+                "SELECT visit.id, visit.date, visit.description, visit.pet.id FROM Visit visit " +
+                    "WHERE visit.id > :afterId ORDER BY visit.id",
+                Object[].class)
+            .setParameter("afterId", afterId)
+            .setMaxResults(limit)
+            .getResultList()) {
+            visits.add(mapVisit(row));
+        }
+        return visits;
+    }
+
+    @Override
+    public List<VetDto> findVets(int afterId, int limit) throws DataAccessException {
+        List<VetDto> vets = new ArrayList<>();
+        Map<Integer, VetDto> vetsById = new HashMap<>();
+        for (Object[] row : this.em.createQuery(
+                "SELECT vet.id, vet.firstName, vet.lastName FROM Vet vet WHERE vet.id > :afterId ORDER BY vet.id",
+                Object[].class)
+            .setParameter("afterId", afterId)
+            .setMaxResults(limit)
+            .getResultList()) {
+            VetDto vet = new VetDto()
+                .id((Integer) row[0])
+                .firstName((String) row[1])
+                .lastName((String) row[2]);
+            vets.add(vet);
+            vetsById.put(vet.getId(), vet);
+        }
+        if (vets.isEmpty()) {
+            return vets;
+        }
+        for (List<Integer> vetIds : EntityUtils.chunk(vetsById.keySet(), ID_CHUNK_SIZE)) {
+            for (Object[] row : this.em.createQuery(
+                    "SELECT vet.id, specialty.id, specialty.name FROM Vet vet JOIN vet.specialties specialty " +
+                        "WHERE vet.id IN (:vetIds) ORDER BY LOWER(specialty.name), specialty.id",
+                    Object[].class)
+                .setParameter("vetIds", vetIds)
+                .getResultList()) {
+                vetsById.get((Integer) row[0]).addSpecialtiesItem(new SpecialtyDto()
+                    .id((Integer) row[1])
+                    .name((String) row[2]));
+            }
+        }
+        return vets;
+    }
+
+    /**
+     * Adds their visits, latest first, to the given pets.
+     */
+    private void addVisits(Map<Integer, PetDto> petsById) {
+        for (List<Integer> petIds : EntityUtils.chunk(petsById.keySet(), ID_CHUNK_SIZE)) {
+            for (Object[] row : this.em.createQuery(
+                    "SELECT visit.id, visit.date, visit.description, visit.pet.id FROM Visit visit " +
+                        "WHERE visit.pet.id IN (:petIds) ORDER BY visit.date DESC, visit.id",
+                    Object[].class)
+                .setParameter("petIds", petIds)
+                .getResultList()) {
+                VisitDto visit = mapVisit(row);
+                petsById.get(visit.getPetId()).addVisitsItem(visit);
+            }
+        }
+    }
+
+    private static PetDto mapPet(Object[] row) {
+        return new PetDto()
+            .id((Integer) row[0])
+            .name((String) row[1])
+            .birthDate((LocalDate) row[2])
+            .ownerId((Integer) row[3])
+            .type(new PetTypeDto().id((Integer) row[4]).name((String) row[5]));
+    }
+
+    private static VisitDto mapVisit(Object[] row) {
+        return new VisitDto()
+            .id((Integer) row[0])
+            .date((LocalDate) row[1])
+            .description((String) row[2])
+            .petId((Integer) row[3]);
+    }
+}
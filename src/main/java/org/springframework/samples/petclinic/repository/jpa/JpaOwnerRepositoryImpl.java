@@ -15,17 +15,27 @@
  */
 package org.springframework.samples.petclinic.repository.jpa;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
 
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
-import org.springframework.orm.hibernate5.support.OpenSessionInViewFilter;
+import org.springframework.dao.support.DataAccessUtils;
 import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.repository.OwnerFetchPlan;
 import org.springframework.samples.petclinic.repository.OwnerRepository;
+import org.springframework.samples.petclinic.util.JpaStreamUtils;
+import org.springframework.samples.petclinic.util.JpaUpdateUtils;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -44,32 +54,46 @@ public class JpaOwnerRepositoryImpl implements OwnerRepository {
     @PersistenceContext
     private EntityManager em;
 
+    @Value("${petclinic.streaming.fetch-size:500}")
+    private int streamingFetchSize;
 
-    /**
-     * Important: in the current version of this method, we load Owners with all their Pets and Visits while
-     * we do not need Visits at all and we only need one property from the Pet objects (the 'name' property).
-     * There are some ways to improve it such as:
-     * - creating a Ligtweight class (example here: https://community.jboss.org/wiki/LightweightClass)
-     * - Turning on lazy-loading and using {@link OpenSessionInViewFilter}
-     */
-    @SuppressWarnings("unchecked")
+
+    @Override
     public Collection<Owner> findByLastName(String lastName) {
-        // using 'join fetch' because a single query should load both owners and pets
-        // using 'left join fetch' because it might happen that an owner does not have pets yet
-        Query query = this.em.createQuery("SELECT DISTINCT owner FROM Owner owner left join fetch owner.pets WHERE owner.lastName LIKE :lastName");
+        return findByLastName(lastName, OwnerFetchPlan.PETS_AND_VISITS);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Collection<Owner> findByLastName(String lastName, OwnerFetchPlan plan) {
+        Query query = this.em.createQuery("SELECT DISTINCT owner FROM Owner owner WHERE owner.lastName LIKE :lastName");
         query.setParameter("lastName", lastName + "%");
-        return query.getResultList();
+        return withFetchPlan(query, plan).getResultList();
     }
 
     @Override
     public Owner findById(int id) {
-        // using 'join fetch' because a single query should load both owners and pets
-        // using 'left join fetch' because it might happen that an owner does not have pets yet
-        Query query = this.em.createQuery("SELECT owner FROM Owner owner left join fetch owner.pets WHERE owner.id =:id");
+        return findById(id, OwnerFetchPlan.PETS_AND_VISITS);
+    }
+
+    @Override
+    public Owner findById(int id, OwnerFetchPlan plan) {
+        Query query = this.em.createQuery("SELECT DISTINCT owner FROM Owner owner WHERE owner.id =:id");
         query.setParameter("id", id);
-        return (Owner) query.getSingleResult();
+        return (Owner) withFetchPlan(query, plan).getSingleResult();
     }
 
+    /**
+     * Loads the associations selected by the given plan with the owners, in the same query: they are lazy in the
+     * mapping. DISTINCT only removes the owners repeated by the joins in memory, it is not needed in the SQL.
+     */
+    private Query withFetchPlan(Query query, OwnerFetchPlan plan) {
+        if (plan.getEntityGraph() != null) {
+            query.setHint(QueryHints.HINT_FETCHGRAPH, this.em.getEntityGraph(plan.getEntityGraph()));
+            query.setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false);
+        }
+        return query;
+    }
 
     @Override
     public void save(Owner owner) {
@@ -84,13 +108,103 @@ public class JpaOwnerRepositoryImpl implements OwnerRepository {
 	@SuppressWarnings("unchecked")
 	@Override
 	public Collection<Owner> findAll() throws DataAccessException {
-		Query query = this.em.createQuery("SELECT owner FROM Owner owner");
-        return query.getResultList();
+		Query query = this.em.createQuery("SELECT DISTINCT owner FROM Owner owner");
+        return withFetchPlan(query, OwnerFetchPlan.PETS_AND_VISITS).getResultList();
 	}
 
+	@Override
+	public Collection<Owner> findAll(int afterId, int limit) throws DataAccessException {
+		Query query = this.em.createQuery("SELECT owner.id FROM Owner owner WHERE owner.id > :afterId ORDER BY owner.id");
+		query.setParameter("afterId", afterId);
+		return findPage(query, limit);
+	}
+
+	@Override
+	public Collection<Owner> findByLastName(String lastName, int afterId, int limit) throws DataAccessException {
+		Query query = this.em.createQuery("SELECT owner.id FROM Owner owner WHERE owner.lastName LIKE :lastName AND owner.id > :afterId ORDER BY owner.id");
+		query.setParameter("lastName", lastName + "%");
+		query.setParameter("afterId", afterId);
+		return findPage(query, limit);
+	}
+
+	/**
+	 * Loads the owners whose ids are returned by the given query. The page is bounded on the owner ids first: limiting
+	 * a query fetching the pets collection would be applied in memory by Hibernate.
+	 */
+	@SuppressWarnings("unchecked")
+	private Collection<Owner> findPage(Query idQuery, int limit) {
+		List<Integer> ids = idQuery.setMaxResults(limit).getResultList();
+		if (ids.isEmpty()) {
+			return new ArrayList<>();
+		}
+		Query query = this.em.createQuery("SELECT DISTINCT owner FROM Owner owner WHERE owner.id IN :ids ORDER BY owner.id");
+		query.setParameter("ids", ids);
+		return withFetchPlan(query, OwnerFetchPlan.PETS_AND_VISITS).getResultList();
+	}
+
+	/**
+	 * Deletes the owner with its pets and their visits with three bulk statements, without loading them.
+	 */
 	@Override
 	public void delete(Owner owner) throws DataAccessException {
-		this.em.remove(this.em.contains(owner) ? owner : this.em.merge(owner));
+		Integer ownerId = owner.getId();
+		if (this.em.contains(owner)) {
+			this.em.detach(owner);
+		}
+		this.em.createQuery("DELETE FROM Visit visit WHERE visit.pet.id IN (SELECT pet.id FROM Pet pet WHERE pet.owner.id = :ownerId)")
+			.setParameter("ownerId", ownerId).executeUpdate();
+		this.em.createQuery("DELETE FROM Pet pet WHERE pet.owner.id = :ownerId")
+			.setParameter("ownerId", ownerId).executeUpdate();
+		this.em.createQuery("DELETE FROM Owner owner WHERE owner.id = :ownerId")
+			.setParameter("ownerId", ownerId).executeUpdate();
+	}
+
+	@Override
+	public void streamAll(Consumer<Owner> action) throws DataAccessException {
+		JpaStreamUtils.scroll(this.em, JpaStreamUtils.OWNERS_WITH_PETS_AND_VISITS,
+			Owner.class, this.streamingFetchSize, action);
+	}
+
+	/**
+	 * Persists the owners, cascading to their pets and visits, then flushes and clears the persistence context so that
+	 * it does not grow with the number of batches imported in the same transaction.
+	 */
+	@Override
+	public void saveAll(Collection<Owner> owners) {
+		for (Owner owner : owners) {
+			this.em.persist(owner);
+		}
+		this.em.flush();
+		this.em.clear();
+	}
+
+	@Override
+	public int update(int id, int version, Map<String, Object> changes) {
+		return JpaUpdateUtils.updateVersioned(this.em, Owner.class, Owner.UPDATABLE_PROPERTIES, id, version, changes);
+	}
+
+	@Override
+	public Integer findVersionById(int id) {
+		return DataAccessUtils.singleResult(
+			this.em.createQuery("SELECT owner.version FROM Owner owner WHERE owner.id = :id", Integer.class)
+				.setParameter("id", id)
+				.getResultList());
+	}
+
+	@Override
+	public Collection<String> findLastNames(String prefix, int limit) {
+		return this.em.createQuery(
+				"SELECT DISTINCT owner.lastName FROM Owner owner WHERE owner.lastName LIKE :prefix ORDER BY owner.lastName",
+				String.class)
+			.setParameter("prefix", prefix + "%")
+			.setMaxResults(limit)
+			.getResultList();
+	}
+
+	@Override
+	public void streamLastNames(ObjIntConsumer<String> action) {
+		JpaStreamUtils.scrollRows(this.em, "SELECT owner.id, owner.lastName FROM Owner owner", this.streamingFetchSize,
+			row -> action.accept((String) row[1], (Integer) row[0]));
 	}
 
 }
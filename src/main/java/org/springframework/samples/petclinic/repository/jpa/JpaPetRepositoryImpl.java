@@ -15,17 +15,26 @@
  */
 package org.springframework.samples.petclinic.repository.jpa;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.support.DataAccessUtils;
 import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.model.PetType;
 import org.springframework.samples.petclinic.repository.PetRepository;
+import org.springframework.samples.petclinic.util.JpaStreamUtils;
+import org.springframework.samples.petclinic.util.JpaUpdateUtils;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -44,6 +53,9 @@ public class JpaPetRepositoryImpl implements PetRepository {
     @PersistenceContext
     private EntityManager em;
 
+    @Value("${petclinic.streaming.fetch-size:500}")
+    private int streamingFetchSize;
+
     @Override
     @SuppressWarnings("unchecked")
     public List<PetType> findPetTypes() {
@@ -52,7 +64,8 @@ public class JpaPetRepositoryImpl implements PetRepository {
 
     @Override
     public Pet findById(int id) {
-        return this.em.find(Pet.class, id);
+        return this.em.find(Pet.class, id,
+            Collections.singletonMap(QueryHints.HINT_FETCHGRAPH, this.em.getEntityGraph(Pet.WITH_VISITS)));
     }
 
     @Override
@@ -67,18 +80,59 @@ public class JpaPetRepositoryImpl implements PetRepository {
 	@SuppressWarnings("unchecked")
 	@Override
 	public Collection<Pet> findAll() throws DataAccessException {
-		return this.em.createQuery("SELECT pet FROM Pet pet").getResultList();
+		return this.em.createQuery("SELECT DISTINCT pet FROM Pet pet")
+			.setHint(QueryHints.HINT_FETCHGRAPH, this.em.getEntityGraph(Pet.WITH_VISITS))
+			.setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false)
+			.getResultList();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Collection<Pet> findAll(int afterId, int limit) throws DataAccessException {
+		// bounded on the pet ids first: limiting a query fetching the visits collection would be applied in memory
+		List<Integer> ids = this.em.createQuery("SELECT pet.id FROM Pet pet WHERE pet.id > :afterId ORDER BY pet.id")
+			.setParameter("afterId", afterId)
+			.setMaxResults(limit)
+			.getResultList();
+		if (ids.isEmpty()) {
+			return new ArrayList<>();
+		}
+		return this.em.createQuery("SELECT DISTINCT pet FROM Pet pet WHERE pet.id IN :ids ORDER BY pet.id")
+			.setParameter("ids", ids)
+			.setHint(QueryHints.HINT_FETCHGRAPH, this.em.getEntityGraph(Pet.WITH_VISITS))
+			.setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false)
+			.getResultList();
 	}
 
 	@Override
 	public void delete(Pet pet) throws DataAccessException {
-		//this.em.remove(this.em.contains(pet) ? pet : this.em.merge(pet));
-		String petId = pet.getId().toString();
-		this.em.createQuery("DELETE FROM Visit visit WHERE pet_id=" + petId).executeUpdate();
-		this.em.createQuery("DELETE FROM Pet pet WHERE id=" + petId).executeUpdate();
-		if (em.contains(pet)) {
-			em.remove(pet);
+		Integer petId = pet.getId();
+		if (this.em.contains(pet)) {
+			this.em.detach(pet);
 		}
+		this.em.createQuery("DELETE FROM Visit visit WHERE visit.pet.id = :petId")
+			.setParameter("petId", petId).executeUpdate();
+		this.em.createQuery("DELETE FROM Pet pet WHERE pet.id = :petId")
+			.setParameter("petId", petId).executeUpdate();
+	}
+
+	@Override
+	public void streamAll(Consumer<Pet> action) throws DataAccessException {
+		JpaStreamUtils.scroll(this.em, JpaStreamUtils.PETS_WITH_VISITS,
+			Pet.class, this.streamingFetchSize, action);
+	}
+
+	@Override
+	public int update(int id, int version, Map<String, Object> changes) {
+		return JpaUpdateUtils.updateVersioned(this.em, Pet.class, Pet.UPDATABLE_PROPERTIES, id, version, changes);
+	}
+
+	@Override
+	public Integer findVersionById(int id) {
+		return DataAccessUtils.singleResult(
+			this.em.createQuery("SELECT pet.version FROM Pet pet WHERE pet.id = :id", Integer.class)
+				.setParameter("id", id)
+				.getResultList());
 	}
 
 }
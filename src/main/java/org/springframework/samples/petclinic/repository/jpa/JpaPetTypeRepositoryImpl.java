@@ -16,18 +16,14 @@
 
 package org.springframework.samples.petclinic.repository.jpa;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
-import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.model.PetType;
-import org.springframework.samples.petclinic.model.Visit;
 import org.springframework.samples.petclinic.repository.PetTypeRepository;
 import org.springframework.stereotype.Repository;
 
@@ -64,21 +60,20 @@ public class JpaPetTypeRepositoryImpl implements PetTypeRepository {
 
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public void delete(PetType petType) throws DataAccessException {
-		this.em.remove(this.em.contains(petType) ? petType : this.em.merge(petType));
 		Integer petTypeId = petType.getId();
-		
-		List<Pet> pets = this.em.createQuery("SELECT pet FROM Pet pet WHERE type_id=" + petTypeId).getResultList();
-		for (Pet pet : pets){
-			List<Visit> visits = pet.getVisits();
-			for (Visit visit : visits){
-				this.em.createQuery("DELETE FROM Visit visit WHERE id=" + visit.getId()).executeUpdate();
-			}
-			this.em.createQuery("DELETE FROM Pet pet WHERE id=" + pet.getId()).executeUpdate();
+		if (this.em.contains(petType)) {
+			this.em.detach(petType);
 		}
-		this.em.createQuery("DELETE FROM PetType pettype WHERE id=" + petTypeId).executeUpdate();
+		this.em.createQuery("DELETE FROM Visit visit WHERE visit.pet.id IN (SELECT pet.id FROM Pet pet WHERE pet.type.id = :petTypeId)")
+			.setParameter("petTypeId", petTypeId).executeUpdate();
+		this.em.createQuery("DELETE FROM Pet pet WHERE pet.type.id = :petTypeId")
+			.setParameter("petTypeId", petTypeId).executeUpdate();
+		this.em.createQuery("DELETE FROM PetType petType WHERE petType.id = :petTypeId")
+			.setParameter("petTypeId", petTypeId).executeUpdate();
+		// the second-level cache is only cleared of the bulk deleted pet types once the transaction completes
+		this.em.getEntityManagerFactory().getCache().evict(PetType.class, petTypeId);
 	}
 
 }
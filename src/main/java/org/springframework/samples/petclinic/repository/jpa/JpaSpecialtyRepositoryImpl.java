@@ -18,12 +18,15 @@ package org.springframework.samples.petclinic.repository.jpa;
 
 import java.util.Collection;
 
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
+import org.hibernate.query.NativeQuery;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
 import org.springframework.samples.petclinic.model.Specialty;
+import org.springframework.samples.petclinic.model.Vet;
 import org.springframework.samples.petclinic.repository.SpecialtyRepository;
 import org.springframework.stereotype.Repository;
 
@@ -61,10 +64,21 @@ public class JpaSpecialtyRepositoryImpl implements SpecialtyRepository {
 
 	@Override
 	public void delete(Specialty specialty) throws DataAccessException {
-		this.em.remove(this.em.contains(specialty) ? specialty : this.em.merge(specialty));
 		Integer specId = specialty.getId();
-		this.em.createNativeQuery("DELETE FROM vet_specialties WHERE specialty_id=" + specId).executeUpdate();
-		this.em.createQuery("DELETE FROM Specialty specialty WHERE id=" + specId).executeUpdate();
+		if (this.em.contains(specialty)) {
+			this.em.detach(specialty);
+		}
+		// only the cached specialties of the vets are evicted by this statement, not the whole second-level cache
+		this.em.createNativeQuery("DELETE FROM vet_specialties WHERE specialty_id = :specId")
+			.unwrap(NativeQuery.class)
+			.addSynchronizedQuerySpace("vet_specialties")
+			.setParameter("specId", specId).executeUpdate();
+		this.em.createQuery("DELETE FROM Specialty specialty WHERE specialty.id = :specId")
+			.setParameter("specId", specId).executeUpdate();
+		// the second-level cache is only cleared of the bulk deleted rows once the transaction completes
+		Cache cache = this.em.getEntityManagerFactory().getCache();
+		cache.evict(Specialty.class, specId);
+		cache.unwrap(org.hibernate.Cache.class).evictCollectionData(Vet.class.getName() + ".specialties");
 	}
 
 }
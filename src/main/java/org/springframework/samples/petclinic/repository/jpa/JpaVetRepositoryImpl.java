@@ -17,13 +17,18 @@ package org.springframework.samples.petclinic.repository.jpa;
 
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.support.DataAccessUtils;
 import org.springframework.samples.petclinic.model.Vet;
 import org.springframework.samples.petclinic.repository.VetRepository;
+import org.springframework.samples.petclinic.util.JpaUpdateUtils;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * JPA implementation of the {@link VetRepository} interface.
@@ -53,6 +58,25 @@ public class JpaVetRepositoryImpl implements VetRepository {
 		return this.em.createQuery("SELECT vet FROM Vet vet").getResultList();
 	}
 
+	/**
+	 * The page is bounded on the vet ids first: limiting a query fetching the specialties collection would be applied
+	 * in memory by Hibernate.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public Collection<Vet> findAll(int afterId, int limit) throws DataAccessException {
+		List<Integer> ids = this.em.createQuery("SELECT vet.id FROM Vet vet WHERE vet.id > :afterId ORDER BY vet.id")
+			.setParameter("afterId", afterId)
+			.setMaxResults(limit)
+			.getResultList();
+		if (ids.isEmpty()) {
+			return new ArrayList<>();
+		}
+		return this.em.createQuery("SELECT DISTINCT vet FROM Vet vet left join fetch vet.specialties WHERE vet.id IN :ids ORDER BY vet.id")
+			.setParameter("ids", ids)
+			.getResultList();
+	}
+
 	@Override
 	public void save(Vet vet) throws DataAccessException {
         if (vet.getId() == null) {
@@ -67,5 +91,17 @@ public class JpaVetRepositoryImpl implements VetRepository {
 		this.em.remove(this.em.contains(vet) ? vet : this.em.merge(vet));
 	}
 
+	@Override
+	public int update(int id, int version, Map<String, Object> changes) {
+		return JpaUpdateUtils.updateVersioned(this.em, Vet.class, Vet.UPDATABLE_PROPERTIES, id, version, changes);
+	}
+
+	@Override
+	public Integer findVersionById(int id) {
+		return DataAccessUtils.singleResult(
+			this.em.createQuery("SELECT vet.version FROM Vet vet WHERE vet.id = :id", Integer.class)
+				.setParameter("id", id)
+				.getResultList());
+	}
 
 }
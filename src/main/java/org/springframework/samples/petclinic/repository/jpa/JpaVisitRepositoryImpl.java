@@ -17,15 +17,18 @@ package org.springframework.samples.petclinic.repository.jpa;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
 import org.springframework.samples.petclinic.model.Visit;
 import org.springframework.samples.petclinic.repository.VisitRepository;
+import org.springframework.samples.petclinic.util.JpaStreamUtils;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -46,6 +49,9 @@ public class JpaVisitRepositoryImpl implements VisitRepository {
     @PersistenceContext
     private EntityManager em;
 
+    @Value("${petclinic.streaming.fetch-size:500}")
+    private int streamingFetchSize;
+
 
     @Override
     public void save(Visit visit) {
@@ -76,9 +82,24 @@ public class JpaVisitRepositoryImpl implements VisitRepository {
         return this.em.createQuery("SELECT v FROM Visit v").getResultList();
 	}
 
+	@SuppressWarnings("unchecked")
+	@Override
+	public Collection<Visit> findAll(int afterId, int limit) throws DataAccessException {
+		return this.em.createQuery("SELECT v FROM Visit v join fetch v.pet WHERE v.id > :afterId ORDER BY v.id")
+			.setParameter("afterId", afterId)
+			.setMaxResults(limit)
+			.getResultList();
+	}
+
 	@Override
 	public void delete(Visit visit) throws DataAccessException {
         this.em.remove(this.em.contains(visit) ? visit : this.em.merge(visit));
 	}
 
+	@Override
+	public void streamAll(Consumer<Visit> action) throws DataAccessException {
+		JpaStreamUtils.scroll(this.em, "SELECT v FROM Visit v join fetch v.pet ORDER BY v.id",
+			Visit.class, this.streamingFetchSize, action);
+	}
+
 }
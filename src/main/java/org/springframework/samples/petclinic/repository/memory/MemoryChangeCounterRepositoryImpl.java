@@ -0,0 +1,73 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.memory;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.samples.petclinic.repository.ChangeCounterRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Implementation of the {@link ChangeCounterRepository} interface held in memory, like the {@link MemoryStore} whose
+ * writes it counts: the store, and its journal, belong to a single process. The counters start from an epoch taken
+ * at startup, so that the tags of a previous run never match.
+ * <p/>
+ * The writes of a transaction are counted once it commits, after the store has published them: a concurrent read
+ * never tags the data it read before the commit with the new count.
+ */
+@Repository
+@Profile("memory")
+public class MemoryChangeCounterRepositoryImpl implements ChangeCounterRepository {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public String tag(String resource) {
+        return this.epoch + "." + counter(resource).get();
+    }
+
+    @Override
+    public void increment(Collection<String> resources) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    incrementNow(resources);
+                }
+            });
+        } else {
+            incrementNow(resources);
+        }
+    }
+
+    private void incrementNow(Collection<String> resources) {
+        for (String resource : resources) {
+            counter(resource).incrementAndGet();
+        }
+    }
+
+    private AtomicLong counter(String resource) {
+        return this.counters.computeIfAbsent(resource, key -> new AtomicLong());
+    }
+}
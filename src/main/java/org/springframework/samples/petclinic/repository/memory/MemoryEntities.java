@@ -0,0 +1,169 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.memory;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.model.Specialty;
+import org.springframework.samples.petclinic.model.Vet;
+import org.springframework.samples.petclinic.model.Visit;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.NamedRow;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.OwnerRow;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.PetRow;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.VetRow;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.VisitRow;
+
+/**
+ * Builds new entities from the rows of the {@link MemoryStore}, so that the callers never share an instance with the
+ * store nor with each other, as with the JDBC repositories.
+ */
+final class MemoryEntities {
+
+    private MemoryEntities() {
+    }
+
+    static Owner owner(OwnerRow row) {
+        Owner owner = new Owner();
+        owner.setId(row.id);
+        owner.setVersion(row.version);
+        owner.setFirstName(row.firstName);
+        owner.setLastName(row.lastName);
+        owner.setAddress(row.address);
+        owner.setCity(row.city);
+        owner.setTelephone(row.telephone);
+        return owner;
+    }
+
+    /**
+     * @return the pet with its type, but neither its owner nor its visits
+     */
+    static Pet pet(MemoryStore store, PetRow row) {
+        Pet pet = new Pet();
+        pet.setId(row.id);
+        pet.setVersion(row.version);
+        pet.setName(row.name);
+        pet.setBirthDate(row.birthDate);
+        NamedRow type = store.petTypes.get(row.typeId);
+        if (type != null) {
+            pet.setType(petType(type));
+        }
+        return pet;
+    }
+
+    /**
+     * @return the pet with its type, the header of its owner and, if asked for, its visits
+     */
+    static Pet petGraph(MemoryStore store, PetRow row, boolean withVisits) {
+        Pet pet = pet(store, row);
+        OwnerRow owner = store.owners.get(row.ownerId);
+        if (owner != null) {
+            pet.setOwner(owner(owner));
+        }
+        if (withVisits) {
+            addVisits(store, pet);
+        }
+        return pet;
+    }
+
+    static void addVisits(MemoryStore store, Pet pet) {
+        for (VisitRow visit : store.visitsOf(pet.getId())) {
+            pet.addVisit(visit(visit));
+        }
+    }
+
+    static Visit visit(VisitRow row) {
+        Visit visit = new Visit();
+        visit.setId(row.id);
+        visit.setDate(row.date);
+        visit.setDescription(row.description);
+        return visit;
+    }
+
+    static PetType petType(NamedRow row) {
+        PetType petType = new PetType();
+        petType.setId(row.id);
+        petType.setName(row.name);
+        return petType;
+    }
+
+    static Specialty specialty(NamedRow row) {
+        Specialty specialty = new Specialty();
+        specialty.setId(row.id);
+        specialty.setName(row.name);
+        return specialty;
+    }
+
+    static Vet vet(MemoryStore store, VetRow row) {
+        Vet vet = new Vet();
+        vet.setId(row.id);
+        vet.setVersion(row.version);
+        vet.setFirstName(row.firstName);
+        vet.setLastName(row.lastName);
+        for (int specialtyId : row.specialtyIds) {
+            NamedRow specialty = store.specialties.get(specialtyId);
+            if (specialty != null) {
+                vet.addSpecialty(specialty(specialty));
+            }
+        }
+        return vet;
+    }
+
+    /**
+     * Check that the properties can be updated, as the columns of a conditional
+     * <code>UPDATE ... WHERE id=:id AND version=:version</code>.
+     *
+     * @throws InvalidDataAccessApiUsageException if a property cannot be updated
+     */
+    static void checkProperties(Class<?> entityClass, List<String> updatable, Map<String, Object> changes) {
+        for (String property : changes.keySet()) {
+            if (!updatable.contains(property)) {
+                throw new InvalidDataAccessApiUsageException(
+                    "Property " + property + " of " + entityClass.getSimpleName() + " cannot be updated");
+            }
+        }
+    }
+
+    /**
+     * Check that the row to update is still at the version the changes were made on.
+     *
+     * @param currentVersion the version of the row, <code>null</code> if there is no row with the given id
+     * @throws ObjectRetrievalFailureException         if there is no row with the given id
+     * @throws ObjectOptimisticLockingFailureException if the row is not at the given version anymore
+     */
+    static void checkVersion(Class<?> entityClass, int id, Integer currentVersion, int version) {
+        if (currentVersion == null) {
+            throw new ObjectRetrievalFailureException(entityClass, id);
+        }
+        if (currentVersion != version) {
+            throw new ObjectOptimisticLockingFailureException(entityClass, id);
+        }
+    }
+
+    /**
+     * @return the new value of the property if it is changed, else its current value
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T changed(Map<String, Object> changes, String property, T current) {
+        return changes.containsKey(property) ? (T) changes.get(property) : current;
+    }
+}
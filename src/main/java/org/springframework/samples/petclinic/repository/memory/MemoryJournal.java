@@ -0,0 +1,126 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.memory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the mutations of the {@link MemoryStore}, written through a memory mapping of the file. Each
+ * record is framed by its length and a CRC32 of its bytes: the replay stops at the first record that is not complete,
+ * torn by a crash during its write, and the next appends overwrite it. The mapping grows by doubling as the journal
+ * fills up.
+ */
+final class MemoryJournal implements Closeable {
+
+    private static final int HEADER_BYTES = 8;
+
+    private final FileChannel channel;
+
+    private MappedByteBuffer buffer;
+
+    /**
+     * Open the journal, creating the file if needed, and hand each of its complete records to the given action, in
+     * the order they were appended.
+     *
+     * @param path            the journal file
+     * @param initialCapacity the size of the mapping of a new or small journal, in bytes
+     * @param replay          the callback receiving the bytes of each record
+     */
+    MemoryJournal(Path path, int initialCapacity, Consumer<ByteBuffer> replay) throws IOException {
+        this.channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0,
+            Math.max(this.channel.size(), initialCapacity));
+        CRC32 crc = new CRC32();
+        while (this.buffer.remaining() >= HEADER_BYTES) {
+            int start = this.buffer.position();
+            int length = this.buffer.getInt();
+            int checksum = this.buffer.getInt();
+            if (length <= 0 || length > this.buffer.remaining()) {
+                this.buffer.position(start);
+                break;
+            }
+            ByteBuffer record = this.buffer.slice();
+            record.limit(length);
+            crc.reset();
+            crc.update(record.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                this.buffer.position(start);
+                break;
+            }
+            replay.accept(record);
+            this.buffer.position(start + HEADER_BYTES + length);
+        }
+    }
+
+    /**
+     * Append the given records and force them to the storage device, so that they survive a crash once this method
+     * returns.
+     */
+    void append(List<byte[]> records) throws IOException {
+        int bytes = 0;
+        for (byte[] record : records) {
+            bytes += HEADER_BYTES + record.length;
+        }
+        ensureRemaining(bytes);
+        CRC32 crc = new CRC32();
+        for (byte[] record : records) {
+            crc.reset();
+            crc.update(record, 0, record.length);
+            this.buffer.putInt(record.length).putInt((int) crc.getValue()).put(record);
+        }
+        this.buffer.force();
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if (this.buffer.remaining() >= bytes) {
+            return;
+        }
+        int position = this.buffer.position();
+        long capacity = this.buffer.capacity();
+        while (capacity - position < bytes) {
+            capacity *= 2;
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IOException("Journal full: compact it by restarting the application");
+        }
+        this.buffer.force();
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        this.buffer.position(position);
+    }
+
+    /**
+     * @return the number of bytes of the records of the journal
+     */
+    int size() {
+        return this.buffer.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.buffer.force();
+        this.channel.close();
+    }
+}
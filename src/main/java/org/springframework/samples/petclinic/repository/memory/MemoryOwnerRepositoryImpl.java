@@ -0,0 +1,220 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.memory;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Collectors;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.Visit;
+import org.springframework.samples.petclinic.repository.OwnerFetchPlan;
+import org.springframework.samples.petclinic.repository.OwnerRepository;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.OwnerRow;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.PetRow;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.VisitRow;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Implementation of the {@link OwnerRepository} interface over the tables of the {@link MemoryStore}.
+ */
+@Repository
+@Profile("memory")
+public class MemoryOwnerRepositoryImpl implements OwnerRepository {
+
+    private final MemoryStore store;
+
+    public MemoryOwnerRepositoryImpl(MemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public Collection<Owner> findByLastName(String lastName) throws DataAccessException {
+        return findByLastName(lastName, OwnerFetchPlan.PETS_AND_VISITS);
+    }
+
+    /**
+     * The last names are matched ignoring case, as with the <code>IGNORECASE</code> HSQLDB schema.
+     */
+    @Override
+    public Collection<Owner> findByLastName(String lastName, OwnerFetchPlan plan) throws DataAccessException {
+        return this.store.owners.all().stream()
+            .filter(row -> startsWith(row.lastName, lastName))
+            .map(row -> owner(row, plan))
+            .collect(Collectors.toList());
+    }
+
+    private static boolean startsWith(String name, String prefix) {
+        return name != null && name.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    @Override
+    public Owner findById(int id) throws DataAccessException {
+        return findById(id, OwnerFetchPlan.PETS_AND_VISITS);
+    }
+
+    @Override
+    public Owner findById(int id, OwnerFetchPlan plan) throws DataAccessException {
+        OwnerRow row = this.store.owners.get(id);
+        if (row == null) {
+            throw new ObjectRetrievalFailureException(Owner.class, id);
+        }
+        return owner(row, plan);
+    }
+
+    private Owner owner(OwnerRow row, OwnerFetchPlan plan) {
+        Owner owner = MemoryEntities.owner(row);
+        if (plan != OwnerFetchPlan.HEADER) {
+            for (PetRow petRow : this.store.petsOf(row.id)) {
+                Pet pet = MemoryEntities.pet(this.store, petRow);
+                owner.addPet(pet);
+                if (plan == OwnerFetchPlan.PETS_AND_VISITS) {
+                    MemoryEntities.addVisits(this.store, pet);
+                }
+            }
+        }
+        return owner;
+    }
+
+    @Override
+    public void save(Owner owner) throws DataAccessException {
+        if (owner.isNew()) {
+            owner.setId(this.store.owners.nextId());
+            owner.setVersion(0);
+            this.store.put(this.store.owners, row(owner, 0));
+        } else {
+            OwnerRow row = this.store.update(this.store.owners, owner.getId(),
+                current -> current != null ? row(owner, current.version + 1) : null);
+            if (row != null) {
+                owner.setVersion(row.version);
+            }
+        }
+    }
+
+    private static OwnerRow row(Owner owner, int version) {
+        return new OwnerRow(owner.getId(), version, owner.getFirstName(), owner.getLastName(), owner.getAddress(),
+            owner.getCity(), owner.getTelephone());
+    }
+
+    @Override
+    public int update(int id, int version, Map<String, Object> changes) throws DataAccessException {
+        MemoryEntities.checkProperties(Owner.class, Owner.UPDATABLE_PROPERTIES, changes);
+        return this.store.update(this.store.owners, id, current -> {
+            MemoryEntities.checkVersion(Owner.class, id, current != null ? current.version : null, version);
+            return new OwnerRow(id, version + 1,
+                MemoryEntities.changed(changes, "firstName", current.firstName),
+                MemoryEntities.changed(changes, "lastName", current.lastName),
+                MemoryEntities.changed(changes, "address", current.address),
+                MemoryEntities.changed(changes, "city", current.city),
+                MemoryEntities.changed(changes, "telephone", current.telephone));
+        }).version;
+    }
+
+    @Override
+    public Integer findVersionById(int id) throws DataAccessException {
+        OwnerRow row = this.store.owners.get(id);
+        return row != null ? row.version : null;
+    }
+
+    /**
+     * The distinct last names are sorted ignoring case, as with the <code>IGNORECASE</code> HSQLDB schema.
+     */
+    @Override
+    public Collection<String> findLastNames(String prefix, int limit) throws DataAccessException {
+        Set<String> lastNames = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        for (OwnerRow row : this.store.owners.all()) {
+            if (startsWith(row.lastName, prefix)) {
+                lastNames.add(row.lastName);
+            }
+        }
+        return lastNames.stream().limit(limit).collect(Collectors.toList());
+    }
+
+    @Override
+    public void streamLastNames(ObjIntConsumer<String> action) throws DataAccessException {
+        for (OwnerRow row : this.store.owners.all()) {
+            action.accept(row.lastName, row.id);
+        }
+    }
+
+    @Override
+    public void saveAll(Collection<Owner> owners) throws DataAccessException {
+        for (Owner owner : owners) {
+            owner.setId(this.store.owners.nextId());
+            owner.setVersion(0);
+            this.store.put(this.store.owners, row(owner, 0));
+            for (Pet pet : owner.getPets()) {
+                pet.setId(this.store.pets.nextId());
+                pet.setVersion(0);
+                this.store.put(this.store.pets, new PetRow(pet.getId(), 0, pet.getName(), pet.getBirthDate(),
+                    pet.getType().getId(), owner.getId()));
+                for (Visit visit : pet.getVisits()) {
+                    visit.setId(this.store.visits.nextId());
+                    this.store.put(this.store.visits,
+                        new VisitRow(visit.getId(), pet.getId(), visit.getDate(), visit.getDescription()));
+                }
+            }
+        }
+    }
+
+    @Override
+    public Collection<Owner> findAll() throws DataAccessException {
+        return this.store.owners.all().stream()
+            .map(row -> owner(row, OwnerFetchPlan.PETS_AND_VISITS))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public Collection<Owner> findAll(int afterId, int limit) throws DataAccessException {
+        return this.store.owners.after(afterId, limit, row -> true).stream()
+            .map(row -> owner(row, OwnerFetchPlan.PETS_AND_VISITS))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public Collection<Owner> findByLastName(String lastName, int afterId, int limit) throws DataAccessException {
+        return this.store.owners.after(afterId, limit, row -> startsWith(row.lastName, lastName)).stream()
+            .map(row -> owner(row, OwnerFetchPlan.PETS_AND_VISITS))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public void streamAll(Consumer<Owner> action) throws DataAccessException {
+        for (OwnerRow row : this.store.owners.all()) {
+            action.accept(owner(row, OwnerFetchPlan.PETS_AND_VISITS));
+        }
+    }
+
+    /**
+     * Deletes the owner with its pets and their visits.
+     */
+    @Override
+    public void delete(Owner owner) throws DataAccessException {
+        for (PetRow pet : this.store.petsOf(owner.getId())) {
+            this.store.deletePet(pet.id);
+        }
+        this.store.delete(this.store.owners, owner.getId());
+    }
+
+}
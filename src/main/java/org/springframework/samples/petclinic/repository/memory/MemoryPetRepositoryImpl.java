@@ -0,0 +1,135 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.memory;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.samples.petclinic.model.BaseEntity;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.repository.PetRepository;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.PetRow;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Implementation of the {@link PetRepository} interface over the tables of the {@link MemoryStore}.
+ */
+@Repository
+@Profile("memory")
+public class MemoryPetRepositoryImpl implements PetRepository {
+
+    private final MemoryStore store;
+
+    public MemoryPetRepositoryImpl(MemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public List<PetType> findPetTypes() throws DataAccessException {
+        return this.store.petTypes.all().stream()
+            .sorted(Comparator.comparing(row -> row.name, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER)))
+            .map(MemoryEntities::petType)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Loads the pet with its type, the header of its owner and its visits.
+     */
+    @Override
+    public Pet findById(int id) throws DataAccessException {
+        PetRow row = this.store.pets.get(id);
+        if (row == null) {
+            throw new ObjectRetrievalFailureException(Pet.class, id);
+        }
+        return MemoryEntities.petGraph(this.store, row, true);
+    }
+
+    @Override
+    public void save(Pet pet) throws DataAccessException {
+        if (pet.isNew()) {
+            pet.setId(this.store.pets.nextId());
+            pet.setVersion(0);
+            this.store.put(this.store.pets, row(pet, 0));
+        } else {
+            PetRow row = this.store.update(this.store.pets, pet.getId(),
+                current -> current != null ? row(pet, current.version + 1) : null);
+            if (row != null) {
+                pet.setVersion(row.version);
+            }
+        }
+    }
+
+    private static PetRow row(Pet pet, int version) {
+        return new PetRow(pet.getId(), version, pet.getName(), pet.getBirthDate(), pet.getType().getId(),
+            pet.getOwner().getId());
+    }
+
+    @Override
+    public int update(int id, int version, Map<String, Object> changes) throws DataAccessException {
+        MemoryEntities.checkProperties(Pet.class, Pet.UPDATABLE_PROPERTIES, changes);
+        return this.store.update(this.store.pets, id, current -> {
+            MemoryEntities.checkVersion(Pet.class, id, current != null ? current.version : null, version);
+            BaseEntity type = MemoryEntities.changed(changes, "type", null);
+            return new PetRow(id, version + 1,
+                MemoryEntities.changed(changes, "name", current.name),
+                MemoryEntities.<LocalDate>changed(changes, "birthDate", current.birthDate),
+                type != null ? type.getId() : current.typeId,
+                current.ownerId);
+        }).version;
+    }
+
+    @Override
+    public Integer findVersionById(int id) throws DataAccessException {
+        PetRow row = this.store.pets.get(id);
+        return row != null ? row.version : null;
+    }
+
+    @Override
+    public Collection<Pet> findAll() throws DataAccessException {
+        return this.store.pets.all().stream()
+            .map(row -> MemoryEntities.petGraph(this.store, row, false))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public Collection<Pet> findAll(int afterId, int limit) throws DataAccessException {
+        return this.store.pets.after(afterId, limit, row -> true).stream()
+            .map(row -> MemoryEntities.petGraph(this.store, row, false))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public void streamAll(Consumer<Pet> action) throws DataAccessException {
+        for (PetRow row : this.store.pets.all()) {
+            action.accept(MemoryEntities.petGraph(this.store, row, true));
+        }
+    }
+
+    @Override
+    public void delete(Pet pet) throws DataAccessException {
+        this.store.deletePet(pet.getId());
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.memory;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.repository.PetTypeRepository;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.NamedRow;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.PetRow;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Implementation of the {@link PetTypeRepository} interface over the tables of the {@link MemoryStore}.
+ */
+@Repository
+@Profile("memory")
+public class MemoryPetTypeRepositoryImpl implements PetTypeRepository {
+
+    private final MemoryStore store;
+
+    public MemoryPetTypeRepositoryImpl(MemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public PetType findById(int id) throws DataAccessException {
+        NamedRow row = this.store.petTypes.get(id);
+        if (row == null) {
+            throw new ObjectRetrievalFailureException(PetType.class, id);
+        }
+        return MemoryEntities.petType(row);
+    }
+
+    @Override
+    public Collection<PetType> findAll() throws DataAccessException {
+        return this.store.petTypes.all().stream().map(MemoryEntities::petType).collect(Collectors.toList());
+    }
+
+    @Override
+    public void save(PetType petType) throws DataAccessException {
+        if (petType.isNew()) {
+            petType.setId(this.store.petTypes.nextId());
+        }
+        this.store.put(this.store.petTypes, new NamedRow(petType.getId(), petType.getName()));
+    }
+
+    /**
+     * Deletes the pet type with the pets of this type and their visits.
+     */
+    @Override
+    public void delete(PetType petType) throws DataAccessException {
+        int id = petType.getId();
+        List<PetRow> pets = this.store.pets.all().stream()
+            .filter(pet -> pet.typeId == id)
+            .collect(Collectors.toList());
+        for (PetRow pet : pets) {
+            this.store.deletePet(pet.id);
+        }
+        this.store.delete(this.store.petTypes, id);
+    }
+
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.memory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * The immutable rows of the {@link MemoryStore} tables, holding the ids of the rows they reference like the columns
+ * of the database tables, and their journal encoding.
+ */
+final class MemoryRows {
+
+    private MemoryRows() {
+    }
+
+    static final class OwnerRow {
+
+        final int id;
+        final int version;
+        final String firstName;
+        final String lastName;
+        final String address;
+        final String city;
+        final String telephone;
+
+        OwnerRow(int id, int version, String firstName, String lastName, String address, String city,
+                 String telephone) {
+            this.id = id;
+            this.version = version;
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.address = address;
+            this.city = city;
+            this.telephone = telephone;
+        }
+    }
+
+    static final class PetRow {
+
+        final int id;
+        final int version;
+        final String name;
+        final LocalDate birthDate;
+        final int typeId;
+        final int ownerId;
+
+        PetRow(int id, int version, String name, LocalDate birthDate, int typeId, int ownerId) {
+            this.id = id;
+            this.version = version;
+            this.name = name;
+            this.birthDate = birthDate;
+            this.typeId = typeId;
+            this.ownerId = ownerId;
+        }
+    }
+
+    static final class VisitRow {
+
+        final int id;
+        final int petId;
+        final LocalDate date;
+        final String description;
+
+        VisitRow(int id, int petId, LocalDate date, String description) {
+            this.id = id;
+            this.petId = petId;
+            this.date = date;
+            this.description = description;
+        }
+    }
+
+    static final class VetRow {
+
+        final int id;
+        final int version;
+        final String firstName;
+        final String lastName;
+        final int[] specialtyIds;
+
+        VetRow(int id, int version, String firstName, String lastName, int[] specialtyIds) {
+            this.id = id;
+            this.version = version;
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.specialtyIds = specialtyIds;
+        }
+    }
+
+    /**
+     * A row of the pet types or of the specialties.
+     */
+    static final class NamedRow {
+
+        final int id;
+        final String name;
+
+        NamedRow(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    static final class UserRow {
+
+        final String username;
+        final String password;
+        final Boolean enabled;
+        final String[] roles;
+
+        UserRow(String username, String password, Boolean enabled, String[] roles) {
+            this.username = username;
+            this.password = password;
+            this.enabled = enabled;
+            this.roles = roles;
+        }
+    }
+
+    /**
+     * Codec of the tables keyed by an <code>int</code> id.
+     */
+    abstract static class IdCodec<R> implements MemoryTable.Codec<Integer, R> {
+
+        @Override
+        public void writeKey(Integer key, DataOutput out) throws IOException {
+            out.writeInt(key);
+        }
+
+        @Override
+        public Integer readKey(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    }
+
+    static final MemoryTable.Codec<Integer, OwnerRow> OWNERS = new IdCodec<OwnerRow>() {
+
+        @Override
+        public void writeRow(OwnerRow row, DataOutput out) throws IOException {
+            out.writeInt(row.id);
+            out.writeInt(row.version);
+            writeString(row.firstName, out);
+            writeString(row.lastName, out);
+            writeString(row.address, out);
+            writeString(row.city, out);
+            writeString(row.telephone, out);
+        }
+
+        @Override
+        public OwnerRow readRow(DataInput in) throws IOException {
+            return new OwnerRow(in.readInt(), in.readInt(), readString(in), readString(in), readString(in),
+                readString(in), readString(in));
+        }
+    };
+
+    static final MemoryTable.Codec<Integer, PetRow> PETS = new IdCodec<PetRow>() {
+
+        @Override
+        public void writeRow(PetRow row, DataOutput out) throws IOException {
+            out.writeInt(row.id);
+            out.writeInt(row.version);
+            writeString(row.name, out);
+            writeDate(row.birthDate, out);
+            out.writeInt(row.typeId);
+            out.writeInt(row.ownerId);
+        }
+
+        @Override
+        public PetRow readRow(DataInput in) throws IOException {
+            return new PetRow(in.readInt(), in.readInt(), readString(in), readDate(in), in.readInt(), in.readInt());
+        }
+    };
+
+    static final MemoryTable.Codec<Integer, VisitRow> VISITS = new IdCodec<VisitRow>() {
+
+        @Override
+        public void writeRow(VisitRow row, DataOutput out) throws IOException {
+            out.writeInt(row.id);
+            out.writeInt(row.petId);
+            writeDate(row.date, out);
+            writeString(row.description, out);
+        }
+
+        @Override
+        public VisitRow readRow(DataInput in) throws IOException {
+            return new VisitRow(in.readInt(), in.readInt(), readDate(in), readString(in));
+        }
+    };
+
+    static final MemoryTable.Codec<Integer, VetRow> VETS = new IdCodec<VetRow>() {
+
+        @Override
+        public void writeRow(VetRow row, DataOutput out) throws IOException {
+            out.writeInt(row.id);
+            out.writeInt(row.version);
+            writeString(row.firstName, out);
+            writeString(row.lastName, out);
+            out.writeInt(row.specialtyIds.length);
+            for (int specialtyId : row.specialtyIds) {
+                out.writeInt(specialtyId);
+            }
+        }
+
+        @Override
+        public VetRow readRow(DataInput in) throws IOException {
+            int id = in.readInt();
+            int version = in.readInt();
+            String firstName = readString(in);
+            String lastName = readString(in);
+            int[] specialtyIds = new int[in.readInt()];
+            for (int i = 0; i < specialtyIds.length; i++) {
+                specialtyIds[i] = in.readInt();
+            }
+            return new VetRow(id, version, firstName, lastName, specialtyIds);
+        }
+    };
+
+    static final MemoryTable.Codec<Integer, NamedRow> NAMED = new IdCodec<NamedRow>() {
+
+        @Override
+        public void writeRow(NamedRow row, DataOutput out) throws IOException {
+            out.writeInt(row.id);
+            writeString(row.name, out);
+        }
+
+        @Override
+        public NamedRow readRow(DataInput in) throws IOException {
+            return new NamedRow(in.readInt(), readString(in));
+        }
+    };
+
+    static final MemoryTable.Codec<String, UserRow> USERS = new MemoryTable.Codec<String, UserRow>() {
+
+        @Override
+        public void writeKey(String key, DataOutput out) throws IOException {
+            out.writeUTF(key);
+        }
+
+        @Override
+        public String readKey(DataInput in) throws IOException {
+            return in.readUTF();
+        }
+
+        @Override
+        public void writeRow(UserRow row, DataOutput out) throws IOException {
+            out.writeUTF(row.username);
+            writeString(row.password, out);
+            out.writeByte(row.enabled == null ? -1 : row.enabled ? 1 : 0);
+            out.writeInt(row.roles.length);
+            for (String role : row.roles) {
+                out.writeUTF(role);
+            }
+        }
+
+        @Override
+        public UserRow readRow(DataInput in) throws IOException {
+            String username = in.readUTF();
+            String password = readString(in);
+            byte enabled = in.readByte();
+            String[] roles = new String[in.readInt()];
+            for (int i = 0; i < roles.length; i++) {
+                roles[i] = in.readUTF();
+            }
+            return new UserRow(username, password, enabled < 0 ? null : enabled == 1, roles);
+        }
+    };
+
+    private static void writeString(String value, DataOutput out) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeDate(LocalDate value, DataOutput out) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.toEpochDay());
+        }
+    }
+
+    private static LocalDate readDate(DataInput in) throws IOException {
+        return in.readBoolean() ? LocalDate.ofEpochDay(in.readLong()) : null;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.memory;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.samples.petclinic.model.Specialty;
+import org.springframework.samples.petclinic.repository.SpecialtyRepository;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.NamedRow;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.VetRow;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Implementation of the {@link SpecialtyRepository} interface over the tables of the {@link MemoryStore}.
+ */
+@Repository
+@Profile("memory")
+public class MemorySpecialtyRepositoryImpl implements SpecialtyRepository {
+
+    private final MemoryStore store;
+
+    public MemorySpecialtyRepositoryImpl(MemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public Specialty findById(int id) throws DataAccessException {
+        NamedRow row = this.store.specialties.get(id);
+        if (row == null) {
+            throw new ObjectRetrievalFailureException(Specialty.class, id);
+        }
+        return MemoryEntities.specialty(row);
+    }
+
+    @Override
+    public Collection<Specialty> findAll() throws DataAccessException {
+        return this.store.specialties.all().stream().map(MemoryEntities::specialty).collect(Collectors.toList());
+    }
+
+    @Override
+    public void save(Specialty specialty) throws DataAccessException {
+        if (specialty.isNew()) {
+            specialty.setId(this.store.specialties.nextId());
+        }
+        this.store.put(this.store.specialties, new NamedRow(specialty.getId(), specialty.getName()));
+    }
+
+    /**
+     * Removes the specialty from the vets having it, like the rows of <code>vet_specialties</code>: the versions of
+     * the vets are left as they are.
+     */
+    @Override
+    public void delete(Specialty specialty) throws DataAccessException {
+        int id = specialty.getId();
+        for (VetRow vet : this.store.vets.all()) {
+            if (Arrays.stream(vet.specialtyIds).anyMatch(specialtyId -> specialtyId == id)) {
+                this.store.update(this.store.vets, vet.id, current -> current == null ? null :
+                    new VetRow(current.id, current.version, current.firstName, current.lastName,
+                        Arrays.stream(current.specialtyIds).filter(specialtyId -> specialtyId != id).toArray()));
+            }
+        }
+        this.store.delete(this.store.specialties, id);
+    }
+
+}
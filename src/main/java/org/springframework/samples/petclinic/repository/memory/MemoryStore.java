@@ -0,0 +1,464 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.memory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.NamedRow;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.OwnerRow;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.PetRow;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.UserRow;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.VetRow;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.VisitRow;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * The tables of the <code>memory</code> repository profile, held in memory and persisted to an append-only
+ * {@link MemoryJournal} (<code>petclinic.memory.journal</code>) replayed at startup. The journal is then compacted
+ * into one record per row; when it is empty, the tables are first filled from the database of the active database
+ * profile, so that the data of an existing database is taken over.
+ * <p/>
+ * The writes of a transaction are serialized with the other writes until it completes. They are staged in the
+ * {@link MemoryTable tables}, so that the transaction reads them back but no other thread does, and dropped if it rolls
+ * back. Once it has committed, they are appended to the journal, then published to the tables at once: the reads see
+ * the committed rows only, and never a part of the writes of a transaction. If the journal cannot be written, the
+ * writes are dropped rather than published.
+ */
+@Component
+@Profile("memory")
+@DependsOnDatabaseInitialization
+public class MemoryStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(MemoryStore.class);
+
+    private static final byte PUT = 1;
+
+    private static final byte DELETE = 0;
+
+    private final ReentrantReadWriteLock publication = new ReentrantReadWriteLock();
+
+    final MemoryTable<Integer, OwnerRow> owners =
+        new MemoryTable<>(1, row -> row.id, MemoryRows.OWNERS, this.publication.readLock());
+
+    final MemoryTable<Integer, PetRow> pets =
+        new MemoryTable<>(2, row -> row.id, MemoryRows.PETS, this.publication.readLock());
+
+    final MemoryTable<Integer, VisitRow> visits =
+        new MemoryTable<>(3, row -> row.id, MemoryRows.VISITS, this.publication.readLock());
+
+    final MemoryTable<Integer, VetRow> vets =
+        new MemoryTable<>(4, row -> row.id, MemoryRows.VETS, this.publication.readLock());
+
+    final MemoryTable<Integer, NamedRow> specialties =
+        new MemoryTable<>(5, row -> row.id, MemoryRows.NAMED, this.publication.readLock());
+
+    final MemoryTable<Integer, NamedRow> petTypes =
+        new MemoryTable<>(6, row -> row.id, MemoryRows.NAMED, this.publication.readLock());
+
+    final MemoryTable<String, UserRow> users =
+        new MemoryTable<>(7, row -> row.username, MemoryRows.USERS, this.publication.readLock());
+
+    private final List<MemoryTable<?, ?>> tables = new ArrayList<>();
+
+    private final ConcurrentMap<Integer, Set<Integer>> petIdsByOwnerId = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Integer, Set<Integer>> visitIdsByPetId = new ConcurrentHashMap<>();
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private final MemoryJournal journal;
+
+    public MemoryStore(@Value("${petclinic.memory.journal:petclinic.journal}") String journalPath,
+                       @Value("${petclinic.memory.journal-capacity:1048576}") int journalCapacity,
+                       ObjectProvider<DataSource> dataSource) throws IOException {
+        Collections.addAll(this.tables, this.owners, this.pets, this.visits, this.vets, this.specialties,
+            this.petTypes, this.users);
+        this.pets.addListener((previous, row) -> {
+            if (previous != null) {
+                removeFromIndex(this.petIdsByOwnerId, previous.ownerId, previous.id);
+            }
+            if (row != null) {
+                addToIndex(this.petIdsByOwnerId, row.ownerId, row.id);
+            }
+        });
+        this.visits.addListener((previous, row) -> {
+            if (previous != null) {
+                removeFromIndex(this.visitIdsByPetId, previous.petId, previous.id);
+            }
+            if (row != null) {
+                addToIndex(this.visitIdsByPetId, row.petId, row.id);
+            }
+        });
+
+        Path path = Paths.get(journalPath).toAbsolutePath();
+        Files.createDirectories(path.getParent());
+        int[] records = new int[1];
+        new MemoryJournal(path, journalCapacity, record -> {
+            replay(record);
+            records[0]++;
+        }).close();
+        if (records[0] > 0) {
+            logger.info("Replayed {} records of the journal {}", records[0], path);
+        } else if (dataSource.getIfAvailable() != null) {
+            load(new JdbcTemplate(dataSource.getIfAvailable()));
+            logger.info("Loaded {} owners, {} pets and {} vets from the database", this.owners.size(),
+                this.pets.size(), this.vets.size());
+        }
+        this.journal = compact(path, journalCapacity);
+    }
+
+    private static void addToIndex(ConcurrentMap<Integer, Set<Integer>> index, int key, int id) {
+        index.computeIfAbsent(key, k -> new ConcurrentSkipListSet<>()).add(id);
+    }
+
+    private static void removeFromIndex(ConcurrentMap<Integer, Set<Integer>> index, int key, int id) {
+        Set<Integer> ids = index.get(key);
+        if (ids != null) {
+            ids.remove(id);
+        }
+    }
+
+    /**
+     * @return the pets of the owner, ordered by id
+     */
+    List<PetRow> petsOf(int ownerId) {
+        return rowsOf(this.pets, this.petIdsByOwnerId, ownerId, row -> row.ownerId == ownerId);
+    }
+
+    /**
+     * @return the visits of the pet, ordered by id
+     */
+    List<VisitRow> visitsOf(int petId) {
+        return rowsOf(this.visits, this.visitIdsByPetId, petId, row -> row.petId == petId);
+    }
+
+    private static <R> List<R> rowsOf(MemoryTable<Integer, R> table, ConcurrentMap<Integer, Set<Integer>> index,
+                                      int key, Predicate<R> belongs) {
+        return table.select(() -> index.getOrDefault(key, Collections.emptySet()), belongs);
+    }
+
+    /**
+     * Delete a pet with its visits.
+     */
+    void deletePet(int petId) {
+        for (VisitRow visit : visitsOf(petId)) {
+            delete(this.visits, visit.id);
+        }
+        delete(this.pets, petId);
+    }
+
+    /**
+     * Insert or replace a row.
+     */
+    <K extends Comparable<K>, R> void put(MemoryTable<K, R> table, R row) {
+        write(table, table.keyOf(row), row);
+    }
+
+    /**
+     * Delete the row of the given key, if any.
+     */
+    <K extends Comparable<K>, R> void delete(MemoryTable<K, R> table, K key) {
+        write(table, key, null);
+    }
+
+    /**
+     * Replace the row of the given key by the result of the given function, called with the current row (or
+     * <code>null</code>) while holding the write lock, so that no other write can happen in between. The function may
+     * return its argument to leave the row as it is, or throw to cancel the update.
+     *
+     * @return the new row
+     */
+    <K extends Comparable<K>, R> R update(MemoryTable<K, R> table, K key, UnaryOperator<R> function) {
+        Transaction transaction = joinTransaction();
+        if (transaction == null) {
+            this.writeLock.lock();
+        }
+        try {
+            R current = table.get(key);
+            R row = function.apply(current);
+            if (row != current) {
+                write(table, key, row);
+            }
+            return row;
+        } finally {
+            if (transaction == null) {
+                this.writeLock.unlock();
+            }
+        }
+    }
+
+    private <K extends Comparable<K>, R> void write(MemoryTable<K, R> table, K key, R row) {
+        byte[] record = encode(table, key, row);
+        Transaction transaction = joinTransaction();
+        if (transaction == null) {
+            this.writeLock.lock();
+            try {
+                append(Collections.singletonList(record));
+                this.publication.writeLock().lock();
+                try {
+                    table.apply(key, row);
+                } finally {
+                    this.publication.writeLock().unlock();
+                }
+            } finally {
+                this.writeLock.unlock();
+            }
+            return;
+        }
+        if (table.stage(key, row)) {
+            transaction.tables.add(table);
+        }
+        transaction.records.add(record);
+    }
+
+    /**
+     * @return the writes of the current transaction, taking the write lock at its first write, or <code>null</code>
+     * outside of a transaction
+     */
+    private Transaction joinTransaction() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Transaction transaction = (Transaction) TransactionSynchronizationManager.getResource(this);
+        if (transaction == null) {
+            this.writeLock.lock();
+            transaction = new Transaction();
+            TransactionSynchronizationManager.bindResource(this, transaction);
+            TransactionSynchronizationManager.registerSynchronization(transaction);
+        }
+        return transaction;
+    }
+
+    private void append(List<byte[]> records) {
+        try {
+            this.journal.append(records);
+        } catch (IOException ex) {
+            throw new DataAccessResourceFailureException("Could not write to the journal", ex);
+        }
+    }
+
+    /**
+     * The writes of a transaction, holding the write lock until it completes.
+     */
+    private final class Transaction implements TransactionSynchronization {
+
+        private final List<MemoryTable<?, ?>> tables = new ArrayList<>();
+
+        private final List<byte[]> records = new ArrayList<>();
+
+        /**
+         * Journals the writes once the transaction is committed for good, then publishes them; the writes are dropped
+         * when they cannot be journaled, and the exception thrown to the caller of the commit.
+         */
+        @Override
+        public void afterCommit() {
+            append(this.records);
+            publication.writeLock().lock();
+            try {
+                for (MemoryTable<?, ?> table : this.tables) {
+                    table.publish();
+                }
+            } finally {
+                publication.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            try {
+                for (MemoryTable<?, ?> table : this.tables) {
+                    table.unstage();
+                }
+            } finally {
+                TransactionSynchronizationManager.unbindResource(MemoryStore.this);
+                writeLock.unlock();
+            }
+        }
+    }
+
+    private static <K extends Comparable<K>, R> byte[] encode(MemoryTable<K, R> table, K key, R row) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(table.code());
+            if (row != null) {
+                out.writeByte(PUT);
+                table.codec().writeRow(row, out);
+            } else {
+                out.writeByte(DELETE);
+                table.codec().writeKey(key, out);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void replay(ByteBuffer record) {
+        byte[] bytes = new byte[record.remaining()];
+        record.get(bytes);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        try {
+            byte code = in.readByte();
+            for (MemoryTable<?, ?> table : this.tables) {
+                if (table.code() == code) {
+                    replay(table, in.readByte(), in);
+                    return;
+                }
+            }
+            throw new IOException("Unknown table " + code);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Corrupted journal record", ex);
+        }
+    }
+
+    private static <K extends Comparable<K>, R> void replay(MemoryTable<K, R> table, byte operation,
+                                                            DataInputStream in) throws IOException {
+        if (operation == PUT) {
+            R row = table.codec().readRow(in);
+            table.apply(table.keyOf(row), row);
+        } else {
+            table.apply(table.codec().readKey(in), null);
+        }
+    }
+
+    /**
+     * Rewrite the journal with a record per row, so that it does not keep growing with the rows updated or deleted,
+     * and open it for the next writes.
+     */
+    private MemoryJournal compact(Path path, int journalCapacity) throws IOException {
+        Path compacted = path.resolveSibling(path.getFileName() + ".compacted");
+        Files.deleteIfExists(compacted);
+        List<byte[]> records = new ArrayList<>();
+        for (MemoryTable<?, ?> table : this.tables) {
+            addRecords(table, records);
+        }
+        try (MemoryJournal journal = new MemoryJournal(compacted, journalCapacity, record -> {
+        })) {
+            journal.append(records);
+        }
+        Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new MemoryJournal(path, journalCapacity, record -> {
+        });
+    }
+
+    private static <K extends Comparable<K>, R> void addRecords(MemoryTable<K, R> table, List<byte[]> records) {
+        for (R row : table.all()) {
+            records.add(encode(table, table.keyOf(row), row));
+        }
+    }
+
+    /**
+     * Fill the tables from the database.
+     */
+    private void load(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.query("SELECT id, name FROM types", rs -> {
+            putLoaded(this.petTypes, new NamedRow(rs.getInt("id"), rs.getString("name")));
+        });
+        jdbcTemplate.query("SELECT id, name FROM specialties", rs -> {
+            putLoaded(this.specialties, new NamedRow(rs.getInt("id"), rs.getString("name")));
+        });
+        Map<Integer, List<Integer>> specialtyIds = new HashMap<>();
+        jdbcTemplate.query("SELECT vet_id, specialty_id FROM vet_specialties", rs -> {
+            specialtyIds.computeIfAbsent(rs.getInt("vet_id"), id -> new ArrayList<>()).add(rs.getInt("specialty_id"));
+        });
+        jdbcTemplate.query("SELECT id, first_name, last_name, version FROM vets", rs -> {
+            int id = rs.getInt("id");
+            int[] ids = specialtyIds.getOrDefault(id, Collections.emptyList()).stream()
+                .mapToInt(Integer::intValue).toArray();
+            putLoaded(this.vets, new VetRow(id, rs.getInt("version"), rs.getString("first_name"),
+                rs.getString("last_name"), ids));
+        });
+        jdbcTemplate.query("SELECT id, first_name, last_name, address, city, telephone, version FROM owners", rs -> {
+            putLoaded(this.owners, new OwnerRow(rs.getInt("id"), rs.getInt("version"), rs.getString("first_name"),
+                rs.getString("last_name"), rs.getString("address"), rs.getString("city"),
+                rs.getString("telephone")));
+        });
+        jdbcTemplate.query("SELECT id, name, birth_date, type_id, owner_id, version FROM pets", rs -> {
+            Date birthDate = rs.getDate("birth_date");
+            putLoaded(this.pets, new PetRow(rs.getInt("id"), rs.getInt("version"), rs.getString("name"),
+                birthDate != null ? birthDate.toLocalDate() : null, rs.getInt("type_id"), rs.getInt("owner_id")));
+        });
+        jdbcTemplate.query("SELECT id, pet_id, visit_date, description FROM visits", rs -> {
+            Date date = rs.getDate("visit_date");
+            putLoaded(this.visits, new VisitRow(rs.getInt("id"), rs.getInt("pet_id"),
+                date != null ? date.toLocalDate() : null, rs.getString("description")));
+        });
+        Map<String, List<String>> roles = new HashMap<>();
+        jdbcTemplate.query("SELECT username, role FROM roles", rs -> {
+            roles.computeIfAbsent(rs.getString("username"), username -> new ArrayList<>()).add(rs.getString("role"));
+        });
+        jdbcTemplate.query("SELECT username, password, enabled FROM users", rs -> {
+            String username = rs.getString("username");
+            putLoaded(this.users, new UserRow(username, rs.getString("password"), rs.getBoolean("enabled"),
+                roles.getOrDefault(username, Collections.emptyList()).toArray(new String[0])));
+        });
+    }
+
+    private static <K extends Comparable<K>, R> void putLoaded(MemoryTable<K, R> table, R row) {
+        table.apply(table.keyOf(row), row);
+    }
+
+    /**
+     * @return the number of bytes of the journal
+     */
+    public int journalSize() {
+        return this.journal.size();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        this.journal.close();
+    }
+}
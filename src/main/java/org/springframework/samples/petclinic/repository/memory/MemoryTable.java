@@ -0,0 +1,279 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.memory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * A table of the {@link MemoryStore}: its immutable rows sorted by key, so that the pages ordered by id are read from
+ * a tail of the map. The rows are only changed through the store, which journals the changes.
+ * <p/>
+ * The rows written by a transaction are staged in a map bound to it, which its reads go through, and published to the
+ * table by the store once it commits. The reads of several rows copy them while holding the read lock of the store
+ * publications, so that they see either all or none of the writes of another transaction.
+ *
+ * @param <K> the key type
+ * @param <R> the row type
+ */
+final class MemoryTable<K extends Comparable<K>, R> {
+
+    /**
+     * Writes and reads the keys and the rows of a table to and from the journal.
+     */
+    interface Codec<K, R> {
+
+        void writeKey(K key, DataOutput out) throws IOException;
+
+        K readKey(DataInput in) throws IOException;
+
+        void writeRow(R row, DataOutput out) throws IOException;
+
+        R readRow(DataInput in) throws IOException;
+    }
+
+    private final byte code;
+
+    private final Function<R, K> keyOf;
+
+    private final Codec<K, R> codec;
+
+    private final ConcurrentNavigableMap<K, R> rows = new ConcurrentSkipListMap<>();
+
+    private final AtomicInteger lastId = new AtomicInteger();
+
+    private final List<BiConsumer<R, R>> listeners = new CopyOnWriteArrayList<>();
+
+    private final Lock publication;
+
+    /**
+     * @param code        the code of the table in the journal records
+     * @param keyOf       the key of a row
+     * @param codec       the journal encoding of the keys and rows
+     * @param publication the read lock of the store publications
+     */
+    MemoryTable(int code, Function<R, K> keyOf, Codec<K, R> codec, Lock publication) {
+        this.code = (byte) code;
+        this.keyOf = keyOf;
+        this.codec = codec;
+        this.publication = publication;
+    }
+
+    byte code() {
+        return this.code;
+    }
+
+    Codec<K, R> codec() {
+        return this.codec;
+    }
+
+    K keyOf(R row) {
+        return this.keyOf.apply(row);
+    }
+
+    /**
+     * Register a listener called with the previous and the new row (either being <code>null</code>) of every change,
+     * to maintain a secondary index.
+     */
+    void addListener(BiConsumer<R, R> listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * @return the row with the given key, <code>null</code> if none
+     */
+    R get(K key) {
+        NavigableMap<K, R> staged = staged();
+        if (staged != null && staged.containsKey(key)) {
+            return staged.get(key);
+        }
+        return this.rows.get(key);
+    }
+
+    /**
+     * @return the rows, ordered by key
+     */
+    List<R> all() {
+        return select(this.rows, null, Integer.MAX_VALUE, row -> true);
+    }
+
+    /**
+     * @return at most <code>limit</code> rows matching the filter with a key greater than the given one, ordered by key
+     */
+    List<R> after(K key, int limit, Predicate<? super R> filter) {
+        return select(this.rows.tailMap(key, false), key, limit, filter);
+    }
+
+    /**
+     * @param keys   the keys of the committed rows, read while holding the publication lock
+     * @param filter the condition of the rows staged by the current transaction, which may have changed the committed
+     *               rows too
+     * @return the rows of the given keys and the rows staged by the current transaction matching the filter, ordered by
+     * key
+     */
+    List<R> select(Supplier<? extends Collection<K>> keys, Predicate<? super R> filter) {
+        NavigableMap<K, R> selected = new TreeMap<>();
+        this.publication.lock();
+        try {
+            for (K key : keys.get()) {
+                R row = this.rows.get(key);
+                if (row != null) {
+                    selected.put(key, row);
+                }
+            }
+        } finally {
+            this.publication.unlock();
+        }
+        NavigableMap<K, R> staged = staged();
+        if (staged != null) {
+            for (Map.Entry<K, R> entry : staged.entrySet()) {
+                if (entry.getValue() != null && filter.test(entry.getValue())) {
+                    selected.put(entry.getKey(), entry.getValue());
+                } else {
+                    selected.remove(entry.getKey());
+                }
+            }
+        }
+        return new ArrayList<>(selected.values());
+    }
+
+    private List<R> select(NavigableMap<K, R> committed, K after, int limit, Predicate<? super R> filter) {
+        NavigableMap<K, R> staged = staged();
+        List<R> selected = new ArrayList<>();
+        this.publication.lock();
+        try {
+            Map<K, R> visible = committed;
+            if (staged != null) {
+                NavigableMap<K, R> merged = new TreeMap<>(committed);
+                for (Map.Entry<K, R> entry : (after != null ? staged.tailMap(after, false) : staged).entrySet()) {
+                    if (entry.getValue() != null) {
+                        merged.put(entry.getKey(), entry.getValue());
+                    } else {
+                        merged.remove(entry.getKey());
+                    }
+                }
+                visible = merged;
+            }
+            Iterator<R> rows = visible.values().iterator();
+            while (selected.size() < limit && rows.hasNext()) {
+                R row = rows.next();
+                if (filter.test(row)) {
+                    selected.add(row);
+                }
+            }
+        } finally {
+            this.publication.unlock();
+        }
+        return selected;
+    }
+
+    int size() {
+        return staged() == null ? this.rows.size() : all().size();
+    }
+
+    /**
+     * @return a new id, greater than the ids of all the rows added so far
+     */
+    int nextId() {
+        return this.lastId.incrementAndGet();
+    }
+
+    /**
+     * @return the rows staged by the current transaction, a removed row being mapped to <code>null</code>, or
+     * <code>null</code> if it did not write to the table
+     */
+    @SuppressWarnings("unchecked")
+    private NavigableMap<K, R> staged() {
+        return (NavigableMap<K, R>) TransactionSynchronizationManager.getResource(this);
+    }
+
+    /**
+     * Stage the given row, or the removal of the row of the given key when the row is <code>null</code>, in the writes
+     * of the current transaction.
+     *
+     * @return whether it is the first write of the transaction to the table
+     */
+    boolean stage(K key, R row) {
+        NavigableMap<K, R> staged = staged();
+        boolean first = staged == null;
+        if (first) {
+            staged = new TreeMap<>();
+            TransactionSynchronizationManager.bindResource(this, staged);
+        }
+        staged.put(key, row);
+        if (row != null && key instanceof Integer) {
+            this.lastId.accumulateAndGet((Integer) key, Math::max);
+        }
+        return first;
+    }
+
+    /**
+     * Apply the rows staged by the current transaction, which is committed. The caller holds the write lock of the
+     * store publications.
+     */
+    void publish() {
+        NavigableMap<K, R> staged = staged();
+        if (staged != null) {
+            for (Map.Entry<K, R> entry : staged.entrySet()) {
+                apply(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Forget the rows staged by the current transaction, once it completes.
+     */
+    void unstage() {
+        TransactionSynchronizationManager.unbindResourceIfPossible(this);
+    }
+
+    /**
+     * Put the given row, or remove the row of the given key when the row is <code>null</code>.
+     *
+     * @return the previous row, <code>null</code> if none
+     */
+    R apply(K key, R row) {
+        R previous = row != null ? this.rows.put(key, row) : this.rows.remove(key);
+        if (row != null && key instanceof Integer) {
+            this.lastId.accumulateAndGet((Integer) key, Math::max);
+        }
+        if (previous != null || row != null) {
+            for (BiConsumer<R, R> listener : this.listeners) {
+                listener.accept(previous, row);
+            }
+        }
+        return previous;
+    }
+}
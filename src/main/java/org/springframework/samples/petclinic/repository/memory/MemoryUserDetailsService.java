@@ -0,0 +1,52 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.memory;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.UserRow;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reads the users of the basic authentication from the {@link MemoryStore}, in place of the <code>users</code> and
+ * <code>roles</code> tables read by the other repository profiles.
+ */
+@Component
+@Profile("memory")
+public class MemoryUserDetailsService implements UserDetailsService {
+
+    private final MemoryStore store;
+
+    public MemoryUserDetailsService(MemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        UserRow row = this.store.users.get(username);
+        if (row == null || row.roles.length == 0) {
+            throw new UsernameNotFoundException("Username " + username + " not found");
+        }
+        return User.withUsername(row.username)
+            .password(row.password)
+            .disabled(!Boolean.TRUE.equals(row.enabled))
+            .authorities(row.roles)
+            .build();
+    }
+}
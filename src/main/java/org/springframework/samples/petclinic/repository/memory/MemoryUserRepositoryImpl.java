@@ -0,0 +1,53 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.memory;
+
+import java.util.Objects;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.samples.petclinic.model.Role;
+import org.springframework.samples.petclinic.model.User;
+import org.springframework.samples.petclinic.repository.UserRepository;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.UserRow;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Implementation of the {@link UserRepository} interface over the tables of the {@link MemoryStore}.
+ */
+@Repository
+@Profile("memory")
+public class MemoryUserRepositoryImpl implements UserRepository {
+
+    private final MemoryStore store;
+
+    public MemoryUserRepositoryImpl(MemoryStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Inserts or replaces the user with its roles.
+     */
+    @Override
+    public void save(User user) throws DataAccessException {
+        String[] roles = user.getRoles().stream()
+            .map(Role::getName)
+            .filter(Objects::nonNull)
+            .toArray(String[]::new);
+        this.store.put(this.store.users, new UserRow(user.getUsername(), user.getPassword(), user.getEnabled(), roles));
+    }
+
+}
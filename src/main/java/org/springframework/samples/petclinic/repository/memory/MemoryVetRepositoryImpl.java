@@ -0,0 +1,126 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.memory;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.samples.petclinic.model.Specialty;
+import org.springframework.samples.petclinic.model.Vet;
+import org.springframework.samples.petclinic.repository.VetRepository;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.VetRow;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Implementation of the {@link VetRepository} interface over the tables of the {@link MemoryStore}.
+ */
+@Repository
+@Profile("memory")
+public class MemoryVetRepositoryImpl implements VetRepository {
+
+    private static final Comparator<String> NAME_ORDER = Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER);
+
+    private static final Comparator<VetRow> VET_ORDER = Comparator
+        .comparing((VetRow row) -> row.lastName, NAME_ORDER)
+        .thenComparing(row -> row.firstName, NAME_ORDER)
+        .thenComparingInt(row -> row.id);
+
+    private final MemoryStore store;
+
+    public MemoryVetRepositoryImpl(MemoryStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @return the vets ordered by last name, first name and id
+     */
+    @Override
+    public Collection<Vet> findAll() throws DataAccessException {
+        return this.store.vets.all().stream()
+            .sorted(VET_ORDER)
+            .map(row -> MemoryEntities.vet(this.store, row))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public Vet findById(int id) throws DataAccessException {
+        VetRow row = this.store.vets.get(id);
+        if (row == null) {
+            throw new ObjectRetrievalFailureException(Vet.class, id);
+        }
+        return MemoryEntities.vet(this.store, row);
+    }
+
+    @Override
+    public Collection<Vet> findAll(int afterId, int limit) throws DataAccessException {
+        return this.store.vets.after(afterId, limit, row -> true).stream()
+            .map(row -> MemoryEntities.vet(this.store, row))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public void save(Vet vet) throws DataAccessException {
+        if (vet.isNew()) {
+            vet.setId(this.store.vets.nextId());
+            vet.setVersion(0);
+            this.store.put(this.store.vets, row(vet, 0));
+        } else {
+            VetRow row = this.store.update(this.store.vets, vet.getId(),
+                current -> current != null ? row(vet, current.version + 1) : null);
+            if (row != null) {
+                vet.setVersion(row.version);
+            }
+        }
+    }
+
+    private static VetRow row(Vet vet, int version) {
+        int[] specialtyIds = vet.getSpecialties().stream()
+            .map(Specialty::getId)
+            .filter(id -> id != null)
+            .mapToInt(Integer::intValue)
+            .toArray();
+        return new VetRow(vet.getId(), version, vet.getFirstName(), vet.getLastName(), specialtyIds);
+    }
+
+    @Override
+    public int update(int id, int version, Map<String, Object> changes) throws DataAccessException {
+        MemoryEntities.checkProperties(Vet.class, Vet.UPDATABLE_PROPERTIES, changes);
+        return this.store.update(this.store.vets, id, current -> {
+            MemoryEntities.checkVersion(Vet.class, id, current != null ? current.version : null, version);
+            return new VetRow(id, version + 1,
+                MemoryEntities.changed(changes, "firstName", current.firstName),
+                MemoryEntities.changed(changes, "lastName", current.lastName),
+                current.specialtyIds);
+        }).version;
+    }
+
+    @Override
+    public Integer findVersionById(int id) throws DataAccessException {
+        VetRow row = this.store.vets.get(id);
+        return row != null ? row.version : null;
+    }
+
+    @Override
+    public void delete(Vet vet) throws DataAccessException {
+        this.store.delete(this.store.vets, vet.getId());
+    }
+
+}
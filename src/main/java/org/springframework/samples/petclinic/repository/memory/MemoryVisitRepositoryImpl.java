@@ -0,0 +1,116 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.memory;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.Visit;
+import org.springframework.samples.petclinic.repository.VisitRepository;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.PetRow;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.VisitRow;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Implementation of the {@link VisitRepository} interface over the tables of the {@link MemoryStore}.
+ */
+@Repository
+@Profile("memory")
+public class MemoryVisitRepositoryImpl implements VisitRepository {
+
+    private final MemoryStore store;
+
+    public MemoryVisitRepositoryImpl(MemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public void save(Visit visit) throws DataAccessException {
+        if (visit.isNew()) {
+            visit.setId(this.store.visits.nextId());
+        }
+        this.store.put(this.store.visits,
+            new VisitRow(visit.getId(), visit.getPet().getId(), visit.getDate(), visit.getDescription()));
+    }
+
+    @Override
+    public List<Visit> findByPetId(Integer petId) {
+        PetRow petRow = this.store.pets.get(petId);
+        if (petRow == null) {
+            throw new ObjectRetrievalFailureException(Pet.class, petId);
+        }
+        Pet pet = MemoryEntities.pet(this.store, petRow);
+        return this.store.visitsOf(petId).stream()
+            .map(row -> {
+                Visit visit = MemoryEntities.visit(row);
+                visit.setPet(pet);
+                return visit;
+            })
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public Visit findById(int id) throws DataAccessException {
+        VisitRow row = this.store.visits.get(id);
+        if (row == null) {
+            throw new ObjectRetrievalFailureException(Visit.class, id);
+        }
+        return visit(row);
+    }
+
+    /**
+     * @return the visit with its pet, the type and the header of the owner of the pet
+     */
+    private Visit visit(VisitRow row) {
+        Visit visit = MemoryEntities.visit(row);
+        PetRow pet = this.store.pets.get(row.petId);
+        if (pet != null) {
+            visit.setPet(MemoryEntities.petGraph(this.store, pet, false));
+        }
+        return visit;
+    }
+
+    @Override
+    public Collection<Visit> findAll() throws DataAccessException {
+        return this.store.visits.all().stream().map(this::visit).collect(Collectors.toList());
+    }
+
+    @Override
+    public Collection<Visit> findAll(int afterId, int limit) throws DataAccessException {
+        return this.store.visits.after(afterId, limit, row -> true).stream()
+            .map(this::visit)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public void streamAll(Consumer<Visit> action) throws DataAccessException {
+        for (VisitRow row : this.store.visits.all()) {
+            action.accept(visit(row));
+        }
+    }
+
+    @Override
+    public void delete(Visit visit) throws DataAccessException {
+        this.store.delete(this.store.visits, visit.getId());
+    }
+
+}
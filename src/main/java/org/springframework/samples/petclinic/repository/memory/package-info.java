@@ -0,0 +1,5 @@
+/**
+ * The classes in this package represent the in-memory implementation
+ * of PetClinic's persistence layer, persisted to an append-only journal.
+ */
+package org.springframework.samples.petclinic.repository.memory;
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.repository.springdatajpa;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.repository.OwnerFetchPlan;
+
+@Profile("spring-data-jpa")
+public interface OwnerRepositoryOverride {
+
+	Collection<Owner> findByLastName(String lastName, OwnerFetchPlan plan);
+
+	Owner findById(int id, OwnerFetchPlan plan);
+
+	Collection<Owner> findAll(int afterId, int limit);
+
+	Collection<Owner> findByLastName(String lastName, int afterId, int limit);
+
+	void streamAll(Consumer<Owner> action);
+
+	void delete(Owner owner);
+
+	void saveAll(Collection<Owner> owners);
+
+	int update(int id, int version, Map<String, Object> changes);
+
+	Collection<String> findLastNames(String prefix, int limit);
+
+	void streamLastNames(ObjIntConsumer<String> action);
+
+}
@@ -16,6 +16,10 @@
 
 package org.springframework.samples.petclinic.repository.springdatajpa;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Consumer;
+
 import org.springframework.context.annotation.Profile;
 import org.springframework.samples.petclinic.model.Pet;
 
@@ -29,4 +33,10 @@ public interface PetRepositoryOverride {
 	
 	void delete(Pet pet);
 
+	Collection<Pet> findAll(int afterId, int limit);
+
+	void streamAll(Consumer<Pet> action);
+
+	int update(int id, int version, Map<String, Object> changes);
+
 }
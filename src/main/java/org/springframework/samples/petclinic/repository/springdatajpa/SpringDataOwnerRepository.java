@@ -18,6 +18,7 @@ package org.springframework.samples.petclinic.repository.springdatajpa;
 import java.util.Collection;
 
 import org.springframework.context.annotation.Profile;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.Repository;
 import org.springframework.data.repository.query.Param;
@@ -32,13 +33,24 @@ import org.springframework.samples.petclinic.repository.OwnerRepository;
  */
 
 @Profile("spring-data-jpa")
-public interface SpringDataOwnerRepository extends OwnerRepository, Repository<Owner, Integer> {
+public interface SpringDataOwnerRepository extends OwnerRepository, Repository<Owner, Integer>, OwnerRepositoryOverride {
 
     @Override
-    @Query("SELECT DISTINCT owner FROM Owner owner left join fetch owner.pets WHERE owner.lastName LIKE :lastName%")
+    @EntityGraph(Owner.WITH_PETS_AND_VISITS)
+    @Query("SELECT DISTINCT owner FROM Owner owner WHERE owner.lastName LIKE :lastName%")
     Collection<Owner> findByLastName(@Param("lastName") String lastName);
 
     @Override
-    @Query("SELECT owner FROM Owner owner left join fetch owner.pets WHERE owner.id =:id")
+    @EntityGraph(Owner.WITH_PETS_AND_VISITS)
+    @Query("SELECT DISTINCT owner FROM Owner owner WHERE owner.id =:id")
     Owner findById(@Param("id") int id);
+
+    @Override
+    @EntityGraph(Owner.WITH_PETS_AND_VISITS)
+    @Query("SELECT DISTINCT owner FROM Owner owner")
+    Collection<Owner> findAll();
+
+    @Override
+    @Query("SELECT owner.version FROM Owner owner WHERE owner.id = :id")
+    Integer findVersionById(@Param("id") int id);
 }
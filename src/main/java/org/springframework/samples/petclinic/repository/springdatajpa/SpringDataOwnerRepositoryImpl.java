@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.repository.springdatajpa;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.repository.OwnerFetchPlan;
+import org.springframework.samples.petclinic.util.JpaStreamUtils;
+import org.springframework.samples.petclinic.util.JpaUpdateUtils;
+
+@Profile("spring-data-jpa")
+public class SpringDataOwnerRepositoryImpl implements OwnerRepositoryOverride {
+
+	@PersistenceContext
+	private EntityManager em;
+
+	@Value("${petclinic.streaming.fetch-size:500}")
+	private int streamingFetchSize;
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public Collection<Owner> findByLastName(String lastName, OwnerFetchPlan plan) {
+		Query query = this.em.createQuery("SELECT DISTINCT owner FROM Owner owner WHERE owner.lastName LIKE :lastName");
+		query.setParameter("lastName", lastName + "%");
+		return withFetchPlan(query, plan).getResultList();
+	}
+
+	@Override
+	public Owner findById(int id, OwnerFetchPlan plan) {
+		Query query = this.em.createQuery("SELECT DISTINCT owner FROM Owner owner WHERE owner.id =:id");
+		query.setParameter("id", id);
+		return (Owner) withFetchPlan(query, plan).getSingleResult();
+	}
+
+	@Override
+	public Collection<Owner> findAll(int afterId, int limit) {
+		Query query = this.em.createQuery("SELECT owner.id FROM Owner owner WHERE owner.id > :afterId ORDER BY owner.id");
+		query.setParameter("afterId", afterId);
+		return findPage(query, limit);
+	}
+
+	@Override
+	public Collection<Owner> findByLastName(String lastName, int afterId, int limit) {
+		Query query = this.em.createQuery("SELECT owner.id FROM Owner owner WHERE owner.lastName LIKE :lastName AND owner.id > :afterId ORDER BY owner.id");
+		query.setParameter("lastName", lastName + "%");
+		query.setParameter("afterId", afterId);
+		return findPage(query, limit);
+	}
+
+	/**
+	 * Loads the owners whose ids are returned by the given query. The page is bounded on the owner ids first: limiting
+	 * a query fetching the pets collection would be applied in memory by Hibernate.
+	 */
+	@SuppressWarnings("unchecked")
+	private Collection<Owner> findPage(Query idQuery, int limit) {
+		List<Integer> ids = idQuery.setMaxResults(limit).getResultList();
+		if (ids.isEmpty()) {
+			return new ArrayList<>();
+		}
+		Query query = this.em.createQuery("SELECT DISTINCT owner FROM Owner owner WHERE owner.id IN :ids ORDER BY owner.id");
+		query.setParameter("ids", ids);
+		return withFetchPlan(query, OwnerFetchPlan.PETS_AND_VISITS).getResultList();
+	}
+
+	/**
+	 * Loads the associations selected by the given plan with the owners, in the same query: they are lazy in the
+	 * mapping. DISTINCT only removes the owners repeated by the joins in memory, it is not needed in the SQL.
+	 */
+	private Query withFetchPlan(Query query, OwnerFetchPlan plan) {
+		if (plan.getEntityGraph() != null) {
+			query.setHint(QueryHints.HINT_FETCHGRAPH, this.em.getEntityGraph(plan.getEntityGraph()));
+			query.setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false);
+		}
+		return query;
+	}
+
+	@Override
+	public void streamAll(Consumer<Owner> action) {
+		JpaStreamUtils.scroll(this.em, JpaStreamUtils.OWNERS_WITH_PETS_AND_VISITS,
+			Owner.class, this.streamingFetchSize, action);
+	}
+
+	/**
+	 * Deletes the owner with its pets and their visits with three bulk statements, without loading them.
+	 */
+	@Override
+	public void delete(Owner owner) {
+		Integer ownerId = owner.getId();
+		if (this.em.contains(owner)) {
+			this.em.detach(owner);
+		}
+		this.em.createQuery("DELETE FROM Visit visit WHERE visit.pet.id IN (SELECT pet.id FROM Pet pet WHERE pet.owner.id = :ownerId)")
+			.setParameter("ownerId", ownerId).executeUpdate();
+		this.em.createQuery("DELETE FROM Pet pet WHERE pet.owner.id = :ownerId")
+			.setParameter("ownerId", ownerId).executeUpdate();
+		this.em.createQuery("DELETE FROM Owner owner WHERE owner.id = :ownerId")
+			.setParameter("ownerId", ownerId).executeUpdate();
+	}
+
+	/**
+	 * Persists the owners, cascading to their pets and visits, then flushes and clears the persistence context so that
+	 * it does not grow with the number of batches imported in the same transaction.
+	 */
+	@Override
+	public void saveAll(Collection<Owner> owners) {
+		for (Owner owner : owners) {
+			this.em.persist(owner);
+		}
+		this.em.flush();
+		this.em.clear();
+	}
+
+	@Override
+	public int update(int id, int version, Map<String, Object> changes) {
+		return JpaUpdateUtils.updateVersioned(this.em, Owner.class, Owner.UPDATABLE_PROPERTIES, id, version, changes);
+	}
+
+	@Override
+	public Collection<String> findLastNames(String prefix, int limit) {
+		return this.em.createQuery(
+				"SELECT DISTINCT owner.lastName FROM Owner owner WHERE owner.lastName LIKE :prefix ORDER BY owner.lastName",
+				String.class)
+			.setParameter("prefix", prefix + "%")
+			.setMaxResults(limit)
+			.getResultList();
+	}
+
+	@Override
+	public void streamLastNames(ObjIntConsumer<String> action) {
+		JpaStreamUtils.scrollRows(this.em, "SELECT owner.id, owner.lastName FROM Owner owner", this.streamingFetchSize,
+			row -> action.accept((String) row[1], (Integer) row[0]));
+	}
+
+}
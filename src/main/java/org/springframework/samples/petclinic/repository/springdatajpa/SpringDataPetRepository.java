@@ -15,12 +15,15 @@
  */
 package org.springframework.samples.petclinic.repository.springdatajpa;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.model.PetType;
 import org.springframework.samples.petclinic.repository.PetRepository;
@@ -38,4 +41,17 @@ public interface SpringDataPetRepository extends PetRepository, Repository<Pet,
     @Override
     @Query("SELECT ptype FROM PetType ptype ORDER BY ptype.name")
     List<PetType> findPetTypes() throws DataAccessException;
+
+    @Override
+    @EntityGraph(Pet.WITH_VISITS)
+    Pet findById(int id) throws DataAccessException;
+
+    @Override
+    @EntityGraph(Pet.WITH_VISITS)
+    @Query("SELECT DISTINCT pet FROM Pet pet")
+    Collection<Pet> findAll() throws DataAccessException;
+
+    @Override
+    @Query("SELECT pet.version FROM Pet pet WHERE pet.id = :id")
+    Integer findVersionById(@Param("id") int id);
 }
@@ -16,11 +16,21 @@
 
 package org.springframework.samples.petclinic.repository.springdatajpa;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.util.JpaStreamUtils;
+import org.springframework.samples.petclinic.util.JpaUpdateUtils;
 
 /**
  * @author Vitaliy Fedoriv
@@ -33,14 +43,48 @@ public class SpringDataPetRepositoryImpl implements PetRepositoryOverride {
 	@PersistenceContext
     private EntityManager em;
 
+	@Value("${petclinic.streaming.fetch-size:500}")
+	private int streamingFetchSize;
+
 	@Override
 	public void delete(Pet pet) {
-		String petId = pet.getId().toString();
-		this.em.createQuery("DELETE FROM Visit visit WHERE pet_id=" + petId).executeUpdate();
-		this.em.createQuery("DELETE FROM Pet pet WHERE id=" + petId).executeUpdate();
-        if (em.contains(pet)) {
-            em.remove(pet);
-        }
+		Integer petId = pet.getId();
+		if (this.em.contains(pet)) {
+			this.em.detach(pet);
+		}
+		this.em.createQuery("DELETE FROM Visit visit WHERE visit.pet.id = :petId")
+			.setParameter("petId", petId).executeUpdate();
+		this.em.createQuery("DELETE FROM Pet pet WHERE pet.id = :petId")
+			.setParameter("petId", petId).executeUpdate();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Collection<Pet> findAll(int afterId, int limit) {
+		// bounded on the pet ids first: limiting a query fetching the visits collection would be applied in memory
+		List<Integer> ids = this.em.createQuery("SELECT pet.id FROM Pet pet WHERE pet.id > :afterId ORDER BY pet.id")
+			.setParameter("afterId", afterId)
+			.setMaxResults(limit)
+			.getResultList();
+		if (ids.isEmpty()) {
+			return new ArrayList<>();
+		}
+		return this.em.createQuery("SELECT DISTINCT pet FROM Pet pet WHERE pet.id IN :ids ORDER BY pet.id")
+			.setParameter("ids", ids)
+			.setHint(QueryHints.HINT_FETCHGRAPH, this.em.getEntityGraph(Pet.WITH_VISITS))
+			.setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false)
+			.getResultList();
+	}
+
+	@Override
+	public void streamAll(Consumer<Pet> action) {
+		JpaStreamUtils.scroll(this.em, JpaStreamUtils.PETS_WITH_VISITS,
+			Pet.class, this.streamingFetchSize, action);
+	}
+
+	@Override
+	public int update(int id, int version, Map<String, Object> changes) {
+		return JpaUpdateUtils.updateVersioned(this.em, Pet.class, Pet.UPDATABLE_PROPERTIES, id, version, changes);
 	}
 
 }
@@ -16,7 +16,9 @@
 package org.springframework.samples.petclinic.repository.springdatajpa;
 
 import org.springframework.context.annotation.Profile;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.samples.petclinic.model.Vet;
 import org.springframework.samples.petclinic.repository.VetRepository;
 
@@ -28,5 +30,9 @@ import org.springframework.samples.petclinic.repository.VetRepository;
  */
 
 @Profile("spring-data-jpa")
-public interface SpringDataVetRepository extends VetRepository, Repository<Vet, Integer> {
+public interface SpringDataVetRepository extends VetRepository, Repository<Vet, Integer>, VetRepositoryOverride {
+
+    @Override
+    @Query("SELECT vet.version FROM Vet vet WHERE vet.id = :id")
+    Integer findVersionById(@Param("id") int id);
 }
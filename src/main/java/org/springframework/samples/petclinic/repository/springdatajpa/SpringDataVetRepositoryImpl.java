@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.repository.springdatajpa;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.samples.petclinic.model.Vet;
+import org.springframework.samples.petclinic.util.JpaUpdateUtils;
+
+@Profile("spring-data-jpa")
+public class SpringDataVetRepositoryImpl implements VetRepositoryOverride {
+
+	@PersistenceContext
+	private EntityManager em;
+
+	/**
+	 * The page is bounded on the vet ids first: limiting a query fetching the specialties collection would be applied
+	 * in memory by Hibernate.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public Collection<Vet> findAll(int afterId, int limit) {
+		List<Integer> ids = this.em.createQuery("SELECT vet.id FROM Vet vet WHERE vet.id > :afterId ORDER BY vet.id")
+			.setParameter("afterId", afterId)
+			.setMaxResults(limit)
+			.getResultList();
+		if (ids.isEmpty()) {
+			return new ArrayList<>();
+		}
+		return this.em.createQuery("SELECT DISTINCT vet FROM Vet vet left join fetch vet.specialties WHERE vet.id IN :ids ORDER BY vet.id")
+			.setParameter("ids", ids)
+			.getResultList();
+	}
+
+	@Override
+	public int update(int id, int version, Map<String, Object> changes) {
+		return JpaUpdateUtils.updateVersioned(this.em, Vet.class, Vet.UPDATABLE_PROPERTIES, id, version, changes);
+	}
+
+}
@@ -16,12 +16,17 @@
 
 package org.springframework.samples.petclinic.repository.springdatajpa;
 
+import java.util.Collection;
+import java.util.function.Consumer;
+
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
 import org.springframework.samples.petclinic.model.Visit;
+import org.springframework.samples.petclinic.util.JpaStreamUtils;
 
 /**
  * @author Vitaliy Fedoriv
@@ -34,14 +39,31 @@ public class SpringDataVisitRepositoryImpl implements VisitRepositoryOverride {
 	@PersistenceContext
     private EntityManager em;
 
+	@Value("${petclinic.streaming.fetch-size:500}")
+	private int streamingFetchSize;
+
 	@Override
 	public void delete(Visit visit) throws DataAccessException {
-		String visitId = visit.getId().toString();
-		this.em.createQuery("DELETE FROM Visit visit WHERE id=" + visitId).executeUpdate();
-        if (em.contains(visit)) {
-            em.remove(visit);
-        }
+		if (this.em.contains(visit)) {
+			this.em.detach(visit);
+		}
+		this.em.createQuery("DELETE FROM Visit visit WHERE visit.id = :visitId")
+			.setParameter("visitId", visit.getId()).executeUpdate();
 	}
 
+	@SuppressWarnings("unchecked")
+	@Override
+	public Collection<Visit> findAll(int afterId, int limit) {
+		return this.em.createQuery("SELECT v FROM Visit v join fetch v.pet WHERE v.id > :afterId ORDER BY v.id")
+			.setParameter("afterId", afterId)
+			.setMaxResults(limit)
+			.getResultList();
+	}
+
+	@Override
+	public void streamAll(Consumer<Visit> action) {
+		JpaStreamUtils.scroll(this.em, "SELECT v FROM Visit v join fetch v.pet ORDER BY v.id",
+			Visit.class, this.streamingFetchSize, action);
+	}
 
 }
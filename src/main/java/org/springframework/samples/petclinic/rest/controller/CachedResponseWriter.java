@@ -0,0 +1,145 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.rest.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.samples.petclinic.util.ResponseCache;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.NativeWebRequest;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes the JSON responses of the read endpoints tagged by {@link EntityVersions} through the
+ * {@link ResponseCache}, when it is enabled: a response is serialized once per entity tag and then copied to the
+ * client, gzip compressed if the client accepts it.
+ * <p/>
+ * Both methods write the response themselves and return <code>true</code>, the controller then returns a
+ * <code>null</code> response entity; they return <code>false</code> without the cache, the controller then returns
+ * its response entity as usual.
+ */
+@Component
+class CachedResponseWriter {
+
+    private static final String GZIP = "gzip";
+
+    private final ResponseCache responseCache;
+
+    private final ObjectMapper objectMapper;
+
+    private final NativeWebRequest request;
+
+    CachedResponseWriter(ObjectProvider<ResponseCache> responseCache, ObjectMapper objectMapper,
+                         NativeWebRequest request) {
+        this.responseCache = responseCache.getIfAvailable();
+        this.objectMapper = objectMapper;
+        this.request = request;
+    }
+
+    /**
+     * Writes the response cached for the given entity tag of the resource.
+     *
+     * @param key the response among those of the resource
+     * @return whether the response was cached and written
+     */
+    boolean writeCached(String resource, String key, String eTag) {
+        if (this.responseCache == null || eTag == null) {
+            return false;
+        }
+        ResponseCache.Entry entry = this.responseCache.get(resource, key, eTag);
+        if (entry == null) {
+            return false;
+        }
+        write(entry);
+        return true;
+    }
+
+    /**
+     * Serializes the body, caches it for the given entity tag of the resource and writes it.
+     *
+     * @return whether the response was cached and written
+     */
+    boolean writeAndCache(String resource, String key, String eTag, Object body) {
+        if (this.responseCache == null || eTag == null) {
+            return false;
+        }
+        byte[] bytes;
+        try {
+            bytes = this.objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Could not serialize the " + resource + " response", ex);
+        }
+        write(this.responseCache.put(resource, key, eTag, bytes));
+        return true;
+    }
+
+    private void write(ResponseCache.Entry entry) {
+        HttpServletResponse response = this.request.getNativeResponse(HttpServletResponse.class);
+        boolean gzip = entry.getGzipBody() != null
+            && acceptsGzip(this.request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        byte[] body = gzip ? entry.getGzipBody() : entry.getBody();
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setHeader(HttpHeaders.ETAG, entry.getETag());
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+        }
+        response.setContentLength(body.length);
+        try {
+            response.getOutputStream().write(body);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * @return whether the <code>Accept-Encoding</code> header accepts gzip, listed by name or as any encoding, with a
+     * non zero quality
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean gzip = null;
+        Boolean any = null;
+        for (String coding : StringUtils.tokenizeToStringArray(acceptEncoding, ",")) {
+            String[] parameters = StringUtils.tokenizeToStringArray(coding, ";");
+            boolean accepted = true;
+            for (int i = 1; i < parameters.length; i++) {
+                String parameter = parameters[i].replace(" ", "");
+                if (parameter.startsWith("q=") && parameter.substring(2).matches("0(\\.0*)?")) {
+                    accepted = false;
+                }
+            }
+            if (parameters.length > 0 && parameters[0].equalsIgnoreCase(GZIP)) {
+                gzip = accepted;
+            } else if (parameters.length > 0 && parameters[0].equals("*")) {
+                any = accepted;
+            }
+        }
+        return gzip != null ? gzip : Boolean.TRUE.equals(any);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.rest.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.BeanUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.samples.petclinic.service.ChangeCounters;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.NativeWebRequest;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.beans.PropertyDescriptor;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Entity tags, conditional reads (<code>GET</code> with an <code>If-None-Match</code> header) and conditional partial
+ * updates (<code>PATCH</code> with an <code>If-Match</code> header) of the versioned resources.
+ * <p/>
+ * The entity tag of an owner, a pet or a vet is made of the version of its entity, changed by every update of the
+ * entity itself, followed by the {@link ChangeCounters#tag change tag} of its associations: the counters of the owner
+ * or the pet itself ({@link ChangeCounters#owner}, {@link ChangeCounters#pet}) and of the pet types, or the counter of
+ * the vets. The entity tag of a collection is the change tag of its resource. Both are cheap to compute, so that an
+ * unchanged resource is answered with <code>304 Not Modified</code> without being read.
+ * <p/>
+ * A client can only patch the version of the entity it has read: a concurrent update is answered with <code>412
+ * Precondition Failed</code> instead of being silently overwritten.
+ */
+final class EntityVersions {
+
+    static final String MERGE_PATCH_JSON_VALUE = "application/merge-patch+json";
+
+    private EntityVersions() {
+    }
+
+    /**
+     * @return the strong entity tag of an entity at the given version, <code>null</code> if it was never saved
+     */
+    static String eTag(Integer version, String changeTag) {
+        return version == null ? null : "\"" + version + "." + changeTag + "\"";
+    }
+
+    /**
+     * @return the strong entity tag of a collection
+     */
+    static String eTag(String changeTag) {
+        return "\"" + changeTag + "\"";
+    }
+
+    static HttpHeaders eTagHeaders(String eTag) {
+        HttpHeaders headers = new HttpHeaders();
+        if (eTag != null) {
+            headers.setETag(eTag);
+        }
+        return headers;
+    }
+
+    /**
+     * @return whether the <code>If-None-Match</code> header of the request matches the given entity tag (weak
+     * comparison, as required for this header)
+     */
+    static boolean isNotModified(Optional<NativeWebRequest> request, String eTag) {
+        String ifNoneMatch = request.map(webRequest -> webRequest.getHeader(HttpHeaders.IF_NONE_MATCH)).orElse(null);
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : StringUtils.tokenizeToStringArray(ifNoneMatch, ",")) {
+            if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static <T> ResponseEntity<T> notModified(String eTag) {
+        return new ResponseEntity<>(eTagHeaders(eTag), HttpStatus.NOT_MODIFIED);
+    }
+
+    /**
+     * Converts the values of a JSON merge patch to the types of the entity properties and validates them against the
+     * constraints of the entity, as {@link OwnerImportReader} does for whole entities.
+     *
+     * @param properties the properties that may be patched
+     * @return the converted values by property name
+     * @throws IllegalArgumentException if a property cannot be patched or a value is invalid
+     */
+    static Map<String, Object> changes(ObjectMapper objectMapper, Validator validator, Class<?> entityClass,
+                                       List<String> properties, Map<String, Object> patch) {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        Set<String> errors = new TreeSet<>();
+        for (Map.Entry<String, Object> entry : patch.entrySet()) {
+            String property = entry.getKey();
+            PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(entityClass, property);
+            if (!properties.contains(property) || descriptor == null) {
+                errors.add(property + " cannot be updated");
+                continue;
+            }
+            Object value;
+            try {
+                value = objectMapper.convertValue(entry.getValue(), descriptor.getPropertyType());
+            } catch (IllegalArgumentException ex) {
+                errors.add(property + " has an invalid value");
+                continue;
+            }
+            for (ConstraintViolation<?> violation : validator.validateValue(entityClass, property, value)) {
+                errors.add(property + " " + violation.getMessage());
+            }
+            changes.put(property, value);
+        }
+        if (!errors.isEmpty()) {
+            throw new IllegalArgumentException("Invalid " + entityClass.getSimpleName().toLowerCase(Locale.ROOT)
+                + " patch: " + String.join(", ", errors));
+        }
+        return changes;
+    }
+
+    /**
+     * Runs a conditional update: the version the client has read is taken from the entity tag of the
+     * <code>If-Match</code> header and handed to the update, which returns the new version. Only the version of the
+     * entity is compared, the writes of its associations do not conflict with the update.
+     *
+     * @param changeTag the change tag of the resource, read before the update: the entity tag returned can be used
+     *                  for another update, but not for a conditional read, which the update itself invalidates
+     * @return <code>204 No Content</code> with the new entity tag, <code>428 Precondition Required</code> without a
+     * single strong entity tag, <code>412 Precondition Failed</code> if the entity was updated since the version was
+     * read, or <code>404 Not Found</code>
+     */
+    static ResponseEntity<Void> update(String ifMatch, String changeTag, IntUnaryOperator update) {
+        if (ifMatch == null || ifMatch.trim().equals("*") || ifMatch.indexOf(',') >= 0) {
+            return new ResponseEntity<>(HttpStatus.PRECONDITION_REQUIRED);
+        }
+        String eTag = ifMatch.trim();
+        if (eTag.length() < 3 || eTag.charAt(0) != '"' || eTag.charAt(eTag.length() - 1) != '"') {
+            return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
+        }
+        String opaqueTag = eTag.substring(1, eTag.length() - 1);
+        int versionEnd = opaqueTag.indexOf('.');
+        int version;
+        try {
+            version = Integer.parseInt(versionEnd < 0 ? opaqueTag : opaqueTag.substring(0, versionEnd));
+        } catch (NumberFormatException ex) {
+            return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
+        }
+        try {
+            return new ResponseEntity<>(eTagHeaders(eTag(update.applyAsInt(version), changeTag)),
+                HttpStatus.NO_CONTENT);
+        } catch (ObjectRetrievalFailureException ex) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        } catch (ObjectOptimisticLockingFailureException ex) {
+            return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
+        }
+    }
+}
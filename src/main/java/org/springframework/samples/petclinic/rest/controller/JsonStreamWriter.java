@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.rest.controller;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the items of a streamed collection read (<code>?stream=true</code>) to the response as soon as they are
+ * mapped, either as newline delimited JSON or as a JSON array, so that neither the entities nor their DTOs are ever
+ * all held in memory. The response is flushed to the client each time the servlet buffer fills up.
+ */
+final class JsonStreamWriter {
+
+    static final String NDJSON_VALUE = "application/x-ndjson";
+
+    static final MediaType NDJSON = MediaType.parseMediaType(NDJSON_VALUE);
+
+    private final JsonGenerator generator;
+
+    private final boolean ndjson;
+
+    /**
+     * @param accept the <code>Accept</code> header of the request: newline delimited JSON is written when it
+     *               explicitly asks for it, a JSON array otherwise
+     */
+    JsonStreamWriter(ObjectMapper objectMapper, HttpServletResponse response, String accept) throws IOException {
+        this.ndjson = accept != null && MediaType.parseMediaTypes(accept).stream().anyMatch(NDJSON::equalsTypeAndSubtype);
+        response.setContentType(this.ndjson ? NDJSON_VALUE : MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        this.generator = objectMapper.createGenerator(response.getOutputStream(), JsonEncoding.UTF8);
+        if (this.ndjson) {
+            this.generator.setRootValueSeparator(null);
+        } else {
+            this.generator.writeStartArray();
+        }
+    }
+
+    /**
+     * Writes the given item; meant to be called from the streaming callbacks of the ClinicService.
+     */
+    void write(Object item) {
+        try {
+            this.generator.writeObject(item);
+            if (this.ndjson) {
+                this.generator.writeRaw('\n');
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Completes the response. Not called when the read fails, so that a truncated JSON array is not mistaken for a
+     * complete one.
+     */
+    void finish() throws IOException {
+        if (!this.ndjson) {
+            this.generator.writeEndArray();
+        }
+        this.generator.close();
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.rest.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.model.Visit;
+import org.springframework.samples.petclinic.rest.dto.OwnerDto;
+import org.springframework.samples.petclinic.rest.dto.PetDto;
+import org.springframework.samples.petclinic.rest.dto.PetTypeDto;
+import org.springframework.samples.petclinic.rest.dto.VisitDto;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Reads the owners of a bulk import (<code>POST /api/owners/import</code>) one at a time from the request body, so
+ * that the import is never held in memory at once, and validates each of them as soon as it is read. Two formats are
+ * accepted:
+ * <ul>
+ * <li>newline delimited JSON: one owner per line, in the format of <code>GET /api/owners</code>, with nested
+ * <code>pets</code> and <code>visits</code>; ids are ignored and pet types are referenced by id or name;</li>
+ * <li>CSV: one record per line, the first field giving its kind. An <code>owner</code> record (first name, last name,
+ * address, city, telephone) is followed by the <code>pet</code> records (name, birth date, type id or name) of that
+ * owner, each followed by the <code>visit</code> records (date, description) of that pet. Blank lines and lines
+ * starting with <code>#</code> are skipped.</li>
+ * </ul>
+ * Invalid input is reported with an {@link IllegalArgumentException} giving the offending line.
+ */
+final class OwnerImportReader implements Iterator<Owner> {
+
+    static final String CSV_VALUE = "text/csv";
+
+    static final MediaType CSV = MediaType.parseMediaType(CSV_VALUE);
+
+    private final Validator validator;
+
+    private final Map<Integer, PetType> petTypesById = new HashMap<>();
+
+    private final Map<String, PetType> petTypesByName = new HashMap<>();
+
+    private final MappingIterator<OwnerDto> json;
+
+    private final BufferedReader csv;
+
+    private int lineNumber;
+
+    private List<String> pendingRecord;
+
+    private Owner next;
+
+    OwnerImportReader(ObjectMapper objectMapper, Validator validator, Collection<PetType> petTypes,
+                      InputStream body, MediaType contentType) throws IOException {
+        this.validator = validator;
+        for (PetType petType : petTypes) {
+            this.petTypesById.put(petType.getId(), petType);
+            this.petTypesByName.put(petType.getName().toLowerCase(Locale.ROOT), petType);
+        }
+        if (CSV.equalsTypeAndSubtype(contentType)) {
+            Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+            this.csv = new BufferedReader(new InputStreamReader(body, charset));
+            this.json = null;
+        } else {
+            this.json = objectMapper.readerFor(OwnerDto.class).readValues(body);
+            this.csv = null;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (this.next == null) {
+            try {
+                this.next = this.json != null ? readJson() : readCsv();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return this.next != null;
+    }
+
+    @Override
+    public Owner next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Owner owner = this.next;
+        this.next = null;
+        return owner;
+    }
+
+    private Owner readJson() throws IOException {
+        OwnerDto ownerDto;
+        try {
+            if (!this.json.hasNextValue()) {
+                return null;
+            }
+            ownerDto = this.json.nextValue();
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Invalid owner: " + ex.getMessage());
+        }
+        this.lineNumber = this.json.getCurrentLocation().getLineNr();
+        Owner owner = validate(newOwner(ownerDto.getFirstName(), ownerDto.getLastName(), ownerDto.getAddress(),
+            ownerDto.getCity(), ownerDto.getTelephone()));
+        if (ownerDto.getPets() != null) {
+            for (PetDto petDto : ownerDto.getPets()) {
+                PetTypeDto type = petDto.getType();
+                Pet pet = newPet(petDto.getName(), petDto.getBirthDate(),
+                    type == null ? null : petType(type.getId() != null ? type.getId().toString() : type.getName()));
+                owner.addPet(validate(pet));
+                if (petDto.getVisits() != null) {
+                    for (VisitDto visitDto : petDto.getVisits()) {
+                        pet.addVisit(validate(newVisit(visitDto.getDate(), visitDto.getDescription())));
+                    }
+                }
+            }
+        }
+        return owner;
+    }
+
+    private Owner readCsv() throws IOException {
+        List<String> record = this.pendingRecord != null ? this.pendingRecord : readCsvRecord();
+        this.pendingRecord = null;
+        if (record == null) {
+            return null;
+        }
+        if (!"owner".equals(record.get(0))) {
+            throw invalid("expected an owner record, found " + record.get(0));
+        }
+        checkFieldCount(record, 6);
+        Owner owner = validate(newOwner(record.get(1), record.get(2), record.get(3), record.get(4), record.get(5)));
+        Pet pet = null;
+        while ((record = readCsvRecord()) != null) {
+            switch (record.get(0)) {
+                case "owner":
+                    this.pendingRecord = record;
+                    return owner;
+                case "pet":
+                    checkFieldCount(record, 4);
+                    pet = newPet(record.get(1), parseDate(record.get(2)), petType(record.get(3)));
+                    owner.addPet(validate(pet));
+                    break;
+                case "visit":
+                    if (pet == null) {
+                        throw invalid("visit record before any pet record of the owner");
+                    }
+                    checkFieldCount(record, 3);
+                    pet.addVisit(validate(newVisit(parseDate(record.get(1)), record.get(2))));
+                    break;
+                default:
+                    throw invalid("unknown record type " + record.get(0));
+            }
+        }
+        return owner;
+    }
+
+    /**
+     * @return the fields of the next record, <code>null</code> at the end of the input
+     */
+    private List<String> readCsvRecord() throws IOException {
+        String line;
+        while ((line = this.csv.readLine()) != null) {
+            this.lineNumber++;
+            if (!line.trim().isEmpty() && !line.startsWith("#")) {
+                return parseCsvLine(line);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Splits a line on commas; fields may be enclosed in double quotes to contain commas, a double quote being then
+     * escaped by another one. Quoted fields cannot span several lines.
+     */
+    private List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw invalid("unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private void checkFieldCount(List<String> record, int count) {
+        if (record.size() != count) {
+            throw invalid(record.get(0) + " record with " + record.size() + " fields instead of " + count);
+        }
+    }
+
+    private LocalDate parseDate(String date) {
+        if (date.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(date);
+        } catch (DateTimeParseException ex) {
+            throw invalid("invalid date " + date + ", expected yyyy-MM-dd");
+        }
+    }
+
+    /**
+     * @param type the id or the name of the type
+     */
+    private PetType petType(String type) {
+        if (type == null) {
+            return null;
+        }
+        PetType petType = this.petTypesByName.get(type.toLowerCase(Locale.ROOT));
+        if (petType == null && !type.isEmpty() && type.chars().allMatch(Character::isDigit)) {
+            petType = this.petTypesById.get(Integer.valueOf(type));
+        }
+        if (petType == null) {
+            throw invalid("unknown pet type " + type);
+        }
+        return petType;
+    }
+
+    private static Owner newOwner(String firstName, String lastName, String address, String city, String telephone) {
+        Owner owner = new Owner();
+        owner.setFirstName(firstName);
+        owner.setLastName(lastName);
+        owner.setAddress(address);
+        owner.setCity(city);
+        owner.setTelephone(telephone);
+        return owner;
+    }
+
+    private static Pet newPet(String name, LocalDate birthDate, PetType type) {
+        Pet pet = new Pet();
+        pet.setName(name);
+        pet.setBirthDate(birthDate);
+        pet.setType(type);
+        return pet;
+    }
+
+    private static Visit newVisit(LocalDate date, String description) {
+        Visit visit = new Visit();
+        if (date != null) {
+            visit.setDate(date);
+        }
+        visit.setDescription(description);
+        return visit;
+    }
+
+    private <T> T validate(T entity) {
+        Set<ConstraintViolation<T>> violations = this.validator.validate(entity);
+        Set<String> errors = new TreeSet<>();
+        for (ConstraintViolation<T> violation : violations) {
+            errors.add(violation.getPropertyPath() + " " + violation.getMessage());
+        }
+        if (entity instanceof Pet && ((Pet) entity).getType() == null) {
+            errors.add("type must not be null");
+        }
+        if (!errors.isEmpty()) {
+            throw invalid("invalid " + entity.getClass().getSimpleName().toLowerCase(Locale.ROOT) + ": "
+                + String.join(", ", errors));
+        }
+        return entity;
+    }
+
+    private IllegalArgumentException invalid(String message) {
+        return new IllegalArgumentException("Line " + this.lineNumber + ": " + message);
+    }
+}
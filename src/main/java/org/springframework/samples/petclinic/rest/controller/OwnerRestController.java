@@ -16,8 +16,12 @@
 
 package org.springframework.samples.petclinic.rest.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.samples.petclinic.mapper.OwnerMapper;
 import org.springframework.samples.petclinic.mapper.PetMapper;
@@ -25,25 +29,43 @@ import org.springframework.samples.petclinic.mapper.VisitMapper;
 import org.springframework.samples.petclinic.model.Owner;
 import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.model.Visit;
+import org.springframework.samples.petclinic.repository.DtoProjectionRepository;
 import org.springframework.samples.petclinic.rest.api.OwnersApi;
 import org.springframework.samples.petclinic.rest.dto.*;
+import org.springframework.samples.petclinic.service.ChangeCounters;
 import org.springframework.samples.petclinic.service.ClinicService;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.transaction.Transactional;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Vitaliy Fedoriv
  */
 
 @RestController
-@CrossOrigin(exposedHeaders = "errors, content-type")
+@CrossOrigin(exposedHeaders = "errors, content-type, etag, " + PageCursor.NEXT_CURSOR_HEADER)
 @RequestMapping("/api")
 public class OwnerRestController implements OwnersApi {
 
@@ -55,19 +77,79 @@ public class OwnerRestController implements OwnersApi {
 
     private final VisitMapper visitMapper;
 
+    private final ObjectMapper objectMapper;
+
+    private final Validator validator;
+
+    private final NativeWebRequest request;
+
+    private final ChangeCounters changeCounters;
+
+    private final CachedResponseWriter responseWriter;
+
+    private final int importBatchSize;
+
+    private final DtoProjectionRepository projections;
+
     public OwnerRestController(ClinicService clinicService,
                                OwnerMapper ownerMapper,
                                PetMapper petMapper,
-                               VisitMapper visitMapper) {
+                               VisitMapper visitMapper,
+                               ObjectMapper objectMapper,
+                               Validator validator,
+                               NativeWebRequest request,
+                               ChangeCounters changeCounters,
+                               CachedResponseWriter responseWriter,
+                               @Value("${petclinic.import.batch-size:1000}") int importBatchSize,
+                               ObjectProvider<DtoProjectionRepository> projections) {
         this.clinicService = clinicService;
         this.ownerMapper = ownerMapper;
         this.petMapper = petMapper;
         this.visitMapper = visitMapper;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.request = request;
+        this.changeCounters = changeCounters;
+        this.responseWriter = responseWriter;
+        this.importBatchSize = importBatchSize;
+        this.projections = projections.getIfAvailable();
     }
 
+    @Override
+    public Optional<NativeWebRequest> getRequest() {
+        return Optional.of(this.request);
+    }
+
+    /**
+     * Lists the owners with their pets and visits, read straight as DTOs by the {@link DtoProjectionRepository} when
+     * it is enabled.
+     */
     @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
     @Override
-    public ResponseEntity<List<OwnerDto>> listOwners(String lastName) {
+    public ResponseEntity<List<OwnerDto>> listOwners(String lastName, Integer limit, String after) {
+        if (this.projections != null) {
+            int pageSize = PageCursor.isPaged(limit, after) ? PageCursor.limit(limit) : Integer.MAX_VALUE;
+            List<OwnerDto> owners = this.projections.findOwners(lastName, PageCursor.decode(after), pageSize);
+            if (owners.isEmpty()) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            return new ResponseEntity<>(owners, PageCursor.headers(owners, OwnerDto::getId, pageSize), HttpStatus.OK);
+        }
+        if (PageCursor.isPaged(limit, after)) {
+            int afterId = PageCursor.decode(after);
+            int pageSize = PageCursor.limit(limit);
+            Collection<Owner> owners;
+            if (lastName != null) {
+                owners = this.clinicService.findOwnerByLastName(lastName, afterId, pageSize);
+            } else {
+                owners = this.clinicService.findAllOwners(afterId, pageSize);
+            }
+            if (owners.isEmpty()) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            return new ResponseEntity<>(ownerMapper.toOwnerDtoCollection(owners),
+                PageCursor.headers(owners, pageSize), HttpStatus.OK);
+        }
         Collection<Owner> owners;
         if (lastName != null) {
             owners = this.clinicService.findOwnerByLastName(lastName);
@@ -80,14 +162,79 @@ public class OwnerRestController implements OwnersApi {
         return new ResponseEntity<>(ownerMapper.toOwnerDtoCollection(owners), HttpStatus.OK);
     }
 
+    @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
+    @Override
+    public ResponseEntity<List<String>> listOwnerLastNames(String prefix, Integer limit) {
+        return new ResponseEntity<>(new ArrayList<>(this.clinicService.findOwnerLastNames(prefix, limit)),
+            HttpStatus.OK);
+    }
+
+    /**
+     * Streams all the owners with their pets and visits, as newline delimited JSON when asked for in the
+     * <code>Accept</code> header or as a JSON array otherwise.
+     */
+    @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
+    @GetMapping(value = "/owners", params = "stream=true",
+        produces = {JsonStreamWriter.NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public void streamOwners(@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                             HttpServletResponse response) throws IOException {
+        JsonStreamWriter writer = new JsonStreamWriter(this.objectMapper, response, accept);
+        this.clinicService.streamAllOwners(owner -> writer.write(this.ownerMapper.toOwnerDto(owner)));
+        writer.finish();
+    }
+
+    /**
+     * Imports owners with their pets and visits from newline delimited JSON or CSV (see {@link OwnerImportReader}),
+     * inserting them by batches in a single transaction, and reports the number of rows inserted and the throughput.
+     */
+    @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
+    @PostMapping(value = "/owners/import", consumes = {JsonStreamWriter.NDJSON_VALUE, OwnerImportReader.CSV_VALUE},
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> importOwners(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                            HttpServletRequest request) throws IOException {
+        long start = System.nanoTime();
+        OwnerImportReader owners = new OwnerImportReader(this.objectMapper, this.validator,
+            this.clinicService.findPetTypes(), request.getInputStream(), MediaType.parseMediaType(contentType));
+        Map<String, Integer> counts = this.clinicService.importOwners(owners, this.importBatchSize);
+        long elapsedNanos = Math.max(System.nanoTime() - start, 1);
+        int rows = 0;
+        for (int count : counts.values()) {
+            rows += count;
+        }
+        Map<String, Object> report = new LinkedHashMap<>(counts);
+        report.put("rows", rows);
+        report.put("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        report.put("rowsPerSecond", Math.round(rows * 1e9 / elapsedNanos));
+        return new ResponseEntity<>(report, HttpStatus.OK);
+    }
+
+    /**
+     * Returns an owner with its pets and visits, or <code>304 Not Modified</code> without reading them if the entity
+     * tag given in the <code>If-None-Match</code> header is still current. The response is written from the
+     * {@link CachedResponseWriter response cache} when it is enabled.
+     */
     @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
     @Override
     public ResponseEntity<OwnerDto> getOwner(Integer ownerId) {
+        String changeTag = this.changeCounters.tag(ChangeCounters.owner(ownerId), ChangeCounters.PET_TYPES);
+        String eTag = EntityVersions.eTag(this.clinicService.findOwnerVersion(ownerId), changeTag);
+        if (eTag != null && EntityVersions.isNotModified(getRequest(), eTag)) {
+            return EntityVersions.notModified(eTag);
+        }
+        String key = ownerId.toString();
+        if (this.responseWriter.writeCached(ChangeCounters.OWNERS, key, eTag)) {
+            return null;
+        }
         Owner owner = this.clinicService.findOwnerById(ownerId);
         if (owner == null) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        return new ResponseEntity<>(ownerMapper.toOwnerDto(owner), HttpStatus.OK);
+        OwnerDto ownerDto = ownerMapper.toOwnerDto(owner);
+        String ownerETag = EntityVersions.eTag(owner.getVersion(), changeTag);
+        if (this.responseWriter.writeAndCache(ChangeCounters.OWNERS, key, ownerETag, ownerDto)) {
+            return null;
+        }
+        return new ResponseEntity<>(ownerDto, EntityVersions.eTagHeaders(ownerETag), HttpStatus.OK);
     }
 
     @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
@@ -105,7 +252,7 @@ public class OwnerRestController implements OwnersApi {
     @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
     @Override
     public ResponseEntity<OwnerDto> updateOwner(Integer ownerId, OwnerFieldsDto ownerFieldsDto) {
-        Owner currentOwner = this.clinicService.findOwnerById(ownerId);
+        Owner currentOwner = this.clinicService.findOwnerForUpdate(ownerId);
         if (currentOwner == null) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
@@ -118,6 +265,23 @@ public class OwnerRestController implements OwnersApi {
         return new ResponseEntity<>(ownerMapper.toOwnerDto(currentOwner), HttpStatus.NO_CONTENT);
     }
 
+    /**
+     * Updates some fields of an owner (JSON merge patch) on condition that it was not updated since the version given
+     * in the <code>If-Match</code> header, the entity tag of <code>GET /api/owners/{ownerId}</code>.
+     */
+    @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
+    @PatchMapping(value = "/owners/{ownerId}",
+        consumes = {EntityVersions.MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<Void> patchOwner(@PathVariable("ownerId") int ownerId,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                           @RequestBody Map<String, Object> patch) {
+        Map<String, Object> changes = EntityVersions.changes(this.objectMapper, this.validator, Owner.class,
+            Owner.UPDATABLE_PROPERTIES, patch);
+        String changeTag = this.changeCounters.tag(ChangeCounters.owner(ownerId), ChangeCounters.PET_TYPES);
+        return EntityVersions.update(ifMatch, changeTag,
+            version -> this.clinicService.updateOwner(ownerId, version, changes));
+    }
+
     @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
     @Transactional
     @Override
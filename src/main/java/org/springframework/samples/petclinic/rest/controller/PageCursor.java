@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.rest.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.samples.petclinic.model.BaseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.function.ToIntFunction;
+
+/**
+ * Opaque cursors of the keyset paginated list endpoints. A cursor encodes the id of the last item of a page: the next
+ * page holds the items with a greater id, so that a page never costs more than <code>limit</code> rows whatever the
+ * size of the table.
+ */
+final class PageCursor {
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    /**
+     * Page size used when a cursor is given without a limit.
+     */
+    static final int DEFAULT_LIMIT = 100;
+
+    private PageCursor() {
+    }
+
+    /**
+     * @return <code>false</code> for the legacy requests asking for the whole collection
+     */
+    static boolean isPaged(Integer limit, String after) {
+        return limit != null || after != null;
+    }
+
+    static int limit(Integer limit) {
+        return limit != null ? limit : DEFAULT_LIMIT;
+    }
+
+    /**
+     * @return the id after which the requested page starts, 0 for the first page (no or empty cursor)
+     * @throws IllegalArgumentException if the cursor was not issued by {@link #encode(int)}
+     */
+    static int decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            int id = Integer.parseInt(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+            if (id >= 0) {
+                return id;
+            }
+        } catch (IllegalArgumentException ex) {
+            // malformed Base64 or number, reported below
+        }
+        throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+    }
+
+    static String encode(int id) {
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(Integer.toString(id).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Builds the response headers of a page, announcing the cursor of the next page unless the given one is the last.
+     */
+    static HttpHeaders headers(Collection<? extends BaseEntity> page, int limit) {
+        return headers(page, BaseEntity::getId, limit);
+    }
+
+    /**
+     * Builds the response headers of a page of DTOs, whose ids are read by the given function.
+     */
+    static <T> HttpHeaders headers(Collection<T> page, ToIntFunction<? super T> id, int limit) {
+        HttpHeaders headers = new HttpHeaders();
+        if (page.size() >= limit) {
+            int lastId = 0;
+            for (T item : page) {
+                lastId = Math.max(lastId, id.applyAsInt(item));
+            }
+            headers.set(NEXT_CURSOR_HEADER, encode(lastId));
+        }
+        return headers;
+    }
+}
@@ -16,26 +16,40 @@
 
 package org.springframework.samples.petclinic.rest.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.samples.petclinic.mapper.PetMapper;
 import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.repository.DtoProjectionRepository;
 import org.springframework.samples.petclinic.rest.api.PetsApi;
 import org.springframework.samples.petclinic.rest.dto.PetDto;
+import org.springframework.samples.petclinic.service.ChangeCounters;
 import org.springframework.samples.petclinic.service.ClinicService;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.transaction.Transactional;
+import javax.validation.Validator;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * @author Vitaliy Fedoriv
  */
 
 @RestController
-@CrossOrigin(exposedHeaders = "errors, content-type")
+@CrossOrigin(exposedHeaders = "errors, content-type, etag, " + PageCursor.NEXT_CURSOR_HEADER)
 @RequestMapping("api")
 public class PetRestController implements PetsApi {
 
@@ -43,24 +57,104 @@ public class PetRestController implements PetsApi {
 
     private final PetMapper petMapper;
 
-    public PetRestController(ClinicService clinicService, PetMapper petMapper) {
+    private final ObjectMapper objectMapper;
+
+    private final Validator validator;
+
+    private final NativeWebRequest request;
+
+    private final ChangeCounters changeCounters;
+
+    private final CachedResponseWriter responseWriter;
+
+    private final DtoProjectionRepository projections;
+
+    public PetRestController(ClinicService clinicService, PetMapper petMapper, ObjectMapper objectMapper,
+                             Validator validator, NativeWebRequest request, ChangeCounters changeCounters,
+                             CachedResponseWriter responseWriter,
+                             ObjectProvider<DtoProjectionRepository> projections) {
         this.clinicService = clinicService;
         this.petMapper = petMapper;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.request = request;
+        this.changeCounters = changeCounters;
+        this.responseWriter = responseWriter;
+        this.projections = projections.getIfAvailable();
+    }
+
+    @Override
+    public Optional<NativeWebRequest> getRequest() {
+        return Optional.of(this.request);
+    }
+
+    /**
+     * Streams all the pets with their visits, as newline delimited JSON when asked for in the <code>Accept</code>
+     * header or as a JSON array otherwise.
+     */
+    @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
+    @GetMapping(value = "/pets", params = "stream=true",
+        produces = {JsonStreamWriter.NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public void streamPets(@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                           HttpServletResponse response) throws IOException {
+        JsonStreamWriter writer = new JsonStreamWriter(this.objectMapper, response, accept);
+        this.clinicService.streamAllPets(pet -> writer.write(this.petMapper.toPetDto(pet)));
+        writer.finish();
     }
 
+    /**
+     * Returns a pet with its visits, or <code>304 Not Modified</code> without reading them if the entity tag given in
+     * the <code>If-None-Match</code> header is still current. The response is written from the
+     * {@link CachedResponseWriter response cache} when it is enabled.
+     */
     @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
     @Override
     public ResponseEntity<PetDto> getPet(Integer petId) {
-        PetDto pet = petMapper.toPetDto(this.clinicService.findPetById(petId));
+        String changeTag = this.changeCounters.tag(ChangeCounters.pet(petId), ChangeCounters.PET_TYPES);
+        String eTag = EntityVersions.eTag(this.clinicService.findPetVersion(petId), changeTag);
+        if (eTag != null && EntityVersions.isNotModified(getRequest(), eTag)) {
+            return EntityVersions.notModified(eTag);
+        }
+        String key = petId.toString();
+        if (this.responseWriter.writeCached(ChangeCounters.PETS, key, eTag)) {
+            return null;
+        }
+        Pet pet = this.clinicService.findPetById(petId);
         if (pet == null) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        return new ResponseEntity<>(pet, HttpStatus.OK);
+        PetDto petDto = petMapper.toPetDto(pet);
+        String petETag = EntityVersions.eTag(pet.getVersion(), changeTag);
+        if (this.responseWriter.writeAndCache(ChangeCounters.PETS, key, petETag, petDto)) {
+            return null;
+        }
+        return new ResponseEntity<>(petDto, EntityVersions.eTagHeaders(petETag), HttpStatus.OK);
     }
 
+    /**
+     * Lists the pets with their visits, read straight as DTOs by the {@link DtoProjectionRepository} when it is
+     * enabled.
+     */
     @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
     @Override
-    public ResponseEntity<List<PetDto>> listPets() {
+    public ResponseEntity<List<PetDto>> listPets(Integer limit, String after) {
+        if (this.projections != null) {
+            int pageSize = PageCursor.isPaged(limit, after) ? PageCursor.limit(limit) : Integer.MAX_VALUE;
+            List<PetDto> pets = this.projections.findPets(PageCursor.decode(after), pageSize);
+            if (pets.isEmpty()) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            return new ResponseEntity<>(pets, PageCursor.headers(pets, PetDto::getId, pageSize), HttpStatus.OK);
+        }
+        if (PageCursor.isPaged(limit, after)) {
+            int pageSize = PageCursor.limit(limit);
+            Collection<Pet> page = this.clinicService.findAllPets(PageCursor.decode(after), pageSize);
+            if (page.isEmpty()) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            return new ResponseEntity<>(new ArrayList<>(petMapper.toPetsDto(page)),
+                PageCursor.headers(page, pageSize), HttpStatus.OK);
+        }
         List<PetDto> pets = new ArrayList<>(petMapper.toPetsDto(this.clinicService.findAllPets()));
         if (pets.isEmpty()) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
@@ -72,7 +166,7 @@ public class PetRestController implements PetsApi {
     @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
     @Override
     public ResponseEntity<PetDto> updatePet(Integer petId, PetDto petDto) {
-        Pet currentPet = this.clinicService.findPetById(petId);
+        Pet currentPet = this.clinicService.findPetForUpdate(petId);
         if (currentPet == null) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
@@ -83,6 +177,33 @@ public class PetRestController implements PetsApi {
         return new ResponseEntity<>(petMapper.toPetDto(currentPet), HttpStatus.NO_CONTENT);
     }
 
+    /**
+     * Updates some fields of a pet (JSON merge patch, the type being given by id) on condition that it was not
+     * updated since the version given in the <code>If-Match</code> header, the entity tag of
+     * <code>GET /api/pets/{petId}</code>.
+     */
+    @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
+    @PatchMapping(value = "/pets/{petId}",
+        consumes = {EntityVersions.MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<Void> patchPet(@PathVariable("petId") int petId,
+                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                         @RequestBody Map<String, Object> patch) {
+        Map<String, Object> changes = EntityVersions.changes(this.objectMapper, this.validator, Pet.class,
+            Pet.UPDATABLE_PROPERTIES, patch);
+        if (changes.containsKey("type")) {
+            PetType type = (PetType) changes.get("type");
+            PetType petType = type == null || type.getId() == null
+                ? null : this.clinicService.findPetTypeById(type.getId());
+            if (petType == null) {
+                throw new IllegalArgumentException("Invalid pet patch: type must be an existing pet type id");
+            }
+            changes.put("type", petType);
+        }
+        String changeTag = this.changeCounters.tag(ChangeCounters.pet(petId), ChangeCounters.PET_TYPES);
+        return EntityVersions.update(ifMatch, changeTag,
+            version -> this.clinicService.updatePet(petId, version, changes));
+    }
+
     @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
     @Transactional
     @Override
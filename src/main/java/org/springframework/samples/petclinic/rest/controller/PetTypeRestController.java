@@ -23,37 +23,65 @@ import org.springframework.samples.petclinic.mapper.PetTypeMapper;
 import org.springframework.samples.petclinic.model.PetType;
 import org.springframework.samples.petclinic.rest.api.PettypesApi;
 import org.springframework.samples.petclinic.rest.dto.PetTypeDto;
+import org.springframework.samples.petclinic.service.ChangeCounters;
 import org.springframework.samples.petclinic.service.ClinicService;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import javax.transaction.Transactional;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
-@CrossOrigin(exposedHeaders = "errors, content-type")
+@CrossOrigin(exposedHeaders = "errors, content-type, etag")
 @RequestMapping("api")
 public class PetTypeRestController implements PettypesApi {
 
+    private static final String ALL_PET_TYPES = "all";
+
     private final ClinicService clinicService;
     private final PetTypeMapper petTypeMapper;
+    private final NativeWebRequest request;
+    private final ChangeCounters changeCounters;
+    private final CachedResponseWriter responseWriter;
 
 
-    public PetTypeRestController(ClinicService clinicService, PetTypeMapper petTypeMapper) {
+    public PetTypeRestController(ClinicService clinicService, PetTypeMapper petTypeMapper, NativeWebRequest request,
+                                 ChangeCounters changeCounters, CachedResponseWriter responseWriter) {
         this.clinicService = clinicService;
         this.petTypeMapper = petTypeMapper;
+        this.request = request;
+        this.changeCounters = changeCounters;
+        this.responseWriter = responseWriter;
+    }
+
+    @Override
+    public Optional<NativeWebRequest> getRequest() {
+        return Optional.of(this.request);
     }
 
     @PreAuthorize("hasAnyRole(@roles.OWNER_ADMIN, @roles.VET_ADMIN)")
     @Override
     public ResponseEntity<List<PetTypeDto>> listPetTypes() {
+        String eTag = EntityVersions.eTag(this.changeCounters.tag(ChangeCounters.PET_TYPES));
+        if (EntityVersions.isNotModified(getRequest(), eTag)) {
+            return EntityVersions.notModified(eTag);
+        }
+        if (this.responseWriter.writeCached(ChangeCounters.PET_TYPES, ALL_PET_TYPES, eTag)) {
+            return null;
+        }
         List<PetType> petTypes = new ArrayList<>(this.clinicService.findAllPetTypes());
         if (petTypes.isEmpty()) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        return new ResponseEntity<>(petTypeMapper.toPetTypeDtos(petTypes), HttpStatus.OK);
+        List<PetTypeDto> petTypeDtos = petTypeMapper.toPetTypeDtos(petTypes);
+        if (this.responseWriter.writeAndCache(ChangeCounters.PET_TYPES, ALL_PET_TYPES, eTag, petTypeDtos)) {
+            return null;
+        }
+        return new ResponseEntity<>(petTypeDtos, EntityVersions.eTagHeaders(eTag), HttpStatus.OK);
     }
 
     @PreAuthorize("hasAnyRole(@roles.OWNER_ADMIN, @roles.VET_ADMIN)")
@@ -23,42 +23,73 @@ import org.springframework.samples.petclinic.mapper.SpecialtyMapper;
 import org.springframework.samples.petclinic.model.Specialty;
 import org.springframework.samples.petclinic.rest.api.SpecialtiesApi;
 import org.springframework.samples.petclinic.rest.dto.SpecialtyDto;
+import org.springframework.samples.petclinic.service.ChangeCounters;
 import org.springframework.samples.petclinic.service.ClinicService;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import javax.transaction.Transactional;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * @author Vitaliy Fedoriv
  */
 
 @RestController
-@CrossOrigin(exposedHeaders = "errors, content-type")
+@CrossOrigin(exposedHeaders = "errors, content-type, etag")
 @RequestMapping("api")
 public class SpecialtyRestController implements SpecialtiesApi {
 
+    private static final String ALL_SPECIALTIES = "all";
+
     private final ClinicService clinicService;
 
     private final SpecialtyMapper specialtyMapper;
 
-    public SpecialtyRestController(ClinicService clinicService, SpecialtyMapper specialtyMapper) {
+    private final NativeWebRequest request;
+
+    private final ChangeCounters changeCounters;
+
+    private final CachedResponseWriter responseWriter;
+
+    public SpecialtyRestController(ClinicService clinicService, SpecialtyMapper specialtyMapper,
+                                   NativeWebRequest request, ChangeCounters changeCounters,
+                                   CachedResponseWriter responseWriter) {
         this.clinicService = clinicService;
         this.specialtyMapper = specialtyMapper;
+        this.request = request;
+        this.changeCounters = changeCounters;
+        this.responseWriter = responseWriter;
+    }
+
+    @Override
+    public Optional<NativeWebRequest> getRequest() {
+        return Optional.of(this.request);
     }
 
     @PreAuthorize("hasRole(@roles.VET_ADMIN)")
     @Override
     public ResponseEntity<List<SpecialtyDto>> listSpecialties() {
+        String eTag = EntityVersions.eTag(this.changeCounters.tag(ChangeCounters.SPECIALTIES));
+        if (EntityVersions.isNotModified(getRequest(), eTag)) {
+            return EntityVersions.notModified(eTag);
+        }
+        if (this.responseWriter.writeCached(ChangeCounters.SPECIALTIES, ALL_SPECIALTIES, eTag)) {
+            return null;
+        }
         List<SpecialtyDto> specialties = new ArrayList<SpecialtyDto>();
         specialties.addAll(specialtyMapper.toSpecialtyDtos(this.clinicService.findAllSpecialties()));
         if (specialties.isEmpty()) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        return new ResponseEntity<>(specialties, HttpStatus.OK);
+        if (this.responseWriter.writeAndCache(ChangeCounters.SPECIALTIES, ALL_SPECIALTIES, eTag, specialties)) {
+            return null;
+        }
+        return new ResponseEntity<>(specialties, EntityVersions.eTagHeaders(eTag), HttpStatus.OK);
     }
 
     @PreAuthorize("hasRole(@roles.VET_ADMIN)")
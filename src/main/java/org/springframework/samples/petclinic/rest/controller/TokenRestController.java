@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.rest.controller;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.samples.petclinic.security.TokenService;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@CrossOrigin(exposedHeaders = "errors, content-type")
+@RequestMapping("api")
+@ConditionalOnProperty(name = "petclinic.security.enable", havingValue = "true")
+public class TokenRestController {
+
+    private final TokenService tokenService;
+
+    public TokenRestController(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    /**
+     * Issues a bearer token carrying the roles of the user authenticated with its password. A token cannot be
+     * exchanged for a new one, so that a user removed or changed is only authenticated until its last token expires.
+     */
+    @PostMapping(value = "/tokens", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> createToken(Authentication authentication) {
+        if (authentication == null || authentication instanceof PreAuthenticatedAuthenticationToken) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        }
+        Map<String, Object> token = new LinkedHashMap<>();
+        token.put("access_token", this.tokenService.issue(authentication.getName(), authentication.getAuthorities()));
+        token.put("token_type", "Bearer");
+        token.put("expires_in", this.tokenService.getTimeToLive().getSeconds());
+        return new ResponseEntity<>(token, HttpStatus.OK);
+    }
+}
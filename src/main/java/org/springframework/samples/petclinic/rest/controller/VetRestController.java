@@ -15,62 +15,148 @@
  */
 package org.springframework.samples.petclinic.rest.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.samples.petclinic.mapper.SpecialtyMapper;
 import org.springframework.samples.petclinic.mapper.VetMapper;
 import org.springframework.samples.petclinic.model.Specialty;
 import org.springframework.samples.petclinic.model.Vet;
+import org.springframework.samples.petclinic.repository.DtoProjectionRepository;
 import org.springframework.samples.petclinic.rest.api.VetsApi;
 import org.springframework.samples.petclinic.rest.dto.VetDto;
+import org.springframework.samples.petclinic.service.ChangeCounters;
 import org.springframework.samples.petclinic.service.ClinicService;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import javax.transaction.Transactional;
+import javax.validation.Validator;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * @author Vitaliy Fedoriv
  */
 
 @RestController
-@CrossOrigin(exposedHeaders = "errors, content-type")
+@CrossOrigin(exposedHeaders = "errors, content-type, etag, " + PageCursor.NEXT_CURSOR_HEADER)
 @RequestMapping("api")
 public class VetRestController implements VetsApi {
 
+    private static final String ALL_VETS = "all";
+
     private final ClinicService clinicService;
     private final VetMapper vetMapper;
     private final SpecialtyMapper specialtyMapper;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final NativeWebRequest request;
+    private final ChangeCounters changeCounters;
+    private final CachedResponseWriter responseWriter;
+    private final DtoProjectionRepository projections;
 
-    public VetRestController(ClinicService clinicService, VetMapper vetMapper, SpecialtyMapper specialtyMapper) {
+    public VetRestController(ClinicService clinicService, VetMapper vetMapper, SpecialtyMapper specialtyMapper,
+                             ObjectMapper objectMapper, Validator validator, NativeWebRequest request,
+                             ChangeCounters changeCounters, CachedResponseWriter responseWriter,
+                             ObjectProvider<DtoProjectionRepository> projections) {
         this.clinicService = clinicService;
         this.vetMapper = vetMapper;
         this.specialtyMapper = specialtyMapper;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.request = request;
+        this.changeCounters = changeCounters;
+        this.responseWriter = responseWriter;
+        this.projections = projections.getIfAvailable();
+    }
+
+    @Override
+    public Optional<NativeWebRequest> getRequest() {
+        return Optional.of(this.request);
     }
 
+    /**
+     * Returns all the vets, or a page of them, or <code>304 Not Modified</code> without reading them if no vet or
+     * specialty was written since the entity tag given in the <code>If-None-Match</code> header. All the vets are
+     * written from the {@link CachedResponseWriter response cache} when it is enabled, and the vets are read straight
+     * as DTOs by the {@link DtoProjectionRepository} when it is enabled.
+     */
     @PreAuthorize("hasRole(@roles.VET_ADMIN)")
     @Override
-    public ResponseEntity<List<VetDto>> listVets() {
-        List<VetDto> vets = new ArrayList<>();
-        vets.addAll(vetMapper.toVetDtos(this.clinicService.findAllVets()));
+    public ResponseEntity<List<VetDto>> listVets(Integer limit, String after) {
+        String eTag = EntityVersions.eTag(this.changeCounters.tag(ChangeCounters.VETS));
+        if (EntityVersions.isNotModified(getRequest(), eTag)) {
+            return EntityVersions.notModified(eTag);
+        }
+        if (PageCursor.isPaged(limit, after)) {
+            int pageSize = PageCursor.limit(limit);
+            List<VetDto> page;
+            if (this.projections != null) {
+                page = this.projections.findVets(PageCursor.decode(after), pageSize);
+            } else {
+                page = new ArrayList<>(vetMapper.toVetDtos(
+                    this.clinicService.findAllVets(PageCursor.decode(after), pageSize)));
+            }
+            if (page.isEmpty()) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            HttpHeaders headers = PageCursor.headers(page, VetDto::getId, pageSize);
+            headers.setETag(eTag);
+            return new ResponseEntity<>(page, headers, HttpStatus.OK);
+        }
+        if (this.responseWriter.writeCached(ChangeCounters.VETS, ALL_VETS, eTag)) {
+            return null;
+        }
+        List<VetDto> vets;
+        if (this.projections != null) {
+            vets = this.projections.findVets(0, Integer.MAX_VALUE);
+        } else {
+            vets = new ArrayList<>(vetMapper.toVetDtos(this.clinicService.findAllVets()));
+        }
         if (vets.isEmpty()) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        return new ResponseEntity<>(vets, HttpStatus.OK);
+        if (this.responseWriter.writeAndCache(ChangeCounters.VETS, ALL_VETS, eTag, vets)) {
+            return null;
+        }
+        return new ResponseEntity<>(vets, EntityVersions.eTagHeaders(eTag), HttpStatus.OK);
     }
 
+    /**
+     * Returns a vet with its specialties, or <code>304 Not Modified</code> without reading them if the entity tag
+     * given in the <code>If-None-Match</code> header is still current. The response is written from the
+     * {@link CachedResponseWriter response cache} when it is enabled.
+     */
     @PreAuthorize("hasRole(@roles.VET_ADMIN)")
     @Override
     public ResponseEntity<VetDto> getVet(Integer vetId)  {
+        String changeTag = this.changeCounters.tag(ChangeCounters.VETS);
+        String eTag = EntityVersions.eTag(this.clinicService.findVetVersion(vetId), changeTag);
+        if (eTag != null && EntityVersions.isNotModified(getRequest(), eTag)) {
+            return EntityVersions.notModified(eTag);
+        }
+        String key = vetId.toString();
+        if (this.responseWriter.writeCached(ChangeCounters.VETS, key, eTag)) {
+            return null;
+        }
         Vet vet = this.clinicService.findVetById(vetId);
         if (vet == null) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        return new ResponseEntity<>(vetMapper.toVetDto(vet), HttpStatus.OK);
+        VetDto vetDto = vetMapper.toVetDto(vet);
+        String vetETag = EntityVersions.eTag(vet.getVersion(), changeTag);
+        if (this.responseWriter.writeAndCache(ChangeCounters.VETS, key, vetETag, vetDto)) {
+            return null;
+        }
+        return new ResponseEntity<>(vetDto, EntityVersions.eTagHeaders(vetETag), HttpStatus.OK);
     }
 
     @PreAuthorize("hasRole(@roles.VET_ADMIN)")
@@ -86,7 +172,7 @@ public class VetRestController implements VetsApi {
     @PreAuthorize("hasRole(@roles.VET_ADMIN)")
     @Override
     public ResponseEntity<VetDto> updateVet(Integer vetId,VetDto vetDto)  {
-        Vet currentVet = this.clinicService.findVetById(vetId);
+        Vet currentVet = this.clinicService.findVetForUpdate(vetId);
         if (currentVet == null) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
@@ -100,6 +186,23 @@ public class VetRestController implements VetsApi {
         return new ResponseEntity<>(vetMapper.toVetDto(currentVet), HttpStatus.NO_CONTENT);
     }
 
+    /**
+     * Updates the name of a vet (JSON merge patch) on condition that it was not updated since the version given in the
+     * <code>If-Match</code> header, the entity tag of <code>GET /api/vets/{vetId}</code>. The specialties are only
+     * replaced with the whole vet (<code>PUT</code>).
+     */
+    @PreAuthorize("hasRole(@roles.VET_ADMIN)")
+    @PatchMapping(value = "/vets/{vetId}",
+        consumes = {EntityVersions.MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<Void> patchVet(@PathVariable("vetId") int vetId,
+                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                         @RequestBody Map<String, Object> patch) {
+        Map<String, Object> changes = EntityVersions.changes(this.objectMapper, this.validator, Vet.class,
+            Vet.UPDATABLE_PROPERTIES, patch);
+        return EntityVersions.update(ifMatch, this.changeCounters.tag(ChangeCounters.VETS),
+            version -> this.clinicService.updateVet(vetId, version, changes));
+    }
+
     @PreAuthorize("hasRole(@roles.VET_ADMIN)")
     @Transactional
     @Override
@@ -16,11 +16,15 @@
 
 package org.springframework.samples.petclinic.rest.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.samples.petclinic.mapper.VisitMapper;
 import org.springframework.samples.petclinic.model.Visit;
+import org.springframework.samples.petclinic.repository.DtoProjectionRepository;
 import org.springframework.samples.petclinic.rest.api.VisitsApi;
 import org.springframework.samples.petclinic.rest.dto.VisitDto;
 import org.springframework.samples.petclinic.service.ClinicService;
@@ -28,8 +32,11 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.transaction.Transactional;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -37,7 +44,7 @@ import java.util.List;
  */
 
 @RestController
-@CrossOrigin(exposedHeaders = "errors, content-type")
+@CrossOrigin(exposedHeaders = "errors, content-type, " + PageCursor.NEXT_CURSOR_HEADER)
 @RequestMapping("api")
 public class VisitRestController implements VisitsApi {
 
@@ -45,15 +52,42 @@ public class VisitRestController implements VisitsApi {
 
     private final VisitMapper visitMapper;
 
-    public VisitRestController(ClinicService clinicService, VisitMapper visitMapper) {
+    private final ObjectMapper objectMapper;
+
+    private final DtoProjectionRepository projections;
+
+    public VisitRestController(ClinicService clinicService, VisitMapper visitMapper, ObjectMapper objectMapper,
+                               ObjectProvider<DtoProjectionRepository> projections) {
         this.clinicService = clinicService;
         this.visitMapper = visitMapper;
+        this.objectMapper = objectMapper;
+        this.projections = projections.getIfAvailable();
     }
 
 
+    /**
+     * Lists the visits, read straight as DTOs by the {@link DtoProjectionRepository} when it is enabled.
+     */
     @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
     @Override
-    public ResponseEntity<List<VisitDto>> listVisits() {
+    public ResponseEntity<List<VisitDto>> listVisits(Integer limit, String after) {
+        if (this.projections != null) {
+            int pageSize = PageCursor.isPaged(limit, after) ? PageCursor.limit(limit) : Integer.MAX_VALUE;
+            List<VisitDto> visits = this.projections.findVisits(PageCursor.decode(after), pageSize);
+            if (visits.isEmpty()) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            return new ResponseEntity<>(visits, PageCursor.headers(visits, VisitDto::getId, pageSize), HttpStatus.OK);
+        }
+        if (PageCursor.isPaged(limit, after)) {
+            int pageSize = PageCursor.limit(limit);
+            Collection<Visit> page = this.clinicService.findAllVisits(PageCursor.decode(after), pageSize);
+            if (page.isEmpty()) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            return new ResponseEntity<>(new ArrayList<>(visitMapper.toVisitsDto(page)),
+                PageCursor.headers(page, pageSize), HttpStatus.OK);
+        }
         List<Visit> visits = new ArrayList<>(this.clinicService.findAllVisits());
         if (visits.isEmpty()) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
@@ -61,6 +95,20 @@ public class VisitRestController implements VisitsApi {
         return new ResponseEntity<>(new ArrayList<>(visitMapper.toVisitsDto(visits)), HttpStatus.OK);
     }
 
+    /**
+     * Streams all the visits, as newline delimited JSON when asked for in the <code>Accept</code> header or as a JSON
+     * array otherwise.
+     */
+    @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
+    @GetMapping(value = "/visits", params = "stream=true",
+        produces = {JsonStreamWriter.NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public void streamVisits(@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                             HttpServletResponse response) throws IOException {
+        JsonStreamWriter writer = new JsonStreamWriter(this.objectMapper, response, accept);
+        this.clinicService.streamAllVisits(visit -> writer.write(this.visitMapper.toVisitDto(visit)));
+        writer.finish();
+    }
+
     @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
     @Override
     public ResponseEntity<VisitDto> getVisit( Integer visitId) {
@@ -1,19 +1,42 @@
 package org.springframework.samples.petclinic.security;
 
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+
 import javax.sql.DataSource;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.samples.petclinic.repository.memory.MemoryUserDetailsService;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.cache.NullUserCache;
+import org.springframework.security.core.userdetails.cache.SpringCacheBasedUserCache;
+import org.springframework.security.core.userdetails.jdbc.JdbcDaoImpl;
 import org.springframework.security.crypto.factory.PasswordEncoderFactories;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+import org.springframework.util.StringUtils;
 
+/**
+ * Authenticates the requests with a bearer token issued by <code>POST /api/tokens</code>, checked without reading the
+ * user, or with HTTP basic authentication. The users read by the basic authentication are kept in the
+ * <code>users</code> cache, evicted when a user is saved, so that only their password is checked again.
+ */
 @Configuration
 @EnableGlobalMethodSecurity(prePostEnabled = true) // Enable @PreAuthorize method-level security
 @ConditionalOnProperty(name = "petclinic.security.enable", havingValue = "true")
@@ -22,10 +45,40 @@ public class BasicAuthenticationConfig extends WebSecurityConfigurerAdapter {
     @Autowired
     private DataSource dataSource;
 
+    @Autowired
+    private ObjectProvider<CacheManager> cacheManager;
+
+    @Autowired
+    private ObjectProvider<MemoryUserDetailsService> memoryUsers;
+
+    @Value("${petclinic.security.token.secret:}")
+    private String tokenSecret;
+
+    @Value("${petclinic.security.token.time-to-live:15m}")
+    private Duration tokenTimeToLive;
+
+    @Bean
+    public TokenService tokenService(Roles roles, ObjectMapper objectMapper) {
+        byte[] secret;
+        if (StringUtils.hasText(this.tokenSecret)) {
+            secret = Base64.getDecoder().decode(this.tokenSecret);
+        } else {
+            // tokens are then only valid until the application is restarted, and on this instance only
+            secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+        }
+        return new TokenService(secret, this.tokenTimeToLive, roles, objectMapper, Clock.systemUTC());
+    }
+
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         // @formatter:off
         http
+            .addFilterBefore(new TokenAuthenticationFilter(getApplicationContext().getBean(TokenService.class)),
+                BasicAuthenticationFilter.class)
+            .sessionManagement()
+                .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                .and()
             .authorizeRequests()
                 .anyRequest()
                     .authenticated()
@@ -39,12 +92,27 @@ public class BasicAuthenticationConfig extends WebSecurityConfigurerAdapter {
 
     @Autowired
     public void configureGlobal(AuthenticationManagerBuilder auth) throws Exception {
-        // @formatter:off
-        auth
-            .jdbcAuthentication()
-                .dataSource(dataSource)
-                .usersByUsernameQuery("select username,password,enabled from users where username=?")
-                .authoritiesByUsernameQuery("select username,role from roles where username=?");
-        // @formatter:on
+        // the memory repository profile keeps the users in its store rather than in the database
+        UserDetailsService users = this.memoryUsers.getIfAvailable();
+        if (users == null) {
+            JdbcDaoImpl jdbcUsers = new JdbcDaoImpl();
+            jdbcUsers.setDataSource(dataSource);
+            jdbcUsers.setUsersByUsernameQuery("select username,password,enabled from users where username=?");
+            jdbcUsers.setAuthoritiesByUsernameQuery("select username,role from roles where username=?");
+            jdbcUsers.afterPropertiesSet();
+            users = jdbcUsers;
+        }
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setUserDetailsService(users);
+        provider.setPasswordEncoder(PasswordEncoderFactories.createDelegatingPasswordEncoder());
+        // a cached user whose password does not match is read again, so a changed password is never rejected
+        CacheManager cacheManager = this.cacheManager.getIfAvailable();
+        if (cacheManager != null) {
+            provider.setUserCache(new SpringCacheBasedUserCache(cacheManager.getCache("users")));
+        } else {
+            provider.setUserCache(new NullUserCache());
+        }
+        // erasing the password of an authenticated user would erase it from the cached user as well
+        auth.eraseCredentials(false).authenticationProvider(provider);
     }
 }
@@ -0,0 +1,149 @@
+package org.springframework.samples.petclinic.security;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.CredentialsExpiredException;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+
+/**
+ * Issues and verifies the bearer tokens of the REST API: JSON Web Tokens signed with HMAC-SHA256, carrying the name
+ * of the user, its {@link Roles} and an expiry time. A token is verified with the secret key alone, without reading
+ * the user, so the roles it carries are those of the user when it was issued, until it expires.
+ */
+public class TokenService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private static final String HEADER =
+        ENCODER.encodeToString("{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+
+    private final SecretKeySpec key;
+
+    private final Duration timeToLive;
+
+    private final Set<String> roles;
+
+    private final ObjectMapper objectMapper;
+
+    private final Clock clock;
+
+    /**
+     * @param secret     the HMAC key, at least 32 bytes long
+     * @param timeToLive the time a token is valid for after being issued
+     */
+    public TokenService(byte[] secret, Duration timeToLive, Roles roles, ObjectMapper objectMapper, Clock clock) {
+        if (secret.length < 32) {
+            throw new IllegalArgumentException("The token secret must be at least 32 bytes long");
+        }
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.timeToLive = timeToLive;
+        this.roles = new LinkedHashSet<>(Arrays.asList(roles.OWNER_ADMIN, roles.VET_ADMIN, roles.ADMIN));
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+    }
+
+    public Duration getTimeToLive() {
+        return this.timeToLive;
+    }
+
+    /**
+     * @param authorities the authorities of the user, of which only the roles are carried by the token
+     * @return a signed token
+     */
+    public String issue(String username, Collection<? extends GrantedAuthority> authorities) {
+        long now = this.clock.instant().getEpochSecond();
+        List<String> tokenRoles = new ArrayList<>();
+        for (GrantedAuthority authority : authorities) {
+            if (this.roles.contains(authority.getAuthority())) {
+                tokenRoles.add(authority.getAuthority());
+            }
+        }
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("sub", username);
+        claims.put("roles", tokenRoles);
+        claims.put("iat", now);
+        claims.put("exp", now + this.timeToLive.getSeconds());
+        String content;
+        try {
+            content = HEADER + "." + ENCODER.encodeToString(this.objectMapper.writeValueAsBytes(claims));
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return content + "." + ENCODER.encodeToString(sign(content));
+    }
+
+    /**
+     * @return the authenticated user of the token
+     * @throws BadCredentialsException     if the token was not issued by this service, or was altered
+     * @throws CredentialsExpiredException if the token expired
+     */
+    public PreAuthenticatedAuthenticationToken verify(String token) throws AuthenticationException {
+        int signatureStart = token.lastIndexOf('.');
+        if (signatureStart < 0 || !token.startsWith(HEADER + ".")) {
+            throw new BadCredentialsException("Malformed token");
+        }
+        String content = token.substring(0, signatureStart);
+        JsonNode claims;
+        try {
+            byte[] signature = DECODER.decode(token.substring(signatureStart + 1));
+            if (!MessageDigest.isEqual(sign(content), signature)) {
+                throw new BadCredentialsException("Invalid token signature");
+            }
+            claims = this.objectMapper.readTree(DECODER.decode(content.substring(HEADER.length() + 1)));
+        } catch (IllegalArgumentException | IOException ex) {
+            throw new BadCredentialsException("Malformed token", ex);
+        }
+        if (claims.path("exp").asLong() <= this.clock.instant().getEpochSecond()) {
+            throw new CredentialsExpiredException("Expired token");
+        }
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        for (JsonNode role : claims.path("roles")) {
+            if (this.roles.contains(role.asText())) {
+                authorities.add(new SimpleGrantedAuthority(role.asText()));
+            }
+        }
+        String username = claims.path("sub").asText();
+        if (username.isEmpty()) {
+            throw new BadCredentialsException("Malformed token");
+        }
+        return new PreAuthenticatedAuthenticationToken(username, token, authorities);
+    }
+
+    private byte[] sign(String content) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(this.key);
+            return mac.doFinal(content.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
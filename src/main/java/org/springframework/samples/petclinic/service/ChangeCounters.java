@@ -0,0 +1,85 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.service;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+
+import org.springframework.samples.petclinic.repository.ChangeCounterRepository;
+import org.springframework.stereotype.Component;
+
+/**
+ * Change counters of the resources served by the REST API, incremented by the {@link ClinicServiceImpl} write paths
+ * alongside the eviction of the caches of the same name. They let a client check whether a collection, or the
+ * associations of an entity, changed without reading them. The associations of an owner or a pet have a counter of
+ * their own ({@link #owner}, {@link #pet}): a visit added to a pet changes the tags of that pet and of its owner only.
+ * <p/>
+ * The counters are kept by the {@link ChangeCounterRepository} of the repository profile: in the database, and
+ * incremented in the transaction of the write, with the database profiles, so that the instances of a cluster share
+ * them. A write made straight to the database is only seen by the tags if it increments the counters of its
+ * resources too (<code>UPDATE change_counters SET counter = counter + 1 WHERE resource = 'owners/1'</code>).
+ */
+@Component
+public class ChangeCounters {
+
+    public static final String OWNERS = "owners";
+
+    public static final String PETS = "pets";
+
+    public static final String VETS = "vets";
+
+    public static final String PET_TYPES = "petTypes";
+
+    public static final String SPECIALTIES = "specialties";
+
+    private final ChangeCounterRepository changeCounterRepository;
+
+    /**
+     * @return the resource counting the writes of the pets and visits of the given owner
+     */
+    public static String owner(int ownerId) {
+        return OWNERS + "/" + ownerId;
+    }
+
+    /**
+     * @return the resource counting the writes of the visits of the given pet
+     */
+    public static String pet(int petId) {
+        return PETS + "/" + petId;
+    }
+
+    public ChangeCounters(ChangeCounterRepository changeCounterRepository) {
+        this.changeCounterRepository = changeCounterRepository;
+    }
+
+    /**
+     * @return a tag of the current state of the resources, changed by every counted write of one of them
+     */
+    public String tag(String... resources) {
+        StringJoiner tag = new StringJoiner(".");
+        for (String resource : resources) {
+            tag.add(this.changeCounterRepository.tag(resource));
+        }
+        return tag.toString();
+    }
+
+    /**
+     * Count a write of the given resources as part of the current transaction (at once without a transaction).
+     */
+    public void increment(String... resources) {
+        this.changeCounterRepository.increment(Arrays.asList(resources));
+    }
+}
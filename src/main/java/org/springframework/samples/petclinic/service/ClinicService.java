@@ -16,6 +16,10 @@
 package org.springframework.samples.petclinic.service;
 
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 import org.springframework.dao.DataAccessException;
 import org.springframework.samples.petclinic.model.Owner;
@@ -24,6 +28,7 @@ import org.springframework.samples.petclinic.model.PetType;
 import org.springframework.samples.petclinic.model.Specialty;
 import org.springframework.samples.petclinic.model.Vet;
 import org.springframework.samples.petclinic.model.Visit;
+import org.springframework.samples.petclinic.repository.OwnerFetchPlan;
 
 
 /**
@@ -35,27 +40,49 @@ import org.springframework.samples.petclinic.model.Visit;
 public interface ClinicService {
 
 	Pet findPetById(int id) throws DataAccessException;
+	Pet findPetForUpdate(int id) throws DataAccessException;
+	Integer findPetVersion(int id) throws DataAccessException;
 	Collection<Pet> findAllPets() throws DataAccessException;
+	Collection<Pet> findAllPets(int afterId, int limit) throws DataAccessException;
+	void streamAllPets(Consumer<Pet> action) throws DataAccessException;
 	void savePet(Pet pet) throws DataAccessException;
+	int updatePet(int id, int version, Map<String, Object> changes) throws DataAccessException;
 	void deletePet(Pet pet) throws DataAccessException;
 
 	Collection<Visit> findVisitsByPetId(int petId);
 	Visit findVisitById(int visitId) throws DataAccessException;
 	Collection<Visit> findAllVisits() throws DataAccessException;
+	Collection<Visit> findAllVisits(int afterId, int limit) throws DataAccessException;
+	void streamAllVisits(Consumer<Visit> action) throws DataAccessException;
 	void saveVisit(Visit visit) throws DataAccessException;
 	void deleteVisit(Visit visit) throws DataAccessException;
 	
 	Vet findVetById(int id) throws DataAccessException;
+	Vet findVetForUpdate(int id) throws DataAccessException;
+	Integer findVetVersion(int id) throws DataAccessException;
 	Collection<Vet> findVets() throws DataAccessException;
 	Collection<Vet> findAllVets() throws DataAccessException;
+	Collection<Vet> findAllVets(int afterId, int limit) throws DataAccessException;
 	void saveVet(Vet vet) throws DataAccessException;
+	int updateVet(int id, int version, Map<String, Object> changes) throws DataAccessException;
 	void deleteVet(Vet vet) throws DataAccessException;
 	
 	Owner findOwnerById(int id) throws DataAccessException;
+	Owner findOwnerForUpdate(int id) throws DataAccessException;
+	Integer findOwnerVersion(int id) throws DataAccessException;
+	Owner findOwnerById(int id, OwnerFetchPlan plan) throws DataAccessException;
 	Collection<Owner> findAllOwners() throws DataAccessException;
+	Collection<Owner> findAllOwners(int afterId, int limit) throws DataAccessException;
+	void streamAllOwners(Consumer<Owner> action) throws DataAccessException;
 	void saveOwner(Owner owner) throws DataAccessException;
+	int updateOwner(int id, int version, Map<String, Object> changes) throws DataAccessException;
 	void deleteOwner(Owner owner) throws DataAccessException;
 	Collection<Owner> findOwnerByLastName(String lastName) throws DataAccessException;
+	Collection<Owner> findOwnerByLastName(String lastName, OwnerFetchPlan plan) throws DataAccessException;
+	Collection<Owner> findOwnerByLastName(String lastName, int afterId, int limit) throws DataAccessException;
+	Collection<String> findOwnerLastNames(String prefix, int limit) throws DataAccessException;
+	void streamOwnerLastNames(ObjIntConsumer<String> action) throws DataAccessException;
+	Map<String, Integer> importOwners(Iterator<Owner> owners, int batchSize) throws DataAccessException;
 
 	PetType findPetTypeById(int petTypeId);
 	Collection<PetType> findAllPetTypes() throws DataAccessException;
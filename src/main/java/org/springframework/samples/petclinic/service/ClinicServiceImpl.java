@@ -15,10 +15,20 @@
  */
 package org.springframework.samples.petclinic.service;
 
+import java.util.ArrayList;
 import java.util.Collection;
-
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.orm.ObjectRetrievalFailureException;
@@ -28,18 +38,26 @@ import org.springframework.samples.petclinic.model.PetType;
 import org.springframework.samples.petclinic.model.Specialty;
 import org.springframework.samples.petclinic.model.Vet;
 import org.springframework.samples.petclinic.model.Visit;
+import org.springframework.samples.petclinic.repository.OwnerFetchPlan;
 import org.springframework.samples.petclinic.repository.OwnerRepository;
 import org.springframework.samples.petclinic.repository.PetRepository;
 import org.springframework.samples.petclinic.repository.PetTypeRepository;
 import org.springframework.samples.petclinic.repository.SpecialtyRepository;
 import org.springframework.samples.petclinic.repository.VetRepository;
 import org.springframework.samples.petclinic.repository.VisitRepository;
+import org.springframework.samples.petclinic.util.NamePrefixIndex;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * Mostly used as a facade for all Petclinic controllers
  * Also a placeholder for @Transactional and @Cacheable annotations
+ * <p/>
+ * The entities returned by the cached reads are shared: the <code>find...ForUpdate</code> methods read a private copy
+ * of the owner, pet or vet to change, bypassing the cache. The evictions of the writes run once they have committed
+ * (see {@link org.springframework.samples.petclinic.config.CacheConfig}).
  *
  * @author Michael Isvy
  * @author Vitaliy Fedoriv
@@ -53,6 +71,8 @@ public class ClinicServiceImpl implements ClinicService {
     private VisitRepository visitRepository;
     private SpecialtyRepository specialtyRepository;
 	private PetTypeRepository petTypeRepository;
+    private ChangeCounters changeCounters;
+    private ObjectProvider<NamePrefixIndex> ownerNameIndex;
 
     @Autowired
      public ClinicServiceImpl(
@@ -61,13 +81,17 @@ public class ClinicServiceImpl implements ClinicService {
     		 OwnerRepository ownerRepository,
     		 VisitRepository visitRepository,
     		 SpecialtyRepository specialtyRepository,
-			 PetTypeRepository petTypeRepository) {
+			 PetTypeRepository petTypeRepository,
+			 ChangeCounters changeCounters,
+			 ObjectProvider<NamePrefixIndex> ownerNameIndex) {
         this.petRepository = petRepository;
         this.vetRepository = vetRepository;
         this.ownerRepository = ownerRepository;
         this.visitRepository = visitRepository;
         this.specialtyRepository = specialtyRepository;
 		this.petTypeRepository = petTypeRepository;
+		this.changeCounters = changeCounters;
+		this.ownerNameIndex = ownerNameIndex;
     }
 
 	@Override
@@ -76,9 +100,27 @@ public class ClinicServiceImpl implements ClinicService {
 		return petRepository.findAll();
 	}
 
+	@Override
+	@Transactional(readOnly = true)
+	public Collection<Pet> findAllPets(int afterId, int limit) throws DataAccessException {
+		return petRepository.findAll(afterId, limit);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public void streamAllPets(Consumer<Pet> action) throws DataAccessException {
+		petRepository.streamAll(action);
+	}
+
 	@Override
 	@Transactional
+	@Caching(evict = {
+		@CacheEvict(value = "pets", key = "#pet.id", condition = "!#pet.new"),
+		@CacheEvict(value = "owners", key = "#pet.owner.id", condition = "#pet.owner?.id != null"),
+		@CacheEvict(value = "owners", allEntries = true, condition = "#pet.owner?.id == null")
+	})
 	public void deletePet(Pet pet) throws DataAccessException {
+		changeCounters.increment(ChangeCounters.owner(ownerIdOf(pet)));
 		petRepository.delete(pet);
 	}
 
@@ -101,14 +143,34 @@ public class ClinicServiceImpl implements ClinicService {
 		return visitRepository.findAll();
 	}
 
+	@Override
+	@Transactional(readOnly = true)
+	public Collection<Visit> findAllVisits(int afterId, int limit) throws DataAccessException {
+		return visitRepository.findAll(afterId, limit);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public void streamAllVisits(Consumer<Visit> action) throws DataAccessException {
+		visitRepository.streamAll(action);
+	}
+
 	@Override
 	@Transactional
+	@Caching(evict = {
+		@CacheEvict(value = "pets", key = "#visit.pet.id"),
+		@CacheEvict(value = "owners", key = "#visit.pet.owner.id", condition = "#visit.pet.owner?.id != null"),
+		@CacheEvict(value = "owners", allEntries = true, condition = "#visit.pet.owner?.id == null")
+	})
 	public void deleteVisit(Visit visit) throws DataAccessException {
+		Pet pet = visit.getPet();
+		changeCounters.increment(ChangeCounters.pet(pet.getId()), ChangeCounters.owner(ownerIdOf(pet)));
 		visitRepository.delete(visit);
 	}
 
 	@Override
 	@Transactional(readOnly = true)
+	@Cacheable(value = "vets", key = "#id", unless = "#result == null")
 	public Vet findVetById(int id) throws DataAccessException {
 		Vet vet = null;
 		try {
@@ -122,19 +184,66 @@ public class ClinicServiceImpl implements ClinicService {
 
 	@Override
 	@Transactional(readOnly = true)
+	public Vet findVetForUpdate(int id) throws DataAccessException {
+		Vet vet = null;
+		try {
+			vet = vetRepository.findById(id);
+		} catch (ObjectRetrievalFailureException|EmptyResultDataAccessException e) {
+		// just ignore not found exceptions for Jdbc/Jpa realization
+			return null;
+		}
+		return vet;
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Integer findVetVersion(int id) throws DataAccessException {
+		return vetRepository.findVersionById(id);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	@Cacheable(value = "vets", key = "'all'")
 	public Collection<Vet> findAllVets() throws DataAccessException {
 		return vetRepository.findAll();
 	}
 
+	@Override
+	@Transactional(readOnly = true)
+	public Collection<Vet> findAllVets(int afterId, int limit) throws DataAccessException {
+		return vetRepository.findAll(afterId, limit);
+	}
+
 	@Override
 	@Transactional
+	@Caching(evict = {
+		@CacheEvict(value = "vets", key = "#vet.id", condition = "!#vet.new"),
+		@CacheEvict(value = "vets", key = "'all'")
+	})
 	public void saveVet(Vet vet) throws DataAccessException {
+		changeCounters.increment(ChangeCounters.VETS);
 		vetRepository.save(vet);
 	}
 
 	@Override
 	@Transactional
+	@Caching(evict = {
+		@CacheEvict(value = "vets", key = "#id"),
+		@CacheEvict(value = "vets", key = "'all'")
+	})
+	public int updateVet(int id, int version, Map<String, Object> changes) throws DataAccessException {
+		changeCounters.increment(ChangeCounters.VETS);
+		return vetRepository.update(id, version, changes);
+	}
+
+	@Override
+	@Transactional
+	@Caching(evict = {
+		@CacheEvict(value = "vets", key = "#vet.id", condition = "!#vet.new"),
+		@CacheEvict(value = "vets", key = "'all'")
+	})
 	public void deleteVet(Vet vet) throws DataAccessException {
+		changeCounters.increment(ChangeCounters.VETS);
 		vetRepository.delete(vet);
 	}
 
@@ -144,10 +253,28 @@ public class ClinicServiceImpl implements ClinicService {
 		return ownerRepository.findAll();
 	}
 
+	@Override
+	@Transactional(readOnly = true)
+	public Collection<Owner> findAllOwners(int afterId, int limit) throws DataAccessException {
+		return ownerRepository.findAll(afterId, limit);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public void streamAllOwners(Consumer<Owner> action) throws DataAccessException {
+		ownerRepository.streamAll(action);
+	}
+
 	@Override
 	@Transactional
+	@Caching(evict = {
+		@CacheEvict(value = "owners", key = "#owner.id", condition = "!#owner.new"),
+		@CacheEvict(value = "pets", allEntries = true, condition = "!#owner.new")
+	})
 	public void deleteOwner(Owner owner) throws DataAccessException {
 		ownerRepository.delete(owner);
+		int id = owner.getId();
+		updateOwnerNameIndex(index -> index.remove(id));
 	}
 
 	@Override
@@ -165,19 +292,30 @@ public class ClinicServiceImpl implements ClinicService {
 
 	@Override
 	@Transactional(readOnly = true)
+	@Cacheable(value = "petTypes", key = "'all'")
 	public Collection<PetType> findAllPetTypes() throws DataAccessException {
 		return petTypeRepository.findAll();
 	}
 
 	@Override
 	@Transactional
+	@Caching(evict = {
+		@CacheEvict(value = "petTypes", key = "'all'"),
+		@CacheEvict(value = {"pets", "owners"}, allEntries = true, condition = "!#petType.new")
+	})
 	public void savePetType(PetType petType) throws DataAccessException {
+		changeCounters.increment(ChangeCounters.PET_TYPES);
 		petTypeRepository.save(petType);
 	}
 
 	@Override
 	@Transactional
+	@Caching(evict = {
+		@CacheEvict(value = "petTypes", key = "'all'"),
+		@CacheEvict(value = {"pets", "owners"}, allEntries = true, condition = "!#petType.new")
+	})
 	public void deletePetType(PetType petType) throws DataAccessException {
+		changeCounters.increment(ChangeCounters.PET_TYPES);
 		petTypeRepository.delete(petType);
 	}
 
@@ -196,19 +334,30 @@ public class ClinicServiceImpl implements ClinicService {
 
 	@Override
 	@Transactional(readOnly = true)
+	@Cacheable(value = "specialties", key = "'all'")
 	public Collection<Specialty> findAllSpecialties() throws DataAccessException {
 		return specialtyRepository.findAll();
 	}
 
 	@Override
 	@Transactional
+	@Caching(evict = {
+		@CacheEvict(value = "specialties", key = "'all'"),
+		@CacheEvict(value = "vets", allEntries = true, condition = "!#specialty.new")
+	})
 	public void saveSpecialty(Specialty specialty) throws DataAccessException {
+		changeCounters.increment(ChangeCounters.SPECIALTIES, ChangeCounters.VETS);
 		specialtyRepository.save(specialty);
 	}
 
 	@Override
 	@Transactional
+	@Caching(evict = {
+		@CacheEvict(value = "specialties", key = "'all'"),
+		@CacheEvict(value = "vets", allEntries = true, condition = "!#specialty.new")
+	})
 	public void deleteSpecialty(Specialty specialty) throws DataAccessException {
+		changeCounters.increment(ChangeCounters.SPECIALTIES, ChangeCounters.VETS);
 		specialtyRepository.delete(specialty);
 	}
 
@@ -220,6 +369,7 @@ public class ClinicServiceImpl implements ClinicService {
 
 	@Override
 	@Transactional(readOnly = true)
+	@Cacheable(value = "owners", key = "#id", unless = "#result == null")
 	public Owner findOwnerById(int id) throws DataAccessException {
 		Owner owner = null;
 		try {
@@ -233,6 +383,32 @@ public class ClinicServiceImpl implements ClinicService {
 
 	@Override
 	@Transactional(readOnly = true)
+	public Owner findOwnerForUpdate(int id) throws DataAccessException {
+		return findOwnerById(id, OwnerFetchPlan.PETS_AND_VISITS);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Integer findOwnerVersion(int id) throws DataAccessException {
+		return ownerRepository.findVersionById(id);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Owner findOwnerById(int id, OwnerFetchPlan plan) throws DataAccessException {
+		Owner owner = null;
+		try {
+			owner = ownerRepository.findById(id, plan);
+		} catch (ObjectRetrievalFailureException|EmptyResultDataAccessException e) {
+		// just ignore not found exceptions for Jdbc/Jpa realization
+			return null;
+		}
+		return owner;
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	@Cacheable(value = "pets", key = "#id", unless = "#result == null")
 	public Pet findPetById(int id) throws DataAccessException {
 		Pet pet = null;
 		try {
@@ -244,32 +420,110 @@ public class ClinicServiceImpl implements ClinicService {
 		return pet;
 	}
 
+	@Override
+	@Transactional(readOnly = true)
+	public Pet findPetForUpdate(int id) throws DataAccessException {
+		Pet pet = null;
+		try {
+			pet = petRepository.findById(id);
+		} catch (ObjectRetrievalFailureException|EmptyResultDataAccessException e) {
+		// just ignore not found exceptions for Jdbc/Jpa realization
+			return null;
+		}
+		return pet;
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Integer findPetVersion(int id) throws DataAccessException {
+		return petRepository.findVersionById(id);
+	}
+
 	@Override
 	@Transactional
+	@Caching(evict = {
+		@CacheEvict(value = "pets", key = "#pet.id", condition = "!#pet.new"),
+		@CacheEvict(value = "owners", key = "#pet.owner.id", condition = "#pet.owner?.id != null"),
+		@CacheEvict(value = "owners", allEntries = true, condition = "#pet.owner?.id == null")
+	})
 	public void savePet(Pet pet) throws DataAccessException {
 		petRepository.save(pet);
+		changeCounters.increment(ChangeCounters.pet(pet.getId()), ChangeCounters.owner(ownerIdOf(pet)));
+	}
 
+	@Override
+	@Transactional
+	@Caching(evict = {
+		@CacheEvict(value = "pets", key = "#id"),
+		@CacheEvict(value = "owners", allEntries = true)
+	})
+	public int updatePet(int id, int version, Map<String, Object> changes) throws DataAccessException {
+		int newVersion = petRepository.update(id, version, changes);
+		changeCounters.increment(ChangeCounters.owner(petRepository.findById(id).getOwner().getId()));
+		return newVersion;
 	}
 
 	@Override
 	@Transactional
+	@Caching(evict = {
+		@CacheEvict(value = "pets", key = "#visit.pet.id"),
+		@CacheEvict(value = "owners", key = "#visit.pet.owner.id", condition = "#visit.pet.owner?.id != null"),
+		@CacheEvict(value = "owners", allEntries = true, condition = "#visit.pet.owner?.id == null")
+	})
 	public void saveVisit(Visit visit) throws DataAccessException {
+		Pet pet = visit.getPet();
+		changeCounters.increment(ChangeCounters.pet(pet.getId()), ChangeCounters.owner(ownerIdOf(pet)));
 		visitRepository.save(visit);
+	}
 
+	/**
+	 * @return the id of the owner of the given saved pet, read from the database if the pet does not carry it
+	 */
+	private int ownerIdOf(Pet pet) {
+		Owner owner = pet.getOwner();
+		if (owner == null || owner.getId() == null) {
+			owner = petRepository.findById(pet.getId()).getOwner();
+		}
+		return owner.getId();
 	}
 
 	@Override
 	@Transactional(readOnly = true)
-    @Cacheable(value = "vets")
+	@Cacheable(value = "vets", key = "'all'")
 	public Collection<Vet> findVets() throws DataAccessException {
 		return vetRepository.findAll();
 	}
 
 	@Override
 	@Transactional
+	@Caching(evict = {
+		@CacheEvict(value = "owners", key = "#owner.id", condition = "!#owner.new"),
+		@CacheEvict(value = "pets", allEntries = true, condition = "!#owner.new")
+	})
 	public void saveOwner(Owner owner) throws DataAccessException {
+		if (!owner.isNew()) {
+			// the pets and visits saved along with the owner
+			changeCounters.increment(ChangeCounters.owner(owner.getId()));
+		}
 		ownerRepository.save(owner);
+		int id = owner.getId();
+		String lastName = owner.getLastName();
+		updateOwnerNameIndex(index -> index.put(id, lastName));
+	}
 
+	@Override
+	@Transactional
+	@Caching(evict = {
+		@CacheEvict(value = "owners", key = "#id"),
+		@CacheEvict(value = "pets", allEntries = true)
+	})
+	public int updateOwner(int id, int version, Map<String, Object> changes) throws DataAccessException {
+		int newVersion = ownerRepository.update(id, version, changes);
+		if (changes.containsKey("lastName")) {
+			String lastName = (String) changes.get("lastName");
+			updateOwnerNameIndex(index -> index.put(id, lastName));
+		}
+		return newVersion;
 	}
 
 	@Override
@@ -278,6 +532,112 @@ public class ClinicServiceImpl implements ClinicService {
 		return ownerRepository.findByLastName(lastName);
 	}
 
+	@Override
+	@Transactional(readOnly = true)
+	public Collection<Owner> findOwnerByLastName(String lastName, OwnerFetchPlan plan) throws DataAccessException {
+		return ownerRepository.findByLastName(lastName, plan);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Collection<Owner> findOwnerByLastName(String lastName, int afterId, int limit) throws DataAccessException {
+		return ownerRepository.findByLastName(lastName, afterId, limit);
+	}
+
+	/**
+	 * Answered by the owner last name index when it is enabled and loaded, without a transaction so that no connection
+	 * is taken from the pool; by a query on the owners otherwise.
+	 */
+	@Override
+	public Collection<String> findOwnerLastNames(String prefix, int limit) throws DataAccessException {
+		NamePrefixIndex index = ownerNameIndex.getIfAvailable();
+		if (index != null && index.isReady()) {
+			return index.findByPrefix(prefix, limit);
+		}
+		return ownerRepository.findLastNames(prefix, limit);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public void streamOwnerLastNames(ObjIntConsumer<String> action) throws DataAccessException {
+		ownerRepository.streamLastNames(action);
+	}
+
+	/**
+	 * Inserts the owners by batches of <code>batchSize</code>, so that neither the import nor the persistence context
+	 * is held in memory at once, but in a single transaction: nothing is imported when reading or validating an owner
+	 * fails. The new owners and pets cannot be cached yet, so no cache entry is evicted.
+	 */
+	@Override
+	@Transactional
+	public Map<String, Integer> importOwners(Iterator<Owner> owners, int batchSize) throws DataAccessException {
+		int ownerCount = 0;
+		int petCount = 0;
+		int visitCount = 0;
+		List<Owner> batch = new ArrayList<>(batchSize);
+		while (owners.hasNext()) {
+			Owner owner = owners.next();
+			batch.add(owner);
+			ownerCount++;
+			for (Pet pet : owner.getPets()) {
+				petCount++;
+				visitCount += pet.getVisits().size();
+			}
+			if (batch.size() >= batchSize) {
+				ownerRepository.saveAll(batch);
+				indexOwnerNames(batch);
+				batch.clear();
+			}
+		}
+		if (!batch.isEmpty()) {
+			ownerRepository.saveAll(batch);
+			indexOwnerNames(batch);
+		}
+		Map<String, Integer> counts = new LinkedHashMap<>();
+		counts.put("owners", ownerCount);
+		counts.put("pets", petCount);
+		counts.put("visits", visitCount);
+		return counts;
+	}
+
+	private void indexOwnerNames(List<Owner> owners) {
+		if (ownerNameIndex.getIfAvailable() == null) {
+			return;
+		}
+		int[] ids = new int[owners.size()];
+		String[] lastNames = new String[owners.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = owners.get(i).getId();
+			lastNames[i] = owners.get(i).getLastName();
+		}
+		updateOwnerNameIndex(index -> {
+			for (int i = 0; i < ids.length; i++) {
+				index.put(ids[i], lastNames[i]);
+			}
+		});
+	}
+
+	/**
+	 * Applies the update to the owner last name index, if enabled, once the current transaction commits: the writes
+	 * rolled back never show in the index.
+	 */
+	private void updateOwnerNameIndex(Consumer<NamePrefixIndex> update) {
+		NamePrefixIndex index = ownerNameIndex.getIfAvailable();
+		if (index == null) {
+			return;
+		}
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					update.accept(index);
+				}
+			});
+		} else {
+			update.accept(index);
+		}
+	}
+
 	@Override
 	@Transactional(readOnly = true)
 	public Collection<Visit> findVisitsByPetId(int petId) {
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.util;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+/**
+ * Sends the reads of the {@link org.springframework.cache.annotation.Cacheable} methods, only called on a cache miss,
+ * to the primary database: the entries they put are shared by all the clients and kept until the next write of this
+ * instance, and a replica lagging behind a write evicting them would put its previous state back.
+ */
+@Aspect
+public class CachedReadsRoutingAspect {
+
+    @Around("@annotation(org.springframework.cache.annotation.Cacheable)")
+    public Object readFromPrimary(ProceedingJoinPoint call) throws Throwable {
+        if (ReadWriteRoutingDataSource.isReadingFromPrimary()) {
+            return call.proceed();
+        }
+        ReadWriteRoutingDataSource.readFromPrimary(true);
+        try {
+            return call.proceed();
+        } finally {
+            ReadWriteRoutingDataSource.readFromPrimary(false);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.util;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Actuator endpoint (<code>/actuator/callmonitor</code>) publishing the per method statistics of the
+ * {@link CallMonitoringAspect}; a DELETE request resets them.
+ */
+@Endpoint(id = "callmonitor")
+public class CallMonitorEndpoint {
+
+    private final CallMonitoringAspect callMonitor;
+
+    public CallMonitorEndpoint(CallMonitoringAspect callMonitor) {
+        this.callMonitor = callMonitor;
+    }
+
+    @ReadOperation
+    public Map<String, CallStatistics> statistics() {
+        Map<String, CallStatistics> statistics = new LinkedHashMap<>();
+        for (CallStatistics methodStatistics : this.callMonitor.getStatistics()) {
+            statistics.put(methodStatistics.getName(), methodStatistics);
+        }
+        return statistics;
+    }
+
+    @DeleteOperation
+    public void reset() {
+        this.callMonitor.reset();
+    }
+}
@@ -18,15 +18,25 @@ package org.springframework.samples.petclinic.util;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.jmx.export.annotation.ManagedOperation;
 import org.springframework.jmx.export.annotation.ManagedResource;
-import org.springframework.util.StopWatch;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Simple aspect that monitors call count and call invocation time. It uses JMX annotations and therefore can be
  * monitored using any JMX console such as the jConsole
  * <p/>
+ * Every monitored method has its own {@link CallStatistics}, so that concurrent calls do not contend on a shared lock
+ * and a regression shows up on the method causing it. Call times are measured with {@link System#nanoTime()}.
+ * <p/>
  * This is only useful if you use JPA or JDBC.  Spring-data-jpa doesn't have any correctly annotated classes to join on
  *
  * @author Rob Harrop
@@ -38,11 +48,9 @@ import org.springframework.util.StopWatch;
 @Aspect
 public class CallMonitoringAspect {
 
-    private boolean enabled = true;
+    private volatile boolean enabled = true;
 
-    private int callCount = 0;
-
-    private long accumulatedCallTime = 0;
+    private final ConcurrentMap<Method, CallStatistics> statistics = new ConcurrentHashMap<>();
 
     @ManagedAttribute
     public boolean isEnabled() {
@@ -56,42 +64,85 @@ public class CallMonitoringAspect {
 
     @ManagedOperation
     public void reset() {
-        this.callCount = 0;
-        this.accumulatedCallTime = 0;
+        this.statistics.clear();
     }
 
     @ManagedAttribute
     public int getCallCount() {
-        return callCount;
+        long callCount = 0;
+        for (CallStatistics methodStatistics : this.statistics.values()) {
+            callCount += methodStatistics.getCount();
+        }
+        return (int) callCount;
     }
 
+    /**
+     * @return the mean call time of all the monitored methods, in milliseconds
+     */
     @ManagedAttribute
     public long getCallTime() {
-        if (this.callCount > 0)
-            return this.accumulatedCallTime / this.callCount;
+        long callCount = 0;
+        double accumulatedCallTime = 0;
+        for (CallStatistics methodStatistics : this.statistics.values()) {
+            callCount += methodStatistics.getCount();
+            accumulatedCallTime += methodStatistics.getTotalTime();
+        }
+        if (callCount > 0)
+            return (long) (accumulatedCallTime / callCount);
         else
             return 0;
     }
 
+    /**
+     * @return one summary line (count, mean, p50, p99 and max call times) per monitored method
+     */
+    @ManagedAttribute
+    public String[] getMethodStatistics() {
+        List<CallStatistics> all = getStatistics();
+        String[] lines = new String[all.size()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = all.get(i).toString();
+        }
+        return lines;
+    }
+
+    /**
+     * @return the statistics of the methods called since the last reset, ordered by name
+     */
+    public List<CallStatistics> getStatistics() {
+        List<CallStatistics> all = new ArrayList<>(this.statistics.values());
+        all.sort(Comparator.comparing(CallStatistics::getName));
+        return all;
+    }
 
     @Around("within(@org.springframework.stereotype.Repository *)")
     public Object invoke(ProceedingJoinPoint joinPoint) throws Throwable {
         if (this.enabled) {
-            StopWatch sw = new StopWatch(joinPoint.toShortString());
-
-            sw.start("invoke");
+            long start = System.nanoTime();
             try {
                 return joinPoint.proceed();
             } finally {
-                sw.stop();
-                synchronized (this) {
-                    this.callCount++;
-                    this.accumulatedCallTime += sw.getTotalTimeMillis();
+                long elapsed = System.nanoTime() - start;
+                Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+                CallStatistics methodStatistics = this.statistics.get(method);
+                if (methodStatistics == null) {
+                    methodStatistics = this.statistics.computeIfAbsent(method, CallMonitoringAspect::newStatistics);
                 }
+                methodStatistics.record(elapsed);
             }
         } else {
             return joinPoint.proceed();
         }
     }
 
+    private static CallStatistics newStatistics(Method method) {
+        StringBuilder name = new StringBuilder(method.getDeclaringClass().getSimpleName())
+            .append('.').append(method.getName()).append('(');
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            name.append(i > 0 ? ", " : "").append(parameterTypes[i].getSimpleName());
+        }
+        return new CallStatistics(name.append(')').toString());
+    }
+
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call count and latency histogram of one monitored method, updated without locking by the concurrent callers.
+ * <p/>
+ * Latencies are recorded in nanoseconds into log-linear buckets: values below 16ns have their own bucket, every power
+ * of two above is split into 16 buckets of equal width, so that percentiles are reported within 1/16 (6.25%) of the
+ * measured value whatever its magnitude.
+ */
+public class CallStatistics {
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+
+    private final String name;
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder totalTime = new LongAdder();
+
+    private final LongAccumulator maxTime = new LongAccumulator(Math::max, 0);
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    public CallStatistics(String name) {
+        this.name = name;
+    }
+
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        this.count.increment();
+        this.totalTime.add(value);
+        this.maxTime.accumulate(value);
+        this.buckets.incrementAndGet(bucketIndex(value));
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    /**
+     * @return the accumulated call time in milliseconds
+     */
+    public double getTotalTime() {
+        return this.totalTime.sum() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @return the mean call time in milliseconds
+     */
+    public double getMeanTime() {
+        long calls = getCount();
+        return calls > 0 ? this.totalTime.sum() / NANOS_PER_MILLI / calls : 0;
+    }
+
+    /**
+     * @return the median call time in milliseconds
+     */
+    public double getP50() {
+        return percentile(0.5);
+    }
+
+    /**
+     * @return the 99th percentile of the call time in milliseconds
+     */
+    public double getP99() {
+        return percentile(0.99);
+    }
+
+    /**
+     * @return the longest call time in milliseconds
+     */
+    public double getMaxTime() {
+        return this.maxTime.get() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return the upper bound of the bucket holding the given quantile, in milliseconds; 0 if nothing was recorded
+     */
+    public double percentile(double quantile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        int index = 0;
+        for (; index < BUCKETS - 1; index++) {
+            seen += counts[index];
+            if (seen >= rank) {
+                break;
+            }
+        }
+        // the bucket bound may exceed the slowest call actually recorded
+        return Math.min(bucketUpperBound(index), this.maxTime.get()) / NANOS_PER_MILLI;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s count=%d mean=%.3fms p50=%.3fms p99=%.3fms max=%.3fms",
+            this.name, getCount(), getMeanTime(), getP50(), getP99(), getMaxTime());
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.util;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Fills the petclinic schema with a synthetic data set of any size, for capacity planning, benchmarks and load tests.
+ * <p/>
+ * The rows are appended to the existing ones with explicit ids and written with batched JDBC inserts, one batch of
+ * owners (with their pets and visits) at a time so that the memory used does not depend on the size of the data set.
+ * The id sequences (and the MySQL identity columns) are moved past the generated ids afterwards (HSQLDB, MySQL and
+ * PostgreSQL).
+ * <p/>
+ * The output only depends on the seed and on the rows already present: last names follow a Zipf distribution, most
+ * owners have one or two pets, dogs and cats are the most common pet types, and the number of visits per pet is
+ * geometrically distributed. Dates are drawn relatively to a fixed {@link #REFERENCE_DATE}.
+ */
+public class DataGenerator {
+
+    static final LocalDate REFERENCE_DATE = LocalDate.of(2023, 12, 31);
+
+    static final String[] LAST_NAMES = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis",
+        "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore",
+        "Jackson", "Martin", "Lee", "Perez", "Thompson", "White", "Harris", "Sanchez", "Clark", "Ramirez", "Lewis",
+        "Robinson", "Walker", "Young", "Allen", "King", "Wright", "Scott", "Torres", "Nguyen", "Hill", "Flores",
+        "Green", "Adams", "Nelson", "Baker", "Hall", "Rivera", "Campbell", "Mitchell", "Carter", "Roberts", "Franklin",
+        "Black", "Escobito", "Schroeder", "McTavish", "Coleman", "Estaban", "Leary", "Stevens", "Ortega"};
+
+    private static final String[] FIRST_NAMES = {"James", "Mary", "Robert", "Patricia", "John", "Jennifer", "Michael",
+        "Linda", "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah",
+        "Charles", "Karen", "Daniel", "Lisa", "Matthew", "Nancy", "Anthony", "Betty", "Mark", "Sandra", "Paul",
+        "Ashley", "Steven", "Emily", "George", "Jean", "Jeff", "Maria", "Peter", "Carlos", "Harold", "Eduardo"};
+
+    private static final String[] PET_NAMES = {"Leo", "Basil", "Rosy", "Jewel", "Iggy", "George", "Samantha", "Max",
+        "Lucky", "Mulligan", "Freddy", "Sly", "Bella", "Charlie", "Luna", "Lucy", "Cooper", "Daisy", "Milo", "Coco",
+        "Rocky", "Bailey", "Oliver", "Lola", "Buddy", "Molly", "Toby", "Sadie", "Simba", "Chloe"};
+
+    private static final String[] STREETS = {"Main", "Oak", "Maple", "Lake", "Pine", "Cedar", "Elm", "Washington",
+        "Park", "Hill"};
+
+    private static final String[] CITIES = {"Madison", "Sun Prairie", "McFarland", "Windsor", "Monona", "Waunakee",
+        "Middleton", "Verona", "Fitchburg", "Stoughton"};
+
+    private static final String[] VISIT_DESCRIPTIONS = {"annual checkup", "rabies shot", "vaccination", "neutered",
+        "spayed", "dental cleaning", "skin allergy", "limping", "ear infection", "upset stomach"};
+
+    /**
+     * Pet types created when the <code>types</code> table is empty, with their relative frequency; types that already
+     * exist get the frequency of their name, {@link #DEFAULT_TYPE_WEIGHT} if it is not listed.
+     */
+    private static final Map<String, Integer> TYPE_WEIGHTS = new LinkedHashMap<>();
+
+    private static final int DEFAULT_TYPE_WEIGHT = 3;
+
+    private static final String[] SPECIALTIES = {"radiology", "surgery", "dentistry", "cardiology", "dermatology",
+        "oncology"};
+
+    static {
+        TYPE_WEIGHTS.put("dog", 40);
+        TYPE_WEIGHTS.put("cat", 34);
+        TYPE_WEIGHTS.put("bird", 8);
+        TYPE_WEIGHTS.put("hamster", 7);
+        TYPE_WEIGHTS.put("lizard", 6);
+        TYPE_WEIGHTS.put("snake", 5);
+    }
+
+    /**
+     * Relative frequency of owners having 0, 1, 2... pets.
+     */
+    private static final double[] PETS_PER_OWNER = {8, 45, 28, 12, 5, 2};
+
+    /**
+     * Relative frequency of vets having 0, 1, 2 or 3 specialties.
+     */
+    private static final double[] SPECIALTIES_PER_VET = {40, 40, 15, 5};
+
+    /**
+     * Parameter of the geometric distribution of the number of visits per pet (mean of (1 - p) / p, about 2.3).
+     */
+    private static final double VISIT_PROBABILITY = 0.3;
+
+    private static final int MAX_VISITS_PER_PET = 30;
+
+    private static final int OWNERS_PER_VET = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final SplittableRandom random;
+
+    private final int batchSize;
+
+    private final double[] lastNameDistribution;
+
+    private final double[] petsPerOwnerDistribution = cumulative(PETS_PER_OWNER);
+
+    private final double[] specialtiesPerVetDistribution = cumulative(SPECIALTIES_PER_VET);
+
+    private int[] typeIds;
+
+    private double[] typeDistribution;
+
+    private int[] specialtyIds;
+
+    private final Map<String, Integer> counts = new LinkedHashMap<>();
+
+    /**
+     * @param batchSize number of owners written per batch; their pets and visits are written in the same round
+     */
+    public DataGenerator(DataSource dataSource, long seed, int batchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.random = new SplittableRandom(seed);
+        this.batchSize = batchSize;
+        double[] zipf = new double[LAST_NAMES.length];
+        for (int rank = 0; rank < zipf.length; rank++) {
+            zipf[rank] = 1d / (rank + 1);
+        }
+        this.lastNameDistribution = cumulative(zipf);
+    }
+
+    /**
+     * Appends the given number of owners, with their pets and visits, and one vet per {@value #OWNERS_PER_VET} owners.
+     * Pet types and specialties are created if there are none.
+     *
+     * @return the number of rows inserted per table
+     */
+    public Map<String, Integer> generate(int owners) {
+        this.counts.clear();
+        loadTypes();
+        loadSpecialties();
+        generateVets(Math.max(1, owners / OWNERS_PER_VET));
+        generateOwners(owners);
+        for (String table : Arrays.asList("types", "specialties", "vets", "owners", "pets", "visits")) {
+            resetIdentity(table);
+        }
+        return new LinkedHashMap<>(this.counts);
+    }
+
+    private void loadTypes() {
+        if (count("types") == 0) {
+            List<Object[]> rows = new ArrayList<>();
+            int id = nextId("types");
+            for (String name : TYPE_WEIGHTS.keySet()) {
+                rows.add(new Object[]{id++, name});
+            }
+            insert("types", "INSERT INTO types (id, name) VALUES (?, ?)", rows);
+        }
+        List<Map<String, Object>> types = this.jdbcTemplate.queryForList("SELECT id, name FROM types ORDER BY id");
+        this.typeIds = new int[types.size()];
+        double[] weights = new double[types.size()];
+        for (int i = 0; i < types.size(); i++) {
+            this.typeIds[i] = ((Number) types.get(i).get("id")).intValue();
+            weights[i] = TYPE_WEIGHTS.getOrDefault(types.get(i).get("name"), DEFAULT_TYPE_WEIGHT);
+        }
+        this.typeDistribution = cumulative(weights);
+    }
+
+    private void loadSpecialties() {
+        if (count("specialties") == 0) {
+            List<Object[]> rows = new ArrayList<>();
+            int id = nextId("specialties");
+            for (String name : SPECIALTIES) {
+                rows.add(new Object[]{id++, name});
+            }
+            insert("specialties", "INSERT INTO specialties (id, name) VALUES (?, ?)", rows);
+        }
+        this.specialtyIds = this.jdbcTemplate.queryForList("SELECT id FROM specialties ORDER BY id", Integer.class)
+            .stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private void generateVets(int vets) {
+        List<Object[]> vetRows = new ArrayList<>();
+        List<Object[]> vetSpecialtyRows = new ArrayList<>();
+        int vetId = nextId("vets");
+        for (int i = 0; i < vets; i++, vetId++) {
+            vetRows.add(new Object[]{vetId, pick(FIRST_NAMES), pickLastName()});
+            int specialties = Math.min(sample(this.specialtiesPerVetDistribution), this.specialtyIds.length);
+            // the first specialties of a random rotation, so that a vet never has the same specialty twice
+            int offset = this.random.nextInt(this.specialtyIds.length);
+            for (int s = 0; s < specialties; s++) {
+                vetSpecialtyRows.add(new Object[]{vetId, this.specialtyIds[(offset + s) % this.specialtyIds.length]});
+            }
+        }
+        insert("vets", "INSERT INTO vets (id, first_name, last_name) VALUES (?, ?, ?)", vetRows);
+        insert("vet_specialties", "INSERT INTO vet_specialties (vet_id, specialty_id) VALUES (?, ?)", vetSpecialtyRows);
+    }
+
+    private void generateOwners(int owners) {
+        int ownerId = nextId("owners");
+        int petId = nextId("pets");
+        int visitId = nextId("visits");
+        List<Object[]> ownerRows = new ArrayList<>();
+        List<Object[]> petRows = new ArrayList<>();
+        List<Object[]> visitRows = new ArrayList<>();
+        for (int i = 0; i < owners; i++, ownerId++) {
+            ownerRows.add(new Object[]{ownerId, pick(FIRST_NAMES), pickLastName(),
+                (1 + this.random.nextInt(9999)) + " " + pick(STREETS) + " St.", pick(CITIES),
+                String.format("608%07d", this.random.nextInt(10_000_000))});
+            int pets = sample(this.petsPerOwnerDistribution);
+            for (int p = 0; p < pets; p++, petId++) {
+                LocalDate birthDate = REFERENCE_DATE.minusDays(this.random.nextInt(15 * 365));
+                petRows.add(new Object[]{petId, pick(PET_NAMES), Date.valueOf(birthDate),
+                    this.typeIds[sample(this.typeDistribution)], ownerId});
+                int visits = visitsPerPet();
+                int lifetime = (int) (REFERENCE_DATE.toEpochDay() - birthDate.toEpochDay()) + 1;
+                for (int v = 0; v < visits; v++, visitId++) {
+                    visitRows.add(new Object[]{visitId, petId,
+                        Date.valueOf(birthDate.plusDays(this.random.nextInt(lifetime))), pick(VISIT_DESCRIPTIONS)});
+                }
+            }
+            if (ownerRows.size() == this.batchSize || i == owners - 1) {
+                insert("owners", "INSERT INTO owners (id, first_name, last_name, address, city, telephone) VALUES (?, ?, ?, ?, ?, ?)", ownerRows);
+                insert("pets", "INSERT INTO pets (id, name, birth_date, type_id, owner_id) VALUES (?, ?, ?, ?, ?)", petRows);
+                insert("visits", "INSERT INTO visits (id, pet_id, visit_date, description) VALUES (?, ?, ?, ?)", visitRows);
+                ownerRows.clear();
+                petRows.clear();
+                visitRows.clear();
+            }
+        }
+    }
+
+    private int visitsPerPet() {
+        int visits = (int) (Math.log(1 - this.random.nextDouble()) / Math.log(1 - VISIT_PROBABILITY));
+        return Math.min(visits, MAX_VISITS_PER_PET);
+    }
+
+    private void insert(String table, String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += this.batchSize) {
+            this.jdbcTemplate.batchUpdate(sql, rows.subList(from, Math.min(from + this.batchSize, rows.size())));
+        }
+        this.counts.merge(table, rows.size(), Integer::sum);
+    }
+
+    private int count(String table) {
+        Integer count = this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+        return count == null ? 0 : count;
+    }
+
+    private int nextId(String table) {
+        Integer maxId = this.jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Integer.class);
+        return maxId == null ? 1 : maxId + 1;
+    }
+
+    /**
+     * Moves the sequence of the given table (and the MySQL identity column) past the ids inserted explicitly.
+     */
+    private void resetIdentity(String table) {
+        String database = databaseProductName();
+        if (database.contains("HSQL")) {
+            this.jdbcTemplate.execute("ALTER SEQUENCE " + table + "_seq RESTART WITH " + nextId(table));
+        } else if (database.contains("PostgreSQL")) {
+            this.jdbcTemplate.queryForObject("SELECT setval('" + table + "_seq', " + nextId(table) + ", false)",
+                Long.class);
+        } else if (database.contains("MySQL")) {
+            // no sequences: the JPA repositories read the next ids from a table of one row
+            int nextId = nextId(table);
+            this.jdbcTemplate.execute("ALTER TABLE " + table + " AUTO_INCREMENT = " + nextId);
+            this.jdbcTemplate.update("UPDATE " + table + "_seq SET next_val = ?", nextId);
+        }
+    }
+
+    private String databaseProductName() {
+        try {
+            return JdbcUtils.extractDatabaseMetaData(this.jdbcTemplate.getDataSource(),
+                DatabaseMetaData::getDatabaseProductName);
+        } catch (MetaDataAccessException ex) {
+            throw new IllegalStateException("Cannot read the database product name", ex);
+        }
+    }
+
+    private String pick(String[] values) {
+        return values[this.random.nextInt(values.length)];
+    }
+
+    private String pickLastName() {
+        return LAST_NAMES[sample(this.lastNameDistribution)];
+    }
+
+    /**
+     * @param distribution cumulative probabilities, see {@link #cumulative(double[])}
+     * @return the index drawn
+     */
+    private int sample(double[] distribution) {
+        int index = Arrays.binarySearch(distribution, this.random.nextDouble());
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static double[] cumulative(double[] weights) {
+        double total = 0;
+        for (double weight : weights) {
+            total += weight;
+        }
+        double[] distribution = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            distribution[i] = sum / total;
+        }
+        distribution[weights.length - 1] = 1;
+        return distribution;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Runs the {@link DataGenerator} at startup when <code>petclinic.datagen.owners</code> is set, e.g.
+ * <pre>
+ * ./mvnw spring-boot:run -Dspring-boot.run.arguments="--petclinic.datagen.owners=1000000 --petclinic.datagen.exit=true"
+ * </pre>
+ * With <code>petclinic.datagen.exit=true</code> the application stops once the data is written, otherwise it serves
+ * the generated data.
+ */
+@Component
+@ConditionalOnProperty("petclinic.datagen.owners")
+public class DataGeneratorRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataGeneratorRunner.class);
+
+    private final DataSource dataSource;
+
+    private final ConfigurableApplicationContext context;
+
+    @Value("${petclinic.datagen.owners}")
+    private int owners;
+
+    @Value("${petclinic.datagen.seed:42}")
+    private long seed;
+
+    @Value("${petclinic.datagen.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${petclinic.datagen.exit:false}")
+    private boolean exit;
+
+    public DataGeneratorRunner(DataSource dataSource, ConfigurableApplicationContext context) {
+        this.dataSource = dataSource;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.currentTimeMillis();
+        Map<String, Integer> counts = new DataGenerator(this.dataSource, this.seed, this.batchSize).generate(this.owners);
+        logger.info("Generated {} (seed {}) in {} ms", counts, this.seed, System.currentTimeMillis() - start);
+        if (this.exit) {
+            System.exit(SpringApplication.exit(this.context));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.util;
+
+import java.util.Collection;
+
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.samples.petclinic.model.BaseEntity;
+
+/**
+ * Read-only index of entities by id, built once from the result of a query so that each of the following lookups
+ * costs constant time instead of the linear scan of {@link EntityUtils#getById}. The ids are kept in a primitive
+ * open-addressing table (linear probing, at most half full): no <code>Integer</code> is boxed, neither when building
+ * the index nor when looking up.
+ *
+ * @param <T> the entity type
+ * @see EntityUtils#index
+ */
+public final class EntityIndex<T extends BaseEntity> {
+
+    private final Class<T> entityClass;
+
+    private final int[] ids;
+
+    private final Object[] entities;
+
+    private final int mask;
+
+    private final int shift;
+
+    private int size;
+
+    /**
+     * @param entities    the entities to index; the entities without id are skipped and, when several share the same
+     *                    id, the first one is kept
+     * @param entityClass the entity class, reported when a lookup fails
+     */
+    public EntityIndex(Collection<? extends T> entities, Class<T> entityClass) {
+        this.entityClass = entityClass;
+        int capacity = Integer.highestOneBit(Math.max(entities.size(), 1) * 2 - 1) << 1;
+        this.ids = new int[capacity];
+        this.entities = new Object[capacity];
+        this.mask = capacity - 1;
+        this.shift = Integer.numberOfLeadingZeros(capacity) + 1;
+        for (T entity : entities) {
+            if (entity.getId() != null) {
+                put(entity.getId(), entity);
+            }
+        }
+    }
+
+    private void put(int id, T entity) {
+        int slot = slot(id);
+        while (this.entities[slot] != null) {
+            if (this.ids[slot] == id) {
+                return;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        this.ids[slot] = id;
+        this.entities[slot] = entity;
+        this.size++;
+    }
+
+    /**
+     * @return the entity with the given id, <code>null</code> if none
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int id) {
+        int slot = slot(id);
+        Object entity;
+        while ((entity = this.entities[slot]) != null) {
+            if (this.ids[slot] == id) {
+                return (T) entity;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        return null;
+    }
+
+    /**
+     * Look up the entity with the given id, as {@link EntityUtils#getById} does.
+     *
+     * @return the found entity
+     * @throws ObjectRetrievalFailureException if the entity was not found
+     */
+    public T getById(int id) throws ObjectRetrievalFailureException {
+        T entity = get(id);
+        if (entity == null) {
+            throw new ObjectRetrievalFailureException(this.entityClass, id);
+        }
+        return entity;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Spreads the consecutive ids of a database table over the whole hash table (Fibonacci hashing).
+     */
+    private int slot(int id) {
+        return (id * 0x9E3779B9) >>> this.shift;
+    }
+
+}
@@ -16,7 +16,9 @@
 
 package org.springframework.samples.petclinic.util;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import org.springframework.orm.ObjectRetrievalFailureException;
 import org.springframework.samples.petclinic.model.BaseEntity;
@@ -33,7 +35,8 @@ import org.springframework.samples.petclinic.model.BaseEntity;
 public abstract class EntityUtils {
 
     /**
-     * Look up the entity of the given class with the given id in the given collection.
+     * Look up the entity of the given class with the given id in the given collection. Scans the collection: use
+     * {@link #index} when looking up many entities in the same collection.
      *
      * @param entities    the collection to search
      * @param entityClass the entity class to look up
@@ -51,4 +54,40 @@ public abstract class EntityUtils {
         throw new ObjectRetrievalFailureException(entityClass, entityId);
     }
 
+    /**
+     * Index the given entities by id, for repeated lookups in the same collection.
+     *
+     * @param entities    the collection to index
+     * @param entityClass the entity class to look up
+     * @return the index of the entities
+     * @see EntityIndex#getById
+     */
+    public static <T extends BaseEntity> EntityIndex<T> index(Collection<? extends T> entities, Class<T> entityClass) {
+        return new EntityIndex<>(entities, entityClass);
+    }
+
+    /**
+     * Split the given ids into lists of at most <code>size</code> ids, each bound to the <code>IN</code> clause of a
+     * query of its own: the databases limit the number of parameters of a statement (32767 for PostgreSQL).
+     *
+     * @param ids  the ids to split
+     * @param size the maximum number of ids per list
+     * @return the lists of ids, in the iteration order of the given collection
+     */
+    public static List<List<Integer>> chunk(Collection<Integer> ids, int size) {
+        List<List<Integer>> chunks = new ArrayList<>();
+        List<Integer> chunk = new ArrayList<>(Math.min(ids.size(), size));
+        for (Integer id : ids) {
+            if (chunk.size() == size) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>(size);
+            }
+            chunk.add(id);
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.util;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.samples.petclinic.model.BaseEntity;
+
+/**
+ * The id sequences of the tables (<code>owners_seq</code>, <code>pets_seq</code>, ...), read the way the
+ * <code>pooled-lo</code> optimizer of Hibernate does (see {@link BaseEntity}): every value reserves the block of
+ * {@link BaseEntity#ID_ALLOCATION_SIZE} ids starting at that value. HSQLDB and PostgreSQL have sequences; MySQL has
+ * none, and a <code>&lt;table&gt;_seq</code> table of one row holds the next value instead.
+ */
+public class IdSequences {
+
+    /**
+     * The tables whose ids are drawn from a sequence.
+     */
+    public static final String[] TABLES = {"owners", "pets", "visits", "vets", "specialties", "types", "roles"};
+
+    private final DataSource dataSource;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String database;
+
+    public IdSequences(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        try {
+            this.database = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        } catch (MetaDataAccessException ex) {
+            throw new IllegalStateException("Cannot read the database product name", ex);
+        }
+    }
+
+    /**
+     * Reserve the next block of ids of the given table, outside of the current transaction: the block stays reserved
+     * even if the transaction rolls back.
+     *
+     * @return the first id of the block
+     */
+    public int reserve(String table) throws DataAccessException {
+        if (this.database.contains("HSQL")) {
+            return this.jdbcTemplate.queryForObject("CALL NEXT VALUE FOR " + table + "_seq", Integer.class);
+        }
+        if (this.database.contains("PostgreSQL")) {
+            return this.jdbcTemplate.queryForObject("SELECT nextval('" + table + "_seq')", Integer.class);
+        }
+        // a transaction of its own on another connection, as Hibernate does, so that the row is locked only briefly
+        try (Connection connection = this.dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            JdbcTemplate sequence = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+            int next = sequence.queryForObject("SELECT next_val FROM " + table + "_seq FOR UPDATE", Integer.class);
+            sequence.update("UPDATE " + table + "_seq SET next_val = ?", next + BaseEntity.ID_ALLOCATION_SIZE);
+            connection.commit();
+            return next;
+        } catch (SQLException ex) {
+            throw new DataAccessResourceFailureException("Cannot reserve ids from " + table + "_seq", ex);
+        }
+    }
+
+    /**
+     * @return the first id of the block the next {@link #reserve} of the given table will return, or
+     * <code>null</code> if the table has no sequence
+     */
+    public Long peek(String table) throws DataAccessException {
+        List<Long> next;
+        if (this.database.contains("HSQL")) {
+            next = this.jdbcTemplate.queryForList("SELECT NEXT_VALUE FROM INFORMATION_SCHEMA.SEQUENCES " +
+                "WHERE SEQUENCE_SCHEMA = CURRENT_SCHEMA AND SEQUENCE_NAME = ?", Long.class, (table + "_seq").toUpperCase());
+        } else if (this.database.contains("PostgreSQL")) {
+            next = this.jdbcTemplate.queryForList("SELECT COALESCE(last_value + increment_by, start_value) " +
+                "FROM pg_sequences WHERE schemaname = current_schema() AND sequencename = ?", Long.class, table + "_seq");
+        } else if (this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.tables " +
+            "WHERE table_schema = DATABASE() AND table_name = ?", Integer.class, table + "_seq") > 0) {
+            next = this.jdbcTemplate.queryForList("SELECT next_val FROM " + table + "_seq", Long.class);
+        } else {
+            return null;
+        }
+        return next.isEmpty() ? null : next.get(0);
+    }
+
+    /**
+     * Check that every table has a sequence, whose next block starts after the ids already used by the table: a
+     * database created by an earlier version of the schema scripts has no sequences, or sequences starting below its
+     * ids, and the inserts would fail on duplicate keys.
+     *
+     * @throws IllegalStateException naming the tables whose sequence is missing or behind
+     */
+    public void verify() throws DataAccessException {
+        StringBuilder errors = new StringBuilder();
+        for (String table : TABLES) {
+            Long next = peek(table);
+            Long maxId = this.jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+            if (next == null) {
+                errors.append(table).append("_seq is missing; ");
+            } else if (maxId != null && next <= maxId) {
+                errors.append(table).append("_seq is at ").append(next).append(" but ").append(table)
+                    .append(" holds ids up to ").append(maxId).append("; ");
+            }
+        }
+        if (errors.length() > 0) {
+            throw new IllegalStateException("The id sequences do not match the schema: " + errors +
+                "run the initDB.sql script of the database again to migrate it");
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.util;
+
+import java.util.function.Consumer;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
+/**
+ * Utility methods for the streaming reads of the JPA repositories, shared by the <code>jpa</code> and
+ * <code>spring-data-jpa</code> profiles.
+ */
+public abstract class JpaStreamUtils {
+
+    /**
+     * All the owners with their pets, the pet types and the visits, fetched by the same query: the associations are
+     * lazy in the mapping. The rows of an owner follow each other, so that Hibernate hands each owner once, complete.
+     */
+    public static final String OWNERS_WITH_PETS_AND_VISITS = "SELECT owner FROM Owner owner " +
+        "LEFT JOIN FETCH owner.pets pet LEFT JOIN FETCH pet.type LEFT JOIN FETCH pet.visits ORDER BY owner.id, pet.id";
+
+    /**
+     * All the pets with their type, their owner and their visits, fetched by the same query.
+     */
+    public static final String PETS_WITH_VISITS = "SELECT pet FROM Pet pet " +
+        "JOIN FETCH pet.type JOIN FETCH pet.owner LEFT JOIN FETCH pet.visits ORDER BY pet.id";
+
+    /**
+     * Run the given query through a forward-only Hibernate {@link ScrollableResults}, handing every result to the
+     * given action as soon as it is read. The persistence context is cleared every <code>fetchSize</code> results so
+     * that it does not grow with the result set: the action must be done with an entity when it returns. A query
+     * fetching collections must be ordered by the id of its results first, so that their rows follow each other.
+     *
+     * @param em         the entity manager of the current (read-only) transaction
+     * @param query      the JPQL query
+     * @param resultType the type of the query results
+     * @param fetchSize  the number of rows fetched per round trip to the database
+     * @param action     the callback receiving the results
+     */
+    public static <T> void scroll(EntityManager em, String query, Class<T> resultType, int fetchSize,
+                                  Consumer<T> action) {
+        Session session = em.unwrap(Session.class);
+        try (ScrollableResults results = session.createQuery(query, resultType)
+            .setReadOnly(true)
+            .setCacheMode(CacheMode.IGNORE)
+            .setFetchSize(fetchSize)
+            .scroll(ScrollMode.FORWARD_ONLY)) {
+            int count = 0;
+            while (results.next()) {
+                action.accept(resultType.cast(results.get(0)));
+                if (++count % fetchSize == 0) {
+                    session.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Run the given query, selecting several values per row, through a forward-only Hibernate
+     * {@link ScrollableResults}, handing every row to the given action as soon as it is read.
+     *
+     * @param em        the entity manager of the current (read-only) transaction
+     * @param query     the JPQL query
+     * @param fetchSize the number of rows fetched per round trip to the database
+     * @param action    the callback receiving the rows
+     */
+    public static void scrollRows(EntityManager em, String query, int fetchSize, Consumer<Object[]> action) {
+        Session session = em.unwrap(Session.class);
+        try (ScrollableResults results = session.createQuery(query)
+            .setReadOnly(true)
+            .setCacheMode(CacheMode.IGNORE)
+            .setFetchSize(fetchSize)
+            .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                action.accept(results.get());
+            }
+        }
+    }
+
+}
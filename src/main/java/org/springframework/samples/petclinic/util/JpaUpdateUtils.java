@@ -0,0 +1,98 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.util;
+
+import java.util.Collection;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.samples.petclinic.model.BaseEntity;
+
+/**
+ * Utility methods for the conditional updates of the JPA repositories, shared by the <code>jpa</code> and
+ * <code>spring-data-jpa</code> profiles.
+ */
+public abstract class JpaUpdateUtils {
+
+    /**
+     * Update some properties of a versioned entity with a single JPQL bulk update, <code>UPDATE Entity entity SET
+     * entity.property = :property, ..., entity.version = entity.version + 1 WHERE entity.id = :id AND entity.version =
+     * :version</code>, without loading it first.
+     *
+     * @param em          the entity manager of the current transaction
+     * @param entityClass the class of the entity, whose simple name is its entity name
+     * @param properties  the properties that may be updated
+     * @param id          the id of the entity
+     * @param version     the version of the entity the changes were made on
+     * @param changes     the new values by property name
+     * @return the new version of the entity
+     * @throws ObjectRetrievalFailureException         if the entity was not found
+     * @throws ObjectOptimisticLockingFailureException if the entity is not at the given version anymore
+     */
+    public static int updateVersioned(EntityManager em, Class<? extends BaseEntity> entityClass,
+                                      Collection<String> properties, int id, int version,
+                                      Map<String, Object> changes) {
+        String entityName = entityClass.getSimpleName();
+        StringBuilder jpql = new StringBuilder("UPDATE ").append(entityName).append(" entity SET ");
+        for (String property : changes.keySet()) {
+            if (!properties.contains(property)) {
+                throw new InvalidDataAccessApiUsageException(
+                    "Property " + property + " of " + entityName + " cannot be updated");
+            }
+            jpql.append("entity.").append(property).append(" = :").append(property).append(", ");
+        }
+        jpql.append("entity.version = entity.version + 1 WHERE entity.id = :id AND entity.version = :version");
+        Query update = em.createQuery(jpql.toString())
+            .setParameter("id", id)
+            .setParameter("version", version);
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            update.setParameter(change.getKey(), change.getValue());
+        }
+        int updated = update.executeUpdate();
+        detach(em, entityClass, id);
+        if (updated == 0) {
+            Long count = em.createQuery("SELECT COUNT(entity) FROM " + entityName + " entity WHERE entity.id = :id",
+                Long.class).setParameter("id", id).getSingleResult();
+            if (count == 0) {
+                throw new ObjectRetrievalFailureException(entityClass, id);
+            }
+            throw new ObjectOptimisticLockingFailureException(entityClass, id);
+        }
+        return version + 1;
+    }
+
+    /**
+     * Detaches the entity with the given id if it is managed by the entity manager, so that it is not read back from
+     * the persistence context with its state before the bulk update.
+     */
+    private static void detach(EntityManager em, Class<? extends BaseEntity> entityClass, int id) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(entityClass);
+        Object managed = session.getPersistenceContext().getEntity(session.generateEntityKey(id, persister));
+        if (managed != null) {
+            em.detach(managed);
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Routes the connections of the read-only transactions (<code>@Transactional(readOnly = true)</code>) to a replica of
+ * the database and all the others to the primary database. It must be wrapped in a
+ * {@link LazyConnectionDataSourceProxy}, so that the connection of a transaction is only obtained at its first
+ * statement, once the transaction is known to be read-only.
+ * <p/>
+ * The read-only transactions of a thread bound to a {@link ReadYourWrites} window are routed to the primary as long
+ * as the window is open, so that a client reads its own writes despite the replication lag. So are those of a thread
+ * {@link #readFromPrimary reading from the primary}, such as the reads filling a cache shared by all the clients.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final String PRIMARY = "primary";
+
+    private static final String REPLICA = "replica";
+
+    private static final ThreadLocal<ReadYourWrites> READ_YOUR_WRITES = new ThreadLocal<>();
+
+    private static final ThreadLocal<Boolean> PRIMARY_READS = new ThreadLocal<>();
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica) {
+        Map<Object, Object> targetDataSources = new HashMap<>();
+        targetDataSources.put(PRIMARY, primary);
+        targetDataSources.put(REPLICA, replica);
+        setTargetDataSources(targetDataSources);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Bind a read-your-writes window to the current thread, until {@link #unbind()}.
+     */
+    public static void bind(ReadYourWrites readYourWrites) {
+        READ_YOUR_WRITES.set(readYourWrites);
+    }
+
+    public static void unbind() {
+        READ_YOUR_WRITES.remove();
+    }
+
+    /**
+     * Route the read-only transactions of the current thread to the primary, until called again with
+     * <code>false</code>. The connection of a transaction is only obtained at its first statement, so that the
+     * transactions started just before are routed too.
+     */
+    public static void readFromPrimary(boolean primaryReads) {
+        if (primaryReads) {
+            PRIMARY_READS.set(Boolean.TRUE);
+        } else {
+            PRIMARY_READS.remove();
+        }
+    }
+
+    public static boolean isReadingFromPrimary() {
+        return PRIMARY_READS.get() != null;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        ReadYourWrites readYourWrites = READ_YOUR_WRITES.get();
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return isReadingFromPrimary() || (readYourWrites != null && readYourWrites.isOpen()) ? PRIMARY : REPLICA;
+        }
+        if (readYourWrites != null && TransactionSynchronizationManager.isActualTransactionActive()) {
+            readYourWrites.written();
+        }
+        return PRIMARY;
+    }
+
+    /**
+     * The read-your-writes window of a client session: open if the session wrote in the last few seconds, or as soon
+     * as it writes.
+     */
+    public static class ReadYourWrites {
+
+        private final boolean openedBefore;
+
+        private final Runnable onWrite;
+
+        private boolean written;
+
+        /**
+         * @param openedBefore whether the session wrote recently
+         * @param onWrite      called at the first write, to open the window for the next requests of the session
+         */
+        public ReadYourWrites(boolean openedBefore, Runnable onWrite) {
+            this.openedBefore = openedBefore;
+            this.onWrite = onWrite;
+        }
+
+        public boolean isOpen() {
+            return this.openedBefore || this.written;
+        }
+
+        void written() {
+            if (!this.written) {
+                this.written = true;
+                this.onWrite.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.util;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+/**
+ * Binds the {@link ReadWriteRoutingDataSource.ReadYourWrites read-your-writes window} of the client session to the
+ * requests. The window is kept by the client in a cookie holding the time it closes, set by the requests that write
+ * to the primary database: it holds no server side state and works across the instances of the application.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    public static final String COOKIE_NAME = "petclinic-primary-until";
+
+    private final Duration window;
+
+    public ReadYourWritesFilter(Duration window) {
+        this.window = window;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+        throws ServletException, IOException {
+        long now = System.currentTimeMillis();
+        long closesAt = now + this.window.toMillis();
+        ReadWriteRoutingDataSource.bind(new ReadWriteRoutingDataSource.ReadYourWrites(isOpen(request, now, closesAt),
+            () -> {
+                Cookie cookie = new Cookie(COOKIE_NAME, Long.toString(closesAt));
+                cookie.setPath("/");
+                cookie.setHttpOnly(true);
+                cookie.setMaxAge((int) Math.max(1, this.window.getSeconds()));
+                response.addCookie(cookie);
+            }));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadWriteRoutingDataSource.unbind();
+        }
+    }
+
+    /**
+     * @return whether the window of the session is open, a window closing later than a new one being ignored
+     */
+    private static boolean isOpen(HttpServletRequest request, long now, long latestClose) {
+        Cookie cookie = WebUtils.getCookie(request, COOKIE_NAME);
+        if (cookie == null) {
+            return false;
+        }
+        try {
+            long closesAt = Long.parseLong(cookie.getValue());
+            return closesAt > now && closesAt <= latestClose;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Cache of the encoded responses of the hot read endpoints, so that serving an unchanged resource again is a copy of
+ * bytes instead of a mapping and a serialization. Every entry holds the response body along with its gzip compressed
+ * variant, and is only served for the entity tag it was stored with.
+ * <p/>
+ * The entries are keyed by resource (<code>owners</code>, <code>vets</code>, ...) and id. A write does not evict
+ * anything: the entry of a written resource no longer matches its entity tag, is read again on the next request and
+ * replaced, and the entries never requested again age out of the cache, which is bounded by their size in bytes.
+ * <p/>
+ * The <code>petclinic.response.cache.requests</code> counters (tagged <code>result=hit|miss</code>) count the
+ * lookups, the <code>petclinic.response.cache.size</code> and <code>petclinic.response.cache.entries</code> gauges
+ * give the number of bytes and of entries held.
+ */
+public class ResponseCache {
+
+    private final Cache<String, Entry> cache;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    public ResponseCache(long maxBytes, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((String key, Entry entry) -> entry.size())
+            .build();
+        this.hits = meterRegistry.counter("petclinic.response.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("petclinic.response.cache.requests", "result", "miss");
+        Gauge.builder("petclinic.response.cache.size", this, ResponseCache::size)
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("petclinic.response.cache.entries", this.cache, Cache::estimatedSize)
+            .register(meterRegistry);
+    }
+
+    /**
+     * @return the response stored for the given entity tag of the resource, <code>null</code> if there is none
+     */
+    public Entry get(String resource, String key, String eTag) {
+        Entry entry = this.cache.getIfPresent(resource + ' ' + key);
+        if (entry == null || !entry.getETag().equals(eTag)) {
+            this.misses.increment();
+            return null;
+        }
+        this.hits.increment();
+        return entry;
+    }
+
+    /**
+     * Store an encoded response, compressing it once for the clients accepting gzip.
+     *
+     * @return the stored response
+     */
+    public Entry put(String resource, String key, String eTag, byte[] body) {
+        Entry entry = new Entry(eTag, body, gzip(body));
+        this.cache.put(resource + ' ' + key, entry);
+        return entry;
+    }
+
+    /**
+     * @return the number of bytes held, both variants included
+     */
+    public long size() {
+        return this.cache.policy().eviction()
+            .map(eviction -> eviction.weightedSize().orElse(0L))
+            .orElse(0L);
+    }
+
+    /**
+     * @return the compressed body, <code>null</code> if compressing does not make it smaller
+     */
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 4 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(body);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.size() < body.length ? bytes.toByteArray() : null;
+    }
+
+    /**
+     * An encoded response and the entity tag it was stored with.
+     */
+    public static final class Entry {
+
+        private final String eTag;
+
+        private final byte[] body;
+
+        private final byte[] gzipBody;
+
+        Entry(String eTag, byte[] body, byte[] gzipBody) {
+            this.eTag = eTag;
+            this.body = body;
+            this.gzipBody = gzipBody;
+        }
+
+        public String getETag() {
+            return this.eTag;
+        }
+
+        public byte[] getBody() {
+            return this.body;
+        }
+
+        /**
+         * @return the gzip compressed body, <code>null</code> if it would not be smaller than the body
+         */
+        public byte[] getGzipBody() {
+            return this.gzipBody;
+        }
+
+        int size() {
+            return this.body.length + (this.gzipBody == null ? 0 : this.gzipBody.length);
+        }
+    }
+}
@@ -7,17 +7,28 @@ DROP TABLE types IF EXISTS;
 DROP TABLE owners IF EXISTS;
 DROP TABLE roles IF EXISTS;
 DROP TABLE users IF EXISTS;
+DROP TABLE change_counters IF EXISTS;
+DROP SEQUENCE vets_seq IF EXISTS;
+DROP SEQUENCE specialties_seq IF EXISTS;
+DROP SEQUENCE types_seq IF EXISTS;
+DROP SEQUENCE owners_seq IF EXISTS;
+DROP SEQUENCE pets_seq IF EXISTS;
+DROP SEQUENCE visits_seq IF EXISTS;
+DROP SEQUENCE roles_seq IF EXISTS;
 
 
+CREATE SEQUENCE vets_seq AS INTEGER START WITH 100 INCREMENT BY 50;
 CREATE TABLE vets (
-  id         INTEGER IDENTITY PRIMARY KEY,
+  id         INTEGER GENERATED BY DEFAULT AS SEQUENCE vets_seq PRIMARY KEY,
   first_name VARCHAR(30),
-  last_name  VARCHAR(30)
+  last_name  VARCHAR(30),
+  version    INTEGER DEFAULT 0 NOT NULL
 );
 CREATE INDEX vets_last_name ON vets (last_name);
 
+CREATE SEQUENCE specialties_seq AS INTEGER START WITH 100 INCREMENT BY 50;
 CREATE TABLE specialties (
-  id   INTEGER IDENTITY PRIMARY KEY,
+  id   INTEGER GENERATED BY DEFAULT AS SEQUENCE specialties_seq PRIMARY KEY,
   name VARCHAR(80)
 );
 CREATE INDEX specialties_name ON specialties (name);
@@ -29,35 +40,41 @@ CREATE TABLE vet_specialties (
 ALTER TABLE vet_specialties ADD CONSTRAINT fk_vet_specialties_vets FOREIGN KEY (vet_id) REFERENCES vets (id);
 ALTER TABLE vet_specialties ADD CONSTRAINT fk_vet_specialties_specialties FOREIGN KEY (specialty_id) REFERENCES specialties (id);
 
+CREATE SEQUENCE types_seq AS INTEGER START WITH 100 INCREMENT BY 50;
 CREATE TABLE types (
-  id   INTEGER IDENTITY PRIMARY KEY,
+  id   INTEGER GENERATED BY DEFAULT AS SEQUENCE types_seq PRIMARY KEY,
   name VARCHAR(80)
 );
 CREATE INDEX types_name ON types (name);
 
+CREATE SEQUENCE owners_seq AS INTEGER START WITH 100 INCREMENT BY 50;
 CREATE TABLE owners (
-  id         INTEGER IDENTITY PRIMARY KEY,
+  id         INTEGER GENERATED BY DEFAULT AS SEQUENCE owners_seq PRIMARY KEY,
   first_name VARCHAR(30),
   last_name  VARCHAR_IGNORECASE(30),
   address    VARCHAR(255),
   city       VARCHAR(80),
-  telephone  VARCHAR(20)
+  telephone  VARCHAR(20),
+  version    INTEGER DEFAULT 0 NOT NULL
 );
 CREATE INDEX owners_last_name ON owners (last_name);
 
+CREATE SEQUENCE pets_seq AS INTEGER START WITH 100 INCREMENT BY 50;
 CREATE TABLE pets (
-  id         INTEGER IDENTITY PRIMARY KEY,
+  id         INTEGER GENERATED BY DEFAULT AS SEQUENCE pets_seq PRIMARY KEY,
   name       VARCHAR(30),
   birth_date DATE,
   type_id    INTEGER NOT NULL,
-  owner_id   INTEGER NOT NULL
+  owner_id   INTEGER NOT NULL,
+  version    INTEGER DEFAULT 0 NOT NULL
 );
 ALTER TABLE pets ADD CONSTRAINT fk_pets_owners FOREIGN KEY (owner_id) REFERENCES owners (id);
 ALTER TABLE pets ADD CONSTRAINT fk_pets_types FOREIGN KEY (type_id) REFERENCES types (id);
 CREATE INDEX pets_name ON pets (name);
 
+CREATE SEQUENCE visits_seq AS INTEGER START WITH 100 INCREMENT BY 50;
 CREATE TABLE visits (
-  id          INTEGER IDENTITY PRIMARY KEY,
+  id          INTEGER GENERATED BY DEFAULT AS SEQUENCE visits_seq PRIMARY KEY,
   pet_id      INTEGER NOT NULL,
   visit_date  DATE,
   description VARCHAR(255)
@@ -72,11 +89,23 @@ CREATE  TABLE users (
   PRIMARY KEY (username)
 );
 
+CREATE SEQUENCE roles_seq AS INTEGER START WITH 100 INCREMENT BY 50;
 CREATE TABLE roles (
-  id              INTEGER IDENTITY PRIMARY KEY,
+  id              INTEGER GENERATED BY DEFAULT AS SEQUENCE roles_seq PRIMARY KEY,
   username        VARCHAR(20) NOT NULL,
   role            VARCHAR(20) NOT NULL
 );
 ALTER TABLE roles ADD CONSTRAINT fk_username FOREIGN KEY (username) REFERENCES users (username);
 CREATE INDEX fk_username_idx ON roles (username);
 
+-- change counters of the REST resources (see ChangeCounters), counting from the creation of the database in
+-- milliseconds so that a recreated database never reuses the tags of a previous one
+CREATE TABLE change_counters (
+  resource VARCHAR(30) PRIMARY KEY,
+  counter  BIGINT NOT NULL
+);
+INSERT INTO change_counters VALUES ('owners', UNIX_MILLIS());
+INSERT INTO change_counters VALUES ('pets', UNIX_MILLIS());
+INSERT INTO change_counters VALUES ('vets', UNIX_MILLIS());
+INSERT INTO change_counters VALUES ('petTypes', UNIX_MILLIS());
+INSERT INTO change_counters VALUES ('specialties', UNIX_MILLIS());
@@ -8,19 +8,33 @@ GRANT ALL PRIVILEGES ON petclinic.* TO pc@localhost IDENTIFIED BY 'pc';
 
 USE petclinic;
 
+-- MySQL has no sequences: the JPA and JDBC repositories allocate the ids by blocks of 50 from the <table>_seq
+-- tables, starting at 100; the AUTO_INCREMENT of the id columns only numbers the rows of populateDB.sql
+
 CREATE TABLE IF NOT EXISTS vets (
   id INT(4) UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
   first_name VARCHAR(30),
   last_name VARCHAR(30),
+  version INT NOT NULL DEFAULT 0,
   INDEX(last_name)
 ) engine=InnoDB;
 
+CREATE TABLE IF NOT EXISTS vets_seq (
+  next_val BIGINT NOT NULL
+) engine=InnoDB;
+INSERT INTO vets_seq SELECT 100 FROM DUAL WHERE NOT EXISTS (SELECT * FROM vets_seq);
+
 CREATE TABLE IF NOT EXISTS specialties (
   id INT(4) UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
   name VARCHAR(80),
   INDEX(name)
 ) engine=InnoDB;
 
+CREATE TABLE IF NOT EXISTS specialties_seq (
+  next_val BIGINT NOT NULL
+) engine=InnoDB;
+INSERT INTO specialties_seq SELECT 100 FROM DUAL WHERE NOT EXISTS (SELECT * FROM specialties_seq);
+
 CREATE TABLE IF NOT EXISTS vet_specialties (
   vet_id INT(4) UNSIGNED NOT NULL,
   specialty_id INT(4) UNSIGNED NOT NULL,
@@ -35,6 +49,11 @@ CREATE TABLE IF NOT EXISTS types (
   INDEX(name)
 ) engine=InnoDB;
 
+CREATE TABLE IF NOT EXISTS types_seq (
+  next_val BIGINT NOT NULL
+) engine=InnoDB;
+INSERT INTO types_seq SELECT 100 FROM DUAL WHERE NOT EXISTS (SELECT * FROM types_seq);
+
 CREATE TABLE IF NOT EXISTS owners (
   id INT(4) UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
   first_name VARCHAR(30),
@@ -42,20 +61,32 @@ CREATE TABLE IF NOT EXISTS owners (
   address VARCHAR(255),
   city VARCHAR(80),
   telephone VARCHAR(20),
+  version INT NOT NULL DEFAULT 0,
   INDEX(last_name)
 ) engine=InnoDB;
 
+CREATE TABLE IF NOT EXISTS owners_seq (
+  next_val BIGINT NOT NULL
+) engine=InnoDB;
+INSERT INTO owners_seq SELECT 100 FROM DUAL WHERE NOT EXISTS (SELECT * FROM owners_seq);
+
 CREATE TABLE IF NOT EXISTS pets (
   id INT(4) UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
   name VARCHAR(30),
   birth_date DATE,
   type_id INT(4) UNSIGNED NOT NULL,
   owner_id INT(4) UNSIGNED NOT NULL,
+  version INT NOT NULL DEFAULT 0,
   INDEX(name),
   FOREIGN KEY (owner_id) REFERENCES owners(id),
   FOREIGN KEY (type_id) REFERENCES types(id)
 ) engine=InnoDB;
 
+CREATE TABLE IF NOT EXISTS pets_seq (
+  next_val BIGINT NOT NULL
+) engine=InnoDB;
+INSERT INTO pets_seq SELECT 100 FROM DUAL WHERE NOT EXISTS (SELECT * FROM pets_seq);
+
 CREATE TABLE IF NOT EXISTS visits (
   id INT(4) UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
   pet_id INT(4) UNSIGNED NOT NULL,
@@ -64,6 +95,11 @@ CREATE TABLE IF NOT EXISTS visits (
   FOREIGN KEY (pet_id) REFERENCES pets(id)
 ) engine=InnoDB;
 
+CREATE TABLE IF NOT EXISTS visits_seq (
+  next_val BIGINT NOT NULL
+) engine=InnoDB;
+INSERT INTO visits_seq SELECT 100 FROM DUAL WHERE NOT EXISTS (SELECT * FROM visits_seq);
+
 CREATE TABLE IF NOT EXISTS users (
   username VARCHAR(20) NOT NULL ,
   password VARCHAR(20) NOT NULL ,
@@ -80,3 +116,30 @@ CREATE TABLE IF NOT EXISTS roles (
   KEY fk_username_idx (username),
   CONSTRAINT fk_username FOREIGN KEY (username) REFERENCES users (username)
 ) engine=InnoDB;
+
+CREATE TABLE IF NOT EXISTS roles_seq (
+  next_val BIGINT NOT NULL
+) engine=InnoDB;
+INSERT INTO roles_seq SELECT 100 FROM DUAL WHERE NOT EXISTS (SELECT * FROM roles_seq);
+
+-- change counters of the REST resources (see ChangeCounters), counting from the creation of the database in
+-- milliseconds so that a recreated database never reuses the tags of a previous one
+CREATE TABLE IF NOT EXISTS change_counters (
+  resource VARCHAR(30) NOT NULL PRIMARY KEY,
+  counter BIGINT NOT NULL
+) engine=InnoDB;
+INSERT IGNORE INTO change_counters VALUES ('owners', UNIX_TIMESTAMP() * 1000);
+INSERT IGNORE INTO change_counters VALUES ('pets', UNIX_TIMESTAMP() * 1000);
+INSERT IGNORE INTO change_counters VALUES ('vets', UNIX_TIMESTAMP() * 1000);
+INSERT IGNORE INTO change_counters VALUES ('petTypes', UNIX_TIMESTAMP() * 1000);
+INSERT IGNORE INTO change_counters VALUES ('specialties', UNIX_TIMESTAMP() * 1000);
+
+-- migration of a database created by an earlier version of this script, whose rows were numbered by AUTO_INCREMENT:
+-- the <table>_seq tables are moved past the ids already used
+UPDATE vets_seq SET next_val = (SELECT MAX(id) + 1 FROM vets) WHERE next_val <= (SELECT MAX(id) FROM vets);
+UPDATE specialties_seq SET next_val = (SELECT MAX(id) + 1 FROM specialties) WHERE next_val <= (SELECT MAX(id) FROM specialties);
+UPDATE types_seq SET next_val = (SELECT MAX(id) + 1 FROM types) WHERE next_val <= (SELECT MAX(id) FROM types);
+UPDATE owners_seq SET next_val = (SELECT MAX(id) + 1 FROM owners) WHERE next_val <= (SELECT MAX(id) FROM owners);
+UPDATE pets_seq SET next_val = (SELECT MAX(id) + 1 FROM pets) WHERE next_val <= (SELECT MAX(id) FROM pets);
+UPDATE visits_seq SET next_val = (SELECT MAX(id) + 1 FROM visits) WHERE next_val <= (SELECT MAX(id) FROM visits);
+UPDATE roles_seq SET next_val = (SELECT MAX(id) + 1 FROM roles) WHERE next_val <= (SELECT MAX(id) FROM roles);
@@ -1,25 +1,26 @@
+CREATE SEQUENCE IF NOT EXISTS vets_seq START WITH 100 INCREMENT BY 50;
+
 CREATE TABLE IF NOT EXISTS vets (
-  id SERIAL,
+  id INT NOT NULL DEFAULT nextval('vets_seq'),
   first_name VARCHAR(30),
   last_name VARCHAR(30),
+  version INT NOT NULL DEFAULT 0,
   CONSTRAINT pk_vets PRIMARY KEY (id)
 );
 
 CREATE INDEX IF NOT EXISTS idx_vets_last_name ON vets (last_name);
 
-ALTER SEQUENCE vets_id_seq RESTART WITH 100;
 
+CREATE SEQUENCE IF NOT EXISTS specialties_seq START WITH 100 INCREMENT BY 50;
 
 CREATE TABLE IF NOT EXISTS specialties (
-  id SERIAL,
+  id INT NOT NULL DEFAULT nextval('specialties_seq'),
   name VARCHAR(80),
   CONSTRAINT pk_specialties PRIMARY KEY (id)
 );
 
 CREATE INDEX IF NOT EXISTS idx_specialties_name ON specialties (name);
 
-ALTER SEQUENCE specialties_id_seq RESTART WITH 100;
-
 
 CREATE TABLE IF NOT EXISTS vet_specialties (
   vet_id INT NOT NULL,
@@ -31,37 +32,41 @@ CREATE TABLE IF NOT EXISTS vet_specialties (
 
 
 
+CREATE SEQUENCE IF NOT EXISTS types_seq START WITH 100 INCREMENT BY 50;
+
 CREATE TABLE IF NOT EXISTS types (
-  id SERIAL,
+  id INT NOT NULL DEFAULT nextval('types_seq'),
   name VARCHAR(80),
   CONSTRAINT pk_types PRIMARY KEY (id)
 );
 
 CREATE INDEX IF NOT EXISTS idx_types_name ON types (name);
 
-ALTER SEQUENCE types_id_seq RESTART WITH 100;
+CREATE SEQUENCE IF NOT EXISTS owners_seq START WITH 100 INCREMENT BY 50;
 
 CREATE TABLE IF NOT EXISTS owners (
-  id SERIAL,
+  id INT NOT NULL DEFAULT nextval('owners_seq'),
   first_name VARCHAR(30),
   last_name VARCHAR(30),
   address VARCHAR(255),
   city VARCHAR(80),
   telephone VARCHAR(20),
+  version INT NOT NULL DEFAULT 0,
   CONSTRAINT pk_owners PRIMARY KEY (id)
 );
 
 CREATE INDEX IF NOT EXISTS idx_owners_last_name ON owners (last_name);
 
-ALTER SEQUENCE owners_id_seq RESTART WITH 100;
 
+CREATE SEQUENCE IF NOT EXISTS pets_seq START WITH 100 INCREMENT BY 50;
 
 CREATE TABLE IF NOT EXISTS pets (
-  id SERIAL,
+  id INT NOT NULL DEFAULT nextval('pets_seq'),
   name VARCHAR(30),
   birth_date DATE,
   type_id INT NOT NULL,
   owner_id INT NOT NULL,
+  version INT NOT NULL DEFAULT 0,
   FOREIGN KEY (owner_id) REFERENCES owners(id),
   FOREIGN KEY (type_id) REFERENCES types(id),
   CONSTRAINT pk_pets PRIMARY KEY (id)
@@ -69,11 +74,11 @@ CREATE TABLE IF NOT EXISTS pets (
 
 CREATE INDEX IF NOT EXISTS idx_pets_name ON pets (name);
 
-ALTER SEQUENCE pets_id_seq RESTART WITH 100;
 
+CREATE SEQUENCE IF NOT EXISTS visits_seq START WITH 100 INCREMENT BY 50;
 
 CREATE TABLE IF NOT EXISTS visits (
-  id SERIAL,
+  id INT NOT NULL DEFAULT nextval('visits_seq'),
   pet_id INT NOT NULL,
   visit_date DATE,
   description VARCHAR(255),
@@ -81,8 +86,6 @@ CREATE TABLE IF NOT EXISTS visits (
   CONSTRAINT pk_visits PRIMARY KEY (id)
 );
 
-ALTER SEQUENCE visits_id_seq RESTART WITH 100;
-
 CREATE TABLE IF NOT EXISTS users (
   username VARCHAR(20) NOT NULL ,
   password VARCHAR(20) NOT NULL ,
@@ -90,8 +93,10 @@ CREATE TABLE IF NOT EXISTS users (
   CONSTRAINT pk_users PRIMARY KEY (username)
 );
 
+CREATE SEQUENCE IF NOT EXISTS roles_seq START WITH 100 INCREMENT BY 50;
+
 CREATE TABLE IF NOT EXISTS roles (
-  id SERIAL,
+  id INT NOT NULL DEFAULT nextval('roles_seq'),
   username varchar(20) NOT NULL,
   role varchar(20) NOT NULL,
   CONSTRAINT pk_roles PRIMARY KEY (id),
@@ -99,4 +104,33 @@ CREATE TABLE IF NOT EXISTS roles (
 );
 
 ALTER TABLE roles ADD CONSTRAINT uni_username_role UNIQUE (role,username);
-ALTER SEQUENCE roles_id_seq RESTART WITH 100;
+
+-- change counters of the REST resources (see ChangeCounters), counting from the creation of the database in
+-- milliseconds so that a recreated database never reuses the tags of a previous one
+CREATE TABLE IF NOT EXISTS change_counters (
+  resource VARCHAR(30) NOT NULL,
+  counter BIGINT NOT NULL,
+  CONSTRAINT pk_change_counters PRIMARY KEY (resource)
+);
+INSERT INTO change_counters VALUES ('owners', CAST(EXTRACT(EPOCH FROM now()) * 1000 AS BIGINT)) ON CONFLICT DO NOTHING;
+INSERT INTO change_counters VALUES ('pets', CAST(EXTRACT(EPOCH FROM now()) * 1000 AS BIGINT)) ON CONFLICT DO NOTHING;
+INSERT INTO change_counters VALUES ('vets', CAST(EXTRACT(EPOCH FROM now()) * 1000 AS BIGINT)) ON CONFLICT DO NOTHING;
+INSERT INTO change_counters VALUES ('petTypes', CAST(EXTRACT(EPOCH FROM now()) * 1000 AS BIGINT)) ON CONFLICT DO NOTHING;
+INSERT INTO change_counters VALUES ('specialties', CAST(EXTRACT(EPOCH FROM now()) * 1000 AS BIGINT)) ON CONFLICT DO NOTHING;
+
+-- migration of a database created by an earlier version of this script, whose SERIAL id columns have sequences of
+-- their own: the ids are drawn from the <table>_seq sequences, moved past the ids already used
+ALTER TABLE vets ALTER COLUMN id SET DEFAULT nextval('vets_seq');
+ALTER TABLE specialties ALTER COLUMN id SET DEFAULT nextval('specialties_seq');
+ALTER TABLE types ALTER COLUMN id SET DEFAULT nextval('types_seq');
+ALTER TABLE owners ALTER COLUMN id SET DEFAULT nextval('owners_seq');
+ALTER TABLE pets ALTER COLUMN id SET DEFAULT nextval('pets_seq');
+ALTER TABLE visits ALTER COLUMN id SET DEFAULT nextval('visits_seq');
+ALTER TABLE roles ALTER COLUMN id SET DEFAULT nextval('roles_seq');
+SELECT setval('vets_seq', (SELECT MAX(id) FROM vets)) WHERE (SELECT MAX(id) FROM vets) >= (SELECT last_value FROM vets_seq);
+SELECT setval('specialties_seq', (SELECT MAX(id) FROM specialties)) WHERE (SELECT MAX(id) FROM specialties) >= (SELECT last_value FROM specialties_seq);
+SELECT setval('types_seq', (SELECT MAX(id) FROM types)) WHERE (SELECT MAX(id) FROM types) >= (SELECT last_value FROM types_seq);
+SELECT setval('owners_seq', (SELECT MAX(id) FROM owners)) WHERE (SELECT MAX(id) FROM owners) >= (SELECT last_value FROM owners_seq);
+SELECT setval('pets_seq', (SELECT MAX(id) FROM pets)) WHERE (SELECT MAX(id) FROM pets) >= (SELECT last_value FROM pets_seq);
+SELECT setval('visits_seq', (SELECT MAX(id) FROM visits)) WHERE (SELECT MAX(id) FROM visits) >= (SELECT last_value FROM visits_seq);
+SELECT setval('roles_seq', (SELECT MAX(id) FROM roles)) WHERE (SELECT MAX(id) FROM roles) >= (SELECT last_value FROM roles_seq);
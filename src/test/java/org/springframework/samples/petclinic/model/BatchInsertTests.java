@@ -0,0 +1,73 @@
+package org.springframework.samples.petclinic.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.samples.petclinic.service.ClinicService;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Checks that the ids allocated by blocks from the sequences let Hibernate send the inserts of an import as JDBC
+ * batches, instead of one statement per row.
+ */
+@SpringBootTest
+@ActiveProfiles({"spring-data-jpa", "hsqldb"})
+class BatchInsertTests {
+
+    @Autowired
+    private ClinicService clinicService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    @Transactional
+    void shouldBatchTheInsertsOfAnImport() {
+        PetType cat = this.clinicService.findPetTypeById(1);
+        List<Owner> owners = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Owner owner = new Owner();
+            owner.setFirstName("Batched" + i);
+            owner.setLastName("Inserts");
+            owner.setAddress("1, Batch Street");
+            owner.setCity("Madison");
+            owner.setTelephone("6085550000");
+            Pet pet = new Pet();
+            pet.setName("Pet" + i);
+            pet.setBirthDate(LocalDate.of(2020, 1, 1));
+            pet.setType(cat);
+            owner.addPet(pet);
+            for (int j = 0; j < 2; j++) {
+                Visit visit = new Visit();
+                visit.setDate(LocalDate.of(2021, 1, 1 + j));
+                visit.setDescription("checkup");
+                pet.addVisit(visit);
+            }
+            owners.add(owner);
+        }
+        Statistics statistics = this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long inserts = statistics.getEntityInsertCount();
+        long statements = statistics.getPrepareStatementCount();
+
+        this.clinicService.importOwners(owners.iterator(), owners.size());
+
+        assertThat(statistics.getEntityInsertCount() - inserts).isEqualTo(80);
+        // an insert statement per table and at most a couple of sequence calls per table, not a statement per row
+        assertThat(statistics.getPrepareStatementCount() - statements).isLessThanOrEqualTo(9);
+        int firstId = owners.get(0).getId();
+        for (int i = 0; i < owners.size(); i++) {
+            assertThat(owners.get(i).getId()).isEqualTo(firstId + i);
+        }
+    }
+}
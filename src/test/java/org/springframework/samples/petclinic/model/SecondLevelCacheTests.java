@@ -0,0 +1,65 @@
+package org.springframework.samples.petclinic.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Checks that the pet types and the specialties of the vets are read from the second-level cache by the following
+ * persistence contexts.
+ */
+@SpringBootTest
+@ActiveProfiles({"spring-data-jpa", "hsqldb"})
+class SecondLevelCacheTests {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private <T> T read(Function<EntityManager, T> query) {
+        EntityManager entityManager = this.entityManagerFactory.createEntityManager();
+        try {
+            return query.apply(entityManager);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private CacheRegionStatistics region(String name) {
+        return this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics()
+            .getDomainDataRegionStatistics(name);
+    }
+
+    @Test
+    void shouldReadThePetTypesFromTheCache() {
+        read(entityManager -> entityManager.find(PetType.class, 1));
+        long hits = region(PetType.class.getName()).getHitCount();
+
+        PetType petType = read(entityManager -> entityManager.find(PetType.class, 1));
+        assertThat(petType.getName()).isEqualTo("cat");
+        assertThat(region(PetType.class.getName()).getHitCount()).isEqualTo(hits + 1);
+    }
+
+    @Test
+    void shouldReadTheSpecialtiesOfTheVetsFromTheCache() {
+        Function<EntityManager, Vet> findVet = entityManager -> entityManager
+            .createQuery("SELECT vet FROM Vet vet WHERE vet.id = :id", Vet.class)
+            .setParameter("id", 3)
+            .getSingleResult();
+        read(findVet);
+        long hits = region(Vet.class.getName() + ".specialties").getHitCount();
+
+        Vet vet = read(findVet);
+        assertThat(vet.getSpecialties()).extracting(Specialty::getName).containsExactly("dentistry", "surgery");
+        assertThat(region(Vet.class.getName() + ".specialties").getHitCount()).isEqualTo(hits + 1);
+    }
+}
@@ -0,0 +1,77 @@
+package org.springframework.samples.petclinic.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.samples.petclinic.service.ClinicService;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Checks that the streaming reads fetch the pets and the visits with the owners, in a single query, instead of a
+ * query per owner and per pet. The small fetch size clears the persistence context in the middle of the owners.
+ */
+@SpringBootTest(properties = "petclinic.streaming.fetch-size=2")
+@ActiveProfiles({"spring-data-jpa", "hsqldb"})
+class StreamingFetchTests {
+
+    @Autowired
+    private ClinicService clinicService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void shouldStreamTheOwnersPetsAndVisitsWithASingleQuery() {
+        Statistics statistics = this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long statements = statistics.getPrepareStatementCount();
+        Map<Integer, Integer> petCounts = new LinkedHashMap<>();
+        Map<Integer, Integer> visitCounts = new LinkedHashMap<>();
+
+        this.clinicService.streamAllOwners(owner -> {
+            int visitCount = 0;
+            for (Pet pet : owner.getPets()) {
+                assertThat(pet.getType().getName()).isNotNull();
+                visitCount += pet.getVisits().size();
+            }
+            petCounts.put(owner.getId(), owner.getPets().size());
+            visitCounts.put(owner.getId(), visitCount);
+        });
+
+        assertThat(statistics.getPrepareStatementCount() - statements).isEqualTo(1);
+        assertThat(petCounts.keySet()).containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+        assertThat(petCounts.get(3)).isEqualTo(2);
+        assertThat(petCounts.get(6)).isEqualTo(2);
+        assertThat(petCounts.get(10)).isEqualTo(2);
+        assertThat(visitCounts.get(6)).isEqualTo(4);
+    }
+
+    @Test
+    void shouldStreamThePetsAndVisitsWithASingleQuery() {
+        Statistics statistics = this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long statements = statistics.getPrepareStatementCount();
+        List<Integer> petIds = new ArrayList<>();
+        Map<Integer, Integer> visitCounts = new LinkedHashMap<>();
+
+        this.clinicService.streamAllPets(pet -> {
+            assertThat(pet.getOwner().getLastName()).isNotNull();
+            petIds.add(pet.getId());
+            visitCounts.put(pet.getId(), pet.getVisits().size());
+        });
+
+        assertThat(statistics.getPrepareStatementCount() - statements).isEqualTo(1);
+        assertThat(petIds).hasSize(13).isSorted().doesNotHaveDuplicates();
+        assertThat(visitCounts.get(7)).isEqualTo(2);
+        assertThat(visitCounts.get(8)).isEqualTo(2);
+    }
+}
@@ -0,0 +1,155 @@
+package org.springframework.samples.petclinic.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.samples.petclinic.mapper.OwnerMapper;
+import org.springframework.samples.petclinic.mapper.PetMapper;
+import org.springframework.samples.petclinic.mapper.VetMapper;
+import org.springframework.samples.petclinic.mapper.VisitMapper;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.model.Visit;
+import org.springframework.samples.petclinic.rest.dto.OwnerDto;
+import org.springframework.samples.petclinic.rest.dto.PetDto;
+import org.springframework.samples.petclinic.rest.dto.VetDto;
+import org.springframework.samples.petclinic.rest.dto.VisitDto;
+import org.springframework.samples.petclinic.service.ClinicService;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Checks that the {@link DtoProjectionRepository} of each repository profile reads the same DTOs as the ones mapped
+ * from the entities of the {@link ClinicService}. The profile specific subclasses enable the projections.
+ * <p/>
+ * Unlike the mapped ones, the visits nested in the projected pets carry the id of their pet, and the projected pets
+ * always come with their visits.
+ */
+abstract class AbstractDtoProjectionRepositoryTests {
+
+    @Autowired
+    protected DtoProjectionRepository projections;
+
+    @Autowired
+    protected ClinicService clinicService;
+
+    @Autowired
+    protected OwnerMapper ownerMapper;
+
+    @Autowired
+    protected PetMapper petMapper;
+
+    @Autowired
+    protected VisitMapper visitMapper;
+
+    @Autowired
+    protected VetMapper vetMapper;
+
+    private static <T> List<T> byId(Collection<T> dtos, Function<T, Integer> id) {
+        List<T> sorted = new ArrayList<>(dtos);
+        sorted.sort(Comparator.comparing(id));
+        return sorted;
+    }
+
+    private static PetDto withVisitPetIds(PetDto pet) {
+        for (VisitDto visit : pet.getVisits()) {
+            visit.setPetId(pet.getId());
+        }
+        return pet;
+    }
+
+    private List<OwnerDto> mappedOwners(Collection<Owner> owners) {
+        List<OwnerDto> dtos = byId(this.ownerMapper.toOwnerDtoCollection(owners), OwnerDto::getId);
+        dtos.forEach(owner -> owner.getPets().forEach(AbstractDtoProjectionRepositoryTests::withVisitPetIds));
+        return dtos;
+    }
+
+    private List<PetDto> mappedPets(Collection<Pet> pets) {
+        List<PetDto> dtos = new ArrayList<>();
+        for (Pet pet : pets) {
+            // with its visits, which the lists of pets of the jdbc profile do not load
+            dtos.add(withVisitPetIds(this.petMapper.toPetDto(this.clinicService.findPetById(pet.getId()))));
+        }
+        return byId(dtos, PetDto::getId);
+    }
+
+    @Test
+    void shouldFindTheOwnersWithTheirPetsAndVisits() {
+        List<OwnerDto> owners = this.projections.findOwners(null, 0, Integer.MAX_VALUE);
+
+        assertThat(owners).isEqualTo(mappedOwners(this.clinicService.findAllOwners()));
+        assertThat(owners).filteredOn(owner -> owner.getId() == 6).singleElement()
+            .satisfies(owner -> assertThat(owner.getPets()).extracting(PetDto::getName)
+                .containsExactly("Max", "Samantha"));
+    }
+
+    @Test
+    @Transactional
+    void shouldFindTheNestedCollectionsOfMoreOwnersThanAChunkOfIds() {
+        PetType cat = this.clinicService.findPetTypeById(1);
+        List<Owner> owners = new ArrayList<>();
+        for (int i = 0; i < DtoProjectionRepository.ID_CHUNK_SIZE + 10; i++) {
+            Owner owner = new Owner();
+            owner.setFirstName("Chunked" + i);
+            owner.setLastName("Chunked");
+            owner.setAddress("1, Chunk Street");
+            owner.setCity("Madison");
+            owner.setTelephone("6085550000");
+            Pet pet = new Pet();
+            pet.setName("Pet" + i);
+            pet.setBirthDate(LocalDate.of(2020, 1, 1));
+            pet.setType(cat);
+            owner.addPet(pet);
+            Visit visit = new Visit();
+            visit.setDate(LocalDate.of(2021, 1, 1));
+            visit.setDescription("checkup");
+            pet.addVisit(visit);
+            owners.add(owner);
+        }
+        this.clinicService.importOwners(owners.iterator(), owners.size());
+
+        assertThat(this.projections.findOwners("Chunked", 0, Integer.MAX_VALUE))
+            .hasSize(owners.size())
+            .allSatisfy(owner -> assertThat(owner.getPets()).singleElement()
+                .satisfies(pet -> assertThat(pet.getVisits()).hasSize(1)));
+    }
+
+    @Test
+    void shouldFindAPageOfOwnersByLastName() {
+        List<OwnerDto> page = this.projections.findOwners("Davis", 0, 1);
+        assertThat(page).extracting(OwnerDto::getId).containsExactly(2);
+
+        page = this.projections.findOwners("Davis", page.get(0).getId(), 1);
+        assertThat(page).isEqualTo(mappedOwners(this.clinicService.findOwnerByLastName("Davis", 2, 1)));
+        assertThat(page).extracting(OwnerDto::getId).containsExactly(4);
+    }
+
+    @Test
+    void shouldFindThePetsWithTheirVisits() {
+        assertThat(this.projections.findPets(0, Integer.MAX_VALUE))
+            .isEqualTo(mappedPets(this.clinicService.findAllPets()));
+        assertThat(this.projections.findPets(2, 3)).isEqualTo(mappedPets(this.clinicService.findAllPets(2, 3)));
+    }
+
+    @Test
+    void shouldFindTheVisits() {
+        assertThat(this.projections.findVisits(0, Integer.MAX_VALUE))
+            .isEqualTo(byId(this.visitMapper.toVisitsDto(this.clinicService.findAllVisits()), VisitDto::getId));
+    }
+
+    @Test
+    void shouldFindTheVetsWithTheirSpecialties() {
+        assertThat(this.projections.findVets(0, Integer.MAX_VALUE))
+            .isEqualTo(byId(this.vetMapper.toVetDtos(this.clinicService.findAllVets()), VetDto::getId));
+        assertThat(this.projections.findVets(2, 2))
+            .isEqualTo(new ArrayList<>(this.vetMapper.toVetDtos(this.clinicService.findAllVets(2, 2))));
+    }
+}
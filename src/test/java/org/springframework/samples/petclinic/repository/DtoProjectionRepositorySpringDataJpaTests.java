@@ -0,0 +1,13 @@
+package org.springframework.samples.petclinic.repository;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Integration test of the {@link DtoProjectionRepository} of the spring-data-jpa profile.
+ */
+@SpringBootTest(properties = "petclinic.dto-projections.enabled=true")
+@ActiveProfiles({"spring-data-jpa", "hsqldb"})
+class DtoProjectionRepositorySpringDataJpaTests extends AbstractDtoProjectionRepositoryTests {
+
+}
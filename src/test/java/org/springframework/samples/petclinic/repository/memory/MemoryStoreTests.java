@@ -0,0 +1,147 @@
+package org.springframework.samples.petclinic.repository.memory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.NamedRow;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.OwnerRow;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.PetRow;
+import org.springframework.samples.petclinic.repository.memory.MemoryRows.VisitRow;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+/**
+ * Checks that the {@link MemoryStore} gets its rows back from its journal when it is reopened, and that the writes of
+ * a transaction are only seen by the other threads once it has committed.
+ */
+class MemoryStoreTests {
+
+    @TempDir
+    Path directory;
+
+    private MemoryStore open() throws IOException {
+        // a tiny mapping, so that the journal has to grow
+        return new MemoryStore(this.directory.resolve("petclinic.journal").toString(), 64,
+            new StaticListableBeanFactory().getBeanProvider(DataSource.class));
+    }
+
+    @Test
+    void shouldReplayTheJournal() throws IOException {
+        MemoryStore store = open();
+        for (int i = 0; i < 20; i++) {
+            store.put(store.owners, new OwnerRow(store.owners.nextId(), 0, "George", "Franklin" + i,
+                "110 W. Liberty St.", "Madison", "6085551023"));
+        }
+        store.put(store.owners, new OwnerRow(3, 1, "Eduardo", "Rodriquez", null, null, null));
+        store.delete(store.owners, 4);
+        store.close();
+
+        store = open();
+        assertThat(store.owners.size()).isEqualTo(19);
+        assertThat(store.owners.get(3).lastName).isEqualTo("Rodriquez");
+        assertThat(store.owners.get(3).address).isNull();
+        assertThat(store.owners.get(4)).isNull();
+        assertThat(store.owners.nextId()).isEqualTo(21);
+        store.close();
+    }
+
+    @Test
+    void shouldIgnoreARecordTornByACrash() throws IOException {
+        MemoryStore store = open();
+        store.put(store.petTypes, new NamedRow(1, "cat"));
+        int size = store.journalSize();
+        store.close();
+        try (FileChannel channel = FileChannel.open(this.directory.resolve("petclinic.journal"),
+            StandardOpenOption.WRITE)) {
+            // the header of a record whose bytes were not all written
+            ByteBuffer torn = ByteBuffer.allocate(12).putInt(100).putInt(42).putInt(7);
+            torn.flip();
+            channel.write(torn, size);
+        }
+
+        store = open();
+        assertThat(store.petTypes.size()).isEqualTo(1);
+        store.put(store.petTypes, new NamedRow(2, "dog"));
+        store.close();
+
+        store = open();
+        assertThat(store.petTypes.get(1).name).isEqualTo("cat");
+        assertThat(store.petTypes.get(2).name).isEqualTo("dog");
+        store.close();
+    }
+
+    @Test
+    void shouldUndoAndNotJournalTheWritesOfARolledBackTransaction() throws IOException {
+        MemoryStore store = open();
+        store.put(store.specialties, new NamedRow(1, "radiology"));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            store.put(store.specialties, new NamedRow(1, "dentistry"));
+            store.put(store.specialties, new NamedRow(2, "surgery"));
+            assertThat(store.specialties.get(1).name).isEqualTo("dentistry");
+            TransactionSynchronizationUtils.invokeAfterCompletion(
+                TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(store.specialties.get(1).name).isEqualTo("radiology");
+        assertThat(store.specialties.get(2)).isNull();
+        store.close();
+
+        store = open();
+        assertThat(store.specialties.size()).isEqualTo(1);
+        assertThat(store.specialties.get(1).name).isEqualTo("radiology");
+        store.close();
+    }
+
+    @Test
+    void shouldPublishTheWritesOfATransactionOnceCommitted() throws IOException {
+        MemoryStore store = open();
+        MemoryStore reader = store;
+        store.put(store.owners, new OwnerRow(1, 0, "George", "Franklin", null, null, null));
+        store.put(store.pets, new PetRow(1, 0, "Leo", null, 1, 1));
+        store.put(store.visits, new VisitRow(1, 1, null, "rabies shot"));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            store.deletePet(1);
+            store.put(store.pets, new PetRow(2, 0, "Basil", null, 1, 1));
+            assertThat(store.petsOf(1)).extracting(pet -> pet.name).containsExactly("Basil");
+            assertThat(store.visitsOf(1)).isEmpty();
+            assertThat(readInAnotherThread(() -> reader.petsOf(1))).extracting(pet -> pet.name).containsExactly("Leo");
+            assertThat(readInAnotherThread(() -> reader.visitsOf(1))).hasSize(1);
+
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            TransactionSynchronizationUtils.invokeAfterCommit(synchronizations);
+            TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations,
+                TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(readInAnotherThread(() -> reader.petsOf(1))).extracting(pet -> pet.name).containsExactly("Basil");
+        assertThat(readInAnotherThread(() -> reader.visitsOf(1))).isEmpty();
+        store.close();
+
+        store = open();
+        assertThat(store.pets.all()).extracting(pet -> pet.name).containsExactly("Basil");
+        assertThat(store.visits.size()).isZero();
+        store.close();
+    }
+
+    private static <T> T readInAnotherThread(Supplier<T> read) {
+        return CompletableFuture.supplyAsync(read).join();
+    }
+}
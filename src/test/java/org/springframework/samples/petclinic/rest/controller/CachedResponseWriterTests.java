@@ -0,0 +1,171 @@
+package org.springframework.samples.petclinic.rest.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.model.Vet;
+import org.springframework.samples.petclinic.rest.advice.ExceptionControllerAdvice;
+import org.springframework.samples.petclinic.service.ChangeCounters;
+import org.springframework.samples.petclinic.service.ClinicService;
+import org.springframework.samples.petclinic.service.clinicService.ApplicationTestConfig;
+import org.springframework.samples.petclinic.util.ResponseCache;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Test class for the {@link ResponseCache} of the read endpoints, through {@link VetRestController} and
+ * {@link PetTypeRestController}.
+ */
+@SpringBootTest(properties = "petclinic.response-cache.enabled=true")
+@ContextConfiguration(classes = ApplicationTestConfig.class)
+@WebAppConfiguration
+class CachedResponseWriterTests {
+
+    @Autowired
+    private VetRestController vetRestController;
+
+    @Autowired
+    private PetTypeRestController petTypeRestController;
+
+    @Autowired
+    private ChangeCounters changeCounters;
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockBean
+    private ClinicService clinicService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void initCache() {
+        this.mockMvc = MockMvcBuilders.standaloneSetup(vetRestController, petTypeRestController)
+            .setControllerAdvice(new ExceptionControllerAdvice())
+            .build();
+        // changes the entity tags of the responses cached by the previous tests
+        this.changeCounters.increment(ChangeCounters.VETS, ChangeCounters.PET_TYPES);
+    }
+
+    @Test
+    @WithMockUser(roles = "VET_ADMIN")
+    void shouldServeAnUnchangedResponseFromTheCache() throws Exception {
+        PetType cat = new PetType();
+        cat.setId(1);
+        cat.setName("cat");
+        given(this.clinicService.findAllPetTypes()).willReturn(Collections.singletonList(cat));
+        double hits = this.meterRegistry.counter("petclinic.response.cache.requests", "result", "hit").count();
+        String eTag = "\"" + this.changeCounters.tag(ChangeCounters.PET_TYPES) + "\"";
+
+        for (int i = 0; i < 2; i++) {
+            this.mockMvc.perform(get("/api/pettypes")
+                    .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/json"))
+                .andExpect(header().string("ETag", eTag))
+                .andExpect(content().json("[{\"id\":1,\"name\":\"cat\"}]", true));
+        }
+        verify(this.clinicService, times(1)).findAllPetTypes();
+        assertThat(this.meterRegistry.counter("petclinic.response.cache.requests", "result", "hit").count())
+            .isEqualTo(hits + 1);
+        assertThat(this.responseCache.size()).isPositive();
+    }
+
+    @Test
+    @WithMockUser(roles = "VET_ADMIN")
+    void shouldReadAgainAWrittenResource() throws Exception {
+        PetType cat = new PetType();
+        cat.setId(1);
+        cat.setName("cat");
+        given(this.clinicService.findAllPetTypes()).willReturn(Collections.singletonList(cat));
+        this.mockMvc.perform(get("/api/pettypes").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk());
+
+        this.changeCounters.increment(ChangeCounters.PET_TYPES);
+        cat.setName("kitten");
+        this.mockMvc.perform(get("/api/pettypes").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "\"" + this.changeCounters.tag(ChangeCounters.PET_TYPES) + "\""))
+            .andExpect(jsonPath("$.[0].name").value("kitten"));
+        verify(this.clinicService, times(2)).findAllPetTypes();
+    }
+
+    @Test
+    @WithMockUser(roles = "VET_ADMIN")
+    void shouldServeTheGzipVariantToTheClientsAcceptingIt() throws Exception {
+        List<Vet> vets = new ArrayList<>();
+        for (int id = 1; id <= 20; id++) {
+            Vet vet = new Vet();
+            vet.setId(id);
+            vet.setFirstName("James");
+            vet.setLastName("Carter");
+            vets.add(vet);
+        }
+        given(this.clinicService.findAllVets()).willReturn(vets);
+        byte[] body = this.mockMvc.perform(get("/api/vets").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("Content-Encoding"))
+            .andReturn().getResponse().getContentAsByteArray();
+
+        MvcResult gzipped = this.mockMvc.perform(get("/api/vets")
+                .header("Accept-Encoding", "gzip, deflate")
+                .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Encoding", "gzip"))
+            .andExpect(header().stringValues("Vary", hasItem("Accept-Encoding")))
+            .andReturn();
+        byte[] gzipBody = gzipped.getResponse().getContentAsByteArray();
+        assertThat(gzipBody.length).isLessThan(body.length);
+        assertThat(gunzip(gzipBody)).isEqualTo(body);
+        verify(this.clinicService, times(1)).findAllVets();
+    }
+
+    @Test
+    void shouldParseTheAcceptedEncodings() {
+        assertThat(CachedResponseWriter.acceptsGzip("gzip, deflate, br")).isTrue();
+        assertThat(CachedResponseWriter.acceptsGzip("deflate, *;q=0.5")).isTrue();
+        assertThat(CachedResponseWriter.acceptsGzip("gzip;q=0, *")).isFalse();
+        assertThat(CachedResponseWriter.acceptsGzip("identity")).isFalse();
+        assertThat(CachedResponseWriter.acceptsGzip(null)).isFalse();
+    }
+
+    private static byte[] gunzip(byte[] gzipBody) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(gzipBody))) {
+            byte[] buffer = new byte[4096];
+            for (int read = gzip.read(buffer); read >= 0; read = gzip.read(buffer)) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return body.toByteArray();
+    }
+}
@@ -25,14 +25,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.samples.petclinic.mapper.OwnerMapper;
 import org.springframework.samples.petclinic.mapper.VisitMapper;
 import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.model.Visit;
 import org.springframework.samples.petclinic.rest.advice.ExceptionControllerAdvice;
 import org.springframework.samples.petclinic.rest.dto.OwnerDto;
 import org.springframework.samples.petclinic.rest.dto.PetDto;
 import org.springframework.samples.petclinic.rest.dto.PetTypeDto;
 import org.springframework.samples.petclinic.rest.dto.VisitDto;
+import org.springframework.samples.petclinic.service.ChangeCounters;
 import org.springframework.samples.petclinic.service.ClinicService;
 import org.springframework.samples.petclinic.service.clinicService.ApplicationTestConfig;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -45,9 +49,20 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -71,6 +86,9 @@ class OwnerRestControllerTests {
     @Autowired
     private VisitMapper visitMapper;
 
+    @Autowired
+    private ChangeCounters changeCounters;
+
     @MockBean
     private ClinicService clinicService;
 
@@ -206,6 +224,147 @@ class OwnerRestControllerTests {
             .andExpect(jsonPath("$.[1].firstName").value("Harold"));
     }
 
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testGetOwnersPageSuccess() throws Exception {
+        owners.remove(0);
+        owners.remove(1);
+        given(this.clinicService.findAllOwners(1, 2)).willReturn(ownerMapper.toOwners(owners));
+        this.mockMvc.perform(get("/api/owners/")
+                .param("limit", "2")
+                .param("after", PageCursor.encode(1))
+                .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(header().string(PageCursor.NEXT_CURSOR_HEADER, PageCursor.encode(4)))
+            .andExpect(jsonPath("$.[0].id").value(2))
+            .andExpect(jsonPath("$.[1].id").value(4));
+    }
+
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testGetOwnersLastPageSuccess() throws Exception {
+        owners.remove(0);
+        owners.remove(1);
+        given(this.clinicService.findOwnerByLastName("Davis", 0, PageCursor.DEFAULT_LIMIT))
+            .willReturn(ownerMapper.toOwners(owners));
+        this.mockMvc.perform(get("/api/owners/?lastName=Davis&after=")
+                .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(PageCursor.NEXT_CURSOR_HEADER))
+            .andExpect(jsonPath("$.[1].firstName").value("Harold"));
+    }
+
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testGetOwnersInvalidCursor() throws Exception {
+        this.mockMvc.perform(get("/api/owners/?limit=2&after=not-a-cursor")
+                .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testStreamOwnersAsNdjsonSuccess() throws Exception {
+        willAnswer(invocation -> {
+            Consumer<Owner> action = invocation.getArgument(0);
+            ownerMapper.toOwners(owners).forEach(action);
+            return null;
+        }).given(this.clinicService).streamAllOwners(any());
+        this.mockMvc.perform(get("/api/owners?stream=true")
+                .accept(JsonStreamWriter.NDJSON_VALUE))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(JsonStreamWriter.NDJSON_VALUE + ";charset=UTF-8"))
+            .andExpect(result -> assertThat(result.getResponse().getContentAsString().split("\n"))
+                .hasSize(owners.size())
+                .allMatch(line -> line.startsWith("{\"firstName\"")));
+    }
+
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testStreamOwnersAsJsonArraySuccess() throws Exception {
+        willAnswer(invocation -> {
+            Consumer<Owner> action = invocation.getArgument(0);
+            ownerMapper.toOwners(owners).forEach(action);
+            return null;
+        }).given(this.clinicService).streamAllOwners(any());
+        this.mockMvc.perform(get("/api/owners?stream=true")
+                .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(owners.size()))
+            .andExpect(jsonPath("$.[0].firstName").value("George"))
+            .andExpect(jsonPath("$.[0].pets[0].name").value("Rosy"));
+    }
+
+    private List<Owner> mockImport() {
+        PetType dog = new PetType();
+        dog.setId(2);
+        dog.setName("dog");
+        given(this.clinicService.findPetTypes()).willReturn(Collections.singletonList(dog));
+        List<Owner> imported = new ArrayList<>();
+        willAnswer(invocation -> {
+            Iterator<Owner> iterator = invocation.getArgument(0);
+            iterator.forEachRemaining(imported::add);
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            counts.put("owners", imported.size());
+            counts.put("pets", imported.stream().mapToInt(owner -> owner.getPets().size()).sum());
+            counts.put("visits", 0);
+            return counts;
+        }).given(this.clinicService).importOwners(any(), anyInt());
+        return imported;
+    }
+
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testImportOwnersFromNdjsonSuccess() throws Exception {
+        List<Owner> imported = mockImport();
+        String body = "{\"firstName\":\"George\",\"lastName\":\"Franklin\",\"address\":\"110 W. Liberty St.\"," +
+            "\"city\":\"Madison\",\"telephone\":\"6085551023\"," +
+            "\"pets\":[{\"name\":\"Rosy\",\"birthDate\":\"2020-01-01\",\"type\":{\"name\":\"dog\"}}]}\n" +
+            "{\"firstName\":\"Betty\",\"lastName\":\"Davis\",\"address\":\"638 Cardinal Ave.\"," +
+            "\"city\":\"Sun Prairie\",\"telephone\":\"6085551749\"}\n";
+        this.mockMvc.perform(post("/api/owners/import")
+                .content(body).contentType(JsonStreamWriter.NDJSON_VALUE))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.owners").value(2))
+            .andExpect(jsonPath("$.pets").value(1))
+            .andExpect(jsonPath("$.rows").value(3))
+            .andExpect(jsonPath("$.rowsPerSecond").isNumber());
+        assertThat(imported).extracting(Owner::getLastName).containsExactly("Franklin", "Davis");
+        assertThat(imported.get(0).getPets().get(0).getType().getId()).isEqualTo(2);
+    }
+
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testImportOwnersFromCsvSuccess() throws Exception {
+        List<Owner> imported = mockImport();
+        String body = "# kind,fields...\n" +
+            "owner,George,Franklin,\"110 W. Liberty St., Apt 2\",Madison,6085551023\n" +
+            "pet,Rosy,2020-01-01,dog\n" +
+            "visit,2021-03-04,rabies shot\n" +
+            "\n" +
+            "owner,Betty,Davis,638 Cardinal Ave.,Sun Prairie,6085551749\n";
+        this.mockMvc.perform(post("/api/owners/import")
+                .content(body).contentType(OwnerImportReader.CSV_VALUE))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.owners").value(2));
+        assertThat(imported.get(0).getAddress()).isEqualTo("110 W. Liberty St., Apt 2");
+        assertThat(imported.get(0).getPets().get(0).getVisits()).extracting(Visit::getDescription)
+            .containsExactly("rabies shot");
+        assertThat(imported.get(1).getPets()).isEmpty();
+    }
+
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testImportOwnersInvalidLine() throws Exception {
+        mockImport();
+        String body = "owner,George,Franklin,110 W. Liberty St.,Madison,6085551023\n" +
+            "pet,Rosy,2020-01-01,hamster\n";
+        this.mockMvc.perform(post("/api/owners/import")
+                .content(body).contentType(OwnerImportReader.CSV_VALUE))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.exMessage").value("Line 2: unknown pet type hamster"));
+    }
+
     @Test
     @WithMockUser(roles = "OWNER_ADMIN")
     void testGetAllOwnersNotFound() throws Exception {
@@ -248,7 +407,9 @@ class OwnerRestControllerTests {
     @Test
     @WithMockUser(roles = "OWNER_ADMIN")
     void testUpdateOwnerSuccess() throws Exception {
-        given(this.clinicService.findOwnerById(1)).willReturn(ownerMapper.toOwner(owners.get(0)));
+        Owner owner = ownerMapper.toOwner(owners.get(0));
+        given(this.clinicService.findOwnerForUpdate(1)).willReturn(owner);
+        given(this.clinicService.findOwnerById(1)).willReturn(owner);
         int ownerId = owners.get(0).getId();
         OwnerDto updatedOwnerDto = new OwnerDto();
         // body.id = ownerId which is used in url path
@@ -279,7 +440,9 @@ class OwnerRestControllerTests {
     @Test
     @WithMockUser(roles = "OWNER_ADMIN")
     void testUpdateOwnerSuccessNoBodyId() throws Exception {
-        given(this.clinicService.findOwnerById(1)).willReturn(ownerMapper.toOwner(owners.get(0)));
+        Owner owner = ownerMapper.toOwner(owners.get(0));
+        given(this.clinicService.findOwnerForUpdate(1)).willReturn(owner);
+        given(this.clinicService.findOwnerById(1)).willReturn(owner);
         int ownerId = owners.get(0).getId();
         OwnerDto updatedOwnerDto = new OwnerDto();
         updatedOwnerDto.setFirstName("GeorgeI");
@@ -317,6 +480,100 @@ class OwnerRestControllerTests {
             .andExpect(status().isBadRequest());
     }
 
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testGetOwnerWithETag() throws Exception {
+        Owner owner = ownerMapper.toOwner(owners.get(0));
+        owner.setVersion(3);
+        given(this.clinicService.findOwnerById(1)).willReturn(owner);
+        this.mockMvc.perform(get("/api/owners/1")
+                .accept(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "\"3." + changeCounters.tag(ChangeCounters.owner(1), ChangeCounters.PET_TYPES) + "\""));
+    }
+
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testListOwnerLastNames() throws Exception {
+        given(this.clinicService.findOwnerLastNames("da", 10)).willReturn(Collections.singletonList("Davis"));
+        this.mockMvc.perform(get("/api/owners/lastnames?prefix=da")
+                .accept(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/json"))
+            .andExpect(jsonPath("$[0]").value("Davis"))
+            .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testGetOwnerNotModified() throws Exception {
+        String eTag = "\"3." + changeCounters.tag(ChangeCounters.owner(1), ChangeCounters.PET_TYPES) + "\"";
+        given(this.clinicService.findOwnerVersion(1)).willReturn(3);
+        this.mockMvc.perform(get("/api/owners/1")
+                .header("If-None-Match", eTag)
+                .accept(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string("ETag", eTag));
+        verify(this.clinicService, never()).findOwnerById(anyInt());
+    }
+
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testGetOwnerModified() throws Exception {
+        Owner owner = ownerMapper.toOwner(owners.get(0));
+        owner.setVersion(4);
+        given(this.clinicService.findOwnerVersion(1)).willReturn(4);
+        given(this.clinicService.findOwnerById(1)).willReturn(owner);
+        this.mockMvc.perform(get("/api/owners/1")
+                .header("If-None-Match", "\"3." + changeCounters.tag(ChangeCounters.owner(1), ChangeCounters.PET_TYPES) + "\"")
+                .accept(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "\"4." + changeCounters.tag(ChangeCounters.owner(1), ChangeCounters.PET_TYPES) + "\""))
+            .andExpect(jsonPath("$.firstName").value("George"));
+    }
+
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testPatchOwnerSuccess() throws Exception {
+        given(this.clinicService.updateOwner(1, 3, Collections.singletonMap("city", "Monona"))).willReturn(4);
+        this.mockMvc.perform(patch("/api/owners/1")
+                .header("If-Match", "\"3\"")
+                .content("{\"city\":\"Monona\"}").contentType(EntityVersions.MERGE_PATCH_JSON_VALUE))
+            .andExpect(status().isNoContent())
+            .andExpect(header().string("ETag", "\"4." + changeCounters.tag(ChangeCounters.owner(1), ChangeCounters.PET_TYPES) + "\""));
+    }
+
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testPatchOwnerWithoutIfMatch() throws Exception {
+        this.mockMvc.perform(patch("/api/owners/1")
+                .content("{\"city\":\"Monona\"}").contentType(EntityVersions.MERGE_PATCH_JSON_VALUE))
+            .andExpect(status().isPreconditionRequired());
+        verify(this.clinicService, never()).updateOwner(anyInt(), anyInt(), any());
+    }
+
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testPatchOwnerStaleVersion() throws Exception {
+        given(this.clinicService.updateOwner(anyInt(), anyInt(), any()))
+            .willThrow(new ObjectOptimisticLockingFailureException(Owner.class, 1));
+        this.mockMvc.perform(patch("/api/owners/1")
+                .header("If-Match", "\"2\"")
+                .content("{\"city\":\"Monona\"}").contentType(EntityVersions.MERGE_PATCH_JSON_VALUE))
+            .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testPatchOwnerError() throws Exception {
+        this.mockMvc.perform(patch("/api/owners/1")
+                .header("If-Match", "\"3\"")
+                .content("{\"firstName\":\"\",\"id\":5}").contentType(EntityVersions.MERGE_PATCH_JSON_VALUE))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.exMessage")
+                .value("Invalid owner patch: firstName must not be empty, id cannot be updated"));
+    }
+
     @Test
     @WithMockUser(roles = "OWNER_ADMIN")
     void testDeleteOwnerSuccess() throws Exception {
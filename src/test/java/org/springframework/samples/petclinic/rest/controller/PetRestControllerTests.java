@@ -27,10 +27,12 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.samples.petclinic.mapper.PetMapper;
 import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.PetType;
 import org.springframework.samples.petclinic.rest.advice.ExceptionControllerAdvice;
 import org.springframework.samples.petclinic.rest.dto.OwnerDto;
 import org.springframework.samples.petclinic.rest.dto.PetDto;
 import org.springframework.samples.petclinic.rest.dto.PetTypeDto;
+import org.springframework.samples.petclinic.service.ChangeCounters;
 import org.springframework.samples.petclinic.service.ClinicService;
 import org.springframework.samples.petclinic.service.clinicService.ApplicationTestConfig;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -43,7 +45,9 @@ import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.when;
@@ -68,6 +72,8 @@ class PetRestControllerTests {
     private PetRestController petRestController;
     @Autowired
     private PetMapper petMapper;
+    @Autowired
+    private ChangeCounters changeCounters;
     private MockMvc mockMvc;
 
     private List<PetDto> pets;
@@ -154,7 +160,9 @@ class PetRestControllerTests {
     @Test
     @WithMockUser(roles = "OWNER_ADMIN")
     void testUpdatePetSuccess() throws Exception {
-        given(this.clinicService.findPetById(3)).willReturn(petMapper.toPet(pets.get(0)));
+        Pet pet = petMapper.toPet(pets.get(0));
+        given(this.clinicService.findPetForUpdate(3)).willReturn(pet);
+        given(this.clinicService.findPetById(3)).willReturn(pet);
         PetDto newPet = pets.get(0);
         newPet.setName("Rosy I");
         ObjectMapper mapper = new ObjectMapper();
@@ -193,6 +201,36 @@ class PetRestControllerTests {
             .andExpect(status().isBadRequest());
     }
 
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testPatchPetSuccess() throws Exception {
+        PetType dog = new PetType();
+        dog.setId(2);
+        dog.setName("dog");
+        given(this.clinicService.findPetTypeById(2)).willReturn(dog);
+        Map<String, Object> changes = new HashMap<>();
+        changes.put("birthDate", LocalDate.of(2020, 1, 1));
+        changes.put("type", dog);
+        given(this.clinicService.updatePet(3, 1, changes)).willReturn(2);
+
+        this.mockMvc.perform(patch("/api/pets/3")
+            .header("If-Match", "\"1." + changeCounters.tag(ChangeCounters.pet(3), ChangeCounters.PET_TYPES) + "\"")
+            .content("{\"birthDate\":\"2020-01-01\",\"type\":{\"id\":2}}")
+            .contentType(EntityVersions.MERGE_PATCH_JSON_VALUE))
+            .andExpect(status().isNoContent())
+            .andExpect(header().string("ETag", "\"2." + changeCounters.tag(ChangeCounters.pet(3), ChangeCounters.PET_TYPES) + "\""));
+    }
+
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testPatchPetUnknownType() throws Exception {
+        given(this.clinicService.findPetTypeById(9)).willReturn(null);
+        this.mockMvc.perform(patch("/api/pets/3")
+            .header("If-Match", "\"1\"")
+            .content("{\"type\":{\"id\":9}}").contentType(EntityVersions.MERGE_PATCH_JSON_VALUE))
+            .andExpect(status().isBadRequest());
+    }
+
     @Test
     @WithMockUser(roles = "OWNER_ADMIN")
     void testDeletePetSuccess() throws Exception {
@@ -27,6 +27,7 @@ import org.springframework.samples.petclinic.mapper.PetTypeMapper;
 import org.springframework.samples.petclinic.model.PetType;
 import org.springframework.samples.petclinic.rest.advice.ExceptionControllerAdvice;
 import org.springframework.samples.petclinic.rest.controller.PetTypeRestController;
+import org.springframework.samples.petclinic.service.ChangeCounters;
 import org.springframework.samples.petclinic.service.ClinicService;
 import org.springframework.samples.petclinic.service.clinicService.ApplicationTestConfig;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -39,6 +40,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -59,6 +62,9 @@ class PetTypeRestControllerTests {
     @Autowired
     private PetTypeMapper petTypeMapper;
 
+    @Autowired
+    private ChangeCounters changeCounters;
+
     @MockBean
     private ClinicService clinicService;
 
@@ -143,6 +149,18 @@ class PetTypeRestControllerTests {
         	.andExpect(jsonPath("$.[1].name").value("snake"));
     }
 
+    @Test
+    @WithMockUser(roles="OWNER_ADMIN")
+    void testGetAllPetTypesNotModified() throws Exception {
+        String eTag = "\"" + changeCounters.tag(ChangeCounters.PET_TYPES) + "\"";
+        this.mockMvc.perform(get("/api/pettypes/")
+            .header("If-None-Match", "\"0\", W/" + eTag)
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string("ETag", eTag));
+        verify(this.clinicService, never()).findAllPetTypes();
+    }
+
     @Test
     @WithMockUser(roles="VET_ADMIN")
     void testGetAllPetTypesSuccessAsVetAdmin() throws Exception {
@@ -23,6 +23,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.orm.ObjectRetrievalFailureException;
 import org.springframework.samples.petclinic.mapper.VetMapper;
 import org.springframework.samples.petclinic.model.Vet;
 import org.springframework.samples.petclinic.rest.advice.ExceptionControllerAdvice;
@@ -36,6 +38,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static org.mockito.BDDMockito.given;
@@ -165,6 +168,7 @@ class VetRestControllerTests {
     @Test
     @WithMockUser(roles="VET_ADMIN")
     void testUpdateVetSuccess() throws Exception {
+    	given(this.clinicService.findVetForUpdate(1)).willReturn(vets.get(0));
     	given(this.clinicService.findVetById(1)).willReturn(vets.get(0));
     	Vet newVet = vets.get(0);
     	newVet.setFirstName("James");
@@ -196,6 +200,28 @@ class VetRestControllerTests {
         	.andExpect(status().isBadRequest());
      }
 
+    @Test
+    @WithMockUser(roles="VET_ADMIN")
+    void testPatchVetStaleVersion() throws Exception {
+        given(this.clinicService.updateVet(1, 0, Collections.singletonMap("lastName", "Carterson")))
+            .willThrow(new ObjectOptimisticLockingFailureException(Vet.class, 1));
+        this.mockMvc.perform(patch("/api/vets/1")
+            .header("If-Match", "\"0\"")
+            .content("{\"lastName\":\"Carterson\"}").contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    @WithMockUser(roles="VET_ADMIN")
+    void testPatchVetNotFound() throws Exception {
+        given(this.clinicService.updateVet(-1, 0, Collections.singletonMap("lastName", "Carterson")))
+            .willThrow(new ObjectRetrievalFailureException(Vet.class, -1));
+        this.mockMvc.perform(patch("/api/vets/-1")
+            .header("If-Match", "\"0\"")
+            .content("{\"lastName\":\"Carterson\"}").contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(status().isNotFound());
+    }
+
     @Test
     @WithMockUser(roles="VET_ADMIN")
     void testDeleteVetSuccess() throws Exception {
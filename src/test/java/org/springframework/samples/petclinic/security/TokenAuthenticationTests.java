@@ -0,0 +1,68 @@
+package org.springframework.samples.petclinic.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Checks the bearer token and the basic authentication of the REST API through the whole security filter chain.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class TokenAuthenticationTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private String issueToken() throws Exception {
+        String response = this.mockMvc.perform(post("/api/tokens").with(httpBasic("admin", "admin")))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.token_type").value("Bearer"))
+            .andExpect(jsonPath("$.expires_in").value(900))
+            .andReturn().getResponse().getContentAsString();
+        return this.objectMapper.readTree(response).path("access_token").asText();
+    }
+
+    @Test
+    void shouldAuthenticateWithAnIssuedToken() throws Exception {
+        String token = issueToken();
+        this.mockMvc.perform(get("/api/pettypes").header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk());
+        this.mockMvc.perform(get("/api/pettypes").header("Authorization", "Bearer " + token + "x"))
+            .andExpect(status().isUnauthorized())
+            .andExpect(header().string("WWW-Authenticate", "Bearer error=\"invalid_token\""));
+        this.mockMvc.perform(post("/api/tokens").header("Authorization", "Bearer " + token))
+            .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void shouldCacheTheUsersOfTheBasicAuthentication() throws Exception {
+        this.mockMvc.perform(get("/api/pettypes").with(httpBasic("admin", "admin")))
+            .andExpect(status().isOk());
+        assertThat(this.cacheManager.getCache("users").get("admin")).isNotNull();
+
+        this.mockMvc.perform(get("/api/pettypes").with(httpBasic("admin", "wrong")))
+            .andExpect(status().isUnauthorized());
+        this.mockMvc.perform(get("/api/pettypes"))
+            .andExpect(status().isUnauthorized());
+    }
+
+}
@@ -0,0 +1,71 @@
+package org.springframework.samples.petclinic.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.CredentialsExpiredException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+/**
+ * Checks the bearer tokens issued and verified by the {@link TokenService}.
+ */
+class TokenServiceTests {
+
+    private static final byte[] SECRET = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final Instant NOW = Instant.parse("2022-01-10T10:00:00Z");
+
+    private static TokenService tokenService(byte[] secret, Instant now) {
+        return new TokenService(secret, Duration.ofMinutes(15), new Roles(), new ObjectMapper(),
+            Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    @Test
+    void shouldAuthenticateTheUserOfAnIssuedToken() {
+        String token = tokenService(SECRET, NOW).issue("admin",
+            AuthorityUtils.createAuthorityList("ROLE_OWNER_ADMIN", "ROLE_ADMIN", "SCOPE_other"));
+
+        Authentication authentication = tokenService(SECRET, NOW.plusSeconds(899)).verify(token);
+        assertThat(authentication.isAuthenticated()).isTrue();
+        assertThat(authentication.getName()).isEqualTo("admin");
+        assertThat(AuthorityUtils.authorityListToSet(authentication.getAuthorities()))
+            .containsExactlyInAnyOrder("ROLE_OWNER_ADMIN", "ROLE_ADMIN");
+    }
+
+    @Test
+    void shouldRejectExpiredTokens() {
+        String token = tokenService(SECRET, NOW).issue("admin", AuthorityUtils.createAuthorityList("ROLE_ADMIN"));
+        assertThatThrownBy(() -> tokenService(SECRET, NOW.plusSeconds(900)).verify(token))
+            .isInstanceOf(CredentialsExpiredException.class);
+    }
+
+    @Test
+    void shouldRejectAlteredOrForeignTokens() {
+        TokenService tokenService = tokenService(SECRET, NOW);
+        String token = tokenService.issue("vet", AuthorityUtils.createAuthorityList("ROLE_VET_ADMIN"));
+        String[] parts = token.split("\\.");
+        String admin = token.replace(parts[1], tokenService.issue("admin",
+            AuthorityUtils.createAuthorityList("ROLE_ADMIN")).split("\\.")[1]);
+        byte[] otherSecret = Arrays.copyOf(SECRET, SECRET.length);
+        otherSecret[0]++;
+
+        assertThatThrownBy(() -> tokenService.verify(admin)).isInstanceOf(BadCredentialsException.class);
+        assertThatThrownBy(() -> tokenService(otherSecret, NOW).verify(token))
+            .isInstanceOf(BadCredentialsException.class);
+        assertThatThrownBy(() -> tokenService.verify(parts[0] + "." + parts[1] + ".%%"))
+            .isInstanceOf(BadCredentialsException.class);
+        assertThatThrownBy(() -> tokenService.verify("admin")).isInstanceOf(BadCredentialsException.class);
+    }
+
+}
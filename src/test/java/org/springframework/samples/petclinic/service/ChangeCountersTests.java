@@ -0,0 +1,89 @@
+package org.springframework.samples.petclinic.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.samples.petclinic.model.Visit;
+import org.springframework.samples.petclinic.repository.jdbc.JdbcChangeCounterRepositoryImpl;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Checks that the change counters are kept in the database, in the transactions of the writes: another instance of
+ * the application, sharing the database, reads the tags changed by the committed writes only.
+ */
+@SpringBootTest
+@ActiveProfiles({"spring-data-jpa", "hsqldb"})
+class ChangeCountersTests {
+
+    @Autowired
+    private ChangeCounters changeCounters;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ClinicService clinicService;
+
+    @Test
+    void shouldShareTheCountsOfTheCommittedWrites() {
+        ChangeCounters otherInstance = new ChangeCounters(new JdbcChangeCounterRepositoryImpl(this.dataSource));
+        String owners = otherInstance.tag(ChangeCounters.OWNERS);
+        String vets = otherInstance.tag(ChangeCounters.VETS);
+        TransactionTemplate transaction = new TransactionTemplate(this.transactionManager);
+
+        transaction.executeWithoutResult(status -> {
+            this.changeCounters.increment(ChangeCounters.OWNERS, ChangeCounters.PETS);
+            this.changeCounters.increment(ChangeCounters.OWNERS);
+            assertThat(otherInstance.tag(ChangeCounters.OWNERS)).isEqualTo(owners);
+        });
+
+        assertThat(otherInstance.tag(ChangeCounters.OWNERS)).isNotEqualTo(owners);
+        assertThat(this.changeCounters.tag(ChangeCounters.OWNERS)).isEqualTo(otherInstance.tag(ChangeCounters.OWNERS));
+        assertThat(otherInstance.tag(ChangeCounters.VETS)).isEqualTo(vets);
+    }
+
+    @Test
+    void shouldNotCountTheWritesOfARolledBackTransaction() {
+        String pets = this.changeCounters.tag(ChangeCounters.PETS);
+
+        new TransactionTemplate(this.transactionManager).executeWithoutResult(status -> {
+            this.changeCounters.increment(ChangeCounters.PETS);
+            status.setRollbackOnly();
+        });
+
+        assertThat(this.changeCounters.tag(ChangeCounters.PETS)).isEqualTo(pets);
+    }
+
+    @Test
+    void shouldCountTheWritesOfAVisitForItsPetAndOwnerOnly() {
+        String owner = this.changeCounters.tag(ChangeCounters.owner(3));
+        String pet = this.changeCounters.tag(ChangeCounters.pet(3));
+        String sameOwnerPet = this.changeCounters.tag(ChangeCounters.pet(4));
+        String otherOwner = this.changeCounters.tag(ChangeCounters.owner(1));
+        Visit visit = new Visit();
+        visit.setPet(this.clinicService.findPetById(3));
+        visit.setDate(LocalDate.now());
+        visit.setDescription("counted");
+
+        this.clinicService.saveVisit(visit);
+        try {
+            assertThat(this.changeCounters.tag(ChangeCounters.owner(3))).isNotEqualTo(owner);
+            assertThat(this.changeCounters.tag(ChangeCounters.pet(3))).isNotEqualTo(pet);
+            assertThat(this.changeCounters.tag(ChangeCounters.pet(4))).isEqualTo(sameOwnerPet);
+            assertThat(this.changeCounters.tag(ChangeCounters.owner(1))).isEqualTo(otherOwner);
+        } finally {
+            this.clinicService.deleteVisit(visit);
+        }
+    }
+}
@@ -17,16 +17,26 @@ package org.springframework.samples.petclinic.service.clinicService;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.orm.ObjectRetrievalFailureException;
 import org.springframework.samples.petclinic.model.*;
+import org.springframework.samples.petclinic.repository.OwnerFetchPlan;
 import org.springframework.samples.petclinic.service.ClinicService;
 import org.springframework.samples.petclinic.util.EntityUtils;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * <p> Base class for {@link ClinicService} integration tests. </p> <p> Subclasses should specify Spring context
@@ -62,6 +72,28 @@ abstract class AbstractClinicServiceTests {
         assertThat(owners.isEmpty()).isTrue();
     }
 
+    @Test
+    void shouldFindOwnerLastNamesByPrefix() {
+        assertThat(this.clinicService.findOwnerLastNames("Da", 10)).containsExactly("Davis");
+        assertThat(this.clinicService.findOwnerLastNames("E", 1)).containsExactly("Escobito");
+        assertThat(this.clinicService.findOwnerLastNames("Daviss", 10)).isEmpty();
+
+        Map<Integer, String> lastNames = new HashMap<>();
+        this.clinicService.streamOwnerLastNames((lastName, id) -> lastNames.put(id, lastName));
+        assertThat(lastNames).hasSize(this.clinicService.findAllOwners().size()).containsEntry(1, "Franklin");
+    }
+
+    @Test
+    void shouldFindOwnersWithTheirOwnPetsAndVisits() {
+        Collection<Owner> owners = this.clinicService.findOwnerByLastName("Davis");
+        assertThat(owners).extracting(owner -> owner.getPets().get(0).getName())
+            .containsExactlyInAnyOrder("Basil", "Iggy");
+
+        Owner owner = EntityUtils.getById(this.clinicService.findAllOwners(), Owner.class, 6);
+        assertThat(owner.getPets()).extracting(Pet::getName).containsExactly("Max", "Samantha");
+        assertThat(owner.getPets()).allMatch(pet -> pet.getVisits().size() == 2 && pet.getType().getName().equals("cat"));
+    }
+
     @Test
     void shouldFindSingleOwnerWithPet() {
         Owner owner = this.clinicService.findOwnerById(1);
@@ -71,6 +103,27 @@ abstract class AbstractClinicServiceTests {
         assertThat(owner.getPets().get(0).getType().getName()).isEqualTo("cat");
     }
 
+    @Test
+    void shouldFindOwnerWithPetsAndVisitsOutsideTransaction() {
+        Owner owner = this.clinicService.findOwnerById(6);
+        assertThat(owner.getPets()).hasSize(2);
+        assertThat(owner.getPet("Samantha").getVisits()).hasSize(2);
+        assertThat(owner.getPet("Max").getVisits()).hasSize(2);
+    }
+
+    @Test
+    void shouldFindOwnersWithFetchPlan() {
+        Owner owner = this.clinicService.findOwnerById(6, OwnerFetchPlan.PETS);
+        assertThat(owner.getPets()).hasSize(2);
+        assertThat(owner.getPet("Max").getType().getName()).isEqualTo("cat");
+
+        owner = this.clinicService.findOwnerById(6, OwnerFetchPlan.HEADER);
+        assertThat(owner.getLastName()).isEqualTo("Coleman");
+
+        Collection<Owner> owners = this.clinicService.findOwnerByLastName("Davis", OwnerFetchPlan.HEADER);
+        assertThat(owners).hasSize(2);
+    }
+
     @Test
     @Transactional
     void shouldInsertOwner() {
@@ -90,6 +143,42 @@ abstract class AbstractClinicServiceTests {
         assertThat(owners.size()).isEqualTo(found + 1);
     }
 
+    @Test
+    @Transactional
+    void shouldImportOwnersWithPetsAndVisitsInBatches() {
+        PetType cat = this.clinicService.findPetTypeById(1);
+        List<Owner> owners = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Owner owner = new Owner();
+            owner.setFirstName("Imported" + i);
+            owner.setLastName("Batchelor");
+            owner.setAddress("1, Import Street");
+            owner.setCity("Madison");
+            owner.setTelephone("6085550000");
+            for (int j = 0; j <= i; j++) {
+                Pet pet = new Pet();
+                pet.setName("Pet" + i + j);
+                pet.setBirthDate(LocalDate.of(2020, 1, 1));
+                pet.setType(cat);
+                owner.addPet(pet);
+                Visit visit = new Visit();
+                visit.setDate(LocalDate.of(2021, 1, 1));
+                visit.setDescription("checkup");
+                pet.addVisit(visit);
+            }
+            owners.add(owner);
+        }
+
+        Map<String, Integer> counts = this.clinicService.importOwners(owners.iterator(), 2);
+
+        assertThat(counts).containsEntry("owners", 3).containsEntry("pets", 6).containsEntry("visits", 6);
+        assertThat(owners).allMatch(owner -> owner.getId() != null);
+        Owner imported = this.clinicService.findOwnerById(owners.get(2).getId());
+        assertThat(imported.getFirstName()).isEqualTo("Imported2");
+        assertThat(imported.getPets()).hasSize(3).allMatch(pet -> pet.getVisits().size() == 1);
+        assertThat(this.clinicService.findOwnerByLastName("Batchelor")).hasSize(3);
+    }
+
     @Test
     @Transactional
     void shouldUpdateOwner() {
@@ -105,12 +194,66 @@ abstract class AbstractClinicServiceTests {
         assertThat(owner.getLastName()).isEqualTo(newLastName);
     }
 
+    @Test
+    void shouldCacheOwnerUntilSaved() {
+        Owner owner = this.clinicService.findOwnerById(1);
+        assertThat(this.clinicService.findOwnerById(1)).isSameAs(owner);
+
+        this.clinicService.saveOwner(owner);
+        assertThat(this.clinicService.findOwnerById(1)).isNotSameAs(owner);
+    }
+
+    @Test
+    void shouldReadAnUncachedOwnerForUpdate() {
+        Owner cached = this.clinicService.findOwnerById(1);
+        Owner owner = this.clinicService.findOwnerForUpdate(1);
+        assertThat(owner).isNotSameAs(cached);
+        assertThat(owner.getLastName()).isEqualTo(cached.getLastName());
+
+        owner.setLastName(owner.getLastName() + "X");
+        assertThat(this.clinicService.findOwnerById(1)).isSameAs(cached);
+        assertThat(cached.getLastName()).isNotEqualTo(owner.getLastName());
+    }
+
+    @Test
+    @Transactional
+    void shouldUpdateOwnerFieldsOnlyAtTheReadVersion() {
+        int version = this.clinicService.findOwnerById(1).getVersion();
+        Map<String, Object> changes = new LinkedHashMap<>();
+        changes.put("city", "Monona");
+        changes.put("telephone", "6085550000");
+
+        assertThat(this.clinicService.updateOwner(1, version, changes)).isEqualTo(version + 1);
+        Owner owner = this.clinicService.findOwnerById(1);
+        assertThat(owner.getVersion()).isEqualTo(version + 1);
+        assertThat(owner.getCity()).isEqualTo("Monona");
+        assertThat(owner.getTelephone()).isEqualTo("6085550000");
+        assertThat(owner.getLastName()).isEqualTo("Franklin");
+
+        assertThatThrownBy(() -> this.clinicService.updateOwner(1, version, changes))
+            .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        assertThatThrownBy(() -> this.clinicService.updateOwner(9999, 0, changes))
+            .isInstanceOf(ObjectRetrievalFailureException.class);
+    }
+
+    @Test
+    @Transactional
+    void shouldFindOwnerVersionWithoutLoadingIt() {
+        int version = this.clinicService.findOwnerById(1).getVersion();
+        assertThat(this.clinicService.findOwnerVersion(1)).isEqualTo(version);
+
+        this.clinicService.updateOwner(1, version, Collections.singletonMap("city", "Monona"));
+        assertThat(this.clinicService.findOwnerVersion(1)).isEqualTo(version + 1);
+        assertThat(this.clinicService.findOwnerVersion(9999)).isNull();
+    }
+
     @Test
     void shouldFindPetWithCorrectId() {
         Pet pet7 = this.clinicService.findPetById(7);
         assertThat(pet7.getName()).startsWith("Samantha");
         assertThat(pet7.getOwner().getFirstName()).isEqualTo("Jean");
-
+        assertThat(pet7.getType().getName()).isEqualTo("cat");
+        assertThat(pet7.getVisits()).extracting(Visit::getDescription).containsExactly("spayed", "rabies shot");
     }
 
 //    @Test
@@ -160,6 +303,25 @@ abstract class AbstractClinicServiceTests {
         assertThat(pet7.getName()).isEqualTo(newName);
     }
 
+    @Test
+    @Transactional
+    void shouldUpdatePetTypeAndBirthDateOnlyAtTheReadVersion() {
+        int version = this.clinicService.findPetById(7).getVersion();
+        Map<String, Object> changes = new LinkedHashMap<>();
+        changes.put("type", this.clinicService.findPetTypeById(2));
+        changes.put("birthDate", LocalDate.of(2012, 8, 6));
+
+        assertThat(this.clinicService.updatePet(7, version, changes)).isEqualTo(version + 1);
+        Pet pet = this.clinicService.findPetById(7);
+        assertThat(pet.getVersion()).isEqualTo(version + 1);
+        assertThat(pet.getType().getName()).isEqualTo("dog");
+        assertThat(pet.getBirthDate()).isEqualTo(LocalDate.of(2012, 8, 6));
+        assertThat(pet.getName()).isEqualTo("Samantha");
+
+        assertThatThrownBy(() -> this.clinicService.updatePet(7, version, changes))
+            .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+    }
+
     @Test
     void shouldFindVets() {
         Collection<Vet> vets = this.clinicService.findVets();
@@ -317,6 +479,24 @@ abstract class AbstractClinicServiceTests {
         assertThat(vet.getLastName()).isEqualTo(newLastName);
     }
 
+    @Test
+    @Transactional
+    void shouldUpdateVetNameOnlyAtTheReadVersion() {
+        int version = this.clinicService.findVetById(1).getVersion();
+        Map<String, Object> changes = new LinkedHashMap<>();
+        changes.put("lastName", "Carterson");
+
+        assertThat(this.clinicService.updateVet(1, version, changes)).isEqualTo(version + 1);
+        Vet vet = this.clinicService.findVetById(1);
+        assertThat(vet.getVersion()).isEqualTo(version + 1);
+        assertThat(vet.getLastName()).isEqualTo("Carterson");
+
+        assertThatThrownBy(() -> this.clinicService.updateVet(1, version, changes))
+            .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        assertThatThrownBy(() -> this.clinicService.updateVet(9999, 0, changes))
+            .isInstanceOf(ObjectRetrievalFailureException.class);
+    }
+
     @Test
     @Transactional
     void shouldDeleteVet(){
@@ -339,6 +519,63 @@ abstract class AbstractClinicServiceTests {
         assertThat(owner3.getFirstName()).isEqualTo("Eduardo");
     }
 
+    @Test
+    void shouldFindOwnersPageAfterId() {
+        Collection<Owner> owners = this.clinicService.findAllOwners(2, 3);
+        assertThat(owners).extracting(Owner::getId).containsExactly(3, 4, 5);
+        assertThat(EntityUtils.getById(owners, Owner.class, 3).getPets()).hasSize(2);
+
+        owners = this.clinicService.findOwnerByLastName("Davis", 2, 10);
+        assertThat(owners).extracting(Owner::getId).containsExactly(4);
+    }
+
+    @Test
+    void shouldStreamAllOwnersWithPetsAndVisits() {
+        Map<Integer, Integer> visitCounts = new LinkedHashMap<>();
+        this.clinicService.streamAllOwners(owner -> {
+            int visitCount = 0;
+            for (Pet pet : owner.getPets()) {
+                visitCount += pet.getVisits().size();
+            }
+            visitCounts.put(owner.getId(), visitCount);
+        });
+        assertThat(visitCounts.keySet()).containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+        assertThat(visitCounts.get(6)).isEqualTo(4);
+    }
+
+    @Test
+    void shouldStreamAllPetsAndVisits() {
+        List<Integer> petIds = new ArrayList<>();
+        this.clinicService.streamAllPets(pet -> {
+            assertThat(pet.getType().getName()).isNotNull();
+            assertThat(pet.getOwner().getLastName()).isNotNull();
+            petIds.add(pet.getId());
+        });
+        assertThat(petIds).hasSize(13).isSorted();
+
+        List<String> visitPets = new ArrayList<>();
+        this.clinicService.streamAllVisits(visit -> visitPets.add(visit.getPet().getName()));
+        assertThat(visitPets).containsExactly("Samantha", "Max", "Max", "Samantha");
+    }
+
+    @Test
+    void shouldFindVetsPageWithSpecialties() {
+        Collection<Vet> vets = this.clinicService.findAllVets(1, 2);
+        assertThat(vets).extracting(Vet::getId).containsExactly(2, 3);
+        assertThat(EntityUtils.getById(vets, Vet.class, 3).getNrOfSpecialties()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldFindPetsAndVisitsPages() {
+        Collection<Pet> pets = this.clinicService.findAllPets(0, 2);
+        assertThat(pets).extracting(Pet::getId).containsExactly(1, 2);
+        assertThat(EntityUtils.getById(pets, Pet.class, 1).getOwner().getId()).isEqualTo(1);
+
+        Collection<Visit> visits = this.clinicService.findAllVisits(2, 10);
+        assertThat(visits).extracting(Visit::getId).containsExactly(3, 4);
+        assertThat(this.clinicService.findAllVisits(4, 10)).isEmpty();
+    }
+
     @Test
     @Transactional
     void shouldDeleteOwner(){
@@ -352,6 +589,24 @@ abstract class AbstractClinicServiceTests {
         assertThat(owner).isNull();
     }
 
+    @Test
+    @Transactional
+    void shouldDeleteOwnerWithPetsAndVisits(){
+        Owner owner = this.clinicService.findOwnerById(6);
+        this.clinicService.deleteOwner(owner);
+        assertThat(this.clinicService.findAllPets()).extracting(Pet::getId).doesNotContain(7, 8);
+        assertThat(this.clinicService.findAllVisits()).isEmpty();
+    }
+
+    @Test
+    @Transactional
+    void shouldDeletePetTypeWithPetsAndVisits(){
+        PetType petType = this.clinicService.findPetTypeById(1);
+        this.clinicService.deletePetType(petType);
+        assertThat(this.clinicService.findAllPets()).extracting(pet -> pet.getType().getId()).doesNotContain(1);
+        assertThat(this.clinicService.findAllVisits()).isEmpty();
+    }
+
     @Test
     void shouldFindPetTypeById(){
     	PetType petType = this.clinicService.findPetTypeById(1);
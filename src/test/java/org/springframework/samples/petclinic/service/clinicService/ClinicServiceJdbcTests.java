@@ -15,8 +15,16 @@
  */
 package org.springframework.samples.petclinic.service.clinicService;
 
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.samples.petclinic.model.BaseEntity;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.util.IdSequences;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 /**
  * <p> Integration test using the jdbc profile.
@@ -29,4 +37,27 @@ import org.springframework.test.context.ActiveProfiles;
 @ActiveProfiles({"jdbc", "hsqldb"})
 class ClinicServiceJdbcTests extends AbstractClinicServiceTests {
 
+    @Autowired
+    private IdSequences idSequences;
+
+    @Test
+    @Transactional
+    void shouldAllocateTheIdsOfTheInsertsByBlocks() {
+        long next = this.idSequences.peek("owners");
+        int previousId = 0;
+        for (int i = 0; i < 10; i++) {
+            Owner owner = new Owner();
+            owner.setFirstName("Sam" + i);
+            owner.setLastName("Schultz");
+            owner.setAddress("4, Evans Street");
+            owner.setCity("Wollongong");
+            owner.setTelephone("4444444444");
+            this.clinicService.saveOwner(owner);
+            assertThat(owner.getId()).isGreaterThan(previousId);
+            previousId = owner.getId();
+        }
+        // at most one new block for the ten rows, not a block per row
+        assertThat(this.idSequences.peek("owners") - next).isLessThanOrEqualTo(BaseEntity.ID_ALLOCATION_SIZE);
+    }
+
 }
@@ -0,0 +1,28 @@
+package org.springframework.samples.petclinic.service.clinicService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * <p> Integration test using the memory profile, seeded from the hsqldb database into a new journal.
+ *
+ * @see AbstractClinicServiceTests AbstractClinicServiceTests for more details. </p>
+ */
+@SpringBootTest
+@ActiveProfiles({"memory", "hsqldb"})
+class ClinicServiceMemoryTests extends AbstractClinicServiceTests {
+
+    @DynamicPropertySource
+    static void journal(DynamicPropertyRegistry registry) throws IOException {
+        Path journal = Files.createTempFile("clinic-service", ".journal");
+        journal.toFile().deleteOnExit();
+        registry.add("petclinic.memory.journal", journal::toString);
+    }
+
+}
@@ -4,10 +4,13 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.samples.petclinic.model.User;
 import org.springframework.samples.petclinic.service.UserService;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 
 public abstract class AbstractUserServiceTests {
@@ -15,6 +18,9 @@ public abstract class AbstractUserServiceTests {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private CacheManager cacheManager;
+
     @BeforeEach
     public void init() {
         MockitoAnnotations.openMocks(this);
@@ -32,4 +38,18 @@ public abstract class AbstractUserServiceTests {
         assertThat(user.getRoles().parallelStream().allMatch(role -> role.getName().startsWith("ROLE_")), is(true));
         assertThat(user.getRoles().parallelStream().allMatch(role -> role.getUser() != null), is(true));
     }
+
+    @Test
+    public void shouldEvictTheSavedUserFromTheAuthenticationCache() throws Exception {
+        Cache users = cacheManager.getCache("users");
+        users.put("cached", "stale user details");
+
+        User user = new User();
+        user.setUsername("cached");
+        user.setPassword("password");
+        user.setEnabled(true);
+        user.addRole("VET_ADMIN");
+        userService.saveUser(user);
+        assertThat(users.get("cached"), is(nullValue()));
+    }
 }
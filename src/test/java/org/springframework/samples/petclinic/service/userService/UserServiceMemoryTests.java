@@ -0,0 +1,23 @@
+package org.springframework.samples.petclinic.service.userService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+@SpringBootTest
+@ActiveProfiles({"memory", "hsqldb"})
+class UserServiceMemoryTests extends AbstractUserServiceTests {
+
+    @DynamicPropertySource
+    static void journal(DynamicPropertyRegistry registry) throws IOException {
+        Path journal = Files.createTempFile("user-service", ".journal");
+        journal.toFile().deleteOnExit();
+        registry.add("petclinic.memory.journal", journal::toString);
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.springframework.samples.petclinic.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the percentiles computed from the latency histogram of {@link CallStatistics}.
+ */
+class CallStatisticsTests {
+
+    @Test
+    void shouldReportPercentilesWithinBucketPrecision() {
+        CallStatistics statistics = new CallStatistics("OwnerRepository.findById(int)");
+        for (int millis = 1; millis <= 100; millis++) {
+            statistics.record(millis * 1_000_000L);
+        }
+        assertThat(statistics.getCount()).isEqualTo(100);
+        assertThat(statistics.getMeanTime()).isCloseTo(50.5, within(0.001));
+        assertThat(statistics.getP50()).isCloseTo(50, within(50 / 16d));
+        assertThat(statistics.getP99()).isCloseTo(99, within(99 / 16d));
+        assertThat(statistics.getMaxTime()).isEqualTo(100);
+    }
+
+    @Test
+    void shouldReportZeroWhenNothingRecorded() {
+        CallStatistics statistics = new CallStatistics("OwnerRepository.findAll()");
+        assertThat(statistics.getP99()).isZero();
+        assertThat(statistics.getMeanTime()).isZero();
+    }
+
+    @Test
+    void shouldMapEveryValueToABucketBoundingIt() {
+        for (long value : new long[]{0, 1, 15, 16, 17, 31, 32, 33, 1000, 123_456_789, Long.MAX_VALUE}) {
+            long upperBound = CallStatistics.bucketUpperBound(CallStatistics.bucketIndex(value));
+            assertThat(upperBound).isGreaterThanOrEqualTo(value);
+            assertThat(upperBound - value).isLessThanOrEqualTo(value / 16);
+        }
+    }
+}
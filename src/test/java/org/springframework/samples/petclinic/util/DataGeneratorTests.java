@@ -0,0 +1,80 @@
+package org.springframework.samples.petclinic.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+/**
+ * Runs the {@link DataGenerator} against private in-memory databases, so that the shared test data is not modified.
+ */
+class DataGeneratorTests {
+
+    private EmbeddedDatabase first;
+
+    private EmbeddedDatabase second;
+
+    @AfterEach
+    void shutdown() {
+        if (this.first != null) {
+            this.first.shutdown();
+        }
+        if (this.second != null) {
+            this.second.shutdown();
+        }
+    }
+
+    @Test
+    void shouldAppendOwnersPetsVisitsAndVets() {
+        this.first = createDatabase("datagen-append");
+        Map<String, Integer> counts = new DataGenerator(this.first, 42, 50).generate(200);
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(this.first);
+        assertThat(counts.get("owners")).isEqualTo(200);
+        assertThat(count(jdbcTemplate, "owners")).isEqualTo(10 + 200);
+        assertThat(count(jdbcTemplate, "pets")).isEqualTo(13 + counts.get("pets"));
+        assertThat(count(jdbcTemplate, "visits")).isEqualTo(4 + counts.get("visits"));
+        assertThat(counts.get("pets")).isBetween(200, 400);
+        assertThat(counts.get("vets")).isEqualTo(1);
+        // existing types and specialties are reused
+        assertThat(counts).doesNotContainKeys("types", "specialties");
+
+        // the identity columns continue after the generated ids
+        jdbcTemplate.update("INSERT INTO owners (first_name, last_name, address, city, telephone) " +
+            "VALUES ('Sam', 'Schultz', '4, Evans Street', 'Wollongong', '4444444444')");
+        assertThat(jdbcTemplate.queryForObject("SELECT MAX(id) FROM owners", Integer.class)).isEqualTo(211);
+    }
+
+    @Test
+    void shouldGenerateTheSameRowsForTheSameSeed() {
+        this.first = createDatabase("datagen-first");
+        this.second = createDatabase("datagen-second");
+        new DataGenerator(this.first, 7, 1000).generate(100);
+        new DataGenerator(this.second, 7, 30).generate(100);
+
+        for (String query : new String[]{"SELECT * FROM owners ORDER BY id", "SELECT * FROM pets ORDER BY id",
+            "SELECT * FROM visits ORDER BY id", "SELECT * FROM vet_specialties ORDER BY vet_id, specialty_id"}) {
+            List<Map<String, Object>> rows = new JdbcTemplate(this.first).queryForList(query);
+            assertThat(new JdbcTemplate(this.second).queryForList(query)).isEqualTo(rows);
+        }
+    }
+
+    private static EmbeddedDatabase createDatabase(String name) {
+        return new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.HSQL)
+            .setName(name)
+            .addScripts("db/hsqldb/initDB.sql", "db/hsqldb/populateDB.sql")
+            .build();
+    }
+
+    private static int count(JdbcTemplate jdbcTemplate, String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+    }
+}
@@ -0,0 +1,58 @@
+package org.springframework.samples.petclinic.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.samples.petclinic.model.PetType;
+
+/**
+ * Checks the lookups of the open-addressing {@link EntityIndex}.
+ */
+class EntityIndexTests {
+
+    private static PetType petType(Integer id) {
+        PetType petType = new PetType();
+        petType.setId(id);
+        petType.setName("type" + id);
+        return petType;
+    }
+
+    @Test
+    void shouldFindEveryIndexedEntity() {
+        List<PetType> petTypes = new ArrayList<>();
+        for (int id = 1; id <= 100_000; id++) {
+            petTypes.add(petType(id * 7));
+        }
+        EntityIndex<PetType> index = EntityUtils.index(petTypes, PetType.class);
+        assertThat(index.size()).isEqualTo(100_000);
+        for (PetType petType : petTypes) {
+            assertThat(index.getById(petType.getId())).isSameAs(petType);
+        }
+        assertThat(index.get(8)).isNull();
+        assertThat(index.get(-7)).isNull();
+    }
+
+    @Test
+    void shouldKeepTheFirstEntityOfAnIdAndSkipNewEntities() {
+        PetType first = petType(3);
+        EntityIndex<PetType> index = EntityUtils.index(Arrays.asList(first, petType(3), petType(null)),
+            PetType.class);
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.get(3)).isSameAs(first);
+    }
+
+    @Test
+    void shouldReportMissingEntities() {
+        EntityIndex<PetType> index = EntityUtils.index(Collections.emptyList(), PetType.class);
+        assertThat(index.get(0)).isNull();
+        assertThatThrownBy(() -> index.getById(1)).isInstanceOf(ObjectRetrievalFailureException.class);
+    }
+
+}
@@ -0,0 +1,59 @@
+package org.springframework.samples.petclinic.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.samples.petclinic.model.BaseEntity;
+
+/**
+ * Reads and checks the {@link IdSequences} of a private in-memory database, so that the shared test data is not modified.
+ */
+class IdSequencesTests {
+
+    private EmbeddedDatabase database;
+
+    @BeforeEach
+    void createDatabase() {
+        this.database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.HSQL)
+            .setName("id-sequences")
+            .addScripts("db/hsqldb/initDB.sql", "db/hsqldb/populateDB.sql")
+            .build();
+    }
+
+    @AfterEach
+    void shutdown() {
+        this.database.shutdown();
+    }
+
+    @Test
+    void shouldReserveTheBlocksAnnouncedByPeek() {
+        IdSequences sequences = new IdSequences(this.database);
+
+        long next = sequences.peek("owners");
+        assertThat(sequences.reserve("owners")).isEqualTo(next);
+        assertThat(sequences.peek("owners")).isEqualTo(next + BaseEntity.ID_ALLOCATION_SIZE);
+        assertThat(sequences.peek("unknown")).isNull();
+    }
+
+    @Test
+    void shouldAcceptTheSchemaOfTheScripts() {
+        new IdSequences(this.database).verify();
+    }
+
+    @Test
+    void shouldRejectASequenceBehindTheIdsOfItsTable() {
+        IdSequences sequences = new IdSequences(this.database);
+        new JdbcTemplate(this.database).update("INSERT INTO types (id, name) VALUES (?, 'parrot')",
+            sequences.peek("types") + 10);
+
+        assertThatIllegalStateException().isThrownBy(sequences::verify).withMessageContaining("types_seq");
+    }
+}
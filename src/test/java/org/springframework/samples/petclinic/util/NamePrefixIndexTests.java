@@ -0,0 +1,61 @@
+package org.springframework.samples.petclinic.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the prefix searches and the updates of the {@link NamePrefixIndex}.
+ */
+class NamePrefixIndexTests {
+
+    private static NamePrefixIndex load(String... names) {
+        NamePrefixIndex index = new NamePrefixIndex();
+        index.load(action -> {
+            for (int id = 1; id <= names.length; id++) {
+                action.accept(names[id - 1], id);
+            }
+        });
+        return index;
+    }
+
+    @Test
+    void shouldFindTheDistinctNamesStartingWithAPrefixWhateverTheirCase() {
+        NamePrefixIndex index = load("Davis", "Franklin", "davis", "Davison", "Dawson", "Black");
+        assertThat(index.isReady()).isTrue();
+        assertThat(index.size()).isEqualTo(5);
+        assertThat(index.findByPrefix("DAV", 10)).containsExactly("Davis", "Davison");
+        assertThat(index.findByPrefix("d", 10)).containsExactly("Davis", "Davison", "Dawson");
+        assertThat(index.findByPrefix("d", 2)).containsExactly("Davis", "Davison");
+        assertThat(index.findByPrefix("Davisons", 10)).isEmpty();
+    }
+
+    @Test
+    void shouldRemoveANameWithItsLastEntity() {
+        NamePrefixIndex index = load("Davis", "Davis", "Franklin");
+        index.remove(1);
+        assertThat(index.findByPrefix("Da", 10)).containsExactly("Davis");
+        index.put(2, "Coleman");
+        assertThat(index.findByPrefix("Da", 10)).isEmpty();
+        assertThat(index.findByPrefix("C", 10)).containsExactly("Coleman");
+        index.remove(3);
+        index.remove(42);
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldReplayTheUpdatesMadeDuringTheLoad() {
+        NamePrefixIndex index = new NamePrefixIndex();
+        index.load(action -> {
+            action.accept("Davis", 1);
+            // updates committed while the load reads an older state of the owners
+            index.put(2, "Franklin");
+            index.remove(3);
+            assertThat(index.isReady()).isFalse();
+            action.accept("Black", 2);
+            action.accept("Coleman", 3);
+        });
+        assertThat(index.findByPrefix("", 10)).containsExactly("Davis", "Franklin");
+    }
+
+}
@@ -0,0 +1,126 @@
+package org.springframework.samples.petclinic.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.samples.petclinic.repository.OwnerRepository;
+import org.springframework.samples.petclinic.service.ClinicService;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Checks the routing of the transactions to a replica database, a second in-memory HSQLDB instance whose owner 1 is
+ * renamed so that the reads can tell the databases apart.
+ */
+@SpringBootTest(properties = {
+    "petclinic.datasource.replica.jdbc-url=jdbc:hsqldb:mem:petclinic-replica",
+    "petclinic.datasource.replica.username=sa",
+    "petclinic.datasource.read-your-writes=5s"})
+class ReadWriteRoutingDataSourceTests {
+
+    private static final String LAST_NAME = "SELECT last_name FROM owners WHERE id = 1";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replicaDataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private OwnerRepository ownerRepository;
+
+    @Autowired
+    private ClinicService clinicService;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate readOnly;
+
+    private TransactionTemplate readWrite;
+
+    @BeforeEach
+    void initReplica() {
+        new ResourceDatabasePopulator(new ClassPathResource("db/hsqldb/initDB.sql"),
+            new ClassPathResource("db/hsqldb/populateDB.sql")).execute(this.replicaDataSource);
+        new JdbcTemplate(this.replicaDataSource).update("UPDATE owners SET last_name = 'Replica' WHERE id = 1");
+        this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+        this.readOnly = new TransactionTemplate(this.transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.readWrite = new TransactionTemplate(this.transactionManager);
+    }
+
+    private String readLastName() {
+        return this.readOnly.execute(status -> this.jdbcTemplate.queryForObject(LAST_NAME, String.class));
+    }
+
+    private void write() {
+        this.readWrite.executeWithoutResult(status ->
+            this.jdbcTemplate.update("UPDATE owners SET telephone = telephone WHERE id = 2"));
+    }
+
+    @Test
+    void shouldReadFromTheReplicaInReadOnlyTransactionsOnly() {
+        assertThat(readLastName()).isEqualTo("Replica");
+        String repositoryLastName = this.readOnly.execute(status -> this.ownerRepository.findById(1).getLastName());
+        assertThat(repositoryLastName).isEqualTo("Replica");
+        String readWriteLastName = this.readWrite.execute(status -> this.jdbcTemplate.queryForObject(LAST_NAME, String.class));
+        assertThat(readWriteLastName).isEqualTo("Franklin");
+        assertThat(this.jdbcTemplate.queryForObject(LAST_NAME, String.class)).isEqualTo("Franklin");
+    }
+
+    @Test
+    void shouldFillTheCacheFromThePrimary() {
+        assertThat(this.clinicService.findOwnerById(1).getLastName()).isEqualTo("Franklin");
+        assertThat(readLastName()).isEqualTo("Replica");
+    }
+
+    @Test
+    void shouldReadFromThePrimaryAfterAWriteOfTheSession() throws Exception {
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(Duration.ofSeconds(5));
+        String[] lastNames = new String[3];
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest(), response, new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) {
+                lastNames[0] = readLastName();
+                write();
+                lastNames[1] = readLastName();
+            }
+        });
+        Cookie cookie = response.getCookie(ReadYourWritesFilter.COOKIE_NAME);
+        assertThat(cookie).isNotNull();
+
+        MockHttpServletRequest nextRequest = new MockHttpServletRequest();
+        nextRequest.setCookies(cookie);
+        filter.doFilter(nextRequest, new MockHttpServletResponse(), new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) {
+                lastNames[2] = readLastName();
+            }
+        });
+        assertThat(lastNames).containsExactly("Replica", "Franklin", "Franklin");
+        assertThat(readLastName()).isEqualTo("Replica");
+    }
+
+}